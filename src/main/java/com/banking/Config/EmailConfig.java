@@ -1,5 +1,6 @@
 package com.banking.Config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.thymeleaf.spring6.SpringTemplateEngine;
@@ -9,6 +10,14 @@ import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 @Configuration
 public class EmailConfig {
 
+    // Giữ template đã phân tích trong bộ nhớ; tắt khi sửa template lúc phát triển
+    @Value("${app.email.templates.cache:true}")
+    private boolean cacheTemplates = true;
+
+    // > 0: kiểm tra lại template sau khoảng thời gian này (làm mới khi dev); 0 = giữ mãi
+    @Value("${app.email.templates.cache-ttl-ms:0}")
+    private long cacheTtlMs = 0;
+
     @Bean
     public SpringTemplateEngine templateEngine() {
         SpringTemplateEngine templateEngine = new SpringTemplateEngine();
@@ -23,7 +32,10 @@ public class EmailConfig {
         templateResolver.setSuffix(".html");
         templateResolver.setTemplateMode(TemplateMode.HTML);
         templateResolver.setCharacterEncoding("UTF-8");
-        templateResolver.setCacheable(false);
+        templateResolver.setCacheable(cacheTemplates);
+        if (cacheTtlMs > 0) {
+            templateResolver.setCacheTTLMs(cacheTtlMs);
+        }
         return templateResolver;
     }
 }
@@ -14,6 +14,7 @@ public class JacksonConfig {
     public ObjectMapper apiObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new MoneyJsonModule());
         // KHÔNG bật defaultTyping -> sẽ không đòi @class
         return mapper;
     }
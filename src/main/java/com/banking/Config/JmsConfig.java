@@ -1,21 +1,62 @@
 package com.banking.Config;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.ActiveMQConnection;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.RedeliveryPolicy;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.management.JMSStatsImpl;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.apache.activemq.transport.Transport;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
 import org.springframework.jms.support.converter.MessageConverter;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.jms.ConnectionFactory;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * JMS Configuration
+ *
+ * JmsTemplate sends go through a connection layer chosen from the usual
+ * Spring Boot properties, which the custom beans here would otherwise
+ * bypass: spring.activemq.pool.* selects a pool of broker connections
+ * whose sessions keep one reusable anonymous producer each, otherwise
+ * spring.jms.cache.* selects one shared connection with cached sessions
+ * and producers, otherwise every send opens its own connection. Listener
+ * containers always use the broker factory directly because they hold
+ * their connection and consumers for their whole lifetime.
+ *
+ * payment.queue is consumed by a container that grows from the minimum to
+ * the maximum concurrency while messages keep arriving and shrinks again
+ * when consumers sit idle. A failed notification is rolled back and
+ * redelivered by the client after an exponentially growing delay.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
 @Configuration
 @EnableJms
 public class JmsConfig {
 
+    // Thuộc tính message chứa tên class của payload JSON
+    public static final String TYPE_ID_PROPERTY = "_type";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Value("${spring.activemq.broker-url}")
     private String brokerUrl;
 
@@ -25,9 +66,71 @@ public class JmsConfig {
     @Value("${spring.activemq.password}")
     private String brokerPassword;
 
+    // Gửi không chờ broker xác nhận: nhanh hơn nhưng có thể mất message khi broker lỗi
+    @Value("${app.jms.async-send:false}")
+    private boolean asyncSend = false;
+
+    @Value("${spring.activemq.pool.enabled:false}")
+    private boolean poolEnabled = false;
+
+    @Value("${spring.activemq.pool.max-connections:1}")
+    private int poolMaxConnections = 1;
+
+    @Value("${spring.activemq.pool.max-sessions-per-connection:500}")
+    private int poolMaxSessionsPerConnection = 500;
+
+    @Value("${spring.activemq.pool.idle-timeout:30s}")
+    private Duration poolIdleTimeout = Duration.ofSeconds(30);
+
+    @Value("${spring.activemq.pool.block-if-full:true}")
+    private boolean poolBlockIfFull = true;
+
+    @Value("${spring.activemq.pool.block-if-full-timeout:-1ms}")
+    private Duration poolBlockIfFullTimeout = Duration.ofMillis(-1);
+
+    @Value("${spring.activemq.pool.time-between-expiration-check:-1ms}")
+    private Duration poolTimeBetweenExpirationCheck = Duration.ofMillis(-1);
+
+    @Value("${spring.jms.cache.enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${spring.jms.cache.session-cache-size:1}")
+    private int cacheSessionCacheSize = 1;
+
+    @Value("${spring.jms.cache.producers:true}")
+    private boolean cacheProducers = true;
+
+    @Value("${spring.jms.cache.consumers:false}")
+    private boolean cacheConsumers = false;
+
+    // Tắt trên node không xử lý thông báo; test không có broker
+    @Value("${app.notification.consumer.enabled:true}")
+    private boolean notificationConsumerEnabled = true;
+
+    @Value("${app.notification.consumer.concurrency:2-16}")
+    private String notificationConcurrency = "2-16";
+
+    // Consumer trả lại luồng sau số message này để container có thể co giãn
+    @Value("${app.notification.consumer.max-messages-per-task:20}")
+    private int notificationMaxMessagesPerTask = 20;
+
+    @Value("${app.notification.consumer.max-attempts:5}")
+    private int notificationMaxAttempts = 5;
+
+    @Value("${app.notification.consumer.initial-redelivery-delay-ms:1000}")
+    private long notificationInitialRedeliveryDelayMs = 1000;
+
+    @Value("${app.notification.consumer.max-redelivery-delay-ms:60000}")
+    private long notificationMaxRedeliveryDelayMs = 60000;
+
+    private PooledConnectionFactory connectionPool;
+
+    /**
+     * Factory kết nối thẳng tới broker, đếm số kết nối vật lý đã mở
+     */
     @Bean
-    public ConnectionFactory connectionFactory() {
-        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory();
+    public CountingConnectionFactory brokerConnectionFactory() {
+        CountingConnectionFactory connectionFactory = new CountingConnectionFactory();
         connectionFactory.setBrokerURL(brokerUrl);
 
         // Use configured username/password for external broker
@@ -38,15 +141,66 @@ public class JmsConfig {
 
         // Avoid deserialization issues if any object message is used in future
         connectionFactory.setTrustAllPackages(true);
-        
+        connectionFactory.setUseAsyncSend(asyncSend);
+
+        // Backoff riêng cho payment.queue; consumer tự chuyển message sang DLQ ở lần thử cuối,
+        // giới hạn của client chỉ là lưới an toàn (broker đưa vào ActiveMQ.DLQ)
+        RedeliveryPolicy notificationPolicy = new RedeliveryPolicy();
+        notificationPolicy.setDestination(new ActiveMQQueue(QueueConfig.PAYMENT_QUEUE));
+        notificationPolicy.setInitialRedeliveryDelay(notificationInitialRedeliveryDelayMs);
+        notificationPolicy.setUseExponentialBackOff(true);
+        notificationPolicy.setBackOffMultiplier(2);
+        notificationPolicy.setMaximumRedeliveryDelay(notificationMaxRedeliveryDelayMs);
+        notificationPolicy.setMaximumRedeliveries(notificationMaxAttempts);
+        connectionFactory.getRedeliveryPolicyMap().put(notificationPolicy.getDestination(), notificationPolicy);
+
         return connectionFactory;
     }
 
+    /**
+     * Factory cho JmsTemplate: pool, cache hoặc kết nối thẳng theo cấu hình
+     */
+    @Bean
+    @Primary
+    public ConnectionFactory connectionFactory() {
+        if (poolEnabled) {
+            PooledConnectionFactory pooled = new PooledConnectionFactory(brokerConnectionFactory());
+            pooled.setMaxConnections(poolMaxConnections);
+            pooled.setMaximumActiveSessionPerConnection(poolMaxSessionsPerConnection);
+            pooled.setIdleTimeout((int) poolIdleTimeout.toMillis());
+            pooled.setBlockIfSessionPoolIsFull(poolBlockIfFull);
+            pooled.setBlockIfSessionPoolIsFullTimeout(poolBlockIfFullTimeout.toMillis());
+            pooled.setTimeBetweenExpirationCheckMillis(poolTimeBetweenExpirationCheck.toMillis());
+            // Mỗi session giữ một producer không gắn destination, dùng lại cho mọi lần gửi
+            pooled.setUseAnonymousProducers(true);
+            connectionPool = pooled;
+            return pooled;
+        }
+        if (cacheEnabled) {
+            CachingConnectionFactory caching = new CachingConnectionFactory(brokerConnectionFactory());
+            caching.setSessionCacheSize(cacheSessionCacheSize);
+            caching.setCacheProducers(cacheProducers);
+            caching.setCacheConsumers(cacheConsumers);
+            return caching;
+        }
+        return brokerConnectionFactory();
+    }
+
+    @PreDestroy
+    void stopConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.stop();
+        }
+    }
+
     @Bean
     public MessageConverter messageConverter() {
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
         converter.setTargetType(org.springframework.jms.support.converter.MessageType.TEXT);
-        converter.setTypeIdPropertyName("_type");
+        converter.setTypeIdPropertyName(TYPE_ID_PROPERTY);
+        // Cùng mapper với API (có JavaTimeModule) để đọc được message do outbox ghi
+        converter.setObjectMapper(objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
         return converter;
     }
 
@@ -61,9 +215,58 @@ public class JmsConfig {
     @Bean
     public DefaultJmsListenerContainerFactory jmsListenerContainerFactory() {
         DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
-        factory.setConnectionFactory(connectionFactory());
+        factory.setConnectionFactory(brokerConnectionFactory());
         factory.setMessageConverter(messageConverter());
         factory.setConcurrency("1-1");
         return factory;
     }
+
+    /**
+     * Consumers of payment.queue: transacted, so a failed notification is rolled back
+     * and redelivered, and scaled between the configured minimum and maximum
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory notificationListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(brokerConnectionFactory());
+        factory.setConcurrency(notificationConcurrency);
+        factory.setMaxMessagesPerTask(notificationMaxMessagesPerTask);
+        factory.setSessionTransacted(true);
+        factory.setAutoStartup(notificationConsumerEnabled);
+        return factory;
+    }
+
+    /**
+     * Listener containers for the async transfer partitions: one consumer per
+     * partition queue keeps per-account order, and a transacted session puts a
+     * message back on the queue when the worker hits a transient error
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory transferListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(brokerConnectionFactory());
+        // Một consumer mỗi node; giữa các node, consumer độc quyền trên queue phân vùng giữ thứ tự
+        factory.setConcurrency("1");
+        factory.setSessionTransacted(true);
+        return factory;
+    }
+
+    /**
+     * ActiveMQ connection factory that counts the physical broker connections it opens
+     */
+    public static class CountingConnectionFactory extends ActiveMQConnectionFactory {
+
+        private final LongAdder connectionsOpened = new LongAdder();
+
+        @Override
+        protected ActiveMQConnection createActiveMQConnection(Transport transport, JMSStatsImpl stats) throws Exception {
+            ActiveMQConnection connection = super.createActiveMQConnection(transport, stats);
+            connectionsOpened.increment();
+            return connection;
+        }
+
+        public long getConnectionsOpened() {
+            return connectionsOpened.sum();
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.banking.Config;
+
+import com.banking.Entity.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Jackson mapping of {@link Money}: {"amount": 1500.50, "currency": "VND"}.
+ *
+ * The amount is written as an exact decimal number. A bare number is also
+ * accepted on input and read in the default currency.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+public class MoneyJsonModule extends SimpleModule {
+
+    public MoneyJsonModule() {
+        super("MoneyJsonModule");
+        addSerializer(Money.class, new MoneySerializer());
+        addDeserializer(Money.class, new MoneyDeserializer());
+    }
+
+    static class MoneySerializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money money, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName("amount");
+            gen.writeNumber(money.toBigDecimal());
+            gen.writeStringField("currency", money.getCurrency());
+            gen.writeEndObject();
+        }
+    }
+
+    static class MoneyDeserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT || parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+                return toMoney(parser.getDecimalValue(), Money.DEFAULT_CURRENCY, context);
+            }
+            JsonNode node = parser.readValueAsTree();
+            JsonNode amount = node.get("amount");
+            if (amount == null || !amount.isNumber()) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            JsonNode currency = node.get("currency");
+            return toMoney(amount.decimalValue(),
+                    currency == null || currency.isNull() ? Money.DEFAULT_CURRENCY : currency.asText(), context);
+        }
+
+        private Money toMoney(BigDecimal amount, String currency, DeserializationContext context) throws IOException {
+            try {
+                return Money.of(amount, currency);
+            } catch (IllegalArgumentException e) {
+                throw context.weirdNumberException(amount, Money.class, e.getMessage());
+            }
+        }
+    }
+}
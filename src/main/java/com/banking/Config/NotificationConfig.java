@@ -0,0 +1,48 @@
+package com.banking.Config;
+
+import com.banking.Service.LocalMessageGateway;
+import com.banking.Service.MessageGateway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Notification Configuration
+ *
+ * SMS and push go through {@link MessageGateway} beans. Until a provider
+ * is integrated both are local stand-ins with a configurable delay and
+ * failure rate; a provider client replaces the bean here.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Configuration
+public class NotificationConfig {
+
+    @Value("${app.notification.sms.stub.latency-ms:50}")
+    private long smsLatencyMs = 50;
+
+    @Value("${app.notification.sms.stub.failure-rate:0}")
+    private double smsFailureRate = 0;
+
+    @Value("${app.notification.push.stub.latency-ms:20}")
+    private long pushLatencyMs = 20;
+
+    @Value("${app.notification.push.stub.failure-rate:0}")
+    private double pushFailureRate = 0;
+
+    // In từng tin nhắn ra console; tắt khi chạy thử tải
+    @Value("${app.notification.stub.log-messages:true}")
+    private boolean logMessages = true;
+
+    @Bean
+    public MessageGateway smsGateway() {
+        return new LocalMessageGateway("SMS", smsLatencyMs, smsFailureRate, logMessages);
+    }
+
+    @Bean
+    public MessageGateway pushGateway() {
+        return new LocalMessageGateway("PUSH", pushLatencyMs, pushFailureRate, logMessages);
+    }
+}
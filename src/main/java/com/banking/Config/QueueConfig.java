@@ -8,8 +8,24 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class QueueConfig {
 
+    // Thông báo payment đã thanh toán, gửi qua outbox
+    public static final String PAYMENT_QUEUE = "payment.queue";
+
+    // Thông báo payment xử lý lỗi quá số lần cho phép, chờ admin replay
+    public static final String PAYMENT_DLQ = PAYMENT_QUEUE + ".DLQ";
+
+    // Lệnh chuyển tiền bất đồng bộ: một queue cho mỗi phân vùng tài khoản gửi
+    public static final String TRANSFER_QUEUE_PREFIX = "transfer.queue.";
+
+    // Consumer độc quyền: khi nhiều node cùng nghe, broker chỉ giao queue cho một consumer, node khác dự phòng
+    public static final String EXCLUSIVE_CONSUMER_OPTION = "?consumer.exclusive=true";
+
+    public static String transferQueue(int partition) {
+        return TRANSFER_QUEUE_PREFIX + partition;
+    }
+
     @Bean
     public Queue paymentQueue() {
-        return new ActiveMQQueue("payment.queue");
+        return new ActiveMQQueue(PAYMENT_QUEUE);
     }
 }
@@ -1,17 +1,33 @@
 package com.banking.Controller;
 
+import com.banking.DTO.BulkTransferRequestDTO;
+import com.banking.DTO.BulkTransferResultDTO;
 import com.banking.Entity.Account;
+import com.banking.DTO.BulkTransferLineDTO;
+import com.banking.Service.AsyncTransferService;
+import com.banking.Service.BulkTransferService;
+import com.banking.DTO.TransferStatusDTO;
+import com.banking.Entity.TransferCommand;
+import com.banking.Service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.banking.Service.AccountService;
 import com.banking.Entity.Card;
 import com.banking.Entity.Balance;
 import com.banking.Service.TransactionService;
 import com.sun.jdi.request.DuplicateRequestException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.ui.Model;
@@ -31,7 +47,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 @RequestMapping("/account")
@@ -46,6 +66,18 @@ public class AccountController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private BulkTransferService bulkTransferService;
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/profile")
     public String showProfile(Model model) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -191,6 +223,8 @@ public class AccountController {
 
         model.addAttribute("cards", accountService.findCardsByAccount(acc));
         model.addAttribute("cardSend", cardSend); // truyền cardSend xuống form Thymeleaf
+        // Mỗi lần mở form có một key mới; gửi lại cùng form sẽ không chuyển tiền hai lần
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
         return "customer/transfer";
     }
 
@@ -198,6 +232,8 @@ public class AccountController {
     public String transferMoney(@PathVariable String cardSend,
                                 @RequestParam String cardReceipt,
                                 @RequestParam BigDecimal amount,
+                                @RequestParam(value = "idempotencyKey", required = false) String formKey,
+                                @RequestHeader(value = IdempotencyService.HEADER, required = false) String headerKey,
                                 RedirectAttributes redirectAttributes,
                                 Model model) {
         try {
@@ -215,8 +251,20 @@ public class AccountController {
                 return "redirect:/auth/login";
             }
 
-            transactionService.transfer(acc,cardSend, cardReceipt, amount);
-            redirectAttributes.addFlashAttribute("success", "Chuyển khoản thành công!");
+            String idempotencyKey = headerKey != null ? headerKey : formKey;
+            String fingerprint = cardSend + "|" + cardReceipt + "|" + amount.toPlainString();
+            IdempotencyService.Response response = idempotencyService.execute("TRANSFER", idempotencyKey, fingerprint, () -> {
+                try {
+                    transactionService.transfer(acc,cardSend, cardReceipt, amount);
+                    return new IdempotencyService.Response(200, "Chuyển khoản thành công!");
+                } catch (DataAccessException | IllegalStateException e) {
+                    // Lỗi tạm thời (DB, hệ thống bận) không được lưu lại, client có thể thử lại
+                    throw e;
+                } catch (RuntimeException e) {
+                    return new IdempotencyService.Response(400, "Lỗi: " + e.getMessage());
+                }
+            });
+            redirectAttributes.addFlashAttribute(response.isSuccess() ? "success" : "error", response.body());
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Lỗi: " + e.getMessage());
         }
@@ -224,5 +272,129 @@ public class AccountController {
         return "redirect:/account/transfer/" + cardSend;
     }
 
+    /**
+     * API chuyển tiền hàng loạt (chi lương): một thẻ gửi, nhiều thẻ nhận
+     */
+    @PostMapping("/transfer/{cardSend}/bulk")
+    @ResponseBody
+    public ResponseEntity<?> bulkTransfer(@PathVariable String cardSend,
+                                          @RequestBody BulkTransferRequestDTO request,
+                                          @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String email;
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof org.springframework.security.core.userdetails.UserDetails userDetails) {
+            email = userDetails.getUsername();
+        } else {
+            email = principal.toString();
+        }
+        Account acc = accountService.findByEmail(email);
+        if (acc == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        IdempotencyService.Response response;
+        try {
+            response = idempotencyService.execute("BULK_TRANSFER", idempotencyKey, bulkFingerprint(cardSend, request), () -> {
+                try {
+                    BulkTransferResultDTO result = bulkTransferService.bulkTransfer(acc, cardSend, request.getLines());
+                    return new IdempotencyService.Response(200, objectMapper.writeValueAsString(result));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                } catch (IllegalArgumentException e) {
+                    return new IdempotencyService.Response(400, "Lỗi: " + e.getMessage());
+                }
+            });
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Lỗi: " + e.getMessage());
+        }
+        return ResponseEntity.status(response.status())
+                .contentType(response.isSuccess() ? MediaType.APPLICATION_JSON : MediaType.TEXT_PLAIN)
+                .body(response.body());
+    }
+
+    /**
+     * API chuyển tiền bất đồng bộ: ghi nhận lệnh và trả 202 kèm transferId ngay,
+     * client theo dõi kết quả qua GET /account/transfer/async/{transferId}
+     */
+    @PostMapping("/transfer/{cardSend}/async")
+    @ResponseBody
+    public ResponseEntity<?> transferMoneyAsync(@PathVariable String cardSend,
+                                                @RequestParam String cardReceipt,
+                                                @RequestParam BigDecimal amount,
+                                                @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        Account acc = currentAccount();
+        if (acc == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        String fingerprint = cardSend + "|" + cardReceipt + "|" + amount.toPlainString();
+        IdempotencyService.Response response;
+        try {
+            response = idempotencyService.execute("ASYNC_TRANSFER", idempotencyKey, fingerprint, () -> {
+                try {
+                    TransferCommand command = asyncTransferService.submit(acc, cardSend, cardReceipt, amount);
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    body.put("transferId", command.getTransferId());
+                    body.put("status", command.getStatus());
+                    body.put("statusUrl", "/account/transfer/async/" + command.getTransferId());
+                    return new IdempotencyService.Response(HttpStatus.ACCEPTED.value(), objectMapper.writeValueAsString(body));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                } catch (IllegalArgumentException e) {
+                    return new IdempotencyService.Response(400, "Lỗi: " + e.getMessage());
+                }
+            });
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Lỗi: " + e.getMessage());
+        }
+        return ResponseEntity.status(response.status())
+                .contentType(response.isSuccess() ? MediaType.APPLICATION_JSON : MediaType.TEXT_PLAIN)
+                .body(response.body());
+    }
+
+    /**
+     * API xem trạng thái lệnh chuyển bất đồng bộ; waitMs > 0 để long-poll đến khi lệnh xong
+     */
+    @GetMapping("/transfer/async/{transferId}")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<TransferStatusDTO>> transferStatus(@PathVariable String transferId,
+                                                                               @RequestParam(value = "waitMs", defaultValue = "0") long waitMs) {
+        Account acc = currentAccount();
+        if (acc == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        CompletableFuture<TransferStatusDTO> status = asyncTransferService.awaitStatus(acc.getAccountId(), transferId, waitMs);
+        if (status == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        return status.thenApply(ResponseEntity::ok);
+    }
+
+    private Account currentAccount() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        String email;
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof org.springframework.security.core.userdetails.UserDetails userDetails) {
+            email = userDetails.getUsername();
+        } else {
+            email = principal.toString();
+        }
+        return accountService.findByEmail(email);
+    }
 
+    private String bulkFingerprint(String cardSend, BulkTransferRequestDTO request) {
+        StringBuilder fingerprint = new StringBuilder(cardSend);
+        if (request.getLines() != null) {
+            for (BulkTransferLineDTO line : request.getLines()) {
+                fingerprint.append('|').append(line == null ? null : line.getCardReceipt())
+                        .append(':').append(line == null || line.getAmount() == null ? null : line.getAmount().toPlainString());
+            }
+        }
+        return fingerprint.toString();
+    }
 }
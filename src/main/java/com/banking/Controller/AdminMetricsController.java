@@ -0,0 +1,505 @@
+package com.banking.Controller;
+
+import com.banking.DTO.TransferLimitPolicyDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.NotificationDelivery;
+import com.banking.Repository.AccountRepository;
+import com.banking.Service.AdminNotificationDigest;
+import com.banking.Service.BalanceRetryExecutor;
+import com.banking.Service.AsyncTransferService;
+import com.banking.Service.BalanceShardService;
+import com.banking.Service.JmsConnectionMonitor;
+import com.banking.Service.NotificationDispatcher;
+import com.banking.Service.NotificationService;
+import com.banking.Service.OutboxService;
+import com.banking.Service.PaymentNotificationConsumer;
+import com.banking.Service.CardAccountResolver;
+import com.banking.Service.EmailDispatcher;
+import com.banking.Service.EmailRetryService;
+import com.banking.Service.EmailTemplateRenderer;
+import com.banking.Service.LedgerSnapshotService;
+import com.banking.Service.PaymentExpiryService;
+import com.banking.Service.PaymentHoldService;
+import com.banking.Service.TransferLimitService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin Metrics Controller
+ *
+ * JSON endpoints exposing runtime counters of the banking engines so
+ * contention and throughput can be observed in production.
+ * Requires admin role for all operations.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Controller
+@RequestMapping("/admin/metrics")
+public class AdminMetricsController {
+
+    @Autowired
+    private BalanceRetryExecutor balanceRetryExecutor;
+
+    @Autowired
+    private LedgerSnapshotService ledgerSnapshotService;
+
+    @Autowired
+    private CardAccountResolver cardAccountResolver;
+
+    @Autowired
+    private TransferLimitService transferLimitService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private PaymentExpiryService paymentExpiryService;
+
+    @Autowired
+    private PaymentHoldService paymentHoldService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private JmsConnectionMonitor jmsConnectionMonitor;
+
+    @Autowired
+    private PaymentNotificationConsumer paymentNotificationConsumer;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private EmailRetryService emailRetryService;
+
+    @Autowired
+    private AdminNotificationDigest adminNotificationDigest;
+
+    @Autowired
+    private EmailTemplateRenderer emailTemplateRenderer;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    private boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        return authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_Admin"));
+    }
+
+    /**
+     * API xem số lần xung đột/retry khi ghi số dư theo từng tài khoản
+     */
+    @GetMapping("/balance-contention")
+    @ResponseBody
+    public ResponseEntity<Map<Long, Map<String, Long>>> getBalanceContention() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(balanceRetryExecutor.getContentionStats());
+    }
+
+    /**
+     * API reset bộ đếm xung đột số dư
+     */
+    @PostMapping("/balance-contention/reset")
+    @ResponseBody
+    public ResponseEntity<Void> resetBalanceContention() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        balanceRetryExecutor.resetContentionStats();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * API so sánh số dư trong Balance với số dư tính từ sổ cái
+     */
+    @GetMapping("/ledger/{accountId}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> verifyLedger(@PathVariable Long accountId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(ledgerSnapshotService.verify(accountId));
+    }
+
+    /**
+     * API dựng lại số dư của một tài khoản từ sổ cái
+     */
+    @PostMapping("/ledger/{accountId}/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> rebuildFromLedger(@PathVariable Long accountId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        ledgerSnapshotService.rebuildProjection(accountId);
+        return ResponseEntity.ok(ledgerSnapshotService.verify(accountId));
+    }
+
+    /**
+     * API chạy snapshot số dư ngay
+     */
+    @PostMapping("/ledger/snapshot")
+    @ResponseBody
+    public ResponseEntity<Map<String, Integer>> snapshotLedger() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Map.of("snapshots", ledgerSnapshotService.snapshot()));
+    }
+
+    /**
+     * API xem hit/miss của cache tra cứu thẻ và bộ lọc Bloom
+     */
+    @GetMapping("/card-resolver")
+    @ResponseBody
+    public ResponseEntity<Map<String, Long>> getCardResolverStats() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(cardAccountResolver.getStats());
+    }
+
+    /**
+     * API xem hạn mức chuyển tiền hiệu lực theo level và theo tài khoản
+     */
+    @GetMapping("/limits/policies")
+    @ResponseBody
+    public ResponseEntity<List<TransferLimitPolicyDTO>> getLimitPolicies() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(transferLimitService.listPolicies());
+    }
+
+    /**
+     * API cập nhật hạn mức cho một level hoặc một tài khoản, áp dụng ngay
+     */
+    @PostMapping("/limits/policies")
+    @ResponseBody
+    public ResponseEntity<?> saveLimitPolicy(@RequestBody TransferLimitPolicyDTO policy) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(transferLimitService.savePolicy(policy));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API nạp lại hạn mức từ DB ngay
+     */
+    @PostMapping("/limits/reload")
+    @ResponseBody
+    public ResponseEntity<Void> reloadLimitPolicies() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        transferLimitService.reloadPolicies();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * API xem mức đã dùng trong cửa sổ hạn mức của một tài khoản
+     */
+    @GetMapping("/limits/{accountId}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getLimitUsage(@PathVariable Long accountId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return accountRepository.findById(accountId)
+                .map(Account::getLevel)
+                .map(level -> ResponseEntity.ok(transferLimitService.usage(accountId, level)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * API xem các tài khoản đang chia slot số dư
+     */
+    @GetMapping("/balance-shards")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getBalanceShards() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(balanceShardService.getStats());
+    }
+
+    /**
+     * API bật chia slot số dư cho một tài khoản nóng
+     */
+    @PostMapping("/balance-shards/{accountId}")
+    @ResponseBody
+    public ResponseEntity<?> enableBalanceShards(@PathVariable Long accountId,
+                                                 @RequestParam(value = "slots", defaultValue = "8") int slots) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            balanceShardService.enable(accountId, slots);
+            return ResponseEntity.ok(balanceShardService.getStats());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API tắt chia slot, gom toàn bộ tiền về dòng Balance
+     */
+    @PostMapping("/balance-shards/{accountId}/disable")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> disableBalanceShards(@PathVariable Long accountId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        balanceShardService.disable(accountId);
+        return ResponseEntity.ok(balanceShardService.getStats());
+    }
+
+    /**
+     * API xem bộ đếm của luồng chuyển tiền bất đồng bộ
+     */
+    @GetMapping("/async-transfers")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getAsyncTransfers() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(asyncTransferService.getStats());
+    }
+
+    /**
+     * API xem hàng đợi thông báo nền (phát hành payment request hàng loạt)
+     */
+    @GetMapping("/notifications")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getNotificationFanOut() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationService.getFanOutStats());
+    }
+
+    /**
+     * API xem luồng và hàng đợi của từng kênh thông báo (email, sms, push)
+     */
+    @GetMapping("/notifications/channels")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getNotificationChannels() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationDispatcher.getStats());
+    }
+
+    /**
+     * API xem trạng thái gửi từng kênh của một payment
+     */
+    @GetMapping("/notifications/payments/{paymentId}")
+    @ResponseBody
+    public ResponseEntity<List<NotificationDelivery>> getNotificationDeliveries(@PathVariable Long paymentId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationDispatcher.getDeliveries(paymentId));
+    }
+
+    /**
+     * API xem trạng thái gửi gần nhất của một account (gồm payment request phát hành hàng loạt)
+     */
+    @GetMapping("/notifications/accounts/{accountId}")
+    @ResponseBody
+    public ResponseEntity<List<NotificationDelivery>> getAccountNotificationDeliveries(@PathVariable Long accountId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(notificationDispatcher.getAccountDeliveries(accountId));
+    }
+
+    /**
+     * API xem job quét payment request hết hạn
+     */
+    @GetMapping("/payment-expiry")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getPaymentExpiry() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(paymentExpiryService.getStats());
+    }
+
+    /**
+     * API xem bộ đếm giữ tiền (authorize/capture/release) của payment request
+     */
+    @GetMapping("/payment-holds")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getPaymentHolds() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(paymentHoldService.getStats());
+    }
+
+    /**
+     * API xem outbox message (đang chờ, đã gửi, lỗi gửi lên broker)
+     */
+    @GetMapping("/outbox")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getOutbox() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(outboxService.getStats());
+    }
+
+    /**
+     * API xem pool/cache kết nối JMS dùng để gửi message
+     */
+    @GetMapping("/jms")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getJmsConnections() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(jmsConnectionMonitor.getStats());
+    }
+
+    /**
+     * API xem consumer payment.queue (số consumer, gửi lại, DLQ)
+     */
+    @GetMapping("/notification-consumer")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getNotificationConsumer() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(paymentNotificationConsumer.getStats());
+    }
+
+    /**
+     * API chuyển thông báo từ DLQ về payment.queue để xử lý lại
+     */
+    @PostMapping("/notification-consumer/dlq/replay")
+    @ResponseBody
+    public ResponseEntity<?> replayNotificationDeadLetters(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit phải lớn hơn 0"));
+        }
+        try {
+            return ResponseEntity.ok(Map.of("replayed", paymentNotificationConsumer.replayDeadLetters(limit)));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API xem hàng đợi gửi email (độ sâu, từ chối khi đầy, kết nối SMTP)
+     */
+    @GetMapping("/email")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getEmailDispatch() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(emailDispatcher.getStats());
+    }
+
+    /**
+     * API xem email đang chờ gửi lại và email DEAD
+     */
+    @GetMapping("/email-retry")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getEmailRetry() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(emailRetryService.getStats());
+    }
+
+    /**
+     * API đưa email DEAD về hàng đợi để gửi lại
+     */
+    @PostMapping("/email-retry/dead/replay")
+    @ResponseBody
+    public ResponseEntity<?> replayDeadEmails(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit phải lớn hơn 0"));
+        }
+        return ResponseEntity.ok(Map.of("replayed", emailRetryService.replayDead(limit)));
+    }
+
+    /**
+     * API xem bộ đệm email tổng hợp gửi admin
+     */
+    @GetMapping("/admin-digest")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getAdminDigest() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(adminNotificationDigest.getStats());
+    }
+
+    /**
+     * API gửi ngay email tổng hợp đang chờ
+     */
+    @PostMapping("/admin-digest/flush")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> flushAdminDigest() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Map.of("flushed", adminNotificationDigest.flush()));
+    }
+
+    /**
+     * API xem cache template email và thời gian render
+     */
+    @GetMapping("/email-templates")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getEmailTemplates() {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(emailTemplateRenderer.getStats());
+    }
+}
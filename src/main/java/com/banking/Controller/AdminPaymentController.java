@@ -1,14 +1,27 @@
 package com.banking.Controller;
 
+import com.banking.DTO.BulkPaymentRequestResultDTO;
 import com.banking.DTO.CreatePaymentRequestDTO;
 import com.banking.Entity.PaymentRequest;
+import com.banking.Service.BulkPaymentRequestService;
 import com.banking.Service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/admin/payment")
@@ -17,6 +30,9 @@ public class AdminPaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private BulkPaymentRequestService bulkPaymentRequestService;
+
     /**
      * Trang tạo payment request cho customer
      */
@@ -77,4 +93,97 @@ public class AdminPaymentController {
     public List<PaymentRequest> getPendingPaymentRequests() {
         return paymentService.getPendingPaymentRequests();
     }
+
+    /**
+     * API phát hành hàng loạt payment request từ một mảng JSON
+     */
+    @PostMapping("/api/bulk")
+    @ResponseBody
+    public ResponseEntity<?> bulkCreatePaymentRequests(@RequestBody List<CreatePaymentRequestDTO> requests) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            BulkPaymentRequestResultDTO result = bulkPaymentRequestService.issue(requests);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API phát hành hàng loạt payment request từ file CSV: accountId,amount[,currency[,description]]
+     */
+    @PostMapping("/api/bulk/upload")
+    @ResponseBody
+    public ResponseEntity<?> bulkCreatePaymentRequestsFromFile(@RequestParam("file") MultipartFile file) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)) {
+            BulkPaymentRequestResultDTO result = bulkPaymentRequestService.issue(BulkPaymentRequestService.parseCsv(reader));
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Không đọc được file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * API hủy payment request đang chờ (PENDING -> CANCELLED)
+     */
+    @PostMapping("/api/{paymentId}/cancel")
+    @ResponseBody
+    public ResponseEntity<?> cancelPaymentRequest(@PathVariable Long paymentId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            paymentService.cancelPaymentRequest(paymentId);
+            return ResponseEntity.ok(Map.of("paymentId", paymentId, "status", PaymentRequest.PaymentStatus.CANCELLED));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API capture payment request đã authorize (AUTHORIZED -> PAID)
+     */
+    @PostMapping("/api/{paymentId}/capture")
+    @ResponseBody
+    public ResponseEntity<?> capturePaymentRequest(@PathVariable Long paymentId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(paymentService.capturePaymentRequest(paymentId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API release payment request đã authorize (AUTHORIZED -> PENDING), trả lại tiền tạm giữ
+     */
+    @PostMapping("/api/{paymentId}/release")
+    @ResponseBody
+    public ResponseEntity<?> releasePaymentRequest(@PathVariable Long paymentId) {
+        if (!isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(paymentService.releasePaymentRequest(paymentId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        return authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_Admin"));
+    }
 }
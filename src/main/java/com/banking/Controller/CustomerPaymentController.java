@@ -4,8 +4,15 @@ import com.banking.DTO.PayPaymentRequestDTO;
 import com.banking.Entity.Account;
 import com.banking.Entity.PaymentRequest;
 import com.banking.Service.AccountService;
+import com.banking.Service.IdempotencyService;
 import com.banking.Service.PaymentService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
@@ -18,12 +25,22 @@ import java.util.List;
 @RequestMapping("/customer/payment")
 public class CustomerPaymentController {
 
+    // Mỗi endpoint một scope: form trả text, API trả JSON, không được phát lại response của nhau
+    public static final String PAY_SCOPE = "PAY";
+    public static final String PAY_API_SCOPE = "PAY_API";
+
     @Autowired
     private PaymentService paymentService;
 
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Trang xem payment requests của customer
      */
@@ -73,10 +90,20 @@ public class CustomerPaymentController {
      */
     @PostMapping("/pay")
     @ResponseBody
-    public String payPaymentRequest(@RequestBody PayPaymentRequestDTO payDTO) {
+    public String payPaymentRequest(@RequestBody PayPaymentRequestDTO payDTO,
+                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         try {
-            PaymentRequest paymentRequest = paymentService.payPaymentRequest(payDTO);
-            return "Payment completed successfully! Status: " + paymentRequest.getStatus();
+            return idempotencyService.execute(PAY_SCOPE, idempotencyKey, payFingerprint(payDTO), () -> {
+                try {
+                    PaymentRequest paymentRequest = paymentService.payPaymentRequest(payDTO);
+                    return new IdempotencyService.Response(200, "Payment completed successfully! Status: " + paymentRequest.getStatus());
+                } catch (DataAccessException | IllegalStateException e) {
+                    // Lỗi tạm thời (DB, hệ thống bận) không được lưu lại, client có thể thử lại
+                    throw e;
+                } catch (RuntimeException e) {
+                    return new IdempotencyService.Response(400, "Error processing payment: " + e.getMessage());
+                }
+            }).body();
         } catch (Exception e) {
             return "Error processing payment: " + e.getMessage();
         }
@@ -96,8 +123,36 @@ public class CustomerPaymentController {
      */
     @PostMapping("/api/pay")
     @ResponseBody
-    public PaymentRequest payPaymentRequestApi(@RequestBody PayPaymentRequestDTO payDTO) {
-        return paymentService.payPaymentRequest(payDTO);
+    public ResponseEntity<?> payPaymentRequestApi(@RequestBody PayPaymentRequestDTO payDTO,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return ResponseEntity.ok(paymentService.payPaymentRequest(payDTO));
+        }
+        IdempotencyService.Response response;
+        try {
+            response = idempotencyService.execute(PAY_API_SCOPE, idempotencyKey, payFingerprint(payDTO), () -> {
+                try {
+                    PaymentRequest paymentRequest = paymentService.payPaymentRequest(payDTO);
+                    return new IdempotencyService.Response(200, objectMapper.writeValueAsString(paymentRequest));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                } catch (DataAccessException | IllegalStateException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    return new IdempotencyService.Response(400, e.getMessage());
+                }
+            });
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        // Lần gọi lặp lại trả về đúng kết quả của lần đầu
+        return ResponseEntity.status(response.status())
+                .contentType(response.isSuccess() ? MediaType.APPLICATION_JSON : MediaType.TEXT_PLAIN)
+                .body(response.body());
+    }
+
+    private String payFingerprint(PayPaymentRequestDTO payDTO) {
+        return payDTO.getPaymentId() + ":" + payDTO.getAccountId();
     }
 
 }
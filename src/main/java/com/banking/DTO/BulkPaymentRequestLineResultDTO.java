@@ -0,0 +1,70 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BulkPaymentRequestLineResultDTO {
+
+    @JsonProperty("line")
+    private int line;
+
+    @JsonProperty("accountId")
+    private Long accountId;
+
+    @JsonProperty("amount")
+    private double amount;
+
+    @JsonProperty("message")
+    private String message;
+
+    public BulkPaymentRequestLineResultDTO() {
+    }
+
+    public BulkPaymentRequestLineResultDTO(int line, Long accountId, double amount, String message) {
+        this.line = line;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPaymentRequestLineResultDTO{" +
+                "line=" + line +
+                ", accountId=" + accountId +
+                ", amount=" + amount +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkPaymentRequestResultDTO {
+
+    @JsonProperty("issued")
+    private int issued;
+
+    @JsonProperty("failed")
+    private int failed;
+
+    // created_at chung của mọi payment request trong lần phát hành
+    @JsonProperty("issuedAt")
+    private LocalDateTime issuedAt;
+
+    @JsonProperty("notificationsQueued")
+    private int notificationsQueued;
+
+    // Chỉ liệt kê các dòng lỗi; danh sách thành công có thể lên tới hàng chục nghìn dòng
+    @JsonProperty("errors")
+    private List<BulkPaymentRequestLineResultDTO> errors = new ArrayList<>();
+
+    public BulkPaymentRequestResultDTO() {
+    }
+
+    public BulkPaymentRequestResultDTO(LocalDateTime issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public int getIssued() {
+        return issued;
+    }
+
+    public void setIssued(int issued) {
+        this.issued = issued;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public LocalDateTime getIssuedAt() {
+        return issuedAt;
+    }
+
+    public void setIssuedAt(LocalDateTime issuedAt) {
+        this.issuedAt = issuedAt;
+    }
+
+    public int getNotificationsQueued() {
+        return notificationsQueued;
+    }
+
+    public void setNotificationsQueued(int notificationsQueued) {
+        this.notificationsQueued = notificationsQueued;
+    }
+
+    public List<BulkPaymentRequestLineResultDTO> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<BulkPaymentRequestLineResultDTO> errors) {
+        this.errors = errors;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkPaymentRequestResultDTO{" +
+                "issued=" + issued +
+                ", failed=" + failed +
+                ", issuedAt=" + issuedAt +
+                ", notificationsQueued=" + notificationsQueued +
+                '}';
+    }
+}
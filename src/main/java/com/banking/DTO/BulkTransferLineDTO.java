@@ -0,0 +1,46 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+public class BulkTransferLineDTO {
+
+    @JsonProperty("cardReceipt")
+    private String cardReceipt;
+
+    @JsonProperty("amount")
+    private BigDecimal amount;
+
+    public BulkTransferLineDTO() {
+    }
+
+    public BulkTransferLineDTO(String cardReceipt, BigDecimal amount) {
+        this.cardReceipt = cardReceipt;
+        this.amount = amount;
+    }
+
+    public String getCardReceipt() {
+        return cardReceipt;
+    }
+
+    public void setCardReceipt(String cardReceipt) {
+        this.cardReceipt = cardReceipt;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkTransferLineDTO{" +
+                "cardReceipt='" + cardReceipt + '\'' +
+                ", amount=" + amount +
+                '}';
+    }
+}
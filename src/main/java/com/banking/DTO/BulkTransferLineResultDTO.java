@@ -0,0 +1,85 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+public class BulkTransferLineResultDTO {
+
+    @JsonProperty("line")
+    private int line;
+
+    @JsonProperty("cardReceipt")
+    private String cardReceipt;
+
+    @JsonProperty("amount")
+    private BigDecimal amount;
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("message")
+    private String message;
+
+    public BulkTransferLineResultDTO() {
+    }
+
+    public BulkTransferLineResultDTO(int line, String cardReceipt, BigDecimal amount, String status, String message) {
+        this.line = line;
+        this.cardReceipt = cardReceipt;
+        this.amount = amount;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public String getCardReceipt() {
+        return cardReceipt;
+    }
+
+    public void setCardReceipt(String cardReceipt) {
+        this.cardReceipt = cardReceipt;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkTransferLineResultDTO{" +
+                "line=" + line +
+                ", cardReceipt='" + cardReceipt + '\'' +
+                ", amount=" + amount +
+                ", status='" + status + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,34 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkTransferRequestDTO {
+
+    @JsonProperty("lines")
+    private List<BulkTransferLineDTO> lines = new ArrayList<>();
+
+    public BulkTransferRequestDTO() {
+    }
+
+    public BulkTransferRequestDTO(List<BulkTransferLineDTO> lines) {
+        this.lines = lines;
+    }
+
+    public List<BulkTransferLineDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<BulkTransferLineDTO> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkTransferRequestDTO{" +
+                "lines=" + (lines == null ? 0 : lines.size()) +
+                '}';
+    }
+}
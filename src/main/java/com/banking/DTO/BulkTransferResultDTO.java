@@ -0,0 +1,95 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkTransferResultDTO {
+
+    @JsonProperty("cardSend")
+    private String cardSend;
+
+    @JsonProperty("succeeded")
+    private int succeeded;
+
+    @JsonProperty("failed")
+    private int failed;
+
+    // Dòng chưa biết kết quả: kiểm tra lịch sử giao dịch trước khi chuyển lại
+    @JsonProperty("unknown")
+    private int unknown;
+
+    @JsonProperty("totalDebited")
+    private BigDecimal totalDebited = BigDecimal.ZERO;
+
+    @JsonProperty("lines")
+    private List<BulkTransferLineResultDTO> lines = new ArrayList<>();
+
+    public BulkTransferResultDTO() {
+    }
+
+    public BulkTransferResultDTO(String cardSend) {
+        this.cardSend = cardSend;
+    }
+
+    public String getCardSend() {
+        return cardSend;
+    }
+
+    public void setCardSend(String cardSend) {
+        this.cardSend = cardSend;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public int getUnknown() {
+        return unknown;
+    }
+
+    public void setUnknown(int unknown) {
+        this.unknown = unknown;
+    }
+
+    public BigDecimal getTotalDebited() {
+        return totalDebited;
+    }
+
+    public void setTotalDebited(BigDecimal totalDebited) {
+        this.totalDebited = totalDebited;
+    }
+
+    public List<BulkTransferLineResultDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<BulkTransferLineResultDTO> lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkTransferResultDTO{" +
+                "cardSend='" + cardSend + '\'' +
+                ", succeeded=" + succeeded +
+                ", failed=" + failed +
+                ", unknown=" + unknown +
+                ", totalDebited=" + totalDebited +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+package com.banking.DTO;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+public class TransferLimitPolicyDTO {
+
+    // LEVEL hoặc ACCOUNT
+    @JsonProperty("scope")
+    private String scope;
+
+    // Tên level (SILVER/GOLD/PLATINUM) hoặc account id
+    @JsonProperty("scopeKey")
+    private String scopeKey;
+
+    @JsonProperty("singleMax")
+    private BigDecimal singleMax;
+
+    @JsonProperty("dailyAmount")
+    private BigDecimal dailyAmount;
+
+    @JsonProperty("perMinuteCount")
+    private Integer perMinuteCount;
+
+    public TransferLimitPolicyDTO() {
+    }
+
+    public TransferLimitPolicyDTO(String scope, String scopeKey, BigDecimal singleMax, BigDecimal dailyAmount, Integer perMinuteCount) {
+        this.scope = scope;
+        this.scopeKey = scopeKey;
+        this.singleMax = singleMax;
+        this.dailyAmount = dailyAmount;
+        this.perMinuteCount = perMinuteCount;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public String getScopeKey() {
+        return scopeKey;
+    }
+
+    public void setScopeKey(String scopeKey) {
+        this.scopeKey = scopeKey;
+    }
+
+    public BigDecimal getSingleMax() {
+        return singleMax;
+    }
+
+    public void setSingleMax(BigDecimal singleMax) {
+        this.singleMax = singleMax;
+    }
+
+    public BigDecimal getDailyAmount() {
+        return dailyAmount;
+    }
+
+    public void setDailyAmount(BigDecimal dailyAmount) {
+        this.dailyAmount = dailyAmount;
+    }
+
+    public Integer getPerMinuteCount() {
+        return perMinuteCount;
+    }
+
+    public void setPerMinuteCount(Integer perMinuteCount) {
+        this.perMinuteCount = perMinuteCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferLimitPolicyDTO{" +
+                "scope='" + scope + '\'' +
+                ", scopeKey='" + scopeKey + '\'' +
+                ", singleMax=" + singleMax +
+                ", dailyAmount=" + dailyAmount +
+                ", perMinuteCount=" + perMinuteCount +
+                '}';
+    }
+}
@@ -0,0 +1,124 @@
+package com.banking.DTO;
+
+import com.banking.Entity.TransferCommand;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class TransferStatusDTO {
+
+    @JsonProperty("transferId")
+    private String transferId;
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("cardSend")
+    private String cardSend;
+
+    @JsonProperty("cardReceipt")
+    private String cardReceipt;
+
+    @JsonProperty("amount")
+    private BigDecimal amount;
+
+    @JsonProperty("message")
+    private String message;
+
+    @JsonProperty("createdAt")
+    private LocalDateTime createdAt;
+
+    @JsonProperty("updatedAt")
+    private LocalDateTime updatedAt;
+
+    public TransferStatusDTO() {
+    }
+
+    public TransferStatusDTO(TransferCommand command) {
+        this.transferId = command.getTransferId();
+        this.status = command.getStatus();
+        this.cardSend = command.getCardSend();
+        this.cardReceipt = command.getCardReceipt();
+        this.amount = command.getAmount();
+        this.message = command.getMessage();
+        this.createdAt = command.getCreatedAt();
+        this.updatedAt = command.getUpdatedAt();
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(String transferId) {
+        this.transferId = transferId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getCardSend() {
+        return cardSend;
+    }
+
+    public void setCardSend(String cardSend) {
+        this.cardSend = cardSend;
+    }
+
+    public String getCardReceipt() {
+        return cardReceipt;
+    }
+
+    public void setCardReceipt(String cardReceipt) {
+        this.cardReceipt = cardReceipt;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStatusDTO{" +
+                "transferId='" + transferId + '\'' +
+                ", status='" + status + '\'' +
+                ", cardSend='" + cardSend + '\'' +
+                ", cardReceipt='" + cardReceipt + '\'' +
+                ", amount=" + amount +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
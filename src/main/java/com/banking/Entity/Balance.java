@@ -1,6 +1,7 @@
 package com.banking.Entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 
 @Entity
@@ -21,6 +22,13 @@ public class Balance {
     @Column(name = "hold_balance", nullable = false)
     private BigDecimal holdBalance = BigDecimal.ZERO;
 
+    // null until first persisted so Spring Data treats a new row as new (persist, not merge);
+    // rows created before the column existed are backfilled to 0 on startup by BalanceService
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version")
+    private Long version;
+
     public Long getAccountId() {
         return accountId;
     }
@@ -53,6 +61,14 @@ public class Balance {
         this.holdBalance = holdBalance;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Balance{" +
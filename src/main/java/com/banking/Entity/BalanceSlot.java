@@ -0,0 +1,47 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Sub-balance slot of a hot account. A sharded account's available balance
+ * is the Balance row plus the sum of its slots; credits land on a random
+ * slot and are swept back into the Balance row by debits and compaction.
+ * Rows are written with JDBC by BalanceShardService.
+ */
+@Entity
+@Table(name = "balance_slot", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_balance_slot_account_slot", columnNames = {"account_id", "slot_no"})
+})
+public class BalanceSlot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "slot_id")
+    private Long slotId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "slot_no", nullable = false)
+    private Integer slotNo;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    public Long getSlotId() {
+        return slotId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Integer getSlotNo() {
+        return slotNo;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,54 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance of an account as of a ledger entry. A balance is rebuilt as the
+ * latest snapshot plus the sum of the account's ledger entries after
+ * last_entry_id.
+ */
+@Entity
+@Table(name = "balance_snapshot", indexes = {
+        @Index(name = "ix_balance_snapshot_account", columnList = "account_id, last_entry_id")
+})
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "snapshot_id")
+    private Long snapshotId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "balance", nullable = false)
+    private BigDecimal balance;
+
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public Long getLastEntryId() {
+        return lastEntryId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
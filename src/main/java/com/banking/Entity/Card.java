@@ -6,7 +6,9 @@ import java.time.LocalDate;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "Card")
+@Table(name = "Card", indexes = {
+        @Index(name = "ix_card_card_number", columnList = "card_number")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Card {
     @Id
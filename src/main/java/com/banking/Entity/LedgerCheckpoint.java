@@ -0,0 +1,35 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Last ledger sequence flushed to the database by the ledger sequencer.
+ * A single row (id = 1) is kept; journal batches at or below this
+ * sequence are already reflected in Balance and account_transaction.
+ */
+@Entity
+@Table(name = "ledger_checkpoint")
+public class LedgerCheckpoint {
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "last_sequence", nullable = false)
+    private Long lastSequence = 0L;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Long getLastSequence() {
+        return lastSequence;
+    }
+
+    public void setLastSequence(Long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+}
@@ -0,0 +1,77 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One leg of a double-entry ledger movement. Rows are insert-only; the legs
+ * sharing a journal_id always sum to zero. Customer legs carry account_id,
+ * system legs (cash, payment clearing) have it null.
+ */
+@Entity
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "ix_ledger_entry_account", columnList = "account_id, entry_id"),
+        @Index(name = "ix_ledger_entry_journal", columnList = "journal_id")
+})
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "entry_id")
+    private Long entryId;
+
+    @Column(name = "journal_id", length = 36, nullable = false)
+    private String journalId;
+
+    @Column(name = "entry_type", length = 20, nullable = false)
+    private String entryType;
+
+    @Column(name = "ledger_account", length = 30, nullable = false)
+    private String ledgerAccount;
+
+    @Column(name = "account_id")
+    private Long accountId;
+
+    // Dương = ghi có (tiền vào), âm = ghi nợ (tiền ra)
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "reference", length = 100)
+    private String reference;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public Long getEntryId() {
+        return entryId;
+    }
+
+    public String getJournalId() {
+        return journalId;
+    }
+
+    public String getEntryType() {
+        return entryType;
+    }
+
+    public String getLedgerAccount() {
+        return ledgerAccount;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,173 @@
+package com.banking.Entity;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Immutable amount of money in one currency.
+ *
+ * The amount is a long count of hundredths (the two decimal places every
+ * money column in the schema is stored with), so comparisons and sums are
+ * plain long arithmetic with overflow checks. Code on a hot path can work
+ * on the minor units directly through the static helpers and only build a
+ * BigDecimal where a JDBC parameter needs one.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+    public static final String DEFAULT_CURRENCY = "VND";
+
+    public static final int SCALE = 2;
+
+    private static final long MINOR_PER_UNIT = 100;
+
+    // |giá trị| lớn hơn mức này thì nhân 100 sẽ tràn long
+    private static final double MAX_UNITS = Long.MAX_VALUE / (double) MINOR_PER_UNIT;
+
+    private final long minorUnits;
+
+    private final String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = Objects.requireNonNull(currency, "currency");
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount has more than two decimal places or does not fit in a long
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        return new Money(toMinor(amount), currency);
+    }
+
+    /**
+     * Amount given as a double (legacy payment request amounts), rounded to the nearest hundredth
+     *
+     * @throws IllegalArgumentException if the amount is not finite or does not fit in a long
+     */
+    public static Money of(double amount, String currency) {
+        if (!Double.isFinite(amount) || Math.abs(amount) >= MAX_UNITS) {
+            throw new IllegalArgumentException("Số tiền không hợp lệ: " + amount);
+        }
+        return new Money(Math.round(amount * MINOR_PER_UNIT), currency);
+    }
+
+    public static Money zero(String currency) {
+        return new Money(0, currency);
+    }
+
+    /**
+     * Hundredths of an exact amount
+     *
+     * @throws IllegalArgumentException if the amount has more than two decimal places or does not fit in a long
+     */
+    public static long toMinor(BigDecimal amount) {
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Số tiền tối đa " + SCALE + " chữ số thập phân: " + amount.toPlainString());
+        }
+    }
+
+    /**
+     * Hundredths of an amount, rounded with the given mode
+     */
+    public static long toMinor(BigDecimal amount, RoundingMode roundingMode) {
+        return amount.setScale(SCALE, roundingMode).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * True if the amount has at most two decimal places
+     */
+    public static boolean hasMinorPrecision(BigDecimal amount) {
+        return amount.scale() <= SCALE || amount.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Money withCurrency(String currency) {
+        return this.currency.equals(currency) ? this : new Money(minorUnits, currency);
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return compareTo(other) > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(minorUnits);
+    }
+
+    public double toDouble() {
+        return minorUnits / (double) MINOR_PER_UNIT;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money money)) {
+            return false;
+        }
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Không thể tính toán giữa hai loại tiền " + currency + " và " + other.currency);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.banking.Entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Stores a {@link Money} as its decimal amount.
+ *
+ * The currency lives in its own column on the owning entity, so a value
+ * read back is tagged with {@link Money#DEFAULT_CURRENCY} until the entity
+ * applies its currency column. Reads round to two decimal places, which
+ * only matters for columns created as float before this type existed.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null
+                : Money.ofMinor(Money.toMinor(amount, RoundingMode.HALF_UP), Money.DEFAULT_CURRENCY);
+    }
+}
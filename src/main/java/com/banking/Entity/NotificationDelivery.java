@@ -0,0 +1,116 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * The outcome of one payment notification on one channel. A row per
+ * channel is written before the channels run, and each channel completes
+ * its own row as SENT, FAILED, or REJECTED when its queue was full.
+ */
+@Entity
+@Table(name = "notification_delivery", indexes = {
+        @Index(name = "ix_notification_delivery_payment", columnList = "payment_id"),
+        @Index(name = "ix_notification_delivery_account", columnList = "account_id"),
+        @Index(name = "ix_notification_delivery_created", columnList = "created_at")
+})
+public class NotificationDelivery {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+    public static final String REJECTED = "REJECTED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "delivery_id")
+    private Long deliveryId;
+
+    @Column(name = "payment_id", nullable = false)
+    private Long paymentId;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "event", length = 30, nullable = false)
+    private String event;
+
+    @Column(name = "channel", length = 20, nullable = false)
+    private String channel;
+
+    @Column(name = "recipient", length = 255, nullable = false)
+    private String recipient;
+
+    @Column(name = "status", length = 20, nullable = false)
+    private String status = PENDING;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Thời gian kênh xử lý, không tính thời gian chờ trong hàng đợi
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    public NotificationDelivery() {}
+
+    public NotificationDelivery(Long paymentId, Long accountId, String event, String channel, String recipient,
+                                LocalDateTime createdAt) {
+        this.paymentId = paymentId;
+        this.accountId = accountId;
+        this.event = event;
+        this.channel = channel;
+        this.recipient = recipient;
+        this.createdAt = createdAt;
+    }
+
+    public Long getDeliveryId() {
+        return deliveryId;
+    }
+
+    public Long getPaymentId() {
+        return paymentId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A broker message waiting to be published (transactional outbox).
+ * The row is inserted in the same transaction as the change it announces
+ * and moved from PENDING to SENT by the relay once the broker has
+ * acknowledged it, so a committed change always produces its message and
+ * a rolled-back change never does.
+ */
+@Entity
+@Table(name = "outbox_event", indexes = {
+        @Index(name = "ix_outbox_event_status_id", columnList = "status, event_id")
+})
+public class OutboxEvent {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENT = "SENT";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Column(name = "destination", length = 100, nullable = false)
+    private String destination;
+
+    // Tên class của payload, gửi kèm trong thuộc tính _type cho message converter
+    @Column(name = "message_type", length = 200, nullable = false)
+    private String messageType;
+
+    // Gửi làm JMSXGroupID: message cùng nhóm được một consumer xử lý theo thứ tự
+    @Column(name = "group_key", length = 100)
+    private String groupKey;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "status", length = 20, nullable = false)
+    private String status = PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Lần relay đang giữ event này; hết hạn thì node khác được nhận lại
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(String destination, String groupKey, String messageType, String payload, LocalDateTime createdAt) {
+        this.destination = destination;
+        this.groupKey = groupKey;
+        this.messageType = messageType;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    public LocalDateTime getClaimedUntil() {
+        return claimedUntil;
+    }
+}
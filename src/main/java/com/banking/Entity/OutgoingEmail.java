@@ -0,0 +1,115 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be sent, or kept after sending for a retention period.
+ * The row is written before the first SMTP attempt, so a failed or lost send
+ * is retried with backoff until it succeeds or runs out of attempts and is
+ * moved to DEAD for an admin to replay.
+ */
+@Entity
+@Table(name = "outgoing_email", indexes = {
+        @Index(name = "ix_outgoing_email_status_next", columnList = "status, next_attempt_at")
+})
+public class OutgoingEmail {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENT = "SENT";
+    public static final String DEAD = "DEAD";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "email_id")
+    private Long emailId;
+
+    @Column(name = "recipient", length = 255, nullable = false)
+    private String recipient;
+
+    @Column(name = "subject", length = 255, nullable = false)
+    private String subject;
+
+    @Lob
+    @Column(name = "body", nullable = false)
+    private String body;
+
+    @Column(name = "html", nullable = false)
+    private boolean html;
+
+    @Column(name = "status", length = 20, nullable = false)
+    private String status = PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    // Lần gửi tiếp theo; khi email đang nằm trong hàng đợi gửi, đây là hạn giữ chỗ
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public OutgoingEmail() {}
+
+    public OutgoingEmail(String recipient, String subject, String body, boolean html,
+                         LocalDateTime createdAt, LocalDateTime nextAttemptAt) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.html = html;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Long getEmailId() {
+        return emailId;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+}
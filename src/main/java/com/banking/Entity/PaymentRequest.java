@@ -6,7 +6,9 @@ import jakarta.persistence.*;
 
 import java.io.Serializable;
 
-@Table(name = "payment_request")
+@Table(name = "payment_request", indexes = {
+        @Index(name = "ix_payment_request_status_created", columnList = "status, created_at")
+})
 @Entity
 public class PaymentRequest implements Serializable {
     @Id
@@ -19,8 +21,10 @@ public class PaymentRequest implements Serializable {
     @JsonIgnore // tránh Jackson serialize nguyên object Account
     private Account account;
 
+    // Lưu dạng số thập phân; loại tiền nằm ở cột currency
+    @Convert(converter = MoneyConverter.class)
     @Column(name = "amount")
-    private double amount;
+    private Money amount = Money.zero(Money.DEFAULT_CURRENCY);
 
     @Column(name = "currency")
     private String currency = "VND";
@@ -38,22 +42,42 @@ public class PaymentRequest implements Serializable {
     @Column(name = "paid_at")
     private java.time.LocalDateTime paidAt;
 
+    // Hết hạn thì không thanh toán được nữa; job quét định kỳ chuyển sang CANCELLED
+    @Column(name = "expires_at")
+    private java.time.LocalDateTime expiresAt;
+
+    // Hạn giữ tiền khi AUTHORIZED; quá hạn chưa capture thì tiền được trả lại số dư khả dụng
+    @Column(name = "hold_expires_at")
+    private java.time.LocalDateTime holdExpiresAt;
+
     public enum PaymentStatus {
-        PENDING, PAID, FAILED, CANCELLED
+        PENDING, AUTHORIZED, PAID, FAILED, CANCELLED;
+
+        /**
+         * PENDING -> AUTHORIZED/PAID/FAILED/CANCELLED, AUTHORIZED -> PAID (capture) hoặc PENDING (release);
+         * PAID, FAILED, CANCELLED là trạng thái cuối
+         */
+        public boolean canTransitionTo(PaymentStatus target) {
+            if (target == null || target == this) {
+                return false;
+            }
+            if (this == PENDING) {
+                return true;
+            }
+            return this == AUTHORIZED && (target == PAID || target == PENDING);
+        }
     }
 
     public PaymentRequest() {}
 
     public PaymentRequest(double amount, Account account) {
-        this.amount = amount;
-        this.account = account;
-        this.currency = "VND";
+        this(amount, account, "VND");
     }
 
     public PaymentRequest(double amount, Account account, String currency) {
-        this.amount = amount;
-        this.account = account;
         this.currency = currency;
+        this.amount = Money.of(amount, currencyOrDefault());
+        this.account = account;
     }
 
     public Long getPaymentId() {
@@ -79,11 +103,21 @@ public class PaymentRequest implements Serializable {
     }
 
     public double getAmount() {
-        return amount;
+        return amount == null ? 0 : amount.toDouble();
     }
 
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amount = Money.of(amount, currencyOrDefault());
+    }
+
+    @JsonIgnore
+    public Money getMoney() {
+        return amount;
+    }
+
+    public void setMoney(Money money) {
+        this.amount = money;
+        this.currency = money.getCurrency();
     }
 
     public String getCurrency() {
@@ -92,6 +126,21 @@ public class PaymentRequest implements Serializable {
 
     public void setCurrency(String currency) {
         this.currency = currency;
+        if (amount != null) {
+            amount = amount.withCurrency(currencyOrDefault());
+        }
+    }
+
+    // Converter đọc số tiền với loại tiền mặc định, gắn lại loại tiền của dòng
+    @PostLoad
+    void applyCurrency() {
+        if (amount != null) {
+            amount = amount.withCurrency(currencyOrDefault());
+        }
+    }
+
+    private String currencyOrDefault() {
+        return currency == null || currency.isBlank() ? Money.DEFAULT_CURRENCY : currency;
     }
 
     public PaymentStatus getStatus() {
@@ -126,6 +175,22 @@ public class PaymentRequest implements Serializable {
         this.paidAt = paidAt;
     }
 
+    public java.time.LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(java.time.LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public java.time.LocalDateTime getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+
+    public void setHoldExpiresAt(java.time.LocalDateTime holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+
     @Override
     public String toString() {
         return "PaymentRequest{" +
@@ -136,6 +201,7 @@ public class PaymentRequest implements Serializable {
                 ", status=" + status +
                 ", description='" + description + '\'' +
                 ", createdAt=" + createdAt +
+                ", expiresAt=" + expiresAt +
                 '}';
     }
 }
\ No newline at end of file
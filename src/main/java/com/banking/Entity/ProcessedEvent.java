@@ -0,0 +1,51 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An outbox event a consumer has already handled. The row is inserted in
+ * the same transaction as the handling, and the unique key on (consumer,
+ * event_id) makes a redelivered event fail the insert, so it is skipped.
+ */
+@Entity
+@Table(name = "processed_event", uniqueConstraints = {
+        @UniqueConstraint(name = "ux_processed_event_consumer_event", columnNames = {"consumer", "event_id"})
+}, indexes = {
+        @Index(name = "ix_processed_event_processed", columnList = "processed_at")
+})
+public class ProcessedEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "consumer", length = 50, nullable = false)
+    private String consumer;
+
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+    public ProcessedEvent() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+}
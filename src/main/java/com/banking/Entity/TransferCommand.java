@@ -0,0 +1,130 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A transfer accepted for asynchronous execution.
+ * The row is written before the request returns 202 and is moved from
+ * QUEUED to PROCESSING by the worker that claims it, then to SUCCEEDED
+ * (in the same transaction as the balance update) or FAILED.
+ */
+@Entity
+@Table(name = "transfer_command", indexes = {
+        @Index(name = "ix_transfer_command_status_updated", columnList = "status, updated_at"),
+        @Index(name = "ix_transfer_command_account", columnList = "account_id")
+})
+public class TransferCommand implements Persistable<String> {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String PROCESSING = "PROCESSING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    public static final String SUCCESS_MESSAGE = "Chuyển khoản thành công!";
+
+    @Id
+    @Column(name = "transfer_id", length = 36)
+    private String transferId;
+
+    // Tài khoản gửi, cũng là khóa phân vùng của worker
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "card_send", length = 20, nullable = false)
+    private String cardSend;
+
+    @Column(name = "card_receipt", length = 20, nullable = false)
+    private String cardReceipt;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "status", length = 20, nullable = false)
+    private String status = QUEUED;
+
+    @Column(name = "message", length = 500)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Id do ứng dụng cấp: save() phải INSERT thay vì merge
+    @Transient
+    private boolean newCommand = true;
+
+    public TransferCommand() {}
+
+    public TransferCommand(String transferId, Long accountId, String cardSend, String cardReceipt,
+                           BigDecimal amount, LocalDateTime createdAt) {
+        this.transferId = transferId;
+        this.accountId = accountId;
+        this.cardSend = cardSend;
+        this.cardReceipt = cardReceipt;
+        this.amount = amount;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return transferId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newCommand;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        this.newCommand = false;
+    }
+
+    public boolean isFinished() {
+        return SUCCEEDED.equals(status) || FAILED.equals(status);
+    }
+
+    public String getTransferId() {
+        return transferId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public String getCardSend() {
+        return cardSend;
+    }
+
+    public String getCardReceipt() {
+        return cardReceipt;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,44 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of one account's daily transfer window, written periodically
+ * by the transfer limit engine. daily_buckets holds the non-empty buckets as
+ * "bucketIndex:amountInMinorUnits" pairs separated by ';'. Transfers with an
+ * id above last_transaction_id were not necessarily in the window yet.
+ */
+@Entity
+@Table(name = "transfer_limit_checkpoint")
+public class TransferLimitCheckpoint {
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "daily_buckets", length = 2000, nullable = false)
+    private String dailyBuckets;
+
+    @Column(name = "last_transaction_id", nullable = false)
+    private Long lastTransactionId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public String getDailyBuckets() {
+        return dailyBuckets;
+    }
+
+    public Long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
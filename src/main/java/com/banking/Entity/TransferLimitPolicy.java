@@ -0,0 +1,106 @@
+package com.banking.Entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Transfer limit override for an account level (scope LEVEL, key SILVER/GOLD/PLATINUM)
+ * or a single account (scope ACCOUNT, key = account id). A null limit falls
+ * back to the next scope: account, then level row, then the app.limits.levels.* defaults.
+ */
+@Entity
+@Table(name = "transfer_limit_policy", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_transfer_limit_policy_scope", columnNames = {"scope", "scope_key"})
+})
+public class TransferLimitPolicy {
+    public static final String SCOPE_LEVEL = "LEVEL";
+    public static final String SCOPE_ACCOUNT = "ACCOUNT";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "policy_id")
+    private Long policyId;
+
+    @Column(name = "scope", length = 10, nullable = false)
+    private String scope;
+
+    @Column(name = "scope_key", length = 50, nullable = false)
+    private String scopeKey;
+
+    @Column(name = "single_max")
+    private BigDecimal singleMax;
+
+    @Column(name = "daily_amount")
+    private BigDecimal dailyAmount;
+
+    @Column(name = "per_minute_count")
+    private Integer perMinuteCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public TransferLimitPolicy() {}
+
+    public TransferLimitPolicy(String scope, String scopeKey) {
+        this.scope = scope;
+        this.scopeKey = scopeKey;
+    }
+
+    public Long getPolicyId() {
+        return policyId;
+    }
+
+    public void setPolicyId(Long policyId) {
+        this.policyId = policyId;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public void setScope(String scope) {
+        this.scope = scope;
+    }
+
+    public String getScopeKey() {
+        return scopeKey;
+    }
+
+    public void setScopeKey(String scopeKey) {
+        this.scopeKey = scopeKey;
+    }
+
+    public BigDecimal getSingleMax() {
+        return singleMax;
+    }
+
+    public void setSingleMax(BigDecimal singleMax) {
+        this.singleMax = singleMax;
+    }
+
+    public BigDecimal getDailyAmount() {
+        return dailyAmount;
+    }
+
+    public void setDailyAmount(BigDecimal dailyAmount) {
+        this.dailyAmount = dailyAmount;
+    }
+
+    public Integer getPerMinuteCount() {
+        return perMinuteCount;
+    }
+
+    public void setPerMinuteCount(Integer perMinuteCount) {
+        this.perMinuteCount = perMinuteCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -2,8 +2,11 @@ package com.banking.Repository;
 
 import com.banking.Entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +20,18 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     // Thêm các phương thức tìm kiếm cho admin
     List<Account> findByEmailContainingIgnoreCase(String email);
     List<Account> findByCustomerNameContainingIgnoreCase(String name);
+
+    /**
+     * Load only the notification contact of many accounts in one query
+     */
+    @Query("SELECT a.accountId AS accountId, a.email AS email, a.customerName AS customerName, a.phoneNumber AS phoneNumber " +
+           "FROM Account a WHERE a.accountId IN :accountIds")
+    List<AccountContactView> findContactsByIds(@Param("accountIds") Collection<Long> accountIds);
+
+    interface AccountContactView {
+        Long getAccountId();
+        String getEmail();
+        String getCustomerName();
+        String getPhoneNumber();
+    }
 }
@@ -3,13 +3,72 @@ package com.banking.Repository;
 import com.banking.Entity.Account;
 import com.banking.Entity.Balance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 @Repository
 public interface BalanceRepository extends JpaRepository<Balance, Long> {
     Optional<Balance> findByAccount(Account account);
+
+    // Các câu lệnh cập nhật đều tăng version để ghi dạng entity (optimistic lock) phát hiện xung đột
+    // Trừ tiền trong một câu lệnh: chỉ cập nhật khi số dư khả dụng >= amount
+    @Modifying
+    @Transactional
+    @Query("UPDATE Balance b SET b.availableBalance = b.availableBalance - :amount, " +
+            "b.version = COALESCE(b.version, 0) + 1 " +
+            "WHERE b.accountId = :accountId AND b.availableBalance >= :amount")
+    int debitIfAvailable(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Cộng tiền trong một câu lệnh, trả về 0 nếu tài khoản chưa có dòng Balance
+    @Modifying
+    @Transactional
+    @Query("UPDATE Balance b SET b.availableBalance = b.availableBalance + :amount, " +
+            "b.version = COALESCE(b.version, 0) + 1 " +
+            "WHERE b.accountId = :accountId")
+    int credit(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Giữ tiền: chuyển từ số dư khả dụng sang số dư tạm giữ nếu khả dụng >= amount
+    @Modifying
+    @Transactional
+    @Query("UPDATE Balance b SET b.availableBalance = b.availableBalance - :amount, " +
+            "b.holdBalance = b.holdBalance + :amount, b.version = COALESCE(b.version, 0) + 1 " +
+            "WHERE b.accountId = :accountId AND b.availableBalance >= :amount")
+    int holdIfAvailable(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Capture: tiền tạm giữ rời khỏi tài khoản
+    @Modifying
+    @Transactional
+    @Query("UPDATE Balance b SET b.holdBalance = b.holdBalance - :amount, " +
+            "b.version = COALESCE(b.version, 0) + 1 " +
+            "WHERE b.accountId = :accountId AND b.holdBalance >= :amount")
+    int captureHold(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Release: trả tiền tạm giữ về số dư khả dụng
+    @Modifying
+    @Transactional
+    @Query("UPDATE Balance b SET b.availableBalance = b.availableBalance + :amount, " +
+            "b.holdBalance = b.holdBalance - :amount, b.version = COALESCE(b.version, 0) + 1 " +
+            "WHERE b.accountId = :accountId AND b.holdBalance >= :amount")
+    int releaseHold(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Tạo dòng Balance với số dư ban đầu, lỗi khóa chính nếu dòng đã tồn tại
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO Balance (account_id, available_balance, hold_balance, version) VALUES (:accountId, :amount, 0, 0)",
+            nativeQuery = true)
+    int insertBalance(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    // Dòng có từ trước khi thêm cột version mang version NULL, cập nhật optimistic đầu tiên sẽ không khớp
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE Balance SET version = 0 WHERE version IS NULL", nativeQuery = true)
+    int backfillVersion();
 }
 
 
@@ -3,8 +3,12 @@ package com.banking.Repository;
 import com.banking.Entity.Account;
 import com.banking.Entity.Card;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +17,46 @@ public interface CardRepository extends JpaRepository<Card, Long> {
     List<Card> findByAccount(Account account);
     boolean existsByCardNumber(String cardNumber);
     Optional<Card> findByCardNumber(String cardNumber);
+
+    /**
+     * account_id of a card's owner, read from the Card row alone
+     */
+    @Query("SELECT c.account.accountId FROM Card c WHERE c.cardNumber = :cardNumber")
+    Optional<Long> findAccountIdByCardNumber(@Param("cardNumber") String cardNumber);
+
+    /**
+     * Card number and owner of a card, without loading the Card or Account entity
+     */
+    @Query("SELECT c.cardNumber AS cardNumber, c.account.accountId AS accountId FROM Card c WHERE c.cardId = :cardId")
+    Optional<CardOwnerView> findOwnerByCardId(@Param("cardId") Long cardId);
+
+    /**
+     * Delete a card only if it still belongs to the given account
+     *
+     * @return Number of deleted rows (0 or 1)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Card c WHERE c.cardId = :cardId AND c.account.accountId = :accountId")
+    int deleteOwnedCard(@Param("cardId") Long cardId, @Param("accountId") Long accountId);
+
+    /**
+     * Resolve many card numbers in one query, with whether the owner has a Balance row
+     */
+    @Query("SELECT c.cardNumber AS cardNumber, a.accountId AS accountId, b.accountId AS balanceAccountId " +
+           "FROM Card c JOIN c.account a LEFT JOIN Balance b ON b.accountId = a.accountId " +
+           "WHERE c.cardNumber IN :cardNumbers")
+    List<CardAccountView> findAccountsByCardNumbers(@Param("cardNumbers") Collection<String> cardNumbers);
+
+    interface CardOwnerView {
+        String getCardNumber();
+        Long getAccountId();
+    }
+
+    interface CardAccountView {
+        String getCardNumber();
+        Long getAccountId();
+        Long getBalanceAccountId();
+    }
 }
 
 
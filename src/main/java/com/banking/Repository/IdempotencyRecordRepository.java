@@ -0,0 +1,62 @@
+package com.banking.Repository;
+
+import com.banking.Entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Take over a claim whose owner has not completed it in time (e.g. the node crashed)
+     *
+     * @return 1 if the caller now owns the claim
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.createdAt = :now, r.expiresAt = :expiresAt " +
+           "WHERE r.idempotencyKey = :key AND r.status = 'IN_PROGRESS' AND r.createdAt < :staleBefore")
+    int takeOverStale(@Param("key") String key,
+                      @Param("now") LocalDateTime now,
+                      @Param("expiresAt") LocalDateTime expiresAt,
+                      @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Mark a claim as having moved money; joins the caller's transaction so it
+     * commits or rolls back with the business write
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'APPLIED' " +
+           "WHERE r.idempotencyKey = :key AND r.status = 'IN_PROGRESS'")
+    int markApplied(@Param("key") String key);
+
+    /**
+     * Release a claim whose request failed before committing anything
+     *
+     * @return 0 if the request had already moved money and the claim must be kept
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :key AND r.status = 'IN_PROGRESS'")
+    int releaseClaim(@Param("key") String key);
+
+    /**
+     * Remove an expired record so its key can be claimed again
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.idempotencyKey = :key AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
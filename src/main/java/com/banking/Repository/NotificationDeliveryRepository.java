@@ -0,0 +1,35 @@
+package com.banking.Repository;
+
+import com.banking.Entity.NotificationDelivery;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationDeliveryRepository extends JpaRepository<NotificationDelivery, Long> {
+
+    List<NotificationDelivery> findByPaymentIdOrderByDeliveryId(Long paymentId);
+
+    List<NotificationDelivery> findTop100ByAccountIdOrderByDeliveryIdDesc(Long accountId);
+
+    /**
+     * Ghi kết quả gửi của một kênh
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE NotificationDelivery d SET d.status = :status, d.error = :error, d.completedAt = :now, " +
+           "d.durationMs = :durationMs WHERE d.deliveryId = :id AND d.status = 'PENDING'")
+    int complete(@Param("id") Long id, @Param("status") String status, @Param("error") String error,
+                 @Param("now") LocalDateTime now, @Param("durationMs") Long durationMs);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM NotificationDelivery d WHERE d.createdAt < :before AND d.status <> 'PENDING'")
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,86 @@
+package com.banking.Repository;
+
+import com.banking.Entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest unpublished events first; walks the (status, event_id) index
+     */
+    @Query("SELECT e FROM OutboxEvent e WHERE e.status = 'PENDING' ORDER BY e.eventId")
+    List<OutboxEvent> findPending(Pageable pageable);
+
+    long countByStatus(String status);
+
+    /**
+     * Lease pending events to one relay run; events leased by another run are left alone
+     *
+     * @return number of events claimed
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.claimToken = :token, e.claimedUntil = :until " +
+           "WHERE e.eventId IN :ids AND e.status = 'PENDING' AND (e.claimedUntil IS NULL OR e.claimedUntil < :now)")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    List<OutboxEvent> findByClaimTokenOrderByEventId(String claimToken);
+
+    /**
+     * Pending events of the given groups, older than before, that the given relay run does not hold
+     */
+    @Query("SELECT e FROM OutboxEvent e WHERE e.status = 'PENDING' AND e.groupKey IN :groups AND e.eventId < :before " +
+           "AND (e.claimToken IS NULL OR e.claimToken <> :token)")
+    List<OutboxEvent> findPendingNotClaimedBy(@Param("groups") Collection<String> groups,
+                                              @Param("before") Long before,
+                                              @Param("token") String token);
+
+    /**
+     * Give events back without counting an attempt (not sent in this run)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.claimToken = NULL, e.claimedUntil = NULL " +
+           "WHERE e.eventId IN :ids AND e.claimToken = :token")
+    int release(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    /**
+     * PENDING -> SENT for events the broker acknowledged
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.status = 'SENT', e.sentAt = :now, e.lastError = NULL, " +
+           "e.claimToken = NULL, e.claimedUntil = NULL " +
+           "WHERE e.eventId IN :ids AND e.status = 'PENDING'")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * Count a failed send; the events stay PENDING and are retried on the next poll
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.lastError = :error, " +
+           "e.claimToken = NULL, e.claimedUntil = NULL " +
+           "WHERE e.eventId IN :ids AND e.status = 'PENDING'")
+    int recordFailure(@Param("ids") Collection<Long> ids, @Param("error") String error);
+
+    /**
+     * Delete published events sent before the given time
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = 'SENT' AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
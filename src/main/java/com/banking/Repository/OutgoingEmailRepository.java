@@ -0,0 +1,84 @@
+package com.banking.Repository;
+
+import com.banking.Entity.OutgoingEmail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutgoingEmailRepository extends JpaRepository<OutgoingEmail, Long> {
+
+    /**
+     * PENDING emails whose next attempt is due, oldest first; walks the (status, next_attempt_at) index
+     */
+    @Query("SELECT e FROM OutgoingEmail e WHERE e.status = 'PENDING' AND e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt")
+    List<OutgoingEmail> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT e.emailId FROM OutgoingEmail e WHERE e.status = :status ORDER BY e.emailId")
+    List<Long> findIdsByStatus(@Param("status") String status, Pageable pageable);
+
+    long countByStatus(String status);
+
+    /**
+     * Giữ chỗ một email đến hạn; 0 nếu node khác vừa lấy nó
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.nextAttemptAt = :leaseUntil " +
+           "WHERE e.emailId = :id AND e.status = 'PENDING' AND e.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Make a PENDING email due again, e.g. when the send queue refused it
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.nextAttemptAt = :now WHERE e.emailId = :id AND e.status = 'PENDING'")
+    int release(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.status = 'SENT', e.sentAt = :now, e.lastError = NULL " +
+           "WHERE e.emailId = :id AND e.status = 'PENDING'")
+    int markSent(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Count a failed attempt and schedule the next one
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.attempts = e.attempts + 1, e.lastError = :error, e.nextAttemptAt = :nextAttemptAt " +
+           "WHERE e.emailId = :id AND e.status = 'PENDING'")
+    int recordFailure(@Param("id") Long id, @Param("error") String error, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    /**
+     * Count the last failed attempt and stop retrying
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.status = 'DEAD', e.attempts = e.attempts + 1, e.lastError = :error " +
+           "WHERE e.emailId = :id AND e.status = 'PENDING'")
+    int markDead(@Param("id") Long id, @Param("error") String error);
+
+    /**
+     * DEAD -> PENDING with a fresh attempt budget, due now
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutgoingEmail e SET e.status = 'PENDING', e.attempts = 0, e.nextAttemptAt = :now " +
+           "WHERE e.emailId IN :ids AND e.status = 'DEAD'")
+    int revive(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutgoingEmail e WHERE e.status = 'SENT' AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
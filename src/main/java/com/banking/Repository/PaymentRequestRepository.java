@@ -1,12 +1,18 @@
 package com.banking.Repository;
 
+import com.banking.Entity.Money;
 import com.banking.Entity.PaymentRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PaymentRequestRepository extends JpaRepository<PaymentRequest, Long> {
@@ -23,4 +29,160 @@ public interface PaymentRequestRepository extends JpaRepository<PaymentRequest,
     
     @Query("SELECT p FROM PaymentRequest p WHERE p.account.accountId = :accountId ORDER BY p.createdAt DESC")
     List<PaymentRequest> findByAccountIdOrderByCreatedAtDesc(@Param("accountId") Long accountId);
+
+    /**
+     * Request with its account loaded, for use outside a transaction (notifications)
+     */
+    @Query("SELECT p FROM PaymentRequest p JOIN FETCH p.account WHERE p.paymentId = :paymentId")
+    Optional<PaymentRequest> findWithAccountById(@Param("paymentId") Long paymentId);
+
+    /**
+     * PENDING -> PAID for the owning account, checked and written in one statement
+     *
+     * @return 1 if the request was pending, not expired and owned by the account, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PAID, p.paidAt = :now " +
+           "WHERE p.paymentId = :paymentId AND p.account.accountId = :accountId " +
+           "AND p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PENDING " +
+           "AND (p.expiresAt IS NULL OR p.expiresAt > :now)")
+    int markPaid(@Param("paymentId") Long paymentId, @Param("accountId") Long accountId, @Param("now") LocalDateTime now);
+
+    /**
+     * PENDING -> AUTHORIZED for the owning account; the hold on the balance is taken in the same transaction
+     *
+     * @return 1 if the request was pending, not expired and owned by the account, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = com.banking.Entity.PaymentRequest.PaymentStatus.AUTHORIZED, " +
+           "p.holdExpiresAt = :holdExpiresAt " +
+           "WHERE p.paymentId = :paymentId AND p.account.accountId = :accountId " +
+           "AND p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PENDING " +
+           "AND (p.expiresAt IS NULL OR p.expiresAt > :now)")
+    int markAuthorized(@Param("paymentId") Long paymentId, @Param("accountId") Long accountId,
+                       @Param("now") LocalDateTime now, @Param("holdExpiresAt") LocalDateTime holdExpiresAt);
+
+    /**
+     * AUTHORIZED -> PAID (capture)
+     *
+     * @return 1 if the request was still authorized, 0 if it was released or captured already
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PAID, " +
+           "p.paidAt = :now, p.holdExpiresAt = NULL " +
+           "WHERE p.paymentId = :paymentId AND p.status = com.banking.Entity.PaymentRequest.PaymentStatus.AUTHORIZED")
+    int markCaptured(@Param("paymentId") Long paymentId, @Param("now") LocalDateTime now);
+
+    /**
+     * AUTHORIZED -> PENDING (release) if the hold expires before the given time
+     *
+     * @return 1 if the request was still authorized, 0 if it was captured or released already
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PENDING, " +
+           "p.holdExpiresAt = NULL " +
+           "WHERE p.paymentId = :paymentId AND p.status = com.banking.Entity.PaymentRequest.PaymentStatus.AUTHORIZED " +
+           "AND p.holdExpiresAt <= :before")
+    int markReleased(@Param("paymentId") Long paymentId, @Param("before") LocalDateTime before);
+
+    /**
+     * Authorized requests whose hold has expired, oldest hold first
+     */
+    @Query("SELECT p.paymentId FROM PaymentRequest p " +
+           "WHERE p.status = com.banking.Entity.PaymentRequest.PaymentStatus.AUTHORIZED AND p.holdExpiresAt <= :now " +
+           "ORDER BY p.holdExpiresAt")
+    List<Long> findExpiredHolds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Move a request from one status to another if it is still in the expected status
+     *
+     * @return 1 if the transition happened, 0 if the request is missing or already moved on
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = :to WHERE p.paymentId = :paymentId AND p.status = :from")
+    int transitionStatus(@Param("paymentId") Long paymentId,
+                         @Param("from") PaymentRequest.PaymentStatus from,
+                         @Param("to") PaymentRequest.PaymentStatus to);
+
+    /**
+     * PENDING -> FAILED
+     */
+    default int markFailed(Long paymentId) {
+        return transition(paymentId, PaymentRequest.PaymentStatus.PENDING, PaymentRequest.PaymentStatus.FAILED);
+    }
+
+    /**
+     * PENDING -> CANCELLED
+     */
+    default int cancelPending(Long paymentId) {
+        return transition(paymentId, PaymentRequest.PaymentStatus.PENDING, PaymentRequest.PaymentStatus.CANCELLED);
+    }
+
+    /**
+     * Guarded transition that only allows the moves of {@link PaymentRequest.PaymentStatus#canTransitionTo}
+     *
+     * @throws IllegalArgumentException if the state machine does not allow the move
+     */
+    default int transition(Long paymentId, PaymentRequest.PaymentStatus from, PaymentRequest.PaymentStatus to) {
+        if (!from.canTransitionTo(to)) {
+            throw new IllegalArgumentException("Không thể chuyển payment request từ " + from + " sang " + to);
+        }
+        return transitionStatus(paymentId, from, to);
+    }
+
+    // Qua projection: Spring Data coi Money là DTO nếu query trả thẳng về Money
+    default Optional<Money> findAmountById(Long paymentId) {
+        return findStatusById(paymentId).map(PaymentStatusView::getAmount);
+    }
+
+    /**
+     * Status, owner and amount only, used by holds and to explain why a guarded transition did not apply
+     */
+    @Query("SELECT p.status AS status, p.account.accountId AS accountId, p.amount AS amount, p.expiresAt AS expiresAt " +
+           "FROM PaymentRequest p WHERE p.paymentId = :paymentId")
+    Optional<PaymentStatusView> findStatusById(@Param("paymentId") Long paymentId);
+
+    /**
+     * Next page of expired PENDING requests after the (createdAt, paymentId) cursor, oldest first.
+     * Walks the (status, created_at) index; only rows created before the cutoff are candidates.
+     */
+    @Query("SELECT p.paymentId AS paymentId, p.createdAt AS createdAt FROM PaymentRequest p " +
+           "WHERE p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PENDING AND p.createdAt < :cutoff " +
+           "AND (p.createdAt > :afterCreatedAt OR (p.createdAt = :afterCreatedAt AND p.paymentId > :afterId)) " +
+           "AND (p.expiresAt IS NULL OR p.expiresAt <= :now) " +
+           "ORDER BY p.createdAt, p.paymentId")
+    List<PaymentKeyView> findExpiredPage(@Param("cutoff") LocalDateTime cutoff,
+                                         @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                         @Param("afterId") Long afterId,
+                                         @Param("now") LocalDateTime now,
+                                         Pageable pageable);
+
+    /**
+     * PENDING -> CANCELLED for one page of expired requests; rows paid or extended since the page was read are skipped
+     *
+     * @return number of requests cancelled
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentRequest p SET p.status = com.banking.Entity.PaymentRequest.PaymentStatus.CANCELLED " +
+           "WHERE p.paymentId IN :paymentIds AND p.status = com.banking.Entity.PaymentRequest.PaymentStatus.PENDING " +
+           "AND (p.expiresAt IS NULL OR p.expiresAt <= :now)")
+    int cancelExpired(@Param("paymentIds") List<Long> paymentIds, @Param("now") LocalDateTime now);
+
+    interface PaymentStatusView {
+        PaymentRequest.PaymentStatus getStatus();
+        Long getAccountId();
+        Money getAmount();
+        LocalDateTime getExpiresAt();
+    }
+
+    interface PaymentKeyView {
+        Long getPaymentId();
+        LocalDateTime getCreatedAt();
+    }
 }
@@ -0,0 +1,31 @@
+package com.banking.Repository;
+
+import com.banking.Entity.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, Long> {
+
+    /**
+     * Ghi nhận event đã xử lý; chạy trong transaction của người gọi
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the consumer already processed the event
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO processed_event (consumer, event_id, processed_at) VALUES (:consumer, :eventId, :now)",
+           nativeQuery = true)
+    int markProcessed(@Param("consumer") String consumer, @Param("eventId") Long eventId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessedEvent e WHERE e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,40 @@
+package com.banking.Repository;
+
+import com.banking.Entity.TransferCommand;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TransferCommandRepository extends JpaRepository<TransferCommand, String> {
+
+    /**
+     * Move a command from one status to another
+     *
+     * @return 1 if the command was in the expected status, 0 if another worker or the sweeper got there first
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferCommand c SET c.status = :to, c.message = :message, c.updatedAt = :now " +
+           "WHERE c.transferId = :transferId AND c.status = :from")
+    int transition(@Param("transferId") String transferId,
+                   @Param("from") String from,
+                   @Param("to") String to,
+                   @Param("message") String message,
+                   @Param("now") LocalDateTime now);
+
+    /**
+     * Commands left in a status since before the given time, oldest first
+     */
+    @Query("SELECT c FROM TransferCommand c WHERE c.status = :status AND c.updatedAt < :before ORDER BY c.updatedAt")
+    List<TransferCommand> findStale(@Param("status") String status,
+                                    @Param("before") LocalDateTime before,
+                                    Pageable pageable);
+}
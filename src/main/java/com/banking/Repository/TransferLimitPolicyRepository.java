@@ -0,0 +1,12 @@
+package com.banking.Repository;
+
+import com.banking.Entity.TransferLimitPolicy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TransferLimitPolicyRepository extends JpaRepository<TransferLimitPolicy, Long> {
+    Optional<TransferLimitPolicy> findByScopeAndScopeKey(String scope, String scopeKey);
+}
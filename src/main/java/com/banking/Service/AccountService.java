@@ -9,6 +9,7 @@ import com.banking.Repository.CardRepository;
 import com.banking.Security.JwtUtil;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -47,6 +48,12 @@ public class AccountService {
     @Autowired
     private BalanceRepository balanceRepository;
 
+    @Autowired
+    private CardAccountResolver cardAccountResolver;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -79,7 +86,7 @@ public class AccountService {
      * @return Balance object if found, null otherwise
      */
     public Balance findBalanceByAccount(Account account) {
-        return balanceRepository.findByAccount(account).orElse(null);
+        return balanceShardService.withSlots(balanceRepository.findByAccount(account).orElse(null));
     }
 
     /**
@@ -92,6 +99,7 @@ public class AccountService {
      * @return The created card
      * @throws RuntimeException if account not found
      */
+    @Transactional
     public Card createCard(Account account, String cardType, LocalDate expiryDate, String status) {
         // Always get account from DB to avoid Detached entity issues
         Account managedAccount = accountRepo.findById(account.getAccountId())
@@ -119,7 +127,9 @@ public class AccountService {
             });
         }
         card.setCardNumber(generateUniqueCardNumber());
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        cardAccountResolver.register(saved.getCardNumber());
+        return saved;
     }
 
     /**
@@ -146,10 +156,12 @@ public class AccountService {
      * @param account The account that should own the card
      * @param cardId The ID of the card to delete
      */
+    @Transactional
     public void deleteCardIfOwned(Account account, Long cardId) {
-        cardRepository.findById(cardId).ifPresent(card -> {
-            if (card.getAccount().getAccountId().equals(account.getAccountId())) {
-                cardRepository.delete(card);
+        cardRepository.findOwnerByCardId(cardId).ifPresent(owner -> {
+            if (owner.getAccountId().equals(account.getAccountId())
+                    && cardRepository.deleteOwnedCard(cardId, account.getAccountId()) == 1) {
+                cardAccountResolver.evict(owner.getCardNumber());
             }
         });
     }
@@ -181,7 +193,7 @@ public class AccountService {
      */
     public BigDecimal getBalanceByAccountId(Long accountId) {
         Balance balance = balanceRepository.findById(accountId).orElseThrow(() -> new RuntimeException("Balance not found"));
-        return balance.getAvailableBalance();
+        return balance.getAvailableBalance().add(balanceShardService.slotTotal(accountId));
     }
 
     public boolean updateEmailOrPhone(Account account, String newEmail, String newPhone) {
@@ -254,7 +266,7 @@ public class AccountService {
         if (cards != null && !cards.isEmpty()) {
             return false;
         }
-        Balance bal = balanceRepository.findByAccount(account).orElse(null);
+        Balance bal = balanceShardService.withSlots(balanceRepository.findByAccount(account).orElse(null));
         if (bal != null) {
             if (bal.getAvailableBalance() == null || bal.getHoldBalance() == null) {
                 return false;
@@ -0,0 +1,221 @@
+package com.banking.Service;
+
+import com.banking.Entity.Money;
+import com.banking.Entity.PaymentRequest;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admin Notification Digest
+ *
+ * Collects the per-payment admin notifications and sends one summary email
+ * per window (app.notification.admin-digest.window-ms), or earlier when
+ * max-events have been buffered, grouped by status with counts, exact
+ * totals per currency (summed as Money in minor units) and the first
+ * payments of each group. Only a small snapshot of
+ * each payment is kept, so the buffer never holds entities. Statuses listed
+ * in immediate-statuses (ERROR by default: a customer could not be
+ * notified at all) are still sent one by one at once.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class AdminNotificationDigest {
+
+    // Thứ tự các nhóm trong email tổng hợp; trạng thái khác xếp sau
+    private static final List<String> STATUS_ORDER = List.of("ERROR", "FAILED", "SUCCESS");
+
+    @Autowired
+    private EmailService emailService;
+
+    // Tắt thì mỗi payment gửi một email admin như trước
+    @Value("${app.notification.admin-digest.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.notification.admin-digest.max-events:500}")
+    private int maxEvents = 500;
+
+    // Số payment liệt kê chi tiết mỗi nhóm; phần còn lại chỉ được đếm
+    @Value("${app.notification.admin-digest.max-detail-rows:20}")
+    private int maxDetailRows = 20;
+
+    @Value("${app.notification.admin-digest.immediate-statuses:ERROR}")
+    private Set<String> immediateStatuses = Set.of("ERROR");
+
+    private List<Event> buffer = new ArrayList<>();
+    private LocalDateTime windowStart = LocalDateTime.now();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder sentImmediately = new LongAdder();
+    private final LongAdder digestsSent = new LongAdder();
+    private final LongAdder eventsDigested = new LongAdder();
+    private volatile LocalDateTime lastFlushAt;
+
+    /**
+     * Ghi nhận một thông báo admin; trạng thái khẩn cấp được gửi ngay
+     *
+     * @param paymentRequest Payment request with its account loaded
+     * @param status SUCCESS, FAILED, ERROR...
+     */
+    public void record(PaymentRequest paymentRequest, String status) {
+        if (!enabled || immediateStatuses.contains(status)) {
+            emailService.sendAdminNotificationEmail(paymentRequest, status);
+            sentImmediately.increment();
+            return;
+        }
+        Event event = new Event(paymentRequest.getPaymentId(), paymentRequest.getAccount().getAccountId(),
+                paymentRequest.getAccount().getCustomerName(), paymentRequest.getMoney(), status, LocalDateTime.now());
+        List<Event> full = null;
+        LocalDateTime start;
+        synchronized (this) {
+            buffer.add(event);
+            start = windowStart;
+            if (buffer.size() >= maxEvents) {
+                full = drain();
+            }
+        }
+        recorded.increment();
+        if (full != null) {
+            // Đủ số lượng trước khi hết cửa sổ: gửi ngay trên luồng hiện tại
+            send(full, start);
+        }
+    }
+
+    /**
+     * Gửi email tổng hợp của cửa sổ hiện tại
+     *
+     * @return number of events summarized, 0 if nothing was buffered
+     */
+    @Scheduled(fixedRateString = "${app.notification.admin-digest.window-ms:300000}",
+               initialDelayString = "${app.notification.admin-digest.window-ms:300000}")
+    public int flush() {
+        List<Event> events;
+        LocalDateTime start;
+        synchronized (this) {
+            start = windowStart;
+            events = drain();
+        }
+        if (events.isEmpty()) {
+            return 0;
+        }
+        send(events, start);
+        return events.size();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Digest counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        int buffered;
+        synchronized (this) {
+            buffered = buffer.size();
+        }
+        stats.put("enabled", enabled);
+        stats.put("maxEvents", maxEvents);
+        stats.put("immediateStatuses", immediateStatuses);
+        stats.put("buffered", buffered);
+        stats.put("recorded", recorded.sum());
+        stats.put("sentImmediately", sentImmediately.sum());
+        stats.put("digestsSent", digestsSent.sum());
+        stats.put("eventsDigested", eventsDigested.sum());
+        stats.put("lastFlushAt", lastFlushAt);
+        return stats;
+    }
+
+    private List<Event> drain() {
+        List<Event> events = buffer;
+        buffer = new ArrayList<>();
+        windowStart = LocalDateTime.now();
+        return events;
+    }
+
+    private void send(List<Event> events, LocalDateTime start) {
+        Map<String, StatusGroup> groups = new LinkedHashMap<>();
+        for (String status : STATUS_ORDER) {
+            groups.put(status, null);
+        }
+        for (Event event : events) {
+            StatusGroup group = groups.get(event.status());
+            if (group == null) {
+                group = new StatusGroup(event.status());
+                groups.put(event.status(), group);
+            }
+            group.add(event, maxDetailRows);
+        }
+        List<StatusGroup> present = groups.values().stream().filter(group -> group != null).toList();
+        emailService.sendAdminDigestEmail(present, events.size(), start, LocalDateTime.now());
+        digestsSent.increment();
+        eventsDigested.add(events.size());
+        lastFlushAt = LocalDateTime.now();
+    }
+
+    /**
+     * Ảnh chụp một thông báo admin trong bộ đệm
+     */
+    public record Event(Long paymentId, Long accountId, String customerName, Money amount,
+                        String status, LocalDateTime at) {}
+
+    /**
+     * Các payment cùng trạng thái trong một email tổng hợp
+     */
+    public static final class StatusGroup {
+
+        private final String status;
+        private final List<Event> events = new ArrayList<>();
+        private final Map<String, Money> totals = new LinkedHashMap<>();
+        private int count;
+
+        StatusGroup(String status) {
+            this.status = status;
+        }
+
+        void add(Event event, int maxDetailRows) {
+            count++;
+            totals.merge(event.amount().getCurrency(), event.amount(), Money::plus);
+            if (events.size() < maxDetailRows) {
+                events.add(event);
+            }
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        // Tổng theo từng loại tiền
+        public Map<String, Money> getTotals() {
+            return totals;
+        }
+
+        // Các payment được liệt kê chi tiết, tối đa max-detail-rows
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        public int getHidden() {
+            return count - events.size();
+        }
+    }
+}
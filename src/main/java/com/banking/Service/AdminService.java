@@ -1,11 +1,9 @@
 package com.banking.Service;
 
 import com.banking.Entity.Account;
-import com.banking.Entity.Balance;
 import com.banking.Entity.Card;
 import com.banking.Entity.Transaction;
 import com.banking.Repository.AccountRepository;
-import com.banking.Repository.BalanceRepository;
 import com.banking.Repository.CardRepository;
 import com.banking.Repository.TransactionRepository;
 import org.hibernate.annotations.Cache;
@@ -33,7 +31,10 @@ public class AdminService {
     private TransactionRepository transactionRepository;
 
     @Autowired
-    private BalanceRepository balanceRepository;
+    private BalanceService balanceService;
+
+    @Autowired
+    private CardAccountResolver cardAccountResolver;
 
     private PasswordEncoder passwordEncoder;
 
@@ -187,6 +188,7 @@ public class AdminService {
         Optional<Card> cardOpt = cardRepository.findById(cardId);
         if (cardOpt.isPresent()) {
             cardRepository.delete(cardOpt.get());
+            cardAccountResolver.evict(cardOpt.get().getCardNumber());
         }
     }
 
@@ -229,23 +231,7 @@ public class AdminService {
             throw new RuntimeException("Số tiền không hợp lệ");
         }
 
-        // Tìm hoặc tạo balance cho tài khoản
-        Balance balance = balanceRepository.findByAccount(account).orElse(null);
-        if (balance == null) {
-            // Tạo balance mới nếu chưa có
-            balance = new Balance();
-            balance.setAccount(account);
-            balance.setAvailableBalance(BigDecimal.ZERO);
-            balance.setHoldBalance(BigDecimal.ZERO);
-        }
-
-        // Cập nhật số dư
-        BigDecimal currentBalance = balance.getAvailableBalance() != null ? balance.getAvailableBalance() : BigDecimal.ZERO;
-        balance.setAvailableBalance(currentBalance.add(depositAmount));
-
-        // Lưu balance
-        balanceRepository.save(balance);
-
-
+        // Cộng tiền bằng một câu lệnh UPDATE, tạo balance mới nếu chưa có
+        balanceService.deposit(account.getAccountId(), depositAmount, "CARD#" + card.getCardNumber());
     }
 }
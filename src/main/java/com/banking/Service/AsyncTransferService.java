@@ -0,0 +1,327 @@
+package com.banking.Service;
+
+import com.banking.Config.QueueConfig;
+import com.banking.DTO.TransferStatusDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.TransferCommand;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.TransferCommandRepository;
+import jakarta.jms.JMSException;
+import jakarta.jms.TextMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async Transfer Service
+ *
+ * Accepts a transfer as a transfer_command row and returns its id at once;
+ * the transfer itself runs on a broker worker. Commands are published to one
+ * of app.transfer.async.partitions queues chosen by the sending account, and
+ * each partition queue has a single consumer, so transfers of one account run
+ * in submission order while different accounts run in parallel. Every node
+ * with workers enabled listens on every partition, so the workers subscribe
+ * as exclusive consumers: the broker delivers a partition to one of them at
+ * a time and fails over to another node's consumer when it goes away.
+ * Messages also carry the sending account as JMSXGroupID, which keeps one
+ * account on one consumer even if a partition gets several.
+ *
+ * A worker claims a command by moving it from QUEUED to PROCESSING and marks
+ * it SUCCEEDED in the same transaction as the balance update, so a redelivered
+ * message never moves money twice. Business failures end in FAILED; transient
+ * failures put the command back to QUEUED and roll the message back for
+ * redelivery. A sweeper republishes commands whose message was lost.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class AsyncTransferService implements JmsListenerConfigurer {
+
+    @Autowired
+    private TransferCommandRepository commandRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    @Qualifier("transferListenerContainerFactory")
+    private DefaultJmsListenerContainerFactory transferListenerContainerFactory;
+
+    @Value("${app.transfer.async.partitions:8}")
+    private int partitions = 8;
+
+    // Tắt trên các node chỉ nhận request, khi đó lệnh do node khác xử lý
+    @Value("${app.transfer.async.workers-enabled:true}")
+    private boolean workersEnabled = true;
+
+    @Value("${app.transfer.async.max-wait-ms:30000}")
+    private long maxWaitMs = 30000;
+
+    @Value("${app.transfer.async.stale-after-ms:300000}")
+    private long staleAfterMs = 300000;
+
+    @Value("${app.transfer.async.sweep-batch-size:500}")
+    private int sweepBatchSize = 500;
+
+    // transferId -> các client đang long-poll trên node này
+    private final Map<String, Set<CompletableFuture<TransferStatusDTO>>> waiters = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder requeued = new LongAdder();
+    private final LongAdder republished = new LongAdder();
+
+    /**
+     * Ghi nhận lệnh chuyển tiền và đưa vào queue của tài khoản gửi
+     *
+     * @return The QUEUED command; its id is what the client polls
+     * @throws IllegalArgumentException if the request is invalid
+     */
+    public TransferCommand submit(Account acc, String cardSend, String cardReceipt, BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Số tiền chuyển phải lớn hơn 0");
+        }
+        if (cardReceipt == null || cardReceipt.isBlank()) {
+            throw new IllegalArgumentException("Thiếu thẻ nhận");
+        }
+        // Lệnh đã ghi thì request không được chạy lại: đánh dấu idempotency key trong cùng transaction
+        TransferCommand command = transactionTemplate.execute(status -> {
+            TransferCommand saved = commandRepository.save(new TransferCommand(UUID.randomUUID().toString(),
+                    acc.getAccountId(), cardSend, cardReceipt.trim(), amount, LocalDateTime.now()));
+            idempotencyService.markApplied();
+            return saved;
+        });
+        submitted.increment();
+        publish(command);
+        return command;
+    }
+
+    /**
+     * Trạng thái lệnh, chờ tối đa waitMs nếu lệnh chưa xong
+     *
+     * @return A future completed when the command finishes or the wait ends, or null if
+     *         the command does not exist or belongs to another account
+     */
+    public CompletableFuture<TransferStatusDTO> awaitStatus(Long accountId, String transferId, long waitMs) {
+        TransferCommand command = commandRepository.findById(transferId).orElse(null);
+        if (command == null || !command.getAccountId().equals(accountId)) {
+            return null;
+        }
+        long wait = Math.min(Math.max(waitMs, 0), maxWaitMs);
+        if (command.isFinished() || wait == 0) {
+            return CompletableFuture.completedFuture(new TransferStatusDTO(command));
+        }
+        CompletableFuture<TransferStatusDTO> done = new CompletableFuture<>();
+        waiters.computeIfAbsent(transferId, id -> ConcurrentHashMap.newKeySet()).add(done);
+        // Đọc lại sau khi đăng ký: lệnh có thể vừa xong giữa lần đọc đầu và lúc đăng ký
+        TransferCommand current = commandRepository.findById(transferId).orElse(command);
+        if (current.isFinished()) {
+            removeWaiter(transferId, done);
+            done.complete(new TransferStatusDTO(current));
+            return done;
+        }
+        return done.completeOnTimeout(null, wait, TimeUnit.MILLISECONDS).thenApply(status -> {
+            if (status != null) {
+                return status;
+            }
+            removeWaiter(transferId, done);
+            return commandRepository.findById(transferId).map(TransferStatusDTO::new).orElse(new TransferStatusDTO(current));
+        });
+    }
+
+    /**
+     * Một worker trên mỗi queue phân vùng
+     */
+    @Override
+    public void configureJmsListeners(JmsListenerEndpointRegistrar registrar) {
+        if (!workersEnabled) {
+            return;
+        }
+        for (int partition = 0; partition < partitions; partition++) {
+            SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+            endpoint.setId("transfer-worker-" + partition);
+            endpoint.setDestination(QueueConfig.transferQueue(partition) + QueueConfig.EXCLUSIVE_CONSUMER_OPTION);
+            endpoint.setMessageListener(message -> {
+                try {
+                    process(((TextMessage) message).getText());
+                } catch (JMSException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            registrar.registerEndpoint(endpoint, transferListenerContainerFactory);
+        }
+    }
+
+    /**
+     * Thực hiện một lệnh chuyển tiền; bỏ qua nếu lệnh đã được worker khác nhận
+     *
+     * @throws DataAccessException or IllegalStateException on transient failures, after putting the command back to QUEUED
+     */
+    public void process(String transferId) {
+        if (commandRepository.transition(transferId, TransferCommand.QUEUED, TransferCommand.PROCESSING, null, LocalDateTime.now()) == 0) {
+            // Message giao lại cho lệnh đã xong hoặc đang chạy
+            return;
+        }
+        TransferCommand command = commandRepository.findById(transferId).orElseThrow();
+        Account acc = accountRepository.findById(command.getAccountId()).orElse(null);
+        if (acc == null) {
+            fail(transferId, "Không tìm thấy tài khoản gửi");
+            return;
+        }
+        try {
+            // SUCCEEDED được ghi cùng lúc với số dư, kể cả ở chế độ sequencer
+            transactionService.transfer(acc, command.getCardSend(), command.getCardReceipt(), command.getAmount(), transferId);
+            succeeded.increment();
+            notifyWaiters(transferId);
+        } catch (LedgerSequencer.OutcomeUnknownException e) {
+            // Tiền có thể đã chuyển: giữ PROCESSING để kiểm tra sổ cái, không giao lại
+            System.err.println("Async transfer " + transferId + " left in PROCESSING: " + e.getMessage());
+        } catch (DataAccessException | IllegalStateException e) {
+            // Lỗi tạm thời: trả lệnh về hàng đợi và để broker giao lại message
+            if (commandRepository.transition(transferId, TransferCommand.PROCESSING, TransferCommand.QUEUED,
+                    null, LocalDateTime.now()) == 1) {
+                requeued.increment();
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            fail(transferId, e.getMessage());
+        }
+    }
+
+    /**
+     * Đưa lại vào queue các lệnh bị kẹt (mất message, node chết giữa chừng)
+     *
+     * @return Number of commands republished
+     */
+    @Scheduled(fixedDelayString = "${app.transfer.async.sweep-interval-ms:60000}",
+               initialDelayString = "${app.transfer.async.sweep-interval-ms:60000}")
+    public int republishStale() {
+        LocalDateTime before = LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000);
+        int count = 0;
+        for (TransferCommand command : commandRepository.findStale(TransferCommand.QUEUED, before, PageRequest.of(0, sweepBatchSize))) {
+            // Cập nhật updated_at để lần quét sau không gửi lại lệnh vừa gửi
+            if (commandRepository.transition(command.getTransferId(), TransferCommand.QUEUED, TransferCommand.QUEUED,
+                    null, LocalDateTime.now()) == 1) {
+                publish(command);
+                count++;
+            }
+        }
+        // Ở chế độ JPA, SUCCEEDED được ghi cùng transaction với số dư: lệnh còn PROCESSING chắc chắn chưa chuyển tiền.
+        // Với sequencer, lệnh PROCESSING có thể vẫn đang chờ trong ring buffer nên phải được kiểm tra thủ công.
+        List<TransferCommand> stuck = commandRepository.findStale(TransferCommand.PROCESSING, before, PageRequest.of(0, sweepBatchSize));
+        for (TransferCommand command : stuck) {
+            if (ledgerSequencer.isEnabled()) {
+                System.err.println("Async transfer " + command.getTransferId() + " stuck in PROCESSING, check the ledger before retrying");
+                continue;
+            }
+            if (commandRepository.transition(command.getTransferId(), TransferCommand.PROCESSING, TransferCommand.QUEUED,
+                    null, LocalDateTime.now()) == 1) {
+                publish(command);
+                count++;
+            }
+        }
+        republished.add(count);
+        return count;
+    }
+
+    /**
+     * Async transfer counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("partitions", partitions);
+        stats.put("workersEnabled", workersEnabled);
+        stats.put("submitted", submitted.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("requeued", requeued.sum());
+        stats.put("republished", republished.sum());
+        stats.put("waiters", waiters.values().stream().mapToInt(Set::size).sum());
+        return stats;
+    }
+
+    int partitionOf(Long accountId) {
+        return Math.floorMod(Long.hashCode(accountId), partitions);
+    }
+
+    private void publish(TransferCommand command) {
+        try {
+            jmsTemplate.send(QueueConfig.transferQueue(partitionOf(command.getAccountId())),
+                    session -> {
+                        TextMessage message = session.createTextMessage(command.getTransferId());
+                        message.setStringProperty(OutboxService.GROUP_ID_PROPERTY, String.valueOf(command.getAccountId()));
+                        return message;
+                    });
+        } catch (JmsException e) {
+            // Lệnh vẫn QUEUED trong DB, sweeper sẽ gửi lại
+            System.err.println("Could not publish async transfer " + command.getTransferId() + ": " + e.getMessage());
+        }
+    }
+
+    private void fail(String transferId, String message) {
+        if (message != null && message.length() > 500) {
+            message = message.substring(0, 500);
+        }
+        if (commandRepository.transition(transferId, TransferCommand.PROCESSING, TransferCommand.FAILED, message, LocalDateTime.now()) == 1) {
+            failed.increment();
+        }
+        notifyWaiters(transferId);
+    }
+
+    private void notifyWaiters(String transferId) {
+        Set<CompletableFuture<TransferStatusDTO>> pending = waiters.remove(transferId);
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        commandRepository.findById(transferId).map(TransferStatusDTO::new)
+                .ifPresent(status -> pending.forEach(waiter -> waiter.complete(status)));
+    }
+
+    private void removeWaiter(String transferId, CompletableFuture<TransferStatusDTO> waiter) {
+        waiters.computeIfPresent(transferId, (id, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -0,0 +1,155 @@
+package com.banking.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Balance Retry Executor
+ *
+ * Runs a balance write and replays it when the database reports a
+ * concurrency failure: an optimistic version mismatch on Balance, a
+ * deadlock victim or a lock timeout. Replays use exponential backoff with
+ * full jitter, bounded by a configurable number of attempts.
+ *
+ * Only the outermost call retries. When a transaction is already active the
+ * operation runs once and the failure propagates, because the surrounding
+ * transaction is rollback-only and has to be replayed as a whole.
+ *
+ * Conflicts and retries are counted per account so contention on hot
+ * accounts can be observed through {@link #getContentionStats()}.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class BalanceRetryExecutor {
+
+    private final int maxAttempts;
+
+    private final long baseBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final Map<Long, AccountContention> contention = new ConcurrentHashMap<>();
+
+    public BalanceRetryExecutor(@Value("${app.balance.retry.max-attempts:5}") int maxAttempts,
+                                @Value("${app.balance.retry.backoff-ms:10}") long baseBackoffMs,
+                                @Value("${app.balance.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMs = Math.max(1, baseBackoffMs);
+        this.maxBackoffMs = Math.max(this.baseBackoffMs, maxBackoffMs);
+    }
+
+    /**
+     * Run a balance operation, retrying it on concurrency failures
+     *
+     * @param operation The operation to run; must be safe to replay from the start
+     * @param accountIds The accounts the operation writes, used for contention counters
+     * @return The result of the first successful attempt
+     * @throws ConcurrencyFailureException if every attempt conflicted
+     */
+    public <T> T execute(Supplier<T> operation, Long... accountIds) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return operation.get();
+        }
+        int attempt = 1;
+        while (true) {
+            try {
+                return operation.get();
+            } catch (ConcurrencyFailureException e) {
+                record(accountIds, AccountContention::conflict);
+                if (attempt >= maxAttempts) {
+                    record(accountIds, AccountContention::exhausted);
+                    throw e;
+                }
+                backoff(attempt);
+                record(accountIds, AccountContention::retry);
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * Run a balance operation without a result, retrying it on concurrency failures
+     */
+    public void run(Runnable operation, Long... accountIds) {
+        execute(() -> {
+            operation.run();
+            return null;
+        }, accountIds);
+    }
+
+    /**
+     * Snapshot of contention counters for every account that has conflicted
+     *
+     * @return Map of accountId to its conflict, retry and exhausted counts
+     */
+    public Map<Long, Map<String, Long>> getContentionStats() {
+        Map<Long, Map<String, Long>> stats = new LinkedHashMap<>();
+        contention.forEach((accountId, counters) -> stats.put(accountId, counters.toMap()));
+        return stats;
+    }
+
+    /**
+     * Reset all contention counters
+     */
+    public void resetContentionStats() {
+        contention.clear();
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        long sleepMs = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Giao dịch bị gián đoạn");
+        }
+    }
+
+    private void record(Long[] accountIds, Consumer<AccountContention> counter) {
+        for (Long accountId : accountIds) {
+            if (accountId != null) {
+                counter.accept(contention.computeIfAbsent(accountId, id -> new AccountContention()));
+            }
+        }
+    }
+
+    private static final class AccountContention {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        void conflict() {
+            conflicts.increment();
+        }
+
+        void retry() {
+            retries.increment();
+        }
+
+        void exhausted() {
+            exhausted.increment();
+        }
+
+        Map<String, Long> toMap() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            map.put("conflicts", conflicts.sum());
+            map.put("retries", retries.sum());
+            map.put("exhausted", exhausted.sum());
+            return map;
+        }
+    }
+}
@@ -1,12 +1,55 @@
 package com.banking.Service;
 
+import com.banking.Repository.AccountRepository;
 import com.banking.Repository.BalanceRepository;
 import com.banking.Repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.List;
 
+/**
+ * Balance Service
+ *
+ * Single entry point for balance movements. Every debit and credit is one
+ * guarded UPDATE statement on the Balance row, so there is no read before
+ * the write and no lost-update window between them. Writes go through the
+ * {@link BalanceRetryExecutor}, which replays them on concurrency failures.
+ * When the {@link LedgerSequencer} is enabled it owns available balances and
+ * debits, credits and transfers are delegated to it instead.
+ *
+ * Transfers, deposits and payments also append their double-entry legs to
+ * the {@link LedgerJournal} in the same transaction as the balance update,
+ * so Balance is a projection that can be rebuilt from the ledger. Balances
+ * are not derived from the ledger on the write path, though: the Balance
+ * row is still updated in place next to the journal. Its guarded UPDATE
+ * (available_balance >= amount) is what keeps concurrent debits from
+ * overdrawing an account without a lock, and holds, sharding and the
+ * sequencer build on it; a ledger-only debit would need every debit of an
+ * account serialized before it could check the balance. Contention on hot
+ * rows is handled by sharding and the sequencer instead.
+ *
+ * Hot accounts can be sharded by {@link BalanceShardService}: their credits
+ * go to sub-balance slots, debits sweep the slots when the Balance row alone
+ * is short, and reads add the slots to the Balance row.
+ *
+ * Every successful balance write also marks the idempotent request running
+ * on the thread, if any, as applied in the same transaction
+ * ({@link IdempotencyService#markApplied()}).
+ *
+ * Two-phase payments move funds from available to hold when authorized;
+ * capture removes them from hold and journals the payment, release puts
+ * them back. The ledger therefore equals available plus hold. Holds are
+ * not available with the ledger sequencer.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
 @Service
 public class BalanceService {
 
@@ -15,9 +58,277 @@ public class BalanceService {
 
     @Autowired
     private BalanceRepository balanceRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Autowired
+    private LedgerJournal ledgerJournal;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    /**
+     * Gán version 0 cho các dòng Balance có từ trước khi thêm cột version
+     */
+    @PostConstruct
+    public void backfillVersion() {
+        int backfilled = balanceRepository.backfillVersion();
+        if (backfilled > 0) {
+            System.out.println("Balance: backfilled version on " + backfilled + " legacy row(s)");
+        }
+    }
+
     public BigDecimal getBalanceByAccountId(Long accountId) {
-        return balanceRepository.findById(accountId).orElseThrow().getAvailableBalance();
+        return balanceRepository.findById(accountId).orElseThrow().getAvailableBalance()
+                .add(balanceShardService.slotTotal(accountId));
     }
 
+    /**
+     * Trừ tiền nếu số dư khả dụng đủ
+     *
+     * @param accountId The account to debit
+     * @param amount The amount to debit, must be positive
+     * @return true if the balance was debited, false if funds are insufficient or no balance exists
+     */
+    public boolean debit(Long accountId, BigDecimal amount) {
+        requirePositive(amount);
+        if (ledgerSequencer.isEnabled()) {
+            return ledgerSequencer.debit(accountId, amount);
+        }
+        // Gom slot và trừ tiền phải nằm trong cùng một transaction
+        return retryExecutor.execute(() -> Boolean.TRUE.equals(
+                transactionTemplate.execute(status -> debitRow(accountId, amount))), accountId);
+    }
+
+    /**
+     * Cộng tiền vào số dư khả dụng
+     *
+     * @param accountId The account to credit
+     * @param amount The amount to credit, must be positive
+     * @return true if the balance was credited, false if the account has no balance row
+     */
+    public boolean credit(Long accountId, BigDecimal amount) {
+        requirePositive(amount);
+        if (ledgerSequencer.isEnabled()) {
+            return ledgerSequencer.credit(accountId, amount);
+        }
+        return retryExecutor.execute(() -> creditRow(accountId, amount), accountId);
+    }
+
+    /**
+     * Chuyển tiền giữa hai tài khoản bằng hai câu lệnh có điều kiện
+     *
+     * The two rows are updated in ascending account id order so concurrent
+     * transfers in opposite directions take row locks in the same order.
+     * Must run inside a transaction: if the debit fails after the credit,
+     * the caller's rollback undoes the credit.
+     *
+     * @return true if the transfer was applied, false if the sender has insufficient funds
+     * @throws IllegalArgumentException if the receiver has no balance row
+     */
+    public boolean transfer(Long fromAccountId, Long toAccountId, BigDecimal amount) {
+        return transfer(fromAccountId, toAccountId, amount, null);
+    }
+
+    /**
+     * Chuyển tiền và ghi bút toán sổ cái
+     *
+     * @param reference Free-text reference stored on the ledger legs, may be null
+     */
+    public boolean transfer(Long fromAccountId, Long toAccountId, BigDecimal amount, String reference) {
+        requirePositive(amount);
+        List<LedgerJournal.Leg> legs = ledgerJournal.transferLegs(fromAccountId, toAccountId, amount, reference);
+        if (ledgerSequencer.isEnabled()) {
+            return ledgerSequencer.transfer(fromAccountId, toAccountId, amount, null, legs);
+        }
+        if (fromAccountId < toAccountId) {
+            if (!debit(fromAccountId, amount)) {
+                return false;
+            }
+            requireCredited(credit(toAccountId, amount));
+        } else {
+            requireCredited(credit(toAccountId, amount));
+            if (!debit(fromAccountId, amount)) {
+                return false;
+            }
+        }
+        ledgerJournal.append(legs);
+        return true;
+    }
+
+    /**
+     * Thanh toán: trừ tiền và ghi bút toán vào tài khoản thanh toán trung gian
+     *
+     * @param reference Payment reference stored on the ledger legs
+     * @return true if the balance was debited, false if funds are insufficient or no balance exists
+     */
+    public boolean payment(Long accountId, BigDecimal amount, String reference) {
+        requirePositive(amount);
+        List<LedgerJournal.Leg> legs = ledgerJournal.paymentLegs(accountId, amount, reference);
+        if (ledgerSequencer.isEnabled()) {
+            return ledgerSequencer.debit(accountId, amount, legs);
+        }
+        return retryExecutor.execute(() -> Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!debitRow(accountId, amount)) {
+                return false;
+            }
+            ledgerJournal.append(legs);
+            return true;
+        })), accountId);
+    }
 
+    /**
+     * Holds need the Balance row to own available balances, which the sequencer does not allow
+     */
+    public boolean holdsSupported() {
+        return !ledgerSequencer.isEnabled();
+    }
+
+    /**
+     * Giữ tiền: chuyển amount từ số dư khả dụng sang số dư tạm giữ
+     *
+     * @return true if the funds were held, false if funds are insufficient or no balance exists
+     * @throws IllegalStateException if the ledger sequencer is enabled
+     */
+    public boolean hold(Long accountId, BigDecimal amount) {
+        requirePositive(amount);
+        requireHoldsSupported();
+        return retryExecutor.execute(() -> Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            boolean held = balanceRepository.holdIfAvailable(accountId, amount) == 1
+                    || balanceShardService.sweepForDebit(accountId)
+                    && balanceRepository.holdIfAvailable(accountId, amount) == 1;
+            return markApplied(held);
+        })), accountId);
+    }
+
+    /**
+     * Capture tiền đã giữ và ghi bút toán thanh toán
+     *
+     * @param reference Payment reference stored on the ledger legs
+     * @return true if the hold was captured, false if less than amount is held
+     */
+    public boolean captureHold(Long accountId, BigDecimal amount, String reference) {
+        requirePositive(amount);
+        requireHoldsSupported();
+        List<LedgerJournal.Leg> legs = ledgerJournal.paymentLegs(accountId, amount, reference);
+        return retryExecutor.execute(() -> Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (balanceRepository.captureHold(accountId, amount) == 0) {
+                return false;
+            }
+            ledgerJournal.append(legs);
+            return markApplied(true);
+        })), accountId);
+    }
+
+    /**
+     * Trả tiền đã giữ về số dư khả dụng
+     *
+     * @return true if the hold was released, false if less than amount is held
+     */
+    public boolean releaseHold(Long accountId, BigDecimal amount) {
+        requirePositive(amount);
+        requireHoldsSupported();
+        return retryExecutor.execute(() -> balanceRepository.releaseHold(accountId, amount) == 1, accountId);
+    }
+
+    /**
+     * Nạp tiền: cộng vào dòng Balance hiện có, hoặc tạo mới nếu chưa có
+     *
+     * @param accountId The account to credit
+     * @param amount The amount to deposit, must be positive
+     */
+    public void deposit(Long accountId, BigDecimal amount) {
+        deposit(accountId, amount, null);
+    }
+
+    /**
+     * Nạp tiền và ghi bút toán từ tài khoản tiền mặt của ngân hàng
+     *
+     * @param reference Deposit reference stored on the ledger legs, may be null
+     */
+    public void deposit(Long accountId, BigDecimal amount, String reference) {
+        requirePositive(amount);
+        List<LedgerJournal.Leg> legs = ledgerJournal.depositLegs(accountId, amount, reference);
+        if (creditWithLegs(accountId, amount, legs)) {
+            return;
+        }
+        if (!accountRepository.existsById(accountId)) {
+            throw new RuntimeException("Account not found");
+        }
+        try {
+            // Tạo dòng Balance rỗng rồi cộng tiền, để tiền nạp luôn đi cùng bút toán
+            balanceRepository.insertBalance(accountId, BigDecimal.ZERO);
+        } catch (DataIntegrityViolationException e) {
+            // Một giao dịch khác vừa tạo dòng Balance, cộng tiền vào dòng đó
+        }
+        if (!creditWithLegs(accountId, amount, legs)) {
+            throw new RuntimeException("Account not found");
+        }
+    }
+
+    private boolean creditWithLegs(Long accountId, BigDecimal amount, List<LedgerJournal.Leg> legs) {
+        if (ledgerSequencer.isEnabled()) {
+            return ledgerSequencer.credit(accountId, amount, legs);
+        }
+        return retryExecutor.execute(() -> Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!creditRow(accountId, amount)) {
+                return false;
+            }
+            ledgerJournal.append(legs);
+            return true;
+        })), accountId);
+    }
+
+    private boolean debitRow(Long accountId, BigDecimal amount) {
+        // Tài khoản chia slot: dòng Balance không đủ thì gom tiền từ các slot về rồi thử lại
+        boolean debited = balanceRepository.debitIfAvailable(accountId, amount) == 1
+                || balanceShardService.sweepForDebit(accountId)
+                && balanceRepository.debitIfAvailable(accountId, amount) == 1;
+        return markApplied(debited);
+    }
+
+    private boolean creditRow(Long accountId, BigDecimal amount) {
+        boolean credited = balanceShardService.isSharded(accountId) && balanceShardService.creditSlot(accountId, amount)
+                || balanceRepository.credit(accountId, amount) == 1;
+        return markApplied(credited);
+    }
+
+    // Ghi dấu APPLIED trong cùng transaction với lệnh ghi số dư
+    private boolean markApplied(boolean moved) {
+        if (moved) {
+            idempotencyService.markApplied();
+        }
+        return moved;
+    }
+
+    private void requirePositive(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Số tiền phải lớn hơn 0");
+        }
+    }
+
+    private void requireHoldsSupported() {
+        if (!holdsSupported()) {
+            throw new IllegalStateException("Không hỗ trợ giữ tiền khi đang chạy ledger sequencer");
+        }
+    }
+
+    private void requireCredited(boolean credited) {
+        if (!credited) {
+            throw new IllegalArgumentException("Tài khoản nhận chưa có số dư");
+        }
+    }
 }
@@ -0,0 +1,298 @@
+package com.banking.Service;
+
+import com.banking.Entity.Balance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Balance Shard Service
+ *
+ * Opt-in sub-balance sharding for hot accounts such as merchants that
+ * receive many concurrent credits. A sharded account keeps its Balance row
+ * and gets N balance_slot rows; its available balance is the Balance row
+ * plus the sum of the slots. Credits go to a random slot, so concurrent
+ * credits no longer queue on the one Balance row lock.
+ *
+ * Debits still take money from the Balance row. When the row alone cannot
+ * cover a debit, the slots are swept into it first. A periodic compaction
+ * sweeps every sharded account so the Balance row stays close to the total.
+ *
+ * Sharding is enabled on one node, so the set of sharded accounts is
+ * reloaded from balance_slot periodically. A short debit sweeps the slots
+ * whatever this node believes, so a node that has not reloaded yet never
+ * reports insufficient funds while money sits in the slots.
+ *
+ * A sweep moves exactly what it managed to subtract from each slot with a
+ * guarded UPDATE, so concurrent credits and sweeps never create or lose
+ * money. Sharding is not available with the ledger sequencer, which keeps
+ * balances in memory.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class BalanceShardService {
+
+    private static final String CREDIT_SLOT_SQL =
+            "UPDATE balance_slot SET amount = amount + ? WHERE account_id = ? AND slot_no = ?";
+
+    private static final String TAKE_FROM_SLOT_SQL =
+            "UPDATE balance_slot SET amount = amount - ? WHERE account_id = ? AND slot_no = ? AND amount >= ?";
+
+    private static final String ADD_TO_BALANCE_SQL =
+            "UPDATE Balance SET available_balance = available_balance + ?, version = COALESCE(version, 0) + 1 WHERE account_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Value("${app.balance.sharding.max-slots:64}")
+    private int maxSlots = 64;
+
+    // account_id -> số slot của các tài khoản đang chia nhỏ số dư
+    private final Map<Long, Integer> shardedAccounts = new ConcurrentHashMap<>();
+
+    private final LongAdder slotCredits = new LongAdder();
+    private final LongAdder sweeps = new LongAdder();
+
+    /**
+     * Nạp danh sách tài khoản đang chia slot khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<Long, Integer> found = findSlotCounts();
+        if (ledgerSequencer.isEnabled()) {
+            // Sequencer chỉ đọc dòng Balance: gom hết tiền trong slot về trước khi nhận lệnh
+            for (Long accountId : found.keySet()) {
+                removeSlots(accountId);
+            }
+            if (!found.isEmpty()) {
+                System.out.println("Balance sharding: compacted " + found.size() + " account(s) because the ledger sequencer is enabled");
+            }
+            return;
+        }
+        shardedAccounts.putAll(found);
+    }
+
+    /**
+     * Nạp lại danh sách tài khoản chia slot do node khác bật hoặc tắt
+     */
+    @Scheduled(fixedDelayString = "${app.balance.sharding.refresh-interval-ms:10000}",
+               initialDelayString = "${app.balance.sharding.refresh-interval-ms:10000}")
+    public void refresh() {
+        if (ledgerSequencer.isEnabled()) {
+            return;
+        }
+        Map<Long, Integer> found = findSlotCounts();
+        shardedAccounts.keySet().retainAll(found.keySet());
+        shardedAccounts.putAll(found);
+    }
+
+    public boolean isSharded(Long accountId) {
+        return shardedAccounts.containsKey(accountId);
+    }
+
+    /**
+     * Gom slot khi dòng Balance không đủ để trừ; phải chạy trong transaction
+     *
+     * Does not rely on this node's list of sharded accounts, which may not
+     * have picked up an account sharded on another node yet.
+     *
+     * @return true if money was moved into the Balance row
+     */
+    public boolean sweepForDebit(Long accountId) {
+        if (ledgerSequencer.isEnabled()) {
+            return false;
+        }
+        return sweep(accountId).signum() > 0;
+    }
+
+    /**
+     * Cộng tiền vào một slot ngẫu nhiên
+     *
+     * @return true if a slot was credited, false if the account is not (or no longer) sharded
+     */
+    public boolean creditSlot(Long accountId, BigDecimal amount) {
+        Integer slots = shardedAccounts.get(accountId);
+        if (slots == null) {
+            return false;
+        }
+        int slot = ThreadLocalRandom.current().nextInt(slots);
+        if (jdbcTemplate.update(CREDIT_SLOT_SQL, amount, accountId, slot) == 1) {
+            slotCredits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gom tiền từ các slot về dòng Balance; phải chạy trong transaction
+     *
+     * @return The amount moved into the Balance row
+     */
+    public BigDecimal sweep(Long accountId) {
+        List<Map<String, Object>> slots = jdbcTemplate.queryForList(
+                "SELECT slot_no, amount FROM balance_slot WHERE account_id = ? AND amount > 0", accountId);
+        BigDecimal moved = BigDecimal.ZERO;
+        for (Map<String, Object> slot : slots) {
+            BigDecimal amount = (BigDecimal) slot.get("amount");
+            // Chỉ chuyển phần đã trừ được; khoản cộng vào slot sau lúc đọc vẫn nằm lại slot
+            if (jdbcTemplate.update(TAKE_FROM_SLOT_SQL, amount, accountId, slot.get("slot_no"), amount) == 1) {
+                moved = moved.add(amount);
+            }
+        }
+        if (moved.signum() > 0) {
+            jdbcTemplate.update(ADD_TO_BALANCE_SQL, moved, accountId);
+            sweeps.increment();
+        }
+        return moved;
+    }
+
+    /**
+     * Tổng tiền đang nằm trong các slot của tài khoản
+     */
+    public BigDecimal slotTotal(Long accountId) {
+        if (!isSharded(accountId)) {
+            return BigDecimal.ZERO;
+        }
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM balance_slot WHERE account_id = ?", BigDecimal.class, accountId);
+    }
+
+    /**
+     * Số dư như người dùng thấy: dòng Balance cộng các slot
+     *
+     * @return The balance itself if the account is not sharded, otherwise a detached copy holding the total
+     */
+    public Balance withSlots(Balance balance) {
+        if (balance == null || !isSharded(balance.getAccountId())) {
+            return balance;
+        }
+        // Bản sao không được quản lý bởi JPA, để tổng không bị ghi ngược vào dòng Balance
+        Balance view = new Balance();
+        view.setAccountId(balance.getAccountId());
+        view.setAccount(balance.getAccount());
+        view.setAvailableBalance(balance.getAvailableBalance().add(slotTotal(balance.getAccountId())));
+        view.setHoldBalance(balance.getHoldBalance());
+        view.setVersion(balance.getVersion());
+        return view;
+    }
+
+    /**
+     * Bật chia slot cho một tài khoản nóng
+     *
+     * @param slots Number of sub-balance slots, between 2 and app.balance.sharding.max-slots
+     * @throws IllegalArgumentException if the slot count is invalid or the account has no balance
+     * @throws IllegalStateException if the ledger sequencer is enabled
+     */
+    public void enable(Long accountId, int slots) {
+        if (ledgerSequencer.isEnabled()) {
+            throw new IllegalStateException("Không thể chia slot số dư khi đang chạy ledger sequencer");
+        }
+        if (slots < 2 || slots > maxSlots) {
+            throw new IllegalArgumentException("Số slot phải từ 2 đến " + maxSlots);
+        }
+        Integer current = shardedAccounts.get(accountId);
+        if (current != null && slots < current) {
+            throw new IllegalArgumentException("Không thể giảm số slot, hãy tắt rồi bật lại");
+        }
+        Integer balances = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Balance WHERE account_id = ?", Integer.class, accountId);
+        if (balances == null || balances == 0) {
+            throw new IllegalArgumentException("Tài khoản chưa có số dư");
+        }
+        for (int slot = current == null ? 0 : current; slot < slots; slot++) {
+            try {
+                jdbcTemplate.update("INSERT INTO balance_slot (account_id, slot_no, amount) VALUES (?, ?, 0)", accountId, slot);
+            } catch (DataIntegrityViolationException e) {
+                // Slot đã tồn tại
+            }
+        }
+        shardedAccounts.put(accountId, slots);
+    }
+
+    /**
+     * Tắt chia slot: gom hết tiền về dòng Balance và xóa các slot
+     */
+    public void disable(Long accountId) {
+        // Bỏ khỏi danh sách trước để khoản cộng mới đi thẳng vào dòng Balance
+        shardedAccounts.remove(accountId);
+        removeSlots(accountId);
+    }
+
+    /**
+     * Gom định kỳ tiền trong slot về dòng Balance
+     *
+     * @return Number of accounts that had money moved
+     */
+    @Scheduled(fixedDelayString = "${app.balance.sharding.compaction-interval-ms:60000}",
+               initialDelayString = "${app.balance.sharding.compaction-interval-ms:60000}")
+    public int compact() {
+        int compacted = 0;
+        for (Long accountId : shardedAccounts.keySet()) {
+            BigDecimal moved = retryExecutor.execute(() -> transactionTemplate.execute(status -> sweep(accountId)), accountId);
+            if (moved != null && moved.signum() > 0) {
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Sharded accounts and slot counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accounts", new TreeMap<>(shardedAccounts));
+        stats.put("slotCredits", slotCredits.sum());
+        stats.put("sweeps", sweeps.sum());
+        return stats;
+    }
+
+    private Map<Long, Integer> findSlotCounts() {
+        Map<Long, Integer> found = new TreeMap<>();
+        jdbcTemplate.query("SELECT account_id, COUNT(*) FROM balance_slot GROUP BY account_id",
+                rs -> {
+                    found.put(rs.getLong(1), rs.getInt(2));
+                });
+        return found;
+    }
+
+    private void removeSlots(Long accountId) {
+        while (true) {
+            Integer remaining = retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+                sweep(accountId);
+                jdbcTemplate.update("DELETE FROM balance_slot WHERE account_id = ? AND amount = 0", accountId);
+                return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_slot WHERE account_id = ?", Integer.class, accountId);
+            }), accountId);
+            // Còn slot nghĩa là có khoản cộng vừa vào sau lúc gom, gom tiếp
+            if (remaining == null || remaining == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.banking.Service;
+
+import com.banking.DTO.BulkPaymentRequestLineResultDTO;
+import com.banking.DTO.BulkPaymentRequestResultDTO;
+import com.banking.DTO.CreatePaymentRequestDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk Payment Request Service
+ *
+ * Monthly billing: issues many payment requests in one call. All account
+ * ids are checked in one query (chunked for the database's parameter
+ * limit), which also loads the email and name needed for the notification.
+ * Invalid lines are reported and skipped; the valid lines are inserted in
+ * one transaction with JDBC batches, and their generated payment ids are
+ * read back in the same transaction (by created_at and account, in insert
+ * order) so every notification carries its payment id. The notifications
+ * are handed to
+ * {@link NotificationService}'s background queue after commit, so the call
+ * returns once the rows are written.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class BulkPaymentRequestService {
+
+    // SQL Server cho phép tối đa 2100 tham số mỗi câu lệnh
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO payment_request (account_id, amount, currency, status, description, created_at, expires_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_IDS_SQL =
+            "SELECT payment_id, account_id FROM payment_request WHERE created_at = ? AND account_id IN (%s) "
+                    + "ORDER BY payment_id";
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private PaymentExpiryService paymentExpiryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.payment.bulk.max-lines:50000}")
+    private int maxLines = 50000;
+
+    @Value("${app.payment.bulk.jdbc-batch-size:500}")
+    private int jdbcBatchSize = 500;
+
+    /**
+     * Phát hành hàng loạt payment request
+     *
+     * @param requests One line per payment request
+     * @return Counts and the rejected lines; all valid lines share the same created_at
+     * @throws IllegalArgumentException if the list is empty or too long
+     */
+    public BulkPaymentRequestResultDTO issue(List<CreatePaymentRequestDTO> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách payment request trống");
+        }
+        if (requests.size() > maxLines) {
+            throw new IllegalArgumentException("Tối đa " + maxLines + " dòng cho mỗi lần phát hành");
+        }
+
+        Set<Long> accountIds = new LinkedHashSet<>();
+        for (CreatePaymentRequestDTO request : requests) {
+            if (request != null && request.getAccountId() != null) {
+                accountIds.add(request.getAccountId());
+            }
+        }
+        Map<Long, AccountRepository.AccountContactView> accounts = loadAccounts(accountIds);
+
+        LocalDateTime issuedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        BulkPaymentRequestResultDTO result = new BulkPaymentRequestResultDTO(issuedAt);
+        List<PaymentRequest> valid = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CreatePaymentRequestDTO request = requests.get(i);
+            String error = validate(request, accounts);
+            if (error != null) {
+                result.getErrors().add(new BulkPaymentRequestLineResultDTO(i + 1,
+                        request == null ? null : request.getAccountId(), request == null ? 0 : request.getAmount(), error));
+                continue;
+            }
+            valid.add(toPaymentRequest(request, accounts.get(request.getAccountId()), issuedAt));
+        }
+
+        if (!valid.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertAll(valid);
+                readBackIds(valid);
+            });
+            result.setNotificationsQueued(notificationService.queuePaymentRequestNotifications(valid));
+        }
+        result.setIssued(valid.size());
+        result.setFailed(result.getErrors().size());
+        System.out.println("Bulk payment requests issued: " + result);
+        return result;
+    }
+
+    /**
+     * Đọc file CSV: accountId,amount[,currency[,description]], dòng tiêu đề (nếu có) được bỏ qua
+     *
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static List<CreatePaymentRequestDTO> parseCsv(Reader source) throws IOException {
+        List<CreatePaymentRequestDTO> requests = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) {
+                continue;
+            }
+            // Mô tả là cột cuối nên được phép chứa dấu phẩy
+            String[] fields = line.split(",", 4);
+            if (lineNo == 1 && !fields[0].trim().matches("\\d+")) {
+                continue;
+            }
+            if (fields.length < 2) {
+                throw new IllegalArgumentException("Dòng " + lineNo + ": thiếu accountId hoặc amount");
+            }
+            try {
+                String currency = fields.length > 2 && !fields[2].isBlank() ? fields[2].trim() : "VND";
+                String description = fields.length > 3 ? fields[3].trim() : null;
+                requests.add(new CreatePaymentRequestDTO(Long.valueOf(fields[0].trim()),
+                        Double.parseDouble(fields[1].trim()), currency, description));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Dòng " + lineNo + ": accountId hoặc amount không hợp lệ");
+            }
+        }
+        return requests;
+    }
+
+    private Map<Long, AccountRepository.AccountContactView> loadAccounts(Set<Long> accountIds) {
+        Map<Long, AccountRepository.AccountContactView> accounts = new HashMap<>();
+        List<Long> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+        for (Long accountId : accountIds) {
+            chunk.add(accountId);
+            if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+                accountRepository.findContactsByIds(chunk).forEach(view -> accounts.put(view.getAccountId(), view));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            accountRepository.findContactsByIds(chunk).forEach(view -> accounts.put(view.getAccountId(), view));
+        }
+        return accounts;
+    }
+
+    private String validate(CreatePaymentRequestDTO request, Map<Long, AccountRepository.AccountContactView> accounts) {
+        if (request == null || request.getAccountId() == null) {
+            return "Thiếu accountId";
+        }
+        if (!(request.getAmount() > 0)) {
+            return "Amount must be greater than 0";
+        }
+        if (!accounts.containsKey(request.getAccountId())) {
+            return "Account not found";
+        }
+        if (request.getDescription() != null && request.getDescription().length() > 255) {
+            return "Mô tả tối đa 255 ký tự";
+        }
+        return null;
+    }
+
+    private PaymentRequest toPaymentRequest(CreatePaymentRequestDTO request, AccountRepository.AccountContactView contact,
+                                            LocalDateTime issuedAt) {
+        // Account chỉ mang thông tin liên hệ cho thông báo, không được lưu qua JPA
+        Account account = new Account();
+        account.setAccountId(contact.getAccountId());
+        account.setEmail(contact.getEmail());
+        account.setCustomerName(contact.getCustomerName());
+        account.setPhoneNumber(contact.getPhoneNumber());
+
+        String currency = request.getCurrency() == null || request.getCurrency().isBlank() ? "VND" : request.getCurrency().trim();
+        PaymentRequest paymentRequest = new PaymentRequest(request.getAmount(), account, currency);
+        paymentRequest.setDescription(request.getDescription());
+        paymentRequest.setStatus(PaymentRequest.PaymentStatus.PENDING);
+        paymentRequest.setCreatedAt(issuedAt);
+        paymentRequest.setExpiresAt(paymentExpiryService.expiryFor(issuedAt));
+        return paymentRequest;
+    }
+
+    private void insertAll(List<PaymentRequest> paymentRequests) {
+        Timestamp createdAt = Timestamp.valueOf(paymentRequests.get(0).getCreatedAt());
+        Timestamp expiresAt = Timestamp.valueOf(paymentRequests.get(0).getExpiresAt());
+        jdbcTemplate.batchUpdate(INSERT_SQL, paymentRequests, jdbcBatchSize, (ps, paymentRequest) -> {
+            ps.setLong(1, paymentRequest.getAccountId());
+            ps.setBigDecimal(2, paymentRequest.getMoney().toBigDecimal());
+            ps.setString(3, paymentRequest.getCurrency());
+            ps.setString(4, PaymentRequest.PaymentStatus.PENDING.name());
+            ps.setString(5, paymentRequest.getDescription());
+            ps.setTimestamp(6, createdAt);
+            ps.setTimestamp(7, expiresAt);
+        });
+    }
+
+    /**
+     * Gán payment_id vừa sinh cho từng dòng: identity tăng theo thứ tự chèn, nên
+     * các id của một account khớp thứ tự các dòng của account đó
+     *
+     * @throws IllegalStateException if the rows read back do not match the rows inserted
+     */
+    private void readBackIds(List<PaymentRequest> paymentRequests) {
+        // Không dùng getGeneratedKeys: driver SQL Server không trả key cho executeBatch
+        Map<Long, Deque<PaymentRequest>> byAccount = new LinkedHashMap<>();
+        for (PaymentRequest paymentRequest : paymentRequests) {
+            byAccount.computeIfAbsent(paymentRequest.getAccountId(), key -> new ArrayDeque<>()).add(paymentRequest);
+        }
+        Timestamp createdAt = Timestamp.valueOf(paymentRequests.get(0).getCreatedAt());
+        List<Long> accountIds = new ArrayList<>(byAccount.keySet());
+        for (int from = 0; from < accountIds.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, accountIds.size()));
+            Object[] args = new Object[chunk.size() + 1];
+            args[0] = createdAt;
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+            }
+            String sql = String.format(SELECT_IDS_SQL, String.join(",", Collections.nCopies(chunk.size(), "?")));
+            jdbcTemplate.query(sql, rs -> {
+                PaymentRequest paymentRequest = byAccount.get(rs.getLong("account_id")).poll();
+                if (paymentRequest == null) {
+                    // Một đợt khác cùng account chèn đúng cùng thời điểm: không phân biệt được, hủy đợt này
+                    throw new IllegalStateException("Đợt phát hành trùng thời điểm với đợt khác, vui lòng thử lại");
+                }
+                paymentRequest.setPaymentId(rs.getLong("payment_id"));
+            }, args);
+        }
+        for (Deque<PaymentRequest> remaining : byAccount.values()) {
+            if (!remaining.isEmpty()) {
+                throw new IllegalStateException("Không đọc lại được payment_id của " + remaining.size() + " payment request");
+            }
+        }
+    }
+}
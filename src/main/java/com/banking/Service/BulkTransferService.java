@@ -0,0 +1,329 @@
+package com.banking.Service;
+
+import com.banking.DTO.BulkTransferLineDTO;
+import com.banking.DTO.BulkTransferLineResultDTO;
+import com.banking.DTO.BulkTransferResultDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.Money;
+import com.banking.Entity.Transaction;
+import com.banking.Repository.CardRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bulk Transfer Service
+ *
+ * Payroll-style payouts: one source card pays many receiver cards. All
+ * receiver cards are resolved in one query (chunked for the database's
+ * parameter limit). Invalid lines are reported and skipped. The valid lines
+ * are applied in one transaction: the source is debited once with the
+ * total, and receivers are credited and the account_transaction rows are
+ * inserted with JDBC batches. Rows are updated in ascending account id
+ * order, like {@link BalanceService#transfer}, so the batch takes row locks
+ * in the same order as single transfers. Each line is written to the
+ * {@link LedgerJournal} as its own transfer.
+ *
+ * The valid lines are reserved against the sender's transfer limits as one
+ * batch before anything is written: each line against the per-transfer
+ * maximum, their total against the daily amount, and the batch as a single
+ * transfer against the per-minute count. The daily amount of lines that do
+ * not go through is released. A line whose outcome the ledger sequencer
+ * cannot report is returned as UNKNOWN and keeps its reservation: it may
+ * already be journaled, so it must be checked, not retried.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class BulkTransferService {
+
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+    // Sequencer dừng sau khi đã nhận lệnh: tiền có thể đã chuyển, không được báo thất bại
+    public static final String STATUS_UNKNOWN = "UNKNOWN";
+
+    // SQL Server cho phép tối đa 2100 tham số mỗi câu lệnh
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private static final BigDecimal MAX_AMOUNT = Money.toBigDecimal(Long.MAX_VALUE);
+
+    private static final String CREDIT_SQL =
+            "UPDATE Balance SET available_balance = available_balance + ?, version = COALESCE(version, 0) + 1 WHERE account_id = ?";
+
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO account_transaction (transaction_date, amount, type, status, card_send, card_receipt, account_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Autowired
+    private LedgerJournal ledgerJournal;
+
+    @Autowired
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransferLimitService transferLimitService;
+
+    @Value("${app.transfer.bulk.max-lines:10000}")
+    private int maxLines = 10000;
+
+    @Value("${app.transfer.bulk.jdbc-batch-size:500}")
+    private int jdbcBatchSize = 500;
+
+    /**
+     * Chuyển tiền từ một thẻ tới nhiều thẻ nhận
+     *
+     * @param acc The authenticated account owning cardSend
+     * @param cardSend The source card number
+     * @param lines Receiver card numbers and amounts
+     * @return Per-line report; valid lines either all succeed or all fail together
+     * @throws IllegalArgumentException if the request or the source card is invalid, or the
+     *         valid lines exceed the sender's transfer limits
+     */
+    public BulkTransferResultDTO bulkTransfer(Account acc, String cardSend, List<BulkTransferLineDTO> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách chuyển khoản trống");
+        }
+        if (lines.size() > maxLines) {
+            throw new IllegalArgumentException("Tối đa " + maxLines + " dòng cho mỗi lần chuyển");
+        }
+
+        Set<String> cardNumbers = new LinkedHashSet<>();
+        cardNumbers.add(cardSend);
+        for (BulkTransferLineDTO line : lines) {
+            if (line != null && line.getCardReceipt() != null) {
+                cardNumbers.add(line.getCardReceipt());
+            }
+        }
+        Map<String, CardRepository.CardAccountView> cards = resolveCards(cardNumbers);
+
+        CardRepository.CardAccountView source = cards.get(cardSend);
+        if (source == null || !source.getAccountId().equals(acc.getAccountId())) {
+            throw new IllegalArgumentException("Thẻ gửi không thuộc tài khoản của bạn");
+        }
+        Long senderId = acc.getAccountId();
+
+        BulkTransferResultDTO result = new BulkTransferResultDTO(cardSend);
+        List<PendingLine> pending = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            BulkTransferLineDTO line = lines.get(i);
+            String cardReceipt = line == null ? null : line.getCardReceipt();
+            BigDecimal amount = line == null ? null : line.getAmount();
+            String error = validate(cardReceipt, amount, cards.get(cardReceipt), senderId);
+            BulkTransferLineResultDTO lineResult = new BulkTransferLineResultDTO(i + 1, cardReceipt, amount,
+                    error == null ? STATUS_SUCCESS : STATUS_FAILED, error);
+            result.getLines().add(lineResult);
+            if (error == null) {
+                pending.add(new PendingLine(lineResult, cards.get(cardReceipt).getAccountId(), Money.toMinor(amount)));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<BigDecimal> amounts = new ArrayList<>(pending.size());
+            pending.forEach(line -> amounts.add(line.result.getAmount()));
+            TransferLimitService.Reservation reservation = transferLimitService.reserve(senderId, acc.getLevel(), amounts);
+            try {
+                if (ledgerSequencer.isEnabled()) {
+                    applyThroughSequencer(acc, cardSend, pending);
+                } else {
+                    applyBatch(acc, cardSend, pending);
+                }
+            } catch (RuntimeException e) {
+                transferLimitService.release(reservation);
+                throw e;
+            }
+            // Dòng thất bại thì trả lại hạn mức của dòng đó; dòng UNKNOWN vẫn giữ
+            for (PendingLine line : pending) {
+                if (STATUS_FAILED.equals(line.result.getStatus())) {
+                    transferLimitService.release(reservation, line.result.getAmount());
+                }
+            }
+        }
+
+        long totalDebited = 0;
+        for (PendingLine line : pending) {
+            if (STATUS_SUCCESS.equals(line.result.getStatus())) {
+                totalDebited = Math.addExact(totalDebited, line.amountMinor);
+            }
+        }
+        for (BulkTransferLineResultDTO lineResult : result.getLines()) {
+            if (STATUS_SUCCESS.equals(lineResult.getStatus())) {
+                result.setSucceeded(result.getSucceeded() + 1);
+            } else if (STATUS_UNKNOWN.equals(lineResult.getStatus())) {
+                result.setUnknown(result.getUnknown() + 1);
+            } else {
+                result.setFailed(result.getFailed() + 1);
+            }
+        }
+        result.setTotalDebited(Money.toBigDecimal(totalDebited));
+        return result;
+    }
+
+    private Map<String, CardRepository.CardAccountView> resolveCards(Set<String> cardNumbers) {
+        Map<String, CardRepository.CardAccountView> cards = new HashMap<>();
+        List<String> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+        for (String cardNumber : cardNumbers) {
+            chunk.add(cardNumber);
+            if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+                cardRepository.findAccountsByCardNumbers(chunk).forEach(view -> cards.put(view.getCardNumber(), view));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            cardRepository.findAccountsByCardNumbers(chunk).forEach(view -> cards.put(view.getCardNumber(), view));
+        }
+        return cards;
+    }
+
+    private String validate(String cardReceipt, BigDecimal amount, CardRepository.CardAccountView receiver, Long senderId) {
+        if (amount == null || amount.signum() <= 0) {
+            return "Số tiền chuyển phải lớn hơn 0";
+        }
+        if (!Money.hasMinorPrecision(amount) || amount.compareTo(MAX_AMOUNT) > 0) {
+            return "Số tiền không hợp lệ";
+        }
+        if (receiver == null) {
+            return "Thẻ nhận không tồn tại";
+        }
+        if (receiver.getAccountId().equals(senderId)) {
+            return "Không được tự chuyển vào chính thẻ của mình";
+        }
+        if (receiver.getBalanceAccountId() == null) {
+            return "Tài khoản nhận chưa có số dư";
+        }
+        return null;
+    }
+
+    private void applyBatch(Account acc, String cardSend, List<PendingLine> pending) {
+        Long senderId = acc.getAccountId();
+        // Cộng dồn bằng số nguyên (phần trăm đơn vị tiền), chỉ đổi sang BigDecimal khi ghi xuống DB
+        long total = 0;
+        TreeMap<Long, long[]> credits = new TreeMap<>();
+        for (PendingLine line : pending) {
+            total = Math.addExact(total, line.amountMinor);
+            long[] credit = credits.computeIfAbsent(line.receiverId, id -> new long[1]);
+            credit[0] = Math.addExact(credit[0], line.amountMinor);
+        }
+        BigDecimal debitTotal = Money.toBigDecimal(total);
+
+        Boolean applied = retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+            creditAll(credits.headMap(senderId));
+            if (!balanceService.debit(senderId, debitTotal)) {
+                status.setRollbackOnly();
+                return false;
+            }
+            creditAll(credits.tailMap(senderId, false));
+            insertTransactions(acc, cardSend, pending);
+            List<LedgerJournal.Leg> legs = new ArrayList<>(pending.size() * 2);
+            for (PendingLine line : pending) {
+                legs.addAll(ledgerJournal.transferLegs(senderId, line.receiverId, line.result.getAmount(),
+                        cardSend + "->" + line.result.getCardReceipt()));
+            }
+            ledgerJournal.append(legs);
+            return true;
+        }), senderId);
+
+        if (!Boolean.TRUE.equals(applied)) {
+            for (PendingLine line : pending) {
+                line.result.setStatus(STATUS_FAILED);
+                line.result.setMessage("Số dư không đủ để thực hiện giao dịch");
+            }
+        }
+    }
+
+    private void creditAll(Map<Long, long[]> credits) {
+        if (credits.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>(credits.entrySet());
+        int[][] counts = jdbcTemplate.batchUpdate(CREDIT_SQL, entries, jdbcBatchSize, (ps, entry) -> {
+            ps.setBigDecimal(1, Money.toBigDecimal(entry.getValue()[0]));
+            ps.setLong(2, entry.getKey());
+        });
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // Dòng Balance bị xóa giữa lúc kiểm tra và ghi: hủy toàn bộ lô
+                if (count == 0) {
+                    throw new IllegalStateException("Tài khoản nhận chưa có số dư");
+                }
+            }
+        }
+    }
+
+    private void insertTransactions(Account acc, String cardSend, List<PendingLine> pending) {
+        Date today = Date.valueOf(LocalDate.now());
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, pending, jdbcBatchSize, (ps, line) -> {
+            ps.setDate(1, today);
+            ps.setBigDecimal(2, line.result.getAmount());
+            ps.setString(3, "TRANSFER");
+            ps.setString(4, STATUS_SUCCESS);
+            ps.setString(5, cardSend);
+            ps.setString(6, line.result.getCardReceipt());
+            ps.setLong(7, acc.getAccountId());
+        });
+    }
+
+    private void applyThroughSequencer(Account acc, String cardSend, List<PendingLine> pending) {
+        // Sequencer là nơi ghi số dư duy nhất, nó tự gom các lệnh thành batch
+        for (PendingLine line : pending) {
+            BigDecimal amount = line.result.getAmount();
+            Transaction record = new Transaction(LocalDate.now(), amount, "TRANSFER", STATUS_SUCCESS,
+                    cardSend, line.result.getCardReceipt(), acc);
+            try {
+                List<LedgerJournal.Leg> legs = ledgerJournal.transferLegs(acc.getAccountId(), line.receiverId, amount,
+                        cardSend + "->" + line.result.getCardReceipt());
+                if (!ledgerSequencer.transfer(acc.getAccountId(), line.receiverId, amount, record, legs)) {
+                    line.result.setStatus(STATUS_FAILED);
+                    line.result.setMessage("Số dư không đủ để thực hiện giao dịch");
+                }
+            } catch (LedgerSequencer.OutcomeUnknownException e) {
+                line.result.setStatus(STATUS_UNKNOWN);
+                line.result.setMessage(e.getMessage());
+            } catch (RuntimeException e) {
+                line.result.setStatus(STATUS_FAILED);
+                line.result.setMessage(e.getMessage());
+            }
+        }
+    }
+
+    private static final class PendingLine {
+        private final BulkTransferLineResultDTO result;
+        private final Long receiverId;
+        private final long amountMinor;
+
+        PendingLine(BulkTransferLineResultDTO result, Long receiverId, long amountMinor) {
+            this.result = result;
+            this.receiverId = receiverId;
+            this.amountMinor = amountMinor;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.banking.Service;
+
+import com.banking.Repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Card Account Resolver
+ *
+ * Resolves a card number to the id of the account owning it without going
+ * to the database on every transfer. Resolved numbers are kept in a bounded
+ * LRU map; a card never changes owner, so an entry stays valid until the
+ * card is deleted.
+ *
+ * A Bloom filter of every issued card number sits in front of the map, so
+ * a mistyped or unknown number is rejected without a query. The filter is
+ * loaded from the Card table at startup and rebuilt periodically, because
+ * deleted numbers cannot be removed from it. Until it is loaded every
+ * lookup falls through to the database.
+ *
+ * The filter only learns about cards created through this instance, so a
+ * card issued on another instance is reported as nonexistent here until the
+ * next rebuild. It is therefore off by default
+ * (app.card-cache.bloom-enabled=false); turn it on only when a single
+ * instance issues cards.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class CardAccountResolver {
+
+    private final CardRepository cardRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean bloomEnabled;
+
+    private final long expectedCards;
+
+    private final double falsePositiveRate;
+
+    private final Map<String, Long> cache;
+
+    // Tăng mỗi khi xóa thẻ: kết quả đọc DB từ trước lần xóa không được đưa vào cache
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bloomRejections = new LongAdder();
+    private final LongAdder bloomFalsePositives = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile BloomFilter filter;
+
+    // Bộ lọc đang được dựng lại; thẻ tạo trong lúc quét bảng được thêm vào cả hai
+    private volatile BloomFilter rebuilding;
+
+    public CardAccountResolver(CardRepository cardRepository, JdbcTemplate jdbcTemplate,
+                               @Value("${app.card-cache.max-size:100000}") int maxSize,
+                               @Value("${app.card-cache.bloom-enabled:false}") boolean bloomEnabled,
+                               @Value("${app.card-cache.bloom-expected-cards:1000000}") long expectedCards,
+                               @Value("${app.card-cache.bloom-false-positive-rate:0.01}") double falsePositiveRate) {
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloomEnabled = bloomEnabled;
+        this.expectedCards = Math.max(1, expectedCards);
+        this.falsePositiveRate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        int maxEntries = Math.max(1, maxSize);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Tìm account_id của chủ thẻ
+     *
+     * @param cardNumber The card number
+     * @return The owning account id, or null if no such card exists
+     */
+    public Long resolve(String cardNumber) {
+        if (cardNumber == null) {
+            return null;
+        }
+        Long cached = cache.get(cardNumber);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(cardNumber)) {
+            bloomRejections.increment();
+            return null;
+        }
+        misses.increment();
+        long generation = invalidations.get();
+        Long accountId = cardRepository.findAccountIdByCardNumber(cardNumber).orElse(null);
+        if (accountId == null) {
+            if (current != null) {
+                bloomFalsePositives.increment();
+            }
+            return null;
+        }
+        if (invalidations.get() == generation) {
+            cache.put(cardNumber, accountId);
+        }
+        return accountId;
+    }
+
+    /**
+     * Ghi nhận thẻ vừa phát hành vào bộ lọc
+     */
+    public void register(String cardNumber) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Chỉ thêm sau khi commit, khi lần quét bảng Card tiếp theo chắc chắn thấy thẻ
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addToFilters(cardNumber);
+                }
+            });
+        } else {
+            addToFilters(cardNumber);
+        }
+    }
+
+    private void addToFilters(String cardNumber) {
+        // Đọc rebuilding trước filter: nếu lần dựng lại vừa xong thì filter đã là bộ lọc mới
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(cardNumber);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(cardNumber);
+        }
+    }
+
+    /**
+     * Bỏ thẻ đã xóa khỏi cache
+     */
+    public void evict(String cardNumber) {
+        invalidations.incrementAndGet();
+        cache.remove(cardNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Lượt đọc giữa lúc xóa và lúc commit vẫn thấy thẻ, nên xóa lại sau khi commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidations.incrementAndGet();
+                    cache.remove(cardNumber);
+                }
+            });
+        }
+    }
+
+    /**
+     * Nạp lại bộ lọc từ bảng Card
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.card-cache.bloom-rebuild-interval-ms:86400000}",
+               initialDelayString = "${app.card-cache.bloom-rebuild-interval-ms:86400000}")
+    public synchronized void rebuildFilter() {
+        if (!bloomEnabled) {
+            return;
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Card", Long.class);
+        // Chừa chỗ cho số thẻ phát hành thêm trước lần dựng lại tiếp theo
+        long capacity = Math.max(expectedCards, (count == null ? 0 : count) * 2);
+        BloomFilter next = new BloomFilter(capacity, falsePositiveRate);
+        rebuilding = next;
+        try {
+            jdbcTemplate.query("SELECT card_number FROM Card", rs -> {
+                String cardNumber = rs.getString(1);
+                if (cardNumber != null) {
+                    next.put(cardNumber);
+                }
+            });
+            filter = next;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    /**
+     * Cache and filter counters
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("bloomRejections", bloomRejections.sum());
+        stats.put("bloomFalsePositives", bloomFalsePositives.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("size", (long) cache.size());
+        BloomFilter current = filter;
+        stats.put("bloomBits", current == null ? 0L : current.bitSize());
+        return stats;
+    }
+
+    /**
+     * Bloom filter over card numbers. Bits are set with CAS, so puts and
+     * lookups need no lock.
+     */
+    static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bitSize;
+        private final int hashCount;
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitSize = wordCount * 64L;
+            this.hashCount = (int) Math.max(1, Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitSize);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitSize);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long bitSize() {
+            return bitSize;
+        }
+
+        // FNV-1a 64 bit
+        private static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        // Bước trộn cuối của SplitMix64
+        private static long mix(long h) {
+            h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+            h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+            return h ^ (h >>> 31);
+        }
+    }
+}
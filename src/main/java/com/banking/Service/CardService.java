@@ -1,8 +1,6 @@
 package com.banking.Service;
 
 
-import com.banking.Entity.Card;
-import com.banking.Repository.CardRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -10,11 +8,13 @@ import org.springframework.stereotype.Service;
 public class CardService {
 
     @Autowired
-    private CardRepository cardRepository;
+    private CardAccountResolver cardAccountResolver;
 
     public Long getAccountIdByCardNumber(String cardSend){
-        Card cardSendEntity = cardRepository.findByCardNumber(cardSend)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy thẻ gửi"));
-        return cardSendEntity.getAccount().getAccountId();
+        Long accountId = cardAccountResolver.resolve(cardSend);
+        if (accountId == null) {
+            throw new RuntimeException("Không tìm thấy thẻ gửi");
+        }
+        return accountId;
     }
 }
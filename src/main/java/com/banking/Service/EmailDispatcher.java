@@ -0,0 +1,322 @@
+package com.banking.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Email Dispatcher
+ *
+ * Sends email off the caller's thread. {@link #dispatch} puts a prepared
+ * message on a bounded queue and returns at once, or returns false when
+ * the queue stays full for offer-timeout-ms so the caller can decide what
+ * to do instead of blocking a request thread on SMTP.
+ *
+ * Each worker keeps one SMTP transport open and sends everything it drains
+ * from the queue, up to batch-size messages, over that connection instead
+ * of one SMTP conversation per message. The transport is reopened when the
+ * server has dropped it and closed after idle-timeout-ms without mail.
+ * The outcome of every message is reported to its {@link DeliveryCallback}
+ * on the worker thread.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EmailDispatcher {
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @Value("${app.email.dispatch.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    @Value("${app.email.dispatch.workers:2}")
+    private int workers = 2;
+
+    // Số message tối đa gửi liên tiếp trên một kết nối trước khi quay lại lấy từ hàng đợi
+    @Value("${app.email.dispatch.batch-size:50}")
+    private int batchSize = 50;
+
+    // Thời gian người gọi chờ chỗ trống khi hàng đợi đầy; 0 = từ chối ngay
+    @Value("${app.email.dispatch.offer-timeout-ms:0}")
+    private long offerTimeoutMs = 0;
+
+    // Đóng kết nối SMTP sau khoảng thời gian không có email, trước khi server tự cắt
+    @Value("${app.email.dispatch.idle-timeout-ms:30000}")
+    private long idleTimeoutMs = 30000;
+
+    @Value("${app.email.dispatch.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs = 10000;
+
+    private BlockingQueue<QueuedEmail> queue;
+    private List<Thread> workerThreads;
+    private volatile boolean running;
+
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final AtomicInteger openTransports = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder queueWaitMs = new LongAdder();
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        workerThreads = new ArrayList<>();
+        running = true;
+        for (int i = 1; i <= workers; i++) {
+            Thread thread = new Thread(new Worker(), "email-dispatcher-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        for (Thread thread : workerThreads) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workerThreads.forEach(Thread::interrupt);
+        if (!queue.isEmpty()) {
+            System.err.println("Email dispatcher stopped with " + queue.size() + " unsent email(s)");
+        }
+    }
+
+    /**
+     * Session dùng để tạo MimeMessage cho {@link #dispatch}
+     */
+    public MimeMessage createMimeMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    /**
+     * Đưa email vào hàng đợi gửi nền
+     *
+     * @return false if the queue stayed full for offer-timeout-ms or the dispatcher is stopping
+     */
+    public boolean dispatch(MimeMessage message) {
+        return dispatch(message, null);
+    }
+
+    /**
+     * Đưa email vào hàng đợi gửi nền, kết quả gửi được báo về callback
+     *
+     * @param callback Told on a worker thread whether the message was sent, or null
+     * @return false if the queue stayed full for offer-timeout-ms or the dispatcher is stopping;
+     *         the callback is not called then
+     */
+    public boolean dispatch(MimeMessage message, DeliveryCallback callback) {
+        boolean accepted;
+        try {
+            accepted = running && queue.offer(new QueuedEmail(message, callback, System.currentTimeMillis()),
+                    offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+        int depth = queue.size();
+        highWaterMark.accumulateAndGet(depth, Math::max);
+        return true;
+    }
+
+    /**
+     * Queue depth, backpressure and SMTP connection counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        long sentCount = sent.sum();
+        long failedCount = failed.sum();
+        stats.put("running", running);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueHighWaterMark", highWaterMark.get());
+        stats.put("workers", workers);
+        stats.put("busyWorkers", busyWorkers.get());
+        stats.put("openTransports", openTransports.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("sent", sentCount);
+        stats.put("failed", failedCount);
+        stats.put("rejected", rejected.sum());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (sentCount + failedCount) / batchCount);
+        stats.put("avgQueueWaitMs", sentCount + failedCount == 0 ? 0.0 : (double) queueWaitMs.sum() / (sentCount + failedCount));
+        stats.put("smtpConnectionsOpened", connectionsOpened.sum());
+        return stats;
+    }
+
+    /**
+     * Kết quả gửi của một email
+     */
+    public interface DeliveryCallback {
+
+        void onSent();
+
+        void onFailed(MessagingException error);
+    }
+
+    private record QueuedEmail(MimeMessage message, DeliveryCallback callback, long enqueuedAt) {}
+
+    /**
+     * Một luồng gửi giữ một kết nối SMTP riêng
+     */
+    private final class Worker implements Runnable {
+
+        private Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+
+        @Override
+        public void run() {
+            List<QueuedEmail> batch = new ArrayList<>(batchSize);
+            try {
+                while (running || !queue.isEmpty()) {
+                    QueuedEmail first = queue.poll(Math.min(idleTimeoutMs, 1000), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        closeIfIdle();
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    busyWorkers.incrementAndGet();
+                    try {
+                        send(batch);
+                    } finally {
+                        busyWorkers.decrementAndGet();
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void send(List<QueuedEmail> batch) {
+            batches.increment();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < batch.size(); i++) {
+                QueuedEmail email = batch.get(i);
+                queueWaitMs.add(now - email.enqueuedAt());
+                try {
+                    sendOne(email);
+                } catch (SendFailedException e) {
+                    // Người nhận bị từ chối: kết nối vẫn dùng được
+                    fail(email, e);
+                } catch (MessagingException e) {
+                    // Server có thể đã đóng kết nối cũ: mở lại một lần rồi gửi lại
+                    close();
+                    try {
+                        sendOne(email);
+                    } catch (MessagingException retry) {
+                        close();
+                        // Kết nối mới cũng lỗi: server không dùng được, bỏ phần còn lại của lô
+                        for (int j = i; j < batch.size(); j++) {
+                            fail(batch.get(j), retry);
+                        }
+                        return;
+                    }
+                }
+            }
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private void sendOne(QueuedEmail email) throws MessagingException {
+            MimeMessage message = email.message();
+            if (transport == null || !transport.isConnected()) {
+                close();
+                Transport opened = mailSender.getSession().getTransport(
+                        mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+                String username = mailSender.getUsername();
+                opened.connect(mailSender.getHost(), mailSender.getPort(), username,
+                        username != null ? mailSender.getPassword() : null);
+                transport = opened;
+                openTransports.incrementAndGet();
+                connectionsOpened.increment();
+            }
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            sent.increment();
+            if (email.callback() != null) {
+                report(() -> email.callback().onSent());
+            }
+        }
+
+        private void fail(QueuedEmail email, MessagingException e) {
+            failed.increment();
+            if (email.callback() != null) {
+                report(() -> email.callback().onFailed(e));
+            } else {
+                System.err.println("❌ Error sending email: " + e.getMessage());
+            }
+        }
+
+        private void report(Runnable callback) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                // Lỗi của callback không được làm dừng luồng gửi
+                System.err.println("Email delivery callback failed: " + e.getMessage());
+            }
+        }
+
+        private void closeIfIdle() {
+            if (transport != null && System.currentTimeMillis() - lastUsed >= idleTimeoutMs) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                // Kết nối đã hỏng, không cần đóng lịch sự
+            }
+            transport = null;
+            openTransports.decrementAndGet();
+        }
+    }
+}
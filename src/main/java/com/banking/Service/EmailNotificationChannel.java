@@ -0,0 +1,43 @@
+package com.banking.Service;
+
+import com.banking.Entity.PaymentRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Email notification channel
+ *
+ * Stores the email through {@link EmailService}; sending and retries are
+ * left to the email dispatcher and retry store, so a delivery counts as
+ * sent once the email is stored.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EmailNotificationChannel implements NotificationChannel {
+
+    @Autowired
+    private EmailService emailService;
+
+    @Override
+    public String getName() {
+        return "email";
+    }
+
+    @Override
+    public String getRecipient(PaymentRequest paymentRequest) {
+        String email = paymentRequest.getAccount().getEmail();
+        return email == null || email.isBlank() ? null : email;
+    }
+
+    @Override
+    public void deliver(PaymentRequest paymentRequest, Event event, String reason) {
+        switch (event) {
+            case PAYMENT_REQUEST -> emailService.deliverPaymentRequestEmail(paymentRequest);
+            case PAYMENT_SUCCESS -> emailService.deliverPaymentConfirmationEmail(paymentRequest);
+            case PAYMENT_FAILED -> emailService.deliverPaymentFailureEmail(paymentRequest, reason);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.banking.Service;
+
+import com.banking.Entity.OutgoingEmail;
+import com.banking.Repository.OutgoingEmailRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Email Retry Service
+ *
+ * Durable store in front of {@link EmailDispatcher}. {@link #enqueue} writes
+ * the email as an outgoing_email row in its own short transaction (one
+ * indexed insert, no SMTP) and hands it to the dispatcher at once. The row
+ * is leased while it sits in the send queue; a successful send marks it
+ * SENT, a failed one schedules the next attempt after an exponential
+ * backoff with jitter, and after max-attempts it becomes DEAD until an
+ * admin replays it. A scheduler sends the emails that are due again, and
+ * emails whose lease ran out because the node stopped before sending.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class EmailRetryService {
+
+    @Autowired
+    private OutgoingEmailRepository outgoingEmailRepository;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.email.from}")
+    private String fromEmail;
+
+    // Tắt trên node không gửi lại email; test gọi retryBatch trực tiếp
+    @Value("${app.email.retry.enabled:true}")
+    private boolean retryEnabled = true;
+
+    @Value("${app.email.retry.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${app.email.retry.initial-backoff-ms:30000}")
+    private long initialBackoffMs = 30000;
+
+    @Value("${app.email.retry.max-backoff-ms:3600000}")
+    private long maxBackoffMs = 3600000;
+
+    // Thời gian giữ chỗ email đang trong hàng đợi gửi; hết hạn thì scheduler gửi lại
+    @Value("${app.email.retry.lease-ms:300000}")
+    private long leaseMs = 300000;
+
+    @Value("${app.email.retry.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${app.email.retry.retention-hours:72}")
+    private long retentionHours = 72;
+
+    // Ghi email trong transaction riêng: email không mất khi transaction của người gọi rollback,
+    // và đã commit trước khi luồng gửi cập nhật trạng thái
+    private TransactionTemplate requiresNew;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private volatile String lastError;
+
+    @PostConstruct
+    void init() {
+        requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Lưu email và đưa vào hàng đợi gửi
+     *
+     * @return the stored email
+     * @throws org.springframework.dao.DataAccessException if the email cannot be stored
+     */
+    public OutgoingEmail enqueue(String to, String subject, String body, boolean html) {
+        LocalDateTime now = LocalDateTime.now();
+        OutgoingEmail email = requiresNew.execute(status -> outgoingEmailRepository.save(
+                new OutgoingEmail(to, subject, body, html, now, now.plusNanos(leaseMs * 1_000_000))));
+        enqueued.increment();
+        if (!dispatch(email)) {
+            // Hàng đợi gửi đầy: email đã được lưu, scheduler gửi ở lần quét sau
+            outgoingEmailRepository.release(email.getEmailId(), LocalDateTime.now());
+        }
+        return email;
+    }
+
+    /**
+     * Gửi lại các email đến hạn, từng lô cho đến khi hết
+     */
+    @Scheduled(fixedDelayString = "${app.email.retry.poll-interval-ms:10000}",
+               initialDelayString = "${app.email.retry.poll-interval-ms:10000}")
+    public void retryDue() {
+        if (!retryEnabled) {
+            return;
+        }
+        int dispatched;
+        do {
+            dispatched = retryBatch();
+        } while (dispatched == batchSize);
+    }
+
+    /**
+     * Claim and dispatch one batch of due emails
+     *
+     * @return number of emails handed to the dispatcher
+     */
+    int retryBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseUntil = now.plusNanos(leaseMs * 1_000_000);
+        int dispatched = 0;
+        for (OutgoingEmail email : outgoingEmailRepository.findDue(now, PageRequest.of(0, batchSize))) {
+            if (outgoingEmailRepository.claim(email.getEmailId(), now, leaseUntil) == 0) {
+                continue;
+            }
+            if (!dispatch(email)) {
+                // Hàng đợi gửi đầy: trả lại phần còn lại cho lần quét sau
+                outgoingEmailRepository.release(email.getEmailId(), now);
+                break;
+            }
+            retried.increment();
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    /**
+     * Đưa email DEAD về PENDING để gửi lại ngay
+     *
+     * @return number of emails revived
+     */
+    public int replayDead(int limit) {
+        List<Long> ids = outgoingEmailRepository.findIdsByStatus(OutgoingEmail.DEAD, PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int revived = outgoingEmailRepository.revive(ids, LocalDateTime.now());
+        replayed.add(revived);
+        return revived;
+    }
+
+    /**
+     * Xóa email đã gửi quá thời gian lưu
+     *
+     * @return number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${app.email.retry.purge-interval-ms:3600000}",
+               initialDelayString = "${app.email.retry.purge-interval-ms:3600000}")
+    public int purgeSent() {
+        int deleted = outgoingEmailRepository.deleteSentBefore(LocalDateTime.now().minusHours(retentionHours));
+        purged.add(deleted);
+        return deleted;
+    }
+
+    /**
+     * Retry store counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("retryEnabled", retryEnabled);
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("pending", outgoingEmailRepository.countByStatus(OutgoingEmail.PENDING));
+        stats.put("dead", outgoingEmailRepository.countByStatus(OutgoingEmail.DEAD));
+        stats.put("enqueued", enqueued.sum());
+        stats.put("sent", sent.sum());
+        stats.put("failedAttempts", failedAttempts.sum());
+        stats.put("retried", retried.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("purged", purged.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * Thời gian chờ trước lần thử tiếp theo: initial x 2^(attempt-1), tối đa max-backoff,
+     * lấy ngẫu nhiên trong nửa trên để các email lỗi cùng lúc không thử lại cùng lúc
+     *
+     * @param attempt Number of failed attempts so far, from 1
+     */
+    long backoffMs(int attempt) {
+        long delay = initialBackoffMs << Math.min(attempt - 1, 30);
+        if (delay < 0 || delay > maxBackoffMs) {
+            delay = maxBackoffMs;
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    private boolean dispatch(OutgoingEmail email) {
+        Long emailId = email.getEmailId();
+        MimeMessage message;
+        try {
+            message = build(email);
+        } catch (MessagingException e) {
+            // Địa chỉ hoặc nội dung không hợp lệ: gửi lại cũng không được
+            fail(emailId, maxAttempts, e);
+            return true;
+        }
+        int attempt = email.getAttempts() + 1;
+        return emailDispatcher.dispatch(message, new EmailDispatcher.DeliveryCallback() {
+            @Override
+            public void onSent() {
+                outgoingEmailRepository.markSent(emailId, LocalDateTime.now());
+                sent.increment();
+            }
+
+            @Override
+            public void onFailed(MessagingException error) {
+                fail(emailId, attempt, error);
+            }
+        });
+    }
+
+    private void fail(Long emailId, int attempt, MessagingException error) {
+        String reason = String.valueOf(error.getMessage());
+        reason = reason.length() > 500 ? reason.substring(0, 500) : reason;
+        lastError = reason;
+        if (attempt >= maxAttempts) {
+            outgoingEmailRepository.markDead(emailId, reason);
+            deadLettered.increment();
+            System.err.println("❌ Email " + emailId + " moved to DEAD after " + attempt + " attempt(s): " + reason);
+            return;
+        }
+        outgoingEmailRepository.recordFailure(emailId, reason, LocalDateTime.now().plusNanos(backoffMs(attempt) * 1_000_000));
+        failedAttempts.increment();
+    }
+
+    private MimeMessage build(OutgoingEmail email) throws MessagingException {
+        MimeMessage message = emailDispatcher.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, email.isHtml(), "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), email.isHtml());
+        return message;
+    }
+}
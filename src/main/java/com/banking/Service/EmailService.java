@@ -3,26 +3,25 @@ package com.banking.Service;
 import com.banking.Entity.PaymentRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import java.text.NumberFormat;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Email Service
  * 
  * Handles all email-related operations including payment notifications,
  * confirmation emails, and system notifications.
- * Uses Thymeleaf templates for HTML email generation.
+ * Uses Thymeleaf templates for HTML email generation, rendered by
+ * {@link EmailTemplateRenderer}. Messages are stored
+ * by {@link EmailRetryService} and sent in the background, so callers never
+ * wait on the SMTP server and a failed send is retried instead of lost.
  * 
  * @author Banking System Team
  * @version 1.0
@@ -32,13 +31,10 @@ import java.util.Locale;
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailRetryService emailRetryService;
 
     @Autowired
-    private TemplateEngine templateEngine;
-
-    @Value("${app.email.from}")
-    private String fromEmail;
+    private EmailTemplateRenderer templateRenderer;
 
     @Value("${app.email.admin}")
     private String adminEmail;
@@ -48,40 +44,72 @@ public class EmailService {
      */
     public void sendPaymentConfirmationEmail(PaymentRequest paymentRequest) {
         try {
-            String customerEmail = paymentRequest.getAccount().getEmail();
-            String subject = "Xác nhận thanh toán thành công - Banking System";
-            
-            // Tạo nội dung email HTML
-            String htmlContent = createPaymentConfirmationHtml(paymentRequest);
-            
-            sendHtmlEmail(customerEmail, subject, htmlContent);
-            
-            System.out.println("📧 Payment confirmation email sent to: " + customerEmail);
-            
+            deliverPaymentConfirmationEmail(paymentRequest);
         } catch (Exception e) {
             System.err.println("❌ Error sending payment confirmation email: " + e.getMessage());
         }
     }
 
+    /**
+     * Lưu email xác nhận thanh toán để gửi, lỗi được ném ra cho người gọi
+     *
+     * @throws org.springframework.dao.DataAccessException if the email cannot be stored
+     */
+    public void deliverPaymentConfirmationEmail(PaymentRequest paymentRequest) {
+        String customerEmail = paymentRequest.getAccount().getEmail();
+        String subject = "Xác nhận thanh toán thành công - Banking System";
+
+        // Tạo nội dung email HTML
+        String htmlContent = createPaymentConfirmationHtml(paymentRequest);
+
+        sendHtmlEmail(customerEmail, subject, htmlContent);
+
+        System.out.println("📧 Payment confirmation email queued for: " + customerEmail);
+    }
+
+    /**
+     * Lưu email thông báo payment request mới để gửi, lỗi được ném ra cho người gọi
+     *
+     * @throws org.springframework.dao.DataAccessException if the email cannot be stored
+     */
+    public void deliverPaymentRequestEmail(PaymentRequest paymentRequest) {
+        String customerEmail = paymentRequest.getAccount().getEmail();
+        String subject = "Yêu cầu thanh toán mới - Banking System";
+
+        String htmlContent = createPaymentRequestHtml(paymentRequest);
+
+        sendHtmlEmail(customerEmail, subject, htmlContent);
+
+        System.out.println("📧 Payment request notification queued for: " + customerEmail);
+    }
+
     /**
      * Gửi email thông báo thanh toán thất bại
      */
     public void sendPaymentFailureEmail(PaymentRequest paymentRequest, String reason) {
         try {
-            String customerEmail = paymentRequest.getAccount().getEmail();
-            String subject = "Thông báo thanh toán thất bại - Banking System";
-            
-            String htmlContent = createPaymentFailureHtml(paymentRequest, reason);
-            
-            sendHtmlEmail(customerEmail, subject, htmlContent);
-            
-            System.out.println("📧 Payment failure email sent to: " + customerEmail);
-            
+            deliverPaymentFailureEmail(paymentRequest, reason);
         } catch (Exception e) {
             System.err.println("❌ Error sending payment failure email: " + e.getMessage());
         }
     }
 
+    /**
+     * Lưu email thông báo thanh toán thất bại để gửi, lỗi được ném ra cho người gọi
+     *
+     * @throws org.springframework.dao.DataAccessException if the email cannot be stored
+     */
+    public void deliverPaymentFailureEmail(PaymentRequest paymentRequest, String reason) {
+        String customerEmail = paymentRequest.getAccount().getEmail();
+        String subject = "Thông báo thanh toán thất bại - Banking System";
+
+        String htmlContent = createPaymentFailureHtml(paymentRequest, reason);
+
+        sendHtmlEmail(customerEmail, subject, htmlContent);
+
+        System.out.println("📧 Payment failure email queued for: " + customerEmail);
+    }
+
     /**
      * Gửi email thông báo cho admin
      */
@@ -93,7 +121,7 @@ public class EmailService {
             
             sendHtmlEmail(adminEmail, subject, htmlContent);
             
-            System.out.println("📧 Admin notification email sent to: " + adminEmail);
+            System.out.println("📧 Admin notification email queued for: " + adminEmail);
             
         } catch (Exception e) {
             System.err.println("❌ Error sending admin notification email: " + e.getMessage());
@@ -101,18 +129,34 @@ public class EmailService {
     }
 
     /**
-     * Gửi email HTML
+     * Gửi email tổng hợp thông báo admin của một cửa sổ thời gian
+     *
+     * @param groups Payments grouped by status, most urgent first
+     * @param total Number of payments in the digest
      */
-    public void sendHtmlEmail(String to, String subject, String htmlContent) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-        
-        helper.setFrom(fromEmail);
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
-        
-        mailSender.send(message);
+    public void sendAdminDigestEmail(List<AdminNotificationDigest.StatusGroup> groups, int total,
+                                     LocalDateTime from, LocalDateTime to) {
+        try {
+            String subject = "Tổng hợp thanh toán (" + total + " giao dịch) - Banking System Admin";
+            
+            String htmlContent = createAdminDigestHtml(groups, total, from, to);
+            
+            sendHtmlEmail(adminEmail, subject, htmlContent);
+            
+            System.out.println("📧 Admin digest email (" + total + " payments) queued for: " + adminEmail);
+            
+        } catch (Exception e) {
+            System.err.println("❌ Error sending admin digest email: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lưu email HTML để gửi nền: trả về ngay, SMTP và các lần gửi lại chạy trên luồng khác
+     *
+     * @throws org.springframework.dao.DataAccessException if the email cannot be stored
+     */
+    public void sendHtmlEmail(String to, String subject, String htmlContent) {
+        emailRetryService.enqueue(to, subject, htmlContent, true);
     }
 
     /**
@@ -145,11 +189,24 @@ public class EmailService {
         context.setVariable("paymentId", paymentRequest.getPaymentId());
         context.setVariable("accountId", paymentRequest.getAccount().getAccountId());
         context.setVariable("customerName", paymentRequest.getAccount().getCustomerName());
-        context.setVariable("amount", formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
+        context.setVariable("amount", templateRenderer.formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
         context.setVariable("currency", paymentRequest.getCurrency());
-        context.setVariable("date", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        context.setVariable("date", templateRenderer.formatDateTime(LocalDateTime.now()));
+        
+        return templateRenderer.render(EmailTemplateRenderer.PAYMENT_CONFIRMATION, context);
+    }
+
+    /**
+     * Tạo HTML cho email payment request
+     */
+    private String createPaymentRequestHtml(PaymentRequest paymentRequest) {
+        Context context = new Context();
+        context.setVariable("customerName", paymentRequest.getAccount().getCustomerName());
+        context.setVariable("amount", templateRenderer.formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
+        context.setVariable("description", paymentRequest.getDescription());
+        context.setVariable("date", templateRenderer.formatDateTime(paymentRequest.getCreatedAt()));
         
-        return templateEngine.process("email/payment-confirmation", context);
+        return templateRenderer.render(EmailTemplateRenderer.PAYMENT_REQUEST, context);
     }
 
     /**
@@ -160,12 +217,12 @@ public class EmailService {
         context.setVariable("paymentId", paymentRequest.getPaymentId());
         context.setVariable("accountId", paymentRequest.getAccount().getAccountId());
         context.setVariable("customerName", paymentRequest.getAccount().getCustomerName());
-        context.setVariable("amount", formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
+        context.setVariable("amount", templateRenderer.formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
         context.setVariable("currency", paymentRequest.getCurrency());
         context.setVariable("reason", reason);
-        context.setVariable("date", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        context.setVariable("date", templateRenderer.formatDateTime(LocalDateTime.now()));
         
-        return templateEngine.process("email/payment-failure", context);
+        return templateRenderer.render(EmailTemplateRenderer.PAYMENT_FAILURE, context);
     }
 
     /**
@@ -177,20 +234,49 @@ public class EmailService {
         context.setVariable("accountId", paymentRequest.getAccount().getAccountId());
         context.setVariable("customerName", paymentRequest.getAccount().getCustomerName());
         context.setVariable("customerEmail", paymentRequest.getAccount().getEmail());
-        context.setVariable("amount", formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
+        context.setVariable("amount", templateRenderer.formatCurrency(paymentRequest.getAmount(), paymentRequest.getCurrency()));
         context.setVariable("currency", paymentRequest.getCurrency());
         context.setVariable("status", status);
-        context.setVariable("date", LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+        context.setVariable("date", templateRenderer.formatDateTime(LocalDateTime.now()));
         
-        return templateEngine.process("email/admin-notification", context);
+        return templateRenderer.render(EmailTemplateRenderer.ADMIN_NOTIFICATION, context);
     }
 
     /**
-     * Format tiền tệ
+     * Tạo HTML cho email tổng hợp thông báo admin
      */
-    private String formatCurrency(double amount, String currency) {
-        NumberFormat formatter = NumberFormat.getNumberInstance(Locale.US);
-        return formatter.format(amount) + " " + currency;
+    private String createAdminDigestHtml(List<AdminNotificationDigest.StatusGroup> groups, int total,
+                                         LocalDateTime from, LocalDateTime to) {
+        List<Map<String, Object>> statusGroups = new ArrayList<>();
+        for (AdminNotificationDigest.StatusGroup group : groups) {
+            List<Map<String, Object>> payments = new ArrayList<>();
+            for (AdminNotificationDigest.Event event : group.getEvents()) {
+                Map<String, Object> payment = new LinkedHashMap<>();
+                payment.put("paymentId", event.paymentId());
+                payment.put("accountId", event.accountId());
+                payment.put("customerName", event.customerName());
+                payment.put("amount", templateRenderer.formatCurrency(event.amount()));
+                payment.put("time", templateRenderer.formatDateTime(event.at()));
+                payments.add(payment);
+            }
+            Map<String, Object> statusGroup = new LinkedHashMap<>();
+            statusGroup.put("status", group.getStatus());
+            statusGroup.put("count", group.getCount());
+            statusGroup.put("totals", group.getTotals().values().stream()
+                    .map(templateRenderer::formatCurrency)
+                    .collect(Collectors.joining(" + ")));
+            statusGroup.put("payments", payments);
+            statusGroup.put("hidden", group.getHidden());
+            statusGroups.add(statusGroup);
+        }
+
+        Context context = new Context();
+        context.setVariable("total", total);
+        context.setVariable("from", templateRenderer.formatDateTime(from));
+        context.setVariable("to", templateRenderer.formatDateTime(to));
+        context.setVariable("groups", statusGroups);
+        
+        return templateRenderer.render(EmailTemplateRenderer.ADMIN_DIGEST, context);
     }
 
     /**
@@ -198,15 +284,9 @@ public class EmailService {
      */
     public void sendSimpleEmail(String to, String subject, String text) {
         try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(to);
-            message.setSubject(subject);
-            message.setText(text);
-            
-            mailSender.send(message);
+            emailRetryService.enqueue(to, subject, text, false);
             
-            System.out.println("📧 Simple email sent to: " + to);
+            System.out.println("📧 Simple email queued for: " + to);
             
         } catch (Exception e) {
             System.err.println("❌ Error sending simple email: " + e.getMessage());
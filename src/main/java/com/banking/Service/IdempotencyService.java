@@ -0,0 +1,338 @@
+package com.banking.Service;
+
+import com.banking.Entity.IdempotencyRecord;
+import com.banking.Repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency Service
+ *
+ * Makes retried POSTs safe. A request carrying an Idempotency-Key header is
+ * run at most once per key: the key is claimed in the idempotency_key table
+ * before the request runs, and the response is stored with a TTL once it
+ * completes. A retry gets the stored response back without running the
+ * request again, so balances are not touched twice.
+ *
+ * Duplicates arriving while the first request is still running wait for it
+ * instead of racing it: in-JVM duplicates wait on the first request's
+ * future, duplicates on other nodes poll the claimed row. Completed
+ * responses are also kept in a bounded in-memory LRU cache in front of
+ * the table.
+ *
+ * Keys are scoped by operation and authenticated user. Reusing a key with a
+ * different request body returns 422.
+ *
+ * While a request runs, its key is bound to the thread. Balance writes call
+ * {@link #markApplied()}, which flags the row APPLIED inside the business
+ * transaction (the ledger sequencer does the same in its flush). A failure
+ * only releases a key that is still IN_PROGRESS, and stale APPLIED rows
+ * are answered with 409 instead of being taken over. Money is therefore
+ * never moved twice, even if storing the response fails or the node dies
+ * before the response is stored.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final long POLL_INTERVAL_MS = 50;
+
+    // Key của request đang chạy trên luồng này, để các bước ghi tiền đánh dấu APPLIED
+    private static final ThreadLocal<String> CURRENT_KEY = new ThreadLocal<>();
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours = 24;
+
+    @Value("${app.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs = 10000;
+
+    @Value("${app.idempotency.stale-after-ms:300000}")
+    private long staleAfterMs = 300000;
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, CachedResponse> completed;
+
+    public IdempotencyService(@Value("${app.idempotency.cache-size:10000}") int cacheSize) {
+        int maxEntries = Math.max(1, cacheSize);
+        this.completed = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Run a request at most once per idempotency key
+     *
+     * @param scope The operation, e.g. "PAY" or "TRANSFER"
+     * @param clientKey The Idempotency-Key sent by the client; when blank the action simply runs
+     * @param fingerprint Canonical form of the request body, used to detect key reuse
+     * @param action The request; business errors should be returned as a response, not thrown
+     * @return The response of the first execution for this key
+     * @throws IllegalStateException if an earlier request with this key is still running
+     */
+    public Response execute(String scope, String clientKey, String fingerprint, Supplier<Response> action) {
+        if (clientKey == null || clientKey.isBlank()) {
+            return action.get();
+        }
+        if (clientKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key quá dài");
+        }
+        String key = sha256(scope + "\n" + currentPrincipal() + "\n" + clientKey);
+        String requestHash = sha256(fingerprint == null ? "" : fingerprint);
+
+        CachedResponse cached = completed.get(key);
+        if (cached != null && cached.expiresAt.isAfter(LocalDateTime.now())) {
+            return matching(cached.requestHash, requestHash, cached.response);
+        }
+
+        InFlight mine = new InFlight(requestHash);
+        InFlight first = inFlight.putIfAbsent(key, mine);
+        if (first != null) {
+            return matching(first.requestHash, requestHash, await(first.result));
+        }
+        try {
+            Response response = runOnce(key, requestHash, action);
+            mine.result.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Đánh dấu request đang chạy trên luồng này là đã chuyển tiền
+     *
+     * Call inside the transaction of the balance write so the mark commits
+     * or rolls back with it. Does nothing when no idempotent request is running.
+     */
+    public void markApplied() {
+        String key = CURRENT_KEY.get();
+        if (key != null) {
+            idempotencyRecordRepository.markApplied(key);
+        }
+    }
+
+    /**
+     * Key of the idempotent request running on this thread, or null
+     */
+    static String currentKey() {
+        return CURRENT_KEY.get();
+    }
+
+    /**
+     * Xóa các key đã hết hạn
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int removed = idempotencyRecordRepository.deleteExpired(now);
+        completed.values().removeIf(entry -> !entry.expiresAt.isAfter(now));
+        if (removed > 0) {
+            System.out.println("Purged " + removed + " expired idempotency key(s)");
+        }
+    }
+
+    private Response runOnce(String key, String requestHash, Supplier<Response> action) {
+        IdempotencyRecord record = acquire(key, requestHash);
+        if (IdempotencyRecord.COMPLETED.equals(record.getStatus())) {
+            Response stored = new Response(record.getResponseStatus(), record.getResponseBody());
+            remember(key, record.getRequestHash(), stored, record.getExpiresAt());
+            return matching(record.getRequestHash(), requestHash, stored);
+        }
+        if (!record.getRequestHash().equals(requestHash)) {
+            return keyReused();
+        }
+        if (IdempotencyRecord.APPLIED.equals(record.getStatus())) {
+            // Request đầu đã chuyển tiền nhưng không lưu được response: không chạy lại
+            return alreadyApplied();
+        }
+
+        Response response;
+        CURRENT_KEY.set(key);
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Chỉ giải phóng key nếu chưa có tiền nào được chuyển, để client có thể thử lại
+            if (idempotencyRecordRepository.releaseClaim(key) == 0) {
+                record.setStatus(IdempotencyRecord.COMPLETED);
+                Response applied = alreadyApplied();
+                record.setResponseStatus(applied.status());
+                record.setResponseBody(applied.body());
+                try {
+                    idempotencyRecordRepository.save(record);
+                } catch (RuntimeException saveFailure) {
+                    // Dòng vẫn là APPLIED nên sẽ không bị chạy lại
+                    System.err.println("Could not store idempotent response: " + saveFailure.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            CURRENT_KEY.remove();
+        }
+        record.setStatus(IdempotencyRecord.COMPLETED);
+        record.setResponseStatus(response.status());
+        record.setResponseBody(response.body());
+        idempotencyRecordRepository.save(record);
+        remember(key, requestHash, response, record.getExpiresAt());
+        return response;
+    }
+
+    /**
+     * Claim the key, or wait until the request that holds it completes
+     *
+     * @return An IN_PROGRESS record owned by the caller, a COMPLETED record, a stale
+     *         APPLIED record, or a record of a different request using the same key
+     */
+    private IdempotencyRecord acquire(String key, String requestHash) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMs;
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plusHours(ttlHours);
+            IdempotencyRecord claim = new IdempotencyRecord(key, requestHash, now, expiresAt);
+            try {
+                return idempotencyRecordRepository.saveAndFlush(claim);
+            } catch (DataIntegrityViolationException e) {
+                // Key đã được claim trước đó
+            }
+
+            Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(key);
+            if (existing.isPresent()) {
+                IdempotencyRecord record = existing.get();
+                if (!record.getExpiresAt().isAfter(now)) {
+                    idempotencyRecordRepository.deleteIfExpired(key, now);
+                    continue;
+                }
+                if (IdempotencyRecord.COMPLETED.equals(record.getStatus())
+                        || !record.getRequestHash().equals(requestHash)) {
+                    return record;
+                }
+                LocalDateTime staleBefore = now.minus(Duration.ofMillis(staleAfterMs));
+                if (IdempotencyRecord.APPLIED.equals(record.getStatus())
+                        && record.getCreatedAt().isBefore(staleBefore)) {
+                    return record;
+                }
+                if (idempotencyRecordRepository.takeOverStale(key, now, expiresAt, staleBefore) == 1) {
+                    record.setCreatedAt(now);
+                    record.setExpiresAt(expiresAt);
+                    return record;
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException("Yêu cầu với Idempotency-Key này đang được xử lý");
+            }
+            sleep();
+        }
+    }
+
+    private Response await(CompletableFuture<Response> result) {
+        try {
+            return result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Yêu cầu với Idempotency-Key này đang được xử lý");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Giao dịch bị gián đoạn");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void remember(String key, String requestHash, Response response, LocalDateTime expiresAt) {
+        completed.put(key, new CachedResponse(requestHash, response, expiresAt));
+    }
+
+    private Response matching(String storedHash, String requestHash, Response response) {
+        return storedHash.equals(requestHash) ? response : keyReused();
+    }
+
+    private Response keyReused() {
+        return new Response(422, "Idempotency-Key đã được dùng cho một yêu cầu khác");
+    }
+
+    private Response alreadyApplied() {
+        return new Response(409, "Yêu cầu này đã được thực hiện, vui lòng kiểm tra lịch sử giao dịch");
+    }
+
+    private String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : authentication.getName();
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Giao dịch bị gián đoạn");
+        }
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stored outcome of an idempotent request: HTTP status and body
+     */
+    public record Response(int status, String body) {
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Response> result) {
+        InFlight(String requestHash) {
+            this(requestHash, new CompletableFuture<>());
+        }
+    }
+
+    private record CachedResponse(String requestHash, Response response, LocalDateTime expiresAt) {
+    }
+}
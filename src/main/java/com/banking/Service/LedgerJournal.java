@@ -0,0 +1,141 @@
+package com.banking.Service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ledger Journal
+ *
+ * Append-only double-entry journal of every balance movement. A movement
+ * is written as legs sharing one journal id, and the legs always sum to
+ * zero: a transfer debits the sender and credits the receiver, a deposit
+ * credits the customer against the bank's cash account, and a payment
+ * debits the customer against the payment clearing account.
+ *
+ * Legs appended inside a transaction are buffered and inserted as one JDBC
+ * batch just before commit, so they commit or roll back with the balance
+ * update. The journal itself only inserts and never updates a shared row;
+ * the Balance row it projects is still updated in place next to it (see
+ * {@link BalanceService}).
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class LedgerJournal {
+
+    public static final String TYPE_TRANSFER = "TRANSFER";
+    public static final String TYPE_DEPOSIT = "DEPOSIT";
+    public static final String TYPE_PAYMENT = "PAYMENT";
+
+    public static final String ACCOUNT_CUSTOMER = "CUSTOMER";
+    public static final String ACCOUNT_CASH = "BANK_CASH";
+    public static final String ACCOUNT_PAYMENT_CLEARING = "PAYMENT_CLEARING";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ledger_entry (journal_id, entry_type, ledger_account, account_id, amount, reference, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerJournal(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Leg> transferLegs(Long fromAccountId, Long toAccountId, BigDecimal amount, String reference) {
+        String journalId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(
+                new Leg(journalId, TYPE_TRANSFER, ACCOUNT_CUSTOMER, fromAccountId, amount.negate(), reference, now),
+                new Leg(journalId, TYPE_TRANSFER, ACCOUNT_CUSTOMER, toAccountId, amount, reference, now));
+    }
+
+    public List<Leg> depositLegs(Long accountId, BigDecimal amount, String reference) {
+        String journalId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(
+                new Leg(journalId, TYPE_DEPOSIT, ACCOUNT_CASH, null, amount.negate(), reference, now),
+                new Leg(journalId, TYPE_DEPOSIT, ACCOUNT_CUSTOMER, accountId, amount, reference, now));
+    }
+
+    public List<Leg> paymentLegs(Long accountId, BigDecimal amount, String reference) {
+        String journalId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(
+                new Leg(journalId, TYPE_PAYMENT, ACCOUNT_CUSTOMER, accountId, amount.negate(), reference, now),
+                new Leg(journalId, TYPE_PAYMENT, ACCOUNT_PAYMENT_CLEARING, null, amount, reference, now));
+    }
+
+    /**
+     * Ghi các bút toán; trong transaction thì gom lại và insert một lần trước khi commit
+     *
+     * @param legs Legs of one or more movements
+     */
+    public void append(List<Leg> legs) {
+        if (legs == null || legs.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(legs);
+            return;
+        }
+        PendingLegs pending = (PendingLegs) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingLegs();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.legs.addAll(legs);
+    }
+
+    /**
+     * Insert legs immediately as one JDBC batch
+     */
+    public void insert(List<Leg> legs) {
+        if (legs == null || legs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, legs, BATCH_SIZE, (ps, leg) -> {
+            ps.setString(1, leg.journalId());
+            ps.setString(2, leg.entryType());
+            ps.setString(3, leg.ledgerAccount());
+            ps.setObject(4, leg.accountId());
+            ps.setBigDecimal(5, leg.amount());
+            ps.setString(6, leg.reference());
+            ps.setTimestamp(7, Timestamp.valueOf(leg.createdAt()));
+        });
+    }
+
+    /**
+     * One ledger row; positive amounts credit the ledger account, negative amounts debit it
+     */
+    public record Leg(String journalId, String entryType, String ledgerAccount, Long accountId,
+                      BigDecimal amount, String reference, LocalDateTime createdAt) {
+    }
+
+    private final class PendingLegs implements TransactionSynchronization {
+        private final List<Leg> legs = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            insert(legs);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LedgerJournal.this);
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.banking.Service;
+
+import com.banking.Entity.Money;
+import com.banking.Entity.Transaction;
+import com.banking.Entity.TransferCommand;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ledger Sequencer
+ *
+ * Optional single-writer transfer engine, enabled with
+ * {@code app.transfer.mode=SEQUENCER}. Balance commands are queued in a
+ * bounded ring buffer and applied by one sequencer thread against an
+ * in-memory map of accountId to available balance, so the hot path takes
+ * no database row locks at all. Balances are held as long hundredths and
+ * updated in place, so applying a command does not allocate.
+ *
+ * Commands are applied in batches. Each batch is appended to a journal file
+ * and forced to disk, then flushed in one JDBC transaction: the new
+ * balances, the account_transaction rows, the ledger_entry legs, the
+ * APPLIED mark of the idempotency keys of the submitting requests, the
+ * SUCCEEDED mark of async transfer commands and the ledger checkpoint. Callers
+ * are released only after the flush, so reads through JPA see the result.
+ * On startup any journal batch above the checkpoint is replayed, which
+ * covers a crash between the journal write and the database commit.
+ *
+ * While enabled this is the only writer of available balances;
+ * {@link BalanceService} routes its debits and credits here.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class LedgerSequencer {
+
+    private static final String UPDATE_BALANCE =
+            "UPDATE Balance SET available_balance = ?, version = COALESCE(version, 0) + 1 WHERE account_id = ?";
+
+    private static final String MARK_IDEMPOTENCY_APPLIED =
+            "UPDATE idempotency_key SET status = 'APPLIED' WHERE idempotency_key = ? AND status = 'IN_PROGRESS'";
+
+    private static final String MARK_TRANSFER_SUCCEEDED =
+            "UPDATE transfer_command SET status = 'SUCCEEDED', message = ?, updated_at = ? "
+                    + "WHERE transfer_id = ? AND status = 'PROCESSING'";
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO account_transaction (transaction_date, amount, type, status, card_send, card_receipt, account_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final LedgerJournal ledgerJournal;
+
+    private final ObjectMapper journalMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final boolean enabled;
+
+    private final Path journalPath;
+
+    private final int batchSize;
+
+    private final long submitTimeoutMs;
+
+    private final long journalMaxBytes;
+
+    private final BlockingQueue<LedgerCommand> ringBuffer;
+
+    // Chỉ thread sequencer đọc/ghi map này; số dư tính bằng phần trăm đơn vị tiền, cập nhật tại chỗ
+    private final Map<Long, long[]> balances = new HashMap<>();
+
+    private volatile long sequence;
+
+    private volatile boolean running;
+
+    private Thread sequencerThread;
+
+    private FileChannel journal;
+
+    public LedgerSequencer(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           LedgerJournal ledgerJournal,
+                           @Value("${app.transfer.mode:JPA}") String transferMode,
+                           @Value("${app.ledger.journal-path:data/ledger.journal}") String journalPath,
+                           @Value("${app.ledger.ring-size:65536}") int ringSize,
+                           @Value("${app.ledger.batch-size:512}") int batchSize,
+                           @Value("${app.ledger.submit-timeout-ms:5000}") long submitTimeoutMs,
+                           @Value("${app.ledger.journal-max-bytes:67108864}") long journalMaxBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.ledgerJournal = ledgerJournal;
+        this.enabled = "SEQUENCER".equalsIgnoreCase(transferMode);
+        this.journalPath = Paths.get(journalPath);
+        this.ringBuffer = new ArrayBlockingQueue<>(Math.max(1, ringSize));
+        this.batchSize = Math.max(1, batchSize);
+        this.submitTimeoutMs = submitTimeoutMs;
+        this.journalMaxBytes = journalMaxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replay the journal and start the sequencer thread when the mode is enabled
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        int replayed = replayJournal();
+        if (replayed > 0) {
+            System.out.println("Ledger sequencer replayed " + replayed + " journal batch(es)");
+        }
+        try {
+            if (journalPath.getParent() != null) {
+                Files.createDirectories(journalPath.getParent());
+            }
+            journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Mọi batch trong journal đã có trong DB sau khi replay
+            journal.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open ledger journal " + journalPath, e);
+        }
+        running = true;
+        sequencerThread = new Thread(this::runLoop, "ledger-sequencer");
+        sequencerThread.setDaemon(true);
+        sequencerThread.start();
+    }
+
+    /**
+     * Stop accepting commands, drain the ring buffer and close the journal
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            sequencerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            // Thread đã drain hết ring buffer: mọi batch trong journal đã được flush
+            if (!sequencerThread.isAlive()) {
+                journal.truncate(0);
+            }
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close ledger journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chuyển tiền qua sequencer
+     *
+     * @param record The account_transaction row to persist with the transfer, may be null
+     * @return true if applied, false if the sender has insufficient funds
+     * @throws IllegalArgumentException if the receiver has no balance row
+     */
+    public boolean transfer(Long fromAccountId, Long toAccountId, BigDecimal amount, Transaction record) {
+        return transfer(fromAccountId, toAccountId, amount, record, null);
+    }
+
+    /**
+     * Chuyển tiền qua sequencer, kèm các bút toán sổ cái
+     *
+     * @param legs Ledger legs written in the same flush as the balances, may be null
+     */
+    public boolean transfer(Long fromAccountId, Long toAccountId, BigDecimal amount, Transaction record,
+                            List<LedgerJournal.Leg> legs) {
+        return transfer(fromAccountId, toAccountId, amount, record, legs, null);
+    }
+
+    /**
+     * Chuyển tiền qua sequencer cho một lệnh chuyển bất đồng bộ
+     *
+     * @param transferId Async command moved from PROCESSING to SUCCEEDED in the same flush, may be null
+     */
+    public boolean transfer(Long fromAccountId, Long toAccountId, BigDecimal amount, Transaction record,
+                            List<LedgerJournal.Leg> legs, String transferId) {
+        return submit(new LedgerCommand(fromAccountId, toAccountId, amount, record, legs, transferId));
+    }
+
+    /**
+     * Trừ tiền qua sequencer
+     *
+     * @return true if debited, false if funds are insufficient or no balance exists
+     */
+    public boolean debit(Long accountId, BigDecimal amount) {
+        return debit(accountId, amount, null);
+    }
+
+    public boolean debit(Long accountId, BigDecimal amount, List<LedgerJournal.Leg> legs) {
+        return submit(new LedgerCommand(accountId, null, amount, null, legs, null));
+    }
+
+    /**
+     * Cộng tiền qua sequencer
+     *
+     * @return true if credited, false if the account has no balance row
+     */
+    public boolean credit(Long accountId, BigDecimal amount) {
+        return credit(accountId, amount, null);
+    }
+
+    public boolean credit(Long accountId, BigDecimal amount, List<LedgerJournal.Leg> legs) {
+        return submit(new LedgerCommand(null, accountId, amount, null, legs, null));
+    }
+
+    public long getLastSequence() {
+        return sequence;
+    }
+
+    public int getQueueDepth() {
+        return ringBuffer.size();
+    }
+
+    private boolean submit(LedgerCommand command) {
+        if (!running) {
+            throw new IllegalStateException("Ledger sequencer is not running");
+        }
+        try {
+            if (!ringBuffer.offer(command, submitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Hệ thống đang bận, vui lòng thử lại sau");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Giao dịch bị gián đoạn");
+        }
+        // Lệnh đã vào ring buffer thì sẽ được áp dụng: chờ kết quả thật thay vì báo lỗi để người gọi thử lại
+        return awaitResult(command);
+    }
+
+    private boolean awaitResult(LedgerCommand command) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return command.result.get(submitTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (TimeoutException e) {
+                    if (!sequencerThread.isAlive() && !command.result.isDone()) {
+                        // Thread đã dừng trước khi lấy lệnh ra khỏi ring buffer: lệnh chưa được áp dụng
+                        if (ringBuffer.remove(command)) {
+                            throw new IllegalStateException("Ledger sequencer is not running");
+                        }
+                        // Thread dừng giữa một batch: lệnh có thể đã vào journal và sẽ được replay
+                        throw new OutcomeUnknownException();
+                    } else {
+                        System.err.println("Ledger command still waiting after " + submitTimeoutMs
+                                + " ms, queue depth " + ringBuffer.size());
+                    }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runLoop() {
+        List<LedgerCommand> batch = new ArrayList<>(batchSize);
+        while (running || !ringBuffer.isEmpty()) {
+            try {
+                LedgerCommand first = ringBuffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ringBuffer.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Không để thread sequencer chết; lệnh chưa hoàn thành sẽ nhận lỗi
+                System.err.println("Ledger sequencer batch failed: " + e.getMessage());
+                batch.forEach(command -> command.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<LedgerCommand> batch) {
+        loadBalances(batch);
+
+        Map<Long, long[]> touched = new LinkedHashMap<>();
+        List<TransactionRow> rows = new ArrayList<>();
+        List<LedgerJournal.Leg> entries = new ArrayList<>();
+        List<String> idempotencyKeys = new ArrayList<>();
+        List<String> transferIds = new ArrayList<>();
+        List<LedgerCommand> applied = new ArrayList<>();
+        for (LedgerCommand command : batch) {
+            try {
+                if (apply(command, touched)) {
+                    applied.add(command);
+                    if (command.record != null) {
+                        rows.add(TransactionRow.of(command.record));
+                    }
+                    if (command.legs != null) {
+                        entries.addAll(command.legs);
+                    }
+                    if (command.idempotencyKey != null && !idempotencyKeys.contains(command.idempotencyKey)) {
+                        idempotencyKeys.add(command.idempotencyKey);
+                    }
+                    if (command.transferId != null) {
+                        transferIds.add(command.transferId);
+                    }
+                } else {
+                    command.result.complete(false);
+                }
+            } catch (RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+
+        Map<Long, BigDecimal> touchedBalances = new LinkedHashMap<>();
+        touched.forEach((accountId, balance) -> touchedBalances.put(accountId, Money.toBigDecimal(balance[0])));
+        JournalBatch journalBatch = new JournalBatch(sequence + 1, touchedBalances, rows, entries,
+                idempotencyKeys, transferIds);
+        long journalPosition = appendToJournal(journalBatch);
+        try {
+            flush(journalBatch);
+        } catch (RuntimeException e) {
+            // Bỏ batch khỏi journal và nạp lại số dư từ DB ở batch sau
+            truncateJournal(journalPosition);
+            balances.keySet().removeAll(touched.keySet());
+            applied.forEach(command -> command.result.completeExceptionally(e));
+            return;
+        }
+        sequence = journalBatch.sequence();
+        if (journalPosition > journalMaxBytes) {
+            truncateJournal(0);
+        }
+        applied.forEach(command -> command.result.complete(true));
+    }
+
+    private boolean apply(LedgerCommand command, Map<Long, long[]> touched) {
+        if (command.amountMinor <= 0) {
+            throw new IllegalArgumentException("Số tiền phải lớn hơn 0");
+        }
+        long[] fromBalance = null;
+        if (command.fromAccountId != null) {
+            fromBalance = balances.get(command.fromAccountId);
+            if (fromBalance == null || fromBalance[0] < command.amountMinor) {
+                return false;
+            }
+        }
+        long[] toBalance = null;
+        if (command.toAccountId != null) {
+            toBalance = balances.get(command.toAccountId);
+            if (toBalance == null) {
+                if (command.fromAccountId != null) {
+                    throw new IllegalArgumentException("Tài khoản nhận chưa có số dư");
+                }
+                return false;
+            }
+        }
+        if (toBalance != null) {
+            // Kiểm tra tràn trước khi sửa số dư nào
+            Math.addExact(toBalance[0], command.amountMinor);
+        }
+        if (fromBalance != null) {
+            fromBalance[0] -= command.amountMinor;
+            touched.put(command.fromAccountId, fromBalance);
+        }
+        if (toBalance != null) {
+            toBalance[0] += command.amountMinor;
+            touched.put(command.toAccountId, toBalance);
+        }
+        return true;
+    }
+
+    private void loadBalances(List<LedgerCommand> batch) {
+        List<Long> missing = new ArrayList<>();
+        for (LedgerCommand command : batch) {
+            addIfMissing(missing, command.fromAccountId);
+            addIfMissing(missing, command.toAccountId);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.query("SELECT account_id, available_balance FROM Balance WHERE account_id IN (:ids)",
+                new MapSqlParameterSource("ids", missing),
+                rs -> {
+                    balances.put(rs.getLong("account_id"), new long[]{Money.toMinor(rs.getBigDecimal("available_balance"))});
+                });
+    }
+
+    private void addIfMissing(List<Long> missing, Long accountId) {
+        if (accountId != null && !balances.containsKey(accountId) && !missing.contains(accountId)) {
+            missing.add(accountId);
+        }
+    }
+
+    private void flush(JournalBatch batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int applied = jdbcTemplate.update(
+                    "UPDATE ledger_checkpoint SET last_sequence = ? WHERE id = 1 AND last_sequence < ?",
+                    batch.sequence(), batch.sequence());
+            if (applied == 0) {
+                // Batch này đã được flush trước đó (replay lặp lại)
+                return;
+            }
+            List<Object[]> balanceArgs = new ArrayList<>(batch.balances().size());
+            batch.balances().forEach((accountId, balance) -> balanceArgs.add(new Object[]{balance, accountId}));
+            jdbcTemplate.batchUpdate(UPDATE_BALANCE, balanceArgs);
+
+            if (!batch.transactions().isEmpty()) {
+                List<Object[]> rowArgs = new ArrayList<>(batch.transactions().size());
+                for (TransactionRow row : batch.transactions()) {
+                    rowArgs.add(new Object[]{Date.valueOf(LocalDate.parse(row.date())), row.amount(), row.type(),
+                            row.status(), row.cardSend(), row.cardReceipt(), row.accountId()});
+                }
+                jdbcTemplate.batchUpdate(INSERT_TRANSACTION, rowArgs);
+            }
+            if (batch.entries() != null) {
+                ledgerJournal.insert(batch.entries());
+            }
+            // Journal cũ không có trường này
+            if (batch.idempotencyKeys() != null && !batch.idempotencyKeys().isEmpty()) {
+                List<Object[]> keyArgs = new ArrayList<>(batch.idempotencyKeys().size());
+                batch.idempotencyKeys().forEach(key -> keyArgs.add(new Object[]{key}));
+                jdbcTemplate.batchUpdate(MARK_IDEMPOTENCY_APPLIED, keyArgs);
+            }
+            if (batch.transferIds() != null && !batch.transferIds().isEmpty()) {
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> transferArgs = new ArrayList<>(batch.transferIds().size());
+                batch.transferIds().forEach(transferId ->
+                        transferArgs.add(new Object[]{TransferCommand.SUCCESS_MESSAGE, now, transferId}));
+                jdbcTemplate.batchUpdate(MARK_TRANSFER_SUCCEEDED, transferArgs);
+            }
+        });
+    }
+
+    /**
+     * Đọc journal và flush các batch có sequence lớn hơn checkpoint
+     *
+     * @return Number of batches replayed into the database
+     */
+    int replayJournal() {
+        long checkpoint = ensureCheckpoint();
+        sequence = Math.max(sequence, checkpoint);
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JournalBatch batch;
+                try {
+                    batch = journalMapper.readValue(line, JournalBatch.class);
+                } catch (IOException e) {
+                    // Dòng cuối bị ghi dở khi crash: batch chưa được xác nhận cho ai
+                    System.err.println("Skipping incomplete ledger journal entry: " + e.getMessage());
+                    break;
+                }
+                if (batch.sequence() > checkpoint) {
+                    flush(batch);
+                    replayed++;
+                }
+                sequence = Math.max(sequence, batch.sequence());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read ledger journal " + journalPath, e);
+        }
+        return replayed;
+    }
+
+    private long ensureCheckpoint() {
+        Long last = jdbcTemplate.query("SELECT last_sequence FROM ledger_checkpoint WHERE id = 1",
+                rs -> rs.next() ? rs.getLong(1) : null);
+        if (last == null) {
+            jdbcTemplate.update("INSERT INTO ledger_checkpoint (id, last_sequence) VALUES (1, 0)");
+            return 0;
+        }
+        return last;
+    }
+
+    private long appendToJournal(JournalBatch batch) {
+        try {
+            long position = journal.size();
+            byte[] line = (journalMapper.writeValueAsString(batch) + "\n").getBytes(StandardCharsets.UTF_8);
+            journal.position(position);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write ledger journal " + journalPath, e);
+        }
+    }
+
+    private void truncateJournal(long size) {
+        try {
+            journal.truncate(size);
+        } catch (IOException e) {
+            System.err.println("Failed to truncate ledger journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The command reached the sequencer but its result is unknown (the
+     * sequencer thread stopped while applying it). The transfer may have
+     * been applied, so it must not be retried without checking the ledger.
+     */
+    public static class OutcomeUnknownException extends RuntimeException {
+
+        OutcomeUnknownException() {
+            super("Không xác định được kết quả giao dịch, vui lòng kiểm tra lịch sử giao dịch trước khi thử lại");
+        }
+    }
+
+    private static final class LedgerCommand {
+        private final Long fromAccountId;
+        private final Long toAccountId;
+        private final long amountMinor;
+        private final Transaction record;
+        private final List<LedgerJournal.Leg> legs;
+        private final String idempotencyKey;
+        private final String transferId;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        LedgerCommand(Long fromAccountId, Long toAccountId, BigDecimal amount, Transaction record,
+                      List<LedgerJournal.Leg> legs, String transferId) {
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            // Đổi sang số nguyên ở thread gọi, thread sequencer chỉ cộng trừ long
+            this.amountMinor = amount == null ? 0 : Money.toMinor(amount);
+            this.record = record;
+            this.legs = legs;
+            this.idempotencyKey = IdempotencyService.currentKey();
+            this.transferId = transferId;
+        }
+    }
+
+    record JournalBatch(long sequence, Map<Long, BigDecimal> balances, List<TransactionRow> transactions,
+                        List<LedgerJournal.Leg> entries, List<String> idempotencyKeys, List<String> transferIds) {
+    }
+
+    record TransactionRow(String date, BigDecimal amount, String type, String status,
+                          String cardSend, String cardReceipt, Long accountId) {
+
+        static TransactionRow of(Transaction transaction) {
+            return new TransactionRow(transaction.getTransactionDate().toString(), transaction.getAmount(),
+                    transaction.getType(), transaction.getStatus(), transaction.getCardSend(),
+                    transaction.getCardReceiptNumber(), transaction.getAccount().getAccountId());
+        }
+    }
+}
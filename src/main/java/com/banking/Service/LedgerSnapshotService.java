@@ -0,0 +1,187 @@
+package com.banking.Service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ledger Snapshot Service
+ *
+ * Keeps the ledger usable as the source of truth for balances. A periodic
+ * job writes a balance_snapshot row per account that moved since its last
+ * snapshot, so any balance can be rebuilt as the latest snapshot plus the
+ * ledger tail after it, without scanning the whole history.
+ *
+ * Balances that existed before the ledger get an opening snapshot
+ * (current balance minus anything already journaled) the first time the
+ * job sees them. Only entries older than a safety lag are snapshotted, so
+ * an entry whose id was allocated by a transaction that has not committed
+ * yet is not skipped.
+ *
+ * Funds held for an authorized payment are still the customer's until
+ * captured, so the ledger balance is compared with available plus hold.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class LedgerSnapshotService {
+
+    private static final String SEED_OPENING_SQL =
+            "INSERT INTO balance_snapshot (account_id, balance, last_entry_id, created_at) "
+                    + "SELECT b.account_id, b.available_balance + b.hold_balance "
+                    + "+ COALESCE((SELECT SUM(bs.amount) FROM balance_slot bs WHERE bs.account_id = b.account_id), 0) - COALESCE("
+                    + "(SELECT SUM(e.amount) FROM ledger_entry e WHERE e.account_id = b.account_id), 0), 0, ? "
+                    + "FROM Balance b WHERE NOT EXISTS (SELECT 1 FROM balance_snapshot s WHERE s.account_id = b.account_id)";
+
+    private static final String LATEST_SNAPSHOT_FILTER =
+            "s.last_entry_id = (SELECT MAX(s2.last_entry_id) FROM balance_snapshot s2 WHERE s2.account_id = s.account_id)";
+
+    private static final String TAIL_SQL =
+            "SELECT s.account_id, s.balance, SUM(e.amount) AS delta, MAX(e.entry_id) AS last_id "
+                    + "FROM balance_snapshot s JOIN ledger_entry e ON e.account_id = s.account_id "
+                    + "WHERE " + LATEST_SNAPSHOT_FILTER + " AND e.entry_id > s.last_entry_id AND e.entry_id <= ? "
+                    + "GROUP BY s.account_id, s.balance";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Value("${app.ledger.snapshot-lag-ms:60000}")
+    private long snapshotLagMs = 60000;
+
+    /**
+     * Tạo snapshot mở đầu cho các tài khoản có từ trước khi có sổ cái
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOpeningSnapshots() {
+        int seeded = jdbcTemplate.update(SEED_OPENING_SQL, Timestamp.valueOf(LocalDateTime.now()));
+        if (seeded > 0) {
+            System.out.println("Ledger: seeded " + seeded + " opening balance snapshot(s)");
+        }
+    }
+
+    /**
+     * Ghi snapshot số dư cho các tài khoản có phát sinh kể từ snapshot trước
+     *
+     * @return Number of snapshots written
+     */
+    @Scheduled(fixedDelayString = "${app.ledger.snapshot-interval-ms:3600000}",
+               initialDelayString = "${app.ledger.snapshot-interval-ms:3600000}")
+    public int snapshot() {
+        seedOpeningSnapshots();
+        LocalDateTime now = LocalDateTime.now();
+        Long upTo = jdbcTemplate.queryForObject(
+                "SELECT MAX(entry_id) FROM ledger_entry WHERE created_at < ?",
+                Long.class, Timestamp.valueOf(now.minusNanos(snapshotLagMs * 1_000_000)));
+        if (upTo == null) {
+            return 0;
+        }
+        Timestamp createdAt = Timestamp.valueOf(now);
+        List<Object[]> snapshots = new ArrayList<>();
+        jdbcTemplate.query(TAIL_SQL, rs -> {
+            snapshots.add(new Object[]{
+                    rs.getLong("account_id"),
+                    rs.getBigDecimal("balance").add(rs.getBigDecimal("delta")),
+                    rs.getLong("last_id"),
+                    createdAt});
+        }, upTo);
+        if (!snapshots.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO balance_snapshot (account_id, balance, last_entry_id, created_at) VALUES (?, ?, ?, ?)",
+                    snapshots);
+        }
+        return snapshots.size();
+    }
+
+    /**
+     * Số dư tính lại từ sổ cái: snapshot mới nhất cộng các bút toán sau đó
+     */
+    public BigDecimal ledgerBalance(Long accountId) {
+        Map<String, Object> latest = latestSnapshot(accountId);
+        BigDecimal base = (BigDecimal) latest.get("balance");
+        long lastEntryId = ((Number) latest.get("last_entry_id")).longValue();
+        BigDecimal tail = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM ledger_entry WHERE account_id = ? AND entry_id > ?",
+                BigDecimal.class, accountId, lastEntryId);
+        return base.add(tail);
+    }
+
+    /**
+     * So sánh số dư trong Balance với số dư tính từ sổ cái
+     *
+     * @return ledgerBalance, projectedBalance and drift (projected minus ledger)
+     */
+    public Map<String, Object> verify(Long accountId) {
+        BigDecimal ledger = ledgerBalance(accountId);
+        BigDecimal projected = jdbcTemplate.query(
+                "SELECT b.available_balance + b.hold_balance + COALESCE((SELECT SUM(s.amount) FROM balance_slot s WHERE s.account_id = b.account_id), 0) "
+                        + "FROM Balance b WHERE b.account_id = ?",
+                rs -> rs.next() ? rs.getBigDecimal(1) : null, accountId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accountId", accountId);
+        result.put("ledgerBalance", ledger);
+        result.put("projectedBalance", projected);
+        result.put("drift", projected == null ? null : projected.subtract(ledger));
+        return result;
+    }
+
+    /**
+     * Ghi lại số dư khả dụng trong Balance từ sổ cái
+     *
+     * @return The rebuilt balance
+     */
+    public BigDecimal rebuildProjection(Long accountId) {
+        if (ledgerSequencer.isEnabled()) {
+            // Sequencer giữ số dư trong bộ nhớ, ghi đè DB sẽ bị batch sau ghi đè lại
+            throw new IllegalStateException("Không thể dựng lại số dư khi đang chạy ledger sequencer");
+        }
+        return transactionTemplate.execute(status -> {
+            // Khóa các slot (nếu tài khoản chia slot) rồi dòng Balance trước, cùng thứ tự với lúc gom slot:
+            // giao dịch đang dở sẽ chờ, nên bút toán của nó không nằm trong tổng dưới đây
+            // và cũng chưa được cộng vào số dư
+            jdbcTemplate.update("UPDATE balance_slot SET amount = amount WHERE account_id = ?", accountId);
+            if (jdbcTemplate.update("UPDATE Balance SET version = COALESCE(version, 0) + 1 WHERE account_id = ?", accountId) == 0) {
+                throw new RuntimeException("Account not found");
+            }
+            BigDecimal ledger = ledgerBalance(accountId);
+            jdbcTemplate.update("UPDATE balance_slot SET amount = 0 WHERE account_id = ?", accountId);
+            // Tiền đang tạm giữ vẫn nằm trong sổ cái cho đến khi capture
+            jdbcTemplate.update("UPDATE Balance SET available_balance = ? - hold_balance WHERE account_id = ?", ledger, accountId);
+            return ledger;
+        });
+    }
+
+    private Map<String, Object> latestSnapshot(Long accountId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT s.balance, s.last_entry_id FROM balance_snapshot s WHERE s.account_id = ? AND " + LATEST_SNAPSHOT_FILTER,
+                accountId);
+        if (rows.isEmpty()) {
+            Map<String, Object> empty = new LinkedHashMap<>();
+            empty.put("balance", BigDecimal.ZERO);
+            empty.put("last_entry_id", 0L);
+            return empty;
+        }
+        // queryForList trả về map không phân biệt hoa thường tên cột
+        return rows.get(0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.banking.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for an SMS or push provider
+ *
+ * Accepts messages without any network call, after a configurable delay
+ * and with a configurable share of failures, so the notification path can
+ * be load-tested offline with realistic gateway latency. Delay and failure
+ * rate can be changed while running.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+public class LocalMessageGateway implements MessageGateway {
+
+    private final String name;
+    private final boolean logMessages;
+    private volatile long latencyMs;
+    private volatile double failureRate;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param name Label used in the log, e.g. SMS
+     * @param latencyMs Delay before each message is accepted
+     * @param failureRate Share of messages that fail, 0 to 1
+     * @param logMessages Print every accepted message
+     */
+    public LocalMessageGateway(String name, long latencyMs, double failureRate, boolean logMessages) {
+        this.name = name;
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+        this.logMessages = logMessages;
+    }
+
+    @Override
+    public void send(String to, String text) throws IOException {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(name + " gateway interrupted", e);
+            }
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failed.increment();
+            throw new IOException(name + " gateway unavailable (simulated)");
+        }
+        accepted.increment();
+        if (logMessages) {
+            System.out.println("📱 " + name + " SENT to " + to + ": " + text);
+        }
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Stand-in gateway counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("latencyMs", latencyMs);
+        stats.put("failureRate", failureRate);
+        stats.put("accepted", accepted.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+}
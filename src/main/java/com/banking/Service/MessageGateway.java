@@ -0,0 +1,22 @@
+package com.banking.Service;
+
+import java.io.IOException;
+
+/**
+ * Outbound gateway for short text notifications (SMS, push)
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+public interface MessageGateway {
+
+    /**
+     * Gửi một tin nhắn
+     *
+     * @param to Phone number or push topic
+     * @param text Message text
+     * @throws IOException if the gateway did not accept the message
+     */
+    void send(String to, String text) throws IOException;
+}
@@ -0,0 +1,48 @@
+package com.banking.Service;
+
+import com.banking.Entity.PaymentRequest;
+
+/**
+ * Notification Channel
+ *
+ * One way of telling a customer about a payment (email, SMS, push...).
+ * Every channel bean is picked up by {@link NotificationDispatcher}, which
+ * gives it its own executor and bounded queue, so a slow or failing
+ * channel only uses up its own threads. Adding a channel means adding a
+ * bean and, optionally, app.notification.channels.&lt;name&gt;.* properties.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+public interface NotificationChannel {
+
+    /**
+     * Sự kiện thanh toán cần thông báo
+     */
+    enum Event { PAYMENT_REQUEST, PAYMENT_SUCCESS, PAYMENT_FAILED }
+
+    /**
+     * Tên kênh, dùng trong cấu hình và trạng thái gửi (email, sms, push)
+     */
+    String getName();
+
+    /**
+     * Địa chỉ nhận của khách hàng trên kênh này. Được gọi trên luồng của người gọi,
+     * trước khi gửi song song, nên có thể đọc account của payment
+     *
+     * @param paymentRequest Payment request with its account loaded
+     * @return the recipient, or null if the customer cannot be reached on this channel
+     */
+    String getRecipient(PaymentRequest paymentRequest);
+
+    /**
+     * Gửi thông báo, chạy trên luồng của kênh
+     *
+     * @param paymentRequest Payment request with its account loaded
+     * @param event What happened to the payment
+     * @param reason Failure reason for PAYMENT_FAILED, otherwise null
+     * @throws Exception if the notification could not be handed over
+     */
+    void deliver(PaymentRequest paymentRequest, Event event, String reason) throws Exception;
+}
@@ -0,0 +1,271 @@
+package com.banking.Service;
+
+import com.banking.Entity.NotificationDelivery;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.NotificationDeliveryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notification Dispatcher
+ *
+ * Fans a payment notification out to every {@link NotificationChannel} in
+ * parallel. Each channel runs on its own fixed pool with a bounded queue
+ * (app.notification.channels.&lt;name&gt;.threads / queue-capacity), a
+ * bulkhead: a slow SMS gateway can only fill the SMS queue, and once it is
+ * full further SMS are rejected at once instead of holding up email or the
+ * caller. A notification_delivery row per channel is written before the
+ * channels start, in its own short transaction, and each channel completes
+ * its row as SENT, FAILED or REJECTED.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final String CHANNEL_PROPERTY_PREFIX = "app.notification.channels.";
+
+    @Autowired
+    private List<NotificationChannel> channels;
+
+    @Autowired
+    private NotificationDeliveryRepository notificationDeliveryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.notification.channels.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs = 10000;
+
+    @Value("${app.notification.delivery.retention-hours:168}")
+    private long retentionHours = 168;
+
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+
+    // Ghi trạng thái trong transaction riêng để luồng của kênh luôn thấy các dòng đã commit
+    private TransactionTemplate requiresNew;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    @PostConstruct
+    void start() {
+        requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (NotificationChannel channel : channels) {
+            String prefix = CHANNEL_PROPERTY_PREFIX + channel.getName() + ".";
+            if (!environment.getProperty(prefix + "enabled", Boolean.class, true)) {
+                System.out.println("Notification channel " + channel.getName() + " is disabled");
+                continue;
+            }
+            int threads = environment.getProperty(prefix + "threads", Integer.class, 2);
+            int queueCapacity = environment.getProperty(prefix + "queue-capacity", Integer.class, 1000);
+            bulkheads.put(channel.getName(), new Bulkhead(channel, threads, queueCapacity));
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            bulkhead.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Gửi thông báo qua mọi kênh song song và trả về ngay
+     *
+     * @param paymentRequest Payment request with its account loaded
+     * @param event What happened to the payment
+     * @param reason Failure reason for PAYMENT_FAILED, otherwise null
+     * @return completes with the final status per channel once every channel is done
+     * @throws org.springframework.dao.DataAccessException if the delivery rows cannot be stored
+     */
+    public CompletableFuture<Map<String, String>> publish(PaymentRequest paymentRequest,
+                                                          NotificationChannel.Event event, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Bulkhead> targets = new ArrayList<>();
+        List<NotificationDelivery> deliveries = new ArrayList<>();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            String recipient = bulkhead.channel.getRecipient(paymentRequest);
+            if (recipient == null) {
+                bulkhead.skipped.increment();
+                continue;
+            }
+            targets.add(bulkhead);
+            deliveries.add(new NotificationDelivery(paymentRequest.getPaymentId(),
+                    paymentRequest.getAccount().getAccountId(), event.name(),
+                    bulkhead.channel.getName(), recipient, now));
+        }
+        List<NotificationDelivery> stored = requiresNew.execute(status -> notificationDeliveryRepository.saveAll(deliveries));
+        published.increment();
+
+        Map<String, CompletableFuture<String>> results = new LinkedHashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            Bulkhead bulkhead = targets.get(i);
+            Long deliveryId = stored.get(i).getDeliveryId();
+            CompletableFuture<String> result;
+            try {
+                result = CompletableFuture.supplyAsync(
+                        () -> bulkhead.deliver(deliveryId, paymentRequest, event, reason), bulkhead.executor);
+            } catch (RejectedExecutionException e) {
+                // Hàng đợi của kênh đầy: không chờ, các kênh khác vẫn gửi
+                bulkhead.rejected.increment();
+                complete(deliveryId, NotificationDelivery.REJECTED, "Channel queue full", null);
+                result = CompletableFuture.completedFuture(NotificationDelivery.REJECTED);
+            }
+            results.put(bulkhead.channel.getName(), result);
+        }
+        return CompletableFuture.allOf(results.values().toArray(new CompletableFuture[0])).thenApply(done -> {
+            Map<String, String> statuses = new LinkedHashMap<>();
+            results.forEach((channel, result) -> statuses.put(channel, result.join()));
+            return statuses;
+        });
+    }
+
+    /**
+     * Trạng thái gửi từng kênh của một payment
+     */
+    public List<NotificationDelivery> getDeliveries(Long paymentId) {
+        return notificationDeliveryRepository.findByPaymentIdOrderByDeliveryId(paymentId);
+    }
+
+    /**
+     * Trạng thái gửi gần nhất của một account, mới nhất trước
+     */
+    public List<NotificationDelivery> getAccountDeliveries(Long accountId) {
+        return notificationDeliveryRepository.findTop100ByAccountIdOrderByDeliveryIdDesc(accountId);
+    }
+
+    /**
+     * Xóa trạng thái gửi quá thời gian lưu
+     *
+     * @return number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${app.notification.delivery.purge-interval-ms:3600000}",
+               initialDelayString = "${app.notification.delivery.purge-interval-ms:3600000}")
+    public int purgeCompleted() {
+        int deleted = notificationDeliveryRepository.deleteCompletedBefore(LocalDateTime.now().minusHours(retentionHours));
+        purged.add(deleted);
+        return deleted;
+    }
+
+    /**
+     * Per-channel bulkhead counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("published", published.sum());
+        stats.put("purged", purged.sum());
+        Map<String, Object> channelStats = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            channelStats.put(bulkhead.channel.getName(), bulkhead.getStats());
+        }
+        stats.put("channels", channelStats);
+        return stats;
+    }
+
+    private void complete(Long deliveryId, String status, String error, Long durationMs) {
+        try {
+            notificationDeliveryRepository.complete(deliveryId, status, error, LocalDateTime.now(), durationMs);
+        } catch (RuntimeException e) {
+            System.err.println("Could not record notification delivery " + deliveryId + " as " + status + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Luồng và hàng đợi riêng của một kênh
+     */
+    private final class Bulkhead {
+
+        private final NotificationChannel channel;
+        private final ThreadPoolExecutor executor;
+        private final int queueCapacity;
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder deliverNanos = new LongAdder();
+        private volatile String lastError;
+
+        Bulkhead(NotificationChannel channel, int threads, int queueCapacity) {
+            this.channel = channel;
+            this.queueCapacity = queueCapacity;
+            AtomicInteger threadNo = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, "notification-" + channel.getName() + "-" + threadNo.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        String deliver(Long deliveryId, PaymentRequest paymentRequest, NotificationChannel.Event event, String reason) {
+            long start = System.nanoTime();
+            String status;
+            String error = null;
+            try {
+                channel.deliver(paymentRequest, event, reason);
+                status = NotificationDelivery.SENT;
+                sent.increment();
+            } catch (Exception e) {
+                status = NotificationDelivery.FAILED;
+                error = String.valueOf(e.getMessage());
+                error = error.length() > 500 ? error.substring(0, 500) : error;
+                lastError = error;
+                failed.increment();
+                System.err.println("❌ " + channel.getName() + " notification for payment "
+                        + paymentRequest.getPaymentId() + " failed: " + error);
+            }
+            long elapsed = System.nanoTime() - start;
+            deliverNanos.add(elapsed);
+            complete(deliveryId, status, error, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return status;
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long done = sent.sum() + failed.sum();
+            stats.put("threads", executor.getMaximumPoolSize());
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+            stats.put("queueCapacity", queueCapacity);
+            stats.put("sent", sent.sum());
+            stats.put("failed", failed.sum());
+            stats.put("rejected", rejected.sum());
+            stats.put("skipped", skipped.sum());
+            stats.put("avgDeliverMs", done == 0 ? 0.0 : deliverNanos.sum() / 1_000_000.0 / done);
+            stats.put("lastError", lastError);
+            return stats;
+        }
+    }
+}
@@ -1,49 +1,81 @@
 package com.banking.Service;
 
+import com.banking.Entity.NotificationDelivery;
 import com.banking.Entity.PaymentRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jms.annotation.JmsListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 @Service
 public class NotificationService {
 
     @Autowired
-    private EmailService emailService;
+    private AdminNotificationDigest adminNotificationDigest;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    // Số luồng gửi thông báo nền cho các đợt phát hành payment request hàng loạt
+    @Value("${app.notification.fan-out-threads:2}")
+    private int fanOutThreads = 2;
+
+    private ExecutorService fanOutExecutor;
+
+    private final AtomicLong fanOutPending = new AtomicLong();
+    private final LongAdder fanOutSent = new LongAdder();
+    private final LongAdder fanOutFailed = new LongAdder();
+
+    @PostConstruct
+    void startFanOut() {
+        AtomicInteger threadNo = new AtomicInteger();
+        fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-fan-out-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stopFanOut() {
+        fanOutExecutor.shutdownNow();
+    }
 
     /**
-     * Lắng nghe message từ payment queue và xử lý thông báo
-     * @param paymentRequest Thông tin thanh toán từ queue
+     * Gửi thông báo thanh toán thành công, gọi từ {@link PaymentNotificationConsumer}
+     * @param paymentRequest Payment request with its account loaded
+     * @throws RuntimeException if the deliveries cannot be recorded, so the message is redelivered
      */
-    // @JmsListener(destination = "payment.queue") // Tạm thời disable để test
     public void handlePaymentNotification(PaymentRequest paymentRequest) {
-        try {
-            System.out.println("=== PAYMENT NOTIFICATION ===");
-            System.out.println("Payment confirmed for paymentId: " + paymentRequest.getPaymentId());
-            System.out.println("Account ID: " + paymentRequest.getAccount().getAccountId());
-            System.out.println("Amount: " + paymentRequest.getAmount() + " " + paymentRequest.getCurrency());
-            System.out.println("=============================");
-            
-            // Gửi email thông báo thành công
-            emailService.sendPaymentConfirmationEmail(paymentRequest);
-            
-            // Gửi email thông báo cho admin
-            emailService.sendAdminNotificationEmail(paymentRequest, "SUCCESS");
-            
-            // Giả lập gửi SMS
-            sendSmsNotification(paymentRequest);
-            
-        } catch (Exception e) {
-            System.err.println("Error processing payment notification: " + e.getMessage());
-            
-            // Gửi email thông báo lỗi
-            try {
-                emailService.sendPaymentFailureEmail(paymentRequest, "System error: " + e.getMessage());
-                emailService.sendAdminNotificationEmail(paymentRequest, "ERROR");
-            } catch (Exception emailError) {
-                System.err.println("Error sending failure email: " + emailError.getMessage());
-            }
-        }
+        System.out.println("=== PAYMENT NOTIFICATION ===");
+        System.out.println("Payment confirmed for paymentId: " + paymentRequest.getPaymentId());
+        System.out.println("Account ID: " + paymentRequest.getAccount().getAccountId());
+        System.out.println("Amount: " + paymentRequest.getAmount() + " " + paymentRequest.getCurrency());
+        System.out.println("=============================");
+
+        // Email, SMS, push chạy song song trên luồng của từng kênh; chỉ lỗi ghi trạng thái làm message được gửi lại sau
+        notificationDispatcher.publish(paymentRequest, NotificationChannel.Event.PAYMENT_SUCCESS, null);
+
+        // Thông báo admin qua email tổng hợp
+        adminNotificationDigest.record(paymentRequest, "SUCCESS");
+    }
+
+    /**
+     * Báo admin khi thông báo của payment không gửi được sau mọi lần thử
+     * @param paymentRequest Payment request with its account loaded
+     */
+    public void notifyAdminOfFailure(PaymentRequest paymentRequest) {
+        adminNotificationDigest.record(paymentRequest, "ERROR");
     }
 
     /**
@@ -58,14 +90,11 @@ public class NotificationService {
             System.out.println("Reason: " + reason);
             System.out.println("=======================");
             
-            // Gửi email thông báo thất bại
-            emailService.sendPaymentFailureEmail(paymentRequest, reason);
-            
-            // Gửi email thông báo cho admin
-            emailService.sendAdminNotificationEmail(paymentRequest, "FAILED");
+            // Gửi thông báo thất bại qua mọi kênh
+            notificationDispatcher.publish(paymentRequest, NotificationChannel.Event.PAYMENT_FAILED, reason);
             
-            // Giả lập gửi SMS thất bại
-            sendSmsFailureNotification(paymentRequest, reason);
+            // Thông báo admin qua email tổng hợp
+            adminNotificationDigest.record(paymentRequest, "FAILED");
             
         } catch (Exception e) {
             System.err.println("Error processing payment failure notification: " + e.getMessage());
@@ -73,106 +102,68 @@ public class NotificationService {
     }
 
     /**
-     * Giả lập gửi SMS thông báo thành công
-     * @param paymentRequest Thông tin thanh toán
-     */
-    private void sendSmsNotification(PaymentRequest paymentRequest) {
-        System.out.println("📱 SMS SENT:");
-        System.out.println("   To: +84901234567");
-        System.out.println("   Message: Payment of " + paymentRequest.getAmount() + 
-                          " " + paymentRequest.getCurrency() + " confirmed. ID: " + 
-                          paymentRequest.getPaymentId());
-    }
-
-    /**
-     * Giả lập gửi SMS thông báo thất bại
-     * @param paymentRequest Thông tin thanh toán
-     * @param reason Lý do thất bại
-     */
-    private void sendSmsFailureNotification(PaymentRequest paymentRequest, String reason) {
-        System.out.println("📱 SMS SENT:");
-        System.out.println("   To: +84901234567");
-        System.out.println("   Message: Payment of " + paymentRequest.getAmount() + 
-                          " " + paymentRequest.getCurrency() + " failed. Reason: " + reason);
-    }
-
-    /**
-     * Gửi email thông báo payment request mới cho customer
+     * Gửi thông báo payment request mới cho customer qua mọi kênh
      */
     public void sendPaymentRequestNotification(PaymentRequest paymentRequest) {
         try {
-            String customerEmail = paymentRequest.getAccount().getEmail();
-            String subject = "Yêu cầu thanh toán mới - Banking System";
-            
-            String htmlContent = createPaymentRequestHtml(paymentRequest);
-            
-            emailService.sendPaymentRequestEmail(customerEmail, subject, htmlContent);
-            
-            System.out.println("📧 Payment request notification sent to: " + customerEmail);
-            
+            notificationDispatcher.publish(paymentRequest, NotificationChannel.Event.PAYMENT_REQUEST, null);
         } catch (Exception e) {
             System.err.println("❌ Error sending payment request notification: " + e.getMessage());
         }
     }
 
     /**
-     * Gửi email thông báo thanh toán thất bại
+     * Đưa thông báo payment request mới vào hàng đợi gửi nền và trả về ngay
+     *
+     * @param paymentRequests Requests whose account carries the customer's email and name
+     * @return Number of notifications queued
      */
-    public void sendPaymentFailureEmail(PaymentRequest paymentRequest, String reason) {
-        try {
-            String customerEmail = paymentRequest.getAccount().getEmail();
-            String subject = "Thanh toán thất bại - Banking System";
-            
-            String htmlContent = createPaymentFailureHtml(paymentRequest, reason);
-            
-            emailService.sendPaymentFailureEmail(customerEmail, subject, htmlContent);
-            
-            System.out.println("📧 Payment failure email sent to: " + customerEmail);
-            
-        } catch (Exception e) {
-            System.err.println("❌ Error sending payment failure email: " + e.getMessage());
+    public int queuePaymentRequestNotifications(List<PaymentRequest> paymentRequests) {
+        fanOutPending.addAndGet(paymentRequests.size());
+        for (PaymentRequest paymentRequest : paymentRequests) {
+            fanOutExecutor.execute(() -> {
+                try {
+                    // Chờ các kênh xong để đợt phát hành không làm đầy hàng đợi của kênh
+                    Map<String, String> statuses = notificationDispatcher.publish(
+                            paymentRequest, NotificationChannel.Event.PAYMENT_REQUEST, null).join();
+                    if (statuses.values().stream().allMatch(NotificationDelivery.SENT::equals)) {
+                        fanOutSent.increment();
+                    } else {
+                        fanOutFailed.increment();
+                    }
+                } catch (Exception e) {
+                    fanOutFailed.increment();
+                    System.err.println("❌ Error sending payment request notification: " + e.getMessage());
+                } finally {
+                    fanOutPending.decrementAndGet();
+                }
+            });
         }
+        return paymentRequests.size();
     }
 
     /**
-     * Tạo HTML cho email payment request
+     * Background notification counters
      */
-    private String createPaymentRequestHtml(PaymentRequest paymentRequest) {
-        return "<!DOCTYPE html>" +
-                "<html><head><meta charset='UTF-8'><title>Payment Request</title></head>" +
-                "<body style='font-family: Arial, sans-serif; background: #f4f4f4; padding: 20px;'>" +
-                "<div style='max-width: 600px; margin: 0 auto; background: white; padding: 30px; border-radius: 10px;'>" +
-                "<h2 style='color: #333;'>💳 Yêu cầu thanh toán mới</h2>" +
-                "<p>Xin chào " + paymentRequest.getAccount().getCustomerName() + ",</p>" +
-                "<p>Bạn có một yêu cầu thanh toán mới cần xử lý:</p>" +
-                "<div style='background: #f8f9fa; padding: 20px; border-radius: 5px; margin: 20px 0;'>" +
-                "<p><strong>Số tiền:</strong> " + String.format("%,.0f", paymentRequest.getAmount()) + " " + paymentRequest.getCurrency() + "</p>" +
-                "<p><strong>Mô tả:</strong> " + (paymentRequest.getDescription() != null ? paymentRequest.getDescription() : "Không có mô tả") + "</p>" +
-                "<p><strong>Ngày tạo:</strong> " + paymentRequest.getCreatedAt().toString() + "</p>" +
-                "</div>" +
-                "<p>Vui lòng đăng nhập vào hệ thống để thanh toán.</p>" +
-                "<p>Trân trọng,<br>Banking System</p>" +
-                "</div></body></html>";
+    public Map<String, Object> getFanOutStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", fanOutThreads);
+        stats.put("pending", fanOutPending.get());
+        stats.put("sent", fanOutSent.sum());
+        stats.put("failed", fanOutFailed.sum());
+        return stats;
     }
 
     /**
-     * Tạo HTML cho email payment failure
+     * Gửi thông báo thanh toán thất bại cho customer qua mọi kênh
+     *
+     * @param paymentRequest Payment request with its account loaded
      */
-    private String createPaymentFailureHtml(PaymentRequest paymentRequest, String reason) {
-        return "<!DOCTYPE html>" +
-                "<html><head><meta charset='UTF-8'><title>Payment Failed</title></head>" +
-                "<body style='font-family: Arial, sans-serif; background: #f4f4f4; padding: 20px;'>" +
-                "<div style='max-width: 600px; margin: 0 auto; background: white; padding: 30px; border-radius: 10px;'>" +
-                "<h2 style='color: #dc3545;'>❌ Thanh toán thất bại</h2>" +
-                "<p>Xin chào " + paymentRequest.getAccount().getCustomerName() + ",</p>" +
-                "<p>Thanh toán của bạn đã thất bại:</p>" +
-                "<div style='background: #f8d7da; padding: 20px; border-radius: 5px; margin: 20px 0; border-left: 4px solid #dc3545;'>" +
-                "<p><strong>Số tiền:</strong> " + String.format("%,.0f", paymentRequest.getAmount()) + " " + paymentRequest.getCurrency() + "</p>" +
-                "<p><strong>Lý do:</strong> " + reason + "</p>" +
-                "<p><strong>Ngày tạo:</strong> " + paymentRequest.getCreatedAt().toString() + "</p>" +
-                "</div>" +
-                "<p>Vui lòng kiểm tra lại thông tin và thử lại.</p>" +
-                "<p>Trân trọng,<br>Banking System</p>" +
-                "</div></body></html>";
+    public void sendPaymentFailureNotification(PaymentRequest paymentRequest, String reason) {
+        try {
+            notificationDispatcher.publish(paymentRequest, NotificationChannel.Event.PAYMENT_FAILED, reason);
+        } catch (Exception e) {
+            System.err.println("❌ Error sending payment failure notification: " + e.getMessage());
+        }
     }
 }
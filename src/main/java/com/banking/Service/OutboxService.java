@@ -0,0 +1,394 @@
+package com.banking.Service;
+
+import com.banking.Config.JmsConfig;
+import com.banking.Entity.OutboxEvent;
+import com.banking.Repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.CompletionListener;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbox Service
+ *
+ * Transactional outbox for broker messages. A service that changes state
+ * calls {@link #enqueue} inside its own transaction, which stores the
+ * serialized message as an outbox_event row, so the message is committed
+ * or rolled back together with the change and the request never waits for
+ * the broker.
+ *
+ * A relay polls the oldest PENDING rows in batches and claims them with a
+ * lease (claim_token, claimed_until) before sending, so relays on several
+ * nodes never publish the same row; a lease left by a crashed node expires
+ * after app.outbox.claim-timeout-ms. A group whose oldest pending row is
+ * held by another relay is skipped as a whole.
+ *
+ * Messages with a group key carry it as JMSXGroupID, so the broker hands
+ * one group (e.g. one account) to a single consumer at a time and keeps
+ * its messages in order while other groups are consumed in parallel. The
+ * batch is sent in rounds with asynchronous sends (JMS 2.0 completion
+ * listeners): each round sends the next message of every group and waits
+ * for the broker acknowledgements, and a group stops at its first failed
+ * send, so a later message never overtakes an earlier one of its group.
+ * Acknowledged rows are marked SENT; the rest stay PENDING for the next
+ * poll. Delivery is at-least-once: every message carries the outboxEventId
+ * property so consumers can drop a redelivered event.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class OutboxService {
+
+    public static final String EVENT_ID_PROPERTY = "outboxEventId";
+    public static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.outbox.relay-enabled:true}")
+    private boolean relayEnabled = true;
+
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize = 200;
+
+    // Thời gian chờ broker xác nhận cả lô trước khi để các dòng chưa xác nhận cho lần poll sau
+    @Value("${app.outbox.send-timeout-ms:10000}")
+    private long sendTimeoutMs = 10000;
+
+    @Value("${app.outbox.claim-timeout-ms:60000}")
+    private long claimTimeoutMs = 60000;
+
+    @Value("${app.outbox.retention-hours:24}")
+    private long retentionHours = 24;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+    private volatile String lastError;
+
+    /**
+     * Ghi message vào outbox trong transaction hiện tại của người gọi
+     *
+     * @param groupKey Message group (JMSXGroupID) whose messages are consumed in order, or null
+     * @throws IllegalArgumentException if the payload cannot be serialized (the caller's transaction rolls back)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueue(String destination, String groupKey, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Không serialize được message cho " + destination + ": " + e.getMessage(), e);
+        }
+        OutboxEvent event = outboxEventRepository.save(
+                new OutboxEvent(destination, groupKey, payload.getClass().getName(), json, LocalDateTime.now()));
+        enqueued.increment();
+        return event;
+    }
+
+    /**
+     * Gửi các message đang chờ lên broker, từng lô cho đến khi hết
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}",
+               initialDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void relay() {
+        if (!relayEnabled) {
+            return;
+        }
+        // Lô đầy và gửi được hết thì còn backlog, poll tiếp ngay
+        int sent;
+        do {
+            sent = relayBatch();
+        } while (sent == batchSize);
+    }
+
+    /**
+     * Send one batch of pending events
+     *
+     * @return number of events the broker acknowledged
+     */
+    int relayBatch() {
+        String token = UUID.randomUUID().toString();
+        List<OutboxEvent> batch = claimBatch(token);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Set<Long> attempted = new HashSet<>();
+        Set<Long> delivered = ConcurrentHashMap.newKeySet();
+        Map<Long, String> failed = new ConcurrentHashMap<>();
+        String batchError = null;
+        try {
+            jmsTemplate.execute(session -> {
+                sendInRounds(session, batch, attempted, delivered, failed);
+                return null;
+            });
+        } catch (JmsException e) {
+            // Lỗi kết nối hoặc lỗi gửi đồng bộ: các dòng chưa được xác nhận giữ PENDING
+            batchError = e.getMessage();
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxEventRepository.markSent(delivered, LocalDateTime.now());
+            published.add(delivered.size());
+        }
+        Map<String, List<Long>> unsentByError = new HashMap<>();
+        List<Long> notSent = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            Long eventId = event.getEventId();
+            if (delivered.contains(eventId)) {
+                continue;
+            }
+            if (!attempted.contains(eventId)) {
+                // Chờ event trước của group: trả lại mà không tính là một lần gửi lỗi
+                notSent.add(eventId);
+                continue;
+            }
+            String error = failed.getOrDefault(eventId,
+                    batchError != null ? batchError : "No broker acknowledgement within " + sendTimeoutMs + " ms");
+            unsentByError.computeIfAbsent(truncate(error), key -> new ArrayList<>()).add(eventId);
+        }
+        if (!notSent.isEmpty()) {
+            outboxEventRepository.release(notSent, token);
+        }
+        unsentByError.forEach((error, ids) -> {
+            outboxEventRepository.recordFailure(ids, error);
+            sendFailures.add(ids.size());
+            lastError = error;
+        });
+        if (!unsentByError.isEmpty()) {
+            System.err.println("Outbox relay: " + (batch.size() - delivered.size()) + " of " + batch.size()
+                    + " event(s) not delivered: " + lastError);
+        }
+        return delivered.size();
+    }
+
+    /**
+     * Xóa các message đã gửi quá thời gian lưu
+     *
+     * @return number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval-ms:3600000}",
+               initialDelayString = "${app.outbox.purge-interval-ms:3600000}")
+    public int purgeSent() {
+        int deleted = outboxEventRepository.deleteSentBefore(LocalDateTime.now().minusHours(retentionHours));
+        purged.add(deleted);
+        return deleted;
+    }
+
+    /**
+     * Outbox counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("relayEnabled", relayEnabled);
+        stats.put("batchSize", batchSize);
+        stats.put("pending", outboxEventRepository.countByStatus(OutboxEvent.PENDING));
+        stats.put("enqueued", enqueued.sum());
+        stats.put("published", published.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        stats.put("purged", purged.sum());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * Claim the oldest pending events for this relay run
+     *
+     * @return The claimed events, oldest first; per group, only events no other run holds an older event of
+     */
+    private List<OutboxEvent> claimBatch(String token) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> candidates = new ArrayList<>();
+        Set<String> blockedGroups = new HashSet<>();
+        for (OutboxEvent event : outboxEventRepository.findPending(PageRequest.of(0, batchSize))) {
+            String group = event.getGroupKey();
+            boolean leased = event.getClaimedUntil() != null && !event.getClaimedUntil().isBefore(now);
+            if (leased || (group != null && blockedGroups.contains(group))) {
+                // Relay khác đang giữ event cũ hơn của group: bỏ qua cả group để giữ thứ tự
+                if (group != null) {
+                    blockedGroups.add(group);
+                }
+                continue;
+            }
+            candidates.add(event.getEventId());
+        }
+        if (candidates.isEmpty()
+                || outboxEventRepository.claim(candidates, token, now.plusNanos(claimTimeoutMs * 1_000_000), now) == 0) {
+            return List.of();
+        }
+        List<OutboxEvent> claimed = new ArrayList<>(outboxEventRepository.findByClaimTokenOrderByEventId(token));
+
+        // Relay khác có thể vừa claim một event cũ hơn của cùng group: nhường các event sau event đó
+        Set<String> groups = new HashSet<>();
+        claimed.forEach(event -> {
+            if (event.getGroupKey() != null) {
+                groups.add(event.getGroupKey());
+            }
+        });
+        if (groups.isEmpty()) {
+            return claimed;
+        }
+        Map<String, Long> firstForeign = new HashMap<>();
+        Long newest = claimed.get(claimed.size() - 1).getEventId();
+        for (OutboxEvent other : outboxEventRepository.findPendingNotClaimedBy(groups, newest, token)) {
+            firstForeign.merge(other.getGroupKey(), other.getEventId(), Math::min);
+        }
+        List<Long> yielded = new ArrayList<>();
+        claimed.removeIf(event -> {
+            Long foreign = firstForeign.get(event.getGroupKey());
+            if (foreign != null && event.getEventId() > foreign) {
+                yielded.add(event.getEventId());
+                return true;
+            }
+            return false;
+        });
+        if (!yielded.isEmpty()) {
+            outboxEventRepository.release(yielded, token);
+        }
+        return claimed;
+    }
+
+    /**
+     * Gửi theo vòng: mỗi vòng gửi event kế tiếp của mọi group và chờ broker xác nhận
+     */
+    private void sendInRounds(Session session, List<OutboxEvent> batch, Set<Long> attempted, Set<Long> delivered,
+                              Map<Long, String> failed) throws JMSException {
+        List<List<OutboxEvent>> rounds = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        for (OutboxEvent event : batch) {
+            int round = event.getGroupKey() == null ? 0 : positions.merge(event.getGroupKey(), 1, Integer::sum) - 1;
+            while (rounds.size() <= round) {
+                rounds.add(new ArrayList<>());
+            }
+            rounds.get(round).add(event);
+        }
+
+        Map<String, MessageProducer> producers = new HashMap<>();
+        Set<String> stoppedGroups = new HashSet<>();
+        try {
+            for (List<OutboxEvent> round : rounds) {
+                List<OutboxEvent> sendable = new ArrayList<>(round.size());
+                for (OutboxEvent event : round) {
+                    if (event.getGroupKey() == null || !stoppedGroups.contains(event.getGroupKey())) {
+                        sendable.add(event);
+                    }
+                }
+                if (sendable.isEmpty()) {
+                    break;
+                }
+                if (!sendAll(session, producers, sendable, attempted, delivered, failed)) {
+                    return;
+                }
+                // Group có event chưa được xác nhận dừng lại, các event sau chờ lần poll sau
+                for (OutboxEvent event : sendable) {
+                    if (event.getGroupKey() != null && !delivered.contains(event.getEventId())) {
+                        stoppedGroups.add(event.getGroupKey());
+                    }
+                }
+            }
+        } finally {
+            for (MessageProducer producer : producers.values()) {
+                producer.close();
+            }
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted while waiting for acknowledgements
+     */
+    private boolean sendAll(Session session, Map<String, MessageProducer> producers, List<OutboxEvent> batch,
+                            Set<Long> attempted, Set<Long> delivered, Map<Long, String> failed) throws JMSException {
+        CountDownLatch outstanding = new CountDownLatch(batch.size());
+        boolean asyncSend = true;
+        try {
+            for (OutboxEvent event : batch) {
+                MessageProducer producer = producers.get(event.getDestination());
+                if (producer == null) {
+                    producer = session.createProducer(session.createQueue(event.getDestination()));
+                    producers.put(event.getDestination(), producer);
+                }
+                TextMessage message = session.createTextMessage(event.getPayload());
+                message.setStringProperty(JmsConfig.TYPE_ID_PROPERTY, event.getMessageType());
+                message.setLongProperty(EVENT_ID_PROPERTY, event.getEventId());
+                if (event.getGroupKey() != null) {
+                    message.setStringProperty(GROUP_ID_PROPERTY, event.getGroupKey());
+                }
+
+                Long eventId = event.getEventId();
+                attempted.add(eventId);
+                if (asyncSend) {
+                    try {
+                        producer.send(message, new CompletionListener() {
+                            @Override
+                            public void onCompletion(Message sent) {
+                                delivered.add(eventId);
+                                outstanding.countDown();
+                            }
+
+                            @Override
+                            public void onException(Message sent, Exception e) {
+                                failed.put(eventId, String.valueOf(e.getMessage()));
+                                outstanding.countDown();
+                            }
+                        });
+                        continue;
+                    } catch (UnsupportedOperationException e) {
+                        // Connection factory không hỗ trợ gửi bất đồng bộ: gửi đồng bộ phần còn lại
+                        asyncSend = false;
+                    }
+                }
+                producer.send(message);
+                delivered.add(eventId);
+                outstanding.countDown();
+            }
+            outstanding.await(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+}
@@ -0,0 +1,112 @@
+package com.banking.Service;
+
+import com.banking.Repository.PaymentRequestRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Payment Expiry Service
+ *
+ * A payment request expires a fixed time after it is issued. The expiry
+ * is stored on the row when the request is created, and an expired request
+ * can no longer be paid. A periodic sweep moves expired PENDING requests
+ * to CANCELLED so the pending list only holds live requests.
+ *
+ * The sweep walks the (status, created_at) index with a keyset cursor
+ * and cancels each page with one guarded UPDATE in its own short
+ * transaction. It never loads entities or holds locks across pages.
+ * Requests created before expires_at existed (expires_at NULL) expire
+ * once they are older than the configured TTL.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class PaymentExpiryService {
+
+    // Con trỏ ban đầu: nhỏ hơn mọi created_at hợp lệ
+    private static final LocalDateTime CURSOR_START = LocalDateTime.of(1900, 1, 1, 0, 0);
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Value("${app.payment.expiry.ttl-hours:168}")
+    private long ttlHours = 168;
+
+    @Value("${app.payment.expiry.sweep-batch-size:500}")
+    private int sweepBatchSize = 500;
+
+    private final LongAdder sweeps = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private volatile LocalDateTime lastSweepAt;
+    private volatile int lastSweepExpired;
+
+    /**
+     * Thời điểm hết hạn của payment request tạo lúc createdAt
+     */
+    public LocalDateTime expiryFor(LocalDateTime createdAt) {
+        return createdAt.plusHours(ttlHours);
+    }
+
+    /**
+     * Chuyển các payment request PENDING đã hết hạn sang CANCELLED, từng trang một
+     *
+     * @return number of requests cancelled
+     */
+    @Scheduled(fixedDelayString = "${app.payment.expiry.sweep-interval-ms:300000}",
+               initialDelayString = "${app.payment.expiry.sweep-interval-ms:300000}")
+    public int expirePending() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusHours(ttlHours);
+        LocalDateTime afterCreatedAt = CURSOR_START;
+        Long afterId = 0L;
+        int count = 0;
+        while (true) {
+            List<PaymentRequestRepository.PaymentKeyView> page = paymentRequestRepository.findExpiredPage(
+                    cutoff, afterCreatedAt, afterId, now, PageRequest.of(0, sweepBatchSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Long> ids = page.stream().map(PaymentRequestRepository.PaymentKeyView::getPaymentId).toList();
+            count += paymentRequestRepository.cancelExpired(ids, now);
+            PaymentRequestRepository.PaymentKeyView last = page.get(page.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getPaymentId();
+            if (page.size() < sweepBatchSize) {
+                break;
+            }
+        }
+        sweeps.increment();
+        expired.add(count);
+        lastSweepAt = now;
+        lastSweepExpired = count;
+        if (count > 0) {
+            System.out.println("Expired " + count + " pending payment request(s)");
+        }
+        return count;
+    }
+
+    /**
+     * Expiry sweep counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ttlHours", ttlHours);
+        stats.put("sweepBatchSize", sweepBatchSize);
+        stats.put("sweeps", sweeps.sum());
+        stats.put("expired", expired.sum());
+        stats.put("lastSweepAt", lastSweepAt);
+        stats.put("lastSweepExpired", lastSweepExpired);
+        return stats;
+    }
+}
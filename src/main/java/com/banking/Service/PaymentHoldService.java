@@ -0,0 +1,214 @@
+package com.banking.Service;
+
+import com.banking.Config.QueueConfig;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.PaymentRequestRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Payment Hold Service
+ *
+ * Two-phase payment of payment requests. Authorizing moves the request
+ * from PENDING to AUTHORIZED and the amount from available to hold on the
+ * Balance row, each with one guarded UPDATE in one short transaction.
+ * Capture (AUTHORIZED -> PAID) removes the held amount, journals the
+ * payment and writes its payment.queue message to the outbox. Release
+ * (AUTHORIZED -> PENDING) returns it to available.
+ *
+ * A hold that is neither captured nor released before it expires is
+ * released by a periodic job, so a failure between the two phases never
+ * leaves funds locked. Holds need the JPA balance path; with the ledger
+ * sequencer enabled {@link PaymentService} pays in one phase instead.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class PaymentHoldService {
+
+    // Mốc thời gian xa nhất cho release thủ công (datetime2 của SQL Server tối đa năm 9999)
+    private static final LocalDateTime RELEASE_ANY_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    public enum Outcome {
+        HELD, NOT_PENDING, INSUFFICIENT_FUNDS
+    }
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Value("${app.payment.hold.ttl-minutes:15}")
+    private long holdTtlMinutes = 15;
+
+    @Value("${app.payment.hold.release-batch-size:200}")
+    private int releaseBatchSize = 200;
+
+    private final LongAdder authorized = new LongAdder();
+    private final LongAdder insufficientFunds = new LongAdder();
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expiredReleased = new LongAdder();
+
+    /**
+     * Giữ tiền cho payment request: PENDING -> AUTHORIZED và available -> hold trong một transaction
+     *
+     * @return HELD, NOT_PENDING if the request is missing, not pending, expired or owned by another account,
+     *         or INSUFFICIENT_FUNDS (nothing is changed)
+     */
+    public Outcome authorize(Long paymentId, Long accountId) {
+        Outcome outcome = retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (paymentRequestRepository.markAuthorized(paymentId, accountId, now, now.plusMinutes(holdTtlMinutes)) == 0) {
+                return Outcome.NOT_PENDING;
+            }
+            BigDecimal amount = paymentRequestRepository.findAmountById(paymentId).orElseThrow().toBigDecimal();
+            if (!balanceService.hold(accountId, amount)) {
+                // Hủy bước PENDING -> AUTHORIZED cùng transaction
+                status.setRollbackOnly();
+                return Outcome.INSUFFICIENT_FUNDS;
+            }
+            return Outcome.HELD;
+        }), accountId);
+        if (outcome == Outcome.HELD) {
+            authorized.increment();
+        } else if (outcome == Outcome.INSUFFICIENT_FUNDS) {
+            insufficientFunds.increment();
+        }
+        return outcome;
+    }
+
+    /**
+     * Capture: AUTHORIZED -> PAID, tiền tạm giữ rời khỏi tài khoản
+     *
+     * @return true if captured, false if the request is not authorized (released, captured or missing)
+     */
+    public boolean capture(Long paymentId) {
+        PaymentRequestRepository.PaymentStatusView view = authorizedView(paymentId);
+        if (view == null) {
+            return false;
+        }
+        boolean done = Boolean.TRUE.equals(retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+            if (paymentRequestRepository.markCaptured(paymentId, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            if (!balanceService.captureHold(view.getAccountId(), view.getAmount().toBigDecimal(), "PAYMENT#" + paymentId)) {
+                throw new IllegalStateException("Số dư tạm giữ không đủ để capture payment request " + paymentId);
+            }
+            outboxService.enqueue(QueueConfig.PAYMENT_QUEUE, String.valueOf(view.getAccountId()),
+                    paymentRequestRepository.findById(paymentId).orElseThrow());
+            return true;
+        }), view.getAccountId()));
+        if (done) {
+            captured.increment();
+        }
+        return done;
+    }
+
+    /**
+     * Release: AUTHORIZED -> PENDING, trả tiền tạm giữ về số dư khả dụng
+     *
+     * @return true if released, false if the request is not authorized (released, captured or missing)
+     */
+    public boolean release(Long paymentId) {
+        boolean done = release(paymentId, RELEASE_ANY_TIME);
+        if (done) {
+            released.increment();
+        }
+        return done;
+    }
+
+    /**
+     * Trả lại tiền của các hold đã quá hạn mà chưa capture
+     *
+     * @return number of holds released
+     */
+    @Scheduled(fixedDelayString = "${app.payment.hold.release-interval-ms:60000}",
+               initialDelayString = "${app.payment.hold.release-interval-ms:60000}")
+    public int releaseExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int count = 0;
+        while (true) {
+            List<Long> page = paymentRequestRepository.findExpiredHolds(now, PageRequest.of(0, releaseBatchSize));
+            int releasedInPage = 0;
+            for (Long paymentId : page) {
+                try {
+                    if (release(paymentId, now)) {
+                        releasedInPage++;
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to release hold of payment request " + paymentId + ": " + e.getMessage());
+                }
+            }
+            count += releasedInPage;
+            // Dừng khi hết trang, hoặc khi cả trang đều lỗi để không quét lại mãi cùng các dòng
+            if (page.size() < releaseBatchSize || releasedInPage == 0) {
+                break;
+            }
+        }
+        expiredReleased.add(count);
+        if (count > 0) {
+            System.out.println("Released " + count + " expired payment hold(s)");
+        }
+        return count;
+    }
+
+    /**
+     * Hold counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("holdTtlMinutes", holdTtlMinutes);
+        stats.put("authorized", authorized.sum());
+        stats.put("insufficientFunds", insufficientFunds.sum());
+        stats.put("captured", captured.sum());
+        stats.put("released", released.sum());
+        stats.put("expiredReleased", expiredReleased.sum());
+        return stats;
+    }
+
+    private boolean release(Long paymentId, LocalDateTime holdExpiresBefore) {
+        PaymentRequestRepository.PaymentStatusView view = authorizedView(paymentId);
+        if (view == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+            if (paymentRequestRepository.markReleased(paymentId, holdExpiresBefore) == 0) {
+                return false;
+            }
+            if (!balanceService.releaseHold(view.getAccountId(), view.getAmount().toBigDecimal())) {
+                throw new IllegalStateException("Số dư tạm giữ không đủ để release payment request " + paymentId);
+            }
+            return true;
+        }), view.getAccountId()));
+    }
+
+    private PaymentRequestRepository.PaymentStatusView authorizedView(Long paymentId) {
+        return paymentRequestRepository.findStatusById(paymentId)
+                .filter(view -> view.getStatus() == PaymentRequest.PaymentStatus.AUTHORIZED)
+                .orElse(null);
+    }
+}
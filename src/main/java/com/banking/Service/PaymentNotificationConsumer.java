@@ -0,0 +1,284 @@
+package com.banking.Service;
+
+import com.banking.Config.QueueConfig;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.PaymentRequestRepository;
+import com.banking.Repository.ProcessedEventRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Payment Notification Consumer
+ *
+ * Consumes payment.queue and sends the payment confirmation. Messages are
+ * published through the outbox with JMSXGroupID = accountId, so the broker
+ * gives each account's messages to one consumer in order while other
+ * accounts are handled by the other consumers of the scaling container.
+ *
+ * A failed notification throws so the transacted session rolls back and
+ * the message is redelivered after an exponential backoff. On the last
+ * allowed attempt, or at once when the message can never succeed (unknown
+ * payment, unreadable body), it is copied to payment.queue.DLQ with the
+ * error in the same JMS transaction that consumes it. Admins move messages
+ * from the DLQ back to payment.queue with {@link #replayDeadLetters}.
+ *
+ * The outbox delivers at least once, so a message can arrive again after a
+ * lease expiry or a failed acknowledgement. Its outboxEventId is inserted
+ * into processed_event in the same transaction as the handling; a second
+ * delivery of the same event fails on the unique key and is skipped, and
+ * a failed handling rolls the row back so the redelivery is handled.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class PaymentNotificationConsumer {
+
+    public static final String LISTENER_ID = "payment-notifications";
+    public static final String DELIVERY_COUNT_PROPERTY = "JMSXDeliveryCount";
+    public static final String DLQ_ERROR_PROPERTY = "dlqError";
+    public static final String DLQ_ATTEMPTS_PROPERTY = "dlqAttempts";
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("brokerConnectionFactory")
+    private ConnectionFactory brokerConnectionFactory;
+
+    @Autowired
+    private JmsListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private ProcessedEventRepository processedEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.notification.consumer.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    // Thời gian chờ message tiếp theo trên DLQ trước khi coi như đã replay hết
+    @Value("${app.notification.consumer.replay-receive-timeout-ms:1000}")
+    private long replayReceiveTimeoutMs = 1000;
+
+    // Giữ id event đã xử lý lâu hơn thời gian một message có thể nằm trong DLQ rồi được replay
+    @Value("${app.notification.consumer.processed-retention-hours:168}")
+    private long processedRetentionHours = 168;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Lắng nghe payment.queue và gửi thông báo thanh toán thành công
+     *
+     * @throws RuntimeException to roll the message back for redelivery
+     */
+    @JmsListener(id = LISTENER_ID, destination = QueueConfig.PAYMENT_QUEUE,
+                 containerFactory = "notificationListenerContainerFactory")
+    public void onPaymentMessage(Message message, Session session) throws JMSException {
+        int attempt = message.propertyExists(DELIVERY_COUNT_PROPERTY) ? message.getIntProperty(DELIVERY_COUNT_PROPERTY) : 1;
+        PaymentRequest paymentRequest;
+        try {
+            paymentRequest = loadPayment(message);
+        } catch (RuntimeException e) {
+            // Lỗi dữ liệu: thử lại cũng không thành công
+            deadLetter(message, session, e, attempt);
+            return;
+        }
+        Long eventId = message.propertyExists(OutboxService.EVENT_ID_PROPERTY)
+                ? message.getLongProperty(OutboxService.EVENT_ID_PROPERTY) : null;
+        try {
+            if (handleOnce(eventId, paymentRequest)) {
+                delivered.increment();
+            } else {
+                duplicates.increment();
+                System.out.println("Payment notification for outbox event " + eventId + " already sent, skipped");
+            }
+        } catch (RuntimeException e) {
+            if (attempt >= maxAttempts) {
+                deadLetter(message, session, e, attempt);
+                notificationService.notifyAdminOfFailure(paymentRequest);
+                return;
+            }
+            retried.increment();
+            System.err.println("Payment notification " + paymentRequest.getPaymentId() + " failed (attempt "
+                    + attempt + " of " + maxAttempts + "), will be redelivered: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Xóa id event đã xử lý quá thời gian lưu
+     *
+     * @return number of rows deleted
+     */
+    @Scheduled(fixedDelayString = "${app.notification.consumer.processed-purge-interval-ms:3600000}",
+               initialDelayString = "${app.notification.consumer.processed-purge-interval-ms:3600000}")
+    public int purgeProcessed() {
+        return processedEventRepository.deleteProcessedBefore(LocalDateTime.now().minusHours(processedRetentionHours));
+    }
+
+    /**
+     * Chuyển message từ DLQ về payment.queue để xử lý lại
+     *
+     * @param limit Maximum number of messages to move
+     * @return number of messages moved
+     * @throws IllegalStateException if the broker cannot be reached
+     */
+    public int replayDeadLetters(int limit) {
+        int count = 0;
+        try (Connection connection = brokerConnectionFactory.createConnection()) {
+            connection.start();
+            Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            MessageConsumer consumer = session.createConsumer(session.createQueue(QueueConfig.PAYMENT_DLQ));
+            MessageProducer producer = session.createProducer(session.createQueue(QueueConfig.PAYMENT_QUEUE));
+            while (count < limit) {
+                Message dead = consumer.receive(replayReceiveTimeoutMs);
+                if (dead == null) {
+                    break;
+                }
+                producer.send(copy(session, dead));
+                // Commit từng message: nhận từ DLQ và gửi lại payment.queue cùng một transaction
+                session.commit();
+                count++;
+            }
+        } catch (JMSException e) {
+            throw new IllegalStateException("Không replay được " + QueueConfig.PAYMENT_DLQ + ": " + e.getMessage(), e);
+        } finally {
+            replayed.add(count);
+        }
+        return count;
+    }
+
+    /**
+     * Consumer counters and current container size
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        stats.put("running", container != null && container.isRunning());
+        if (container instanceof DefaultMessageListenerContainer dmlc) {
+            stats.put("minConsumers", dmlc.getConcurrentConsumers());
+            stats.put("maxConsumers", dmlc.getMaxConcurrentConsumers());
+            stats.put("scheduledConsumers", dmlc.getScheduledConsumerCount());
+            stats.put("activeConsumers", dmlc.getActiveConsumerCount());
+        }
+        stats.put("maxAttempts", maxAttempts);
+        stats.put("delivered", delivered.sum());
+        stats.put("retried", retried.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("replayed", replayed.sum());
+        stats.put("duplicates", duplicates.sum());
+        return stats;
+    }
+
+    /**
+     * Gửi thông báo nếu event chưa được xử lý; message không có outboxEventId luôn được xử lý
+     *
+     * @return false if the event was already processed
+     */
+    private boolean handleOnce(Long eventId, PaymentRequest paymentRequest) {
+        if (eventId == null) {
+            notificationService.handlePaymentNotification(paymentRequest);
+            return true;
+        }
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            try {
+                processedEventRepository.markProcessed(LISTENER_ID, eventId, LocalDateTime.now());
+            } catch (DataIntegrityViolationException e) {
+                // Đã xử lý (hoặc lần giao khác vừa xử lý xong): không gửi thông báo lần nữa
+                status.setRollbackOnly();
+                return false;
+            }
+            notificationService.handlePaymentNotification(paymentRequest);
+            return true;
+        }));
+    }
+
+    private PaymentRequest loadPayment(Message message) throws JMSException {
+        if (!(message instanceof TextMessage text)) {
+            throw new IllegalArgumentException("Unsupported message type " + message.getClass().getSimpleName());
+        }
+        JsonNode paymentId;
+        try {
+            paymentId = objectMapper.readTree(text.getText()).path("paymentId");
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unreadable payment message: " + e.getMessage(), e);
+        }
+        if (!paymentId.canConvertToLong()) {
+            throw new IllegalArgumentException("Payment message without paymentId");
+        }
+        return paymentRequestRepository.findWithAccountById(paymentId.asLong())
+                .orElseThrow(() -> new IllegalArgumentException("Payment request " + paymentId.asLong() + " not found"));
+    }
+
+    private void deadLetter(Message message, Session session, Exception error, int attempt) throws JMSException {
+        Message dead = copy(session, message);
+        String reason = String.valueOf(error.getMessage());
+        dead.setStringProperty(DLQ_ERROR_PROPERTY, reason.length() > 500 ? reason.substring(0, 500) : reason);
+        dead.setIntProperty(DLQ_ATTEMPTS_PROPERTY, attempt);
+        MessageProducer producer = session.createProducer(session.createQueue(QueueConfig.PAYMENT_DLQ));
+        try {
+            producer.send(dead);
+        } finally {
+            producer.close();
+        }
+        deadLettered.increment();
+        System.err.println("Payment notification moved to " + QueueConfig.PAYMENT_DLQ + " after " + attempt
+                + " attempt(s): " + reason);
+    }
+
+    /**
+     * Bản sao message với nội dung và các thuộc tính ứng dụng (_type, JMSXGroupID, outboxEventId)
+     */
+    private static Message copy(Session session, Message source) throws JMSException {
+        Message target = source instanceof TextMessage text
+                ? session.createTextMessage(text.getText())
+                : session.createMessage();
+        Enumeration<?> names = source.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            boolean keep = !name.startsWith("JMSX") || name.equals(OutboxService.GROUP_ID_PROPERTY);
+            if (keep && !name.equals(DLQ_ERROR_PROPERTY) && !name.equals(DLQ_ATTEMPTS_PROPERTY)) {
+                target.setObjectProperty(name, source.getObjectProperty(name));
+            }
+        }
+        return target;
+    }
+}
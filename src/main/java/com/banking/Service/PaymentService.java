@@ -1,28 +1,27 @@
 package com.banking.Service;
 
+import com.banking.Config.QueueConfig;
 import com.banking.DTO.CreatePaymentRequestDTO;
 import com.banking.DTO.PayPaymentRequestDTO;
 import com.banking.Entity.PaymentRequest;
-import com.banking.Entity.Account;
-import com.banking.Entity.Balance;
-import com.banking.Repository.BalanceRepository;
 import com.banking.Repository.AccountRepository;
 import com.banking.Repository.PaymentRequestRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jms.core.JmsTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import jakarta.jms.Queue;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Payment Service
  * 
  * Handles all payment-related operations including payment processing,
  * payment request creation, and payment status management.
- * Integrates with JMS for asynchronous payment processing.
+ * Payment notifications go to payment.queue through the transactional
+ * outbox ({@link OutboxService}), written in the same transaction as the
+ * payment itself.
  * 
  * @author Banking System Team
  * @version 1.0
@@ -32,22 +31,34 @@ import java.util.Optional;
 public class PaymentService {
 
     @Autowired
-    private JmsTemplate jmsTemplate;
+    private AccountRepository accountRepository;
 
     @Autowired
-    private Queue paymentQueue;
+    private PaymentRequestRepository paymentRequestRepository;
 
     @Autowired
-    private AccountRepository accountRepository;
+    private NotificationService notificationService;
 
     @Autowired
-    private PaymentRequestRepository paymentRequestRepository;
+    private BalanceService balanceService;
 
     @Autowired
-    private NotificationService notificationService;
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PaymentExpiryService paymentExpiryService;
 
     @Autowired
-    private BalanceRepository balanceRepository;
+    private PaymentHoldService paymentHoldService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Value("${app.payment.hold.auto-capture:true}")
+    private boolean autoCapture = true;
 
     /**
      * Xử lý yêu cầu thanh toán và gửi message đến Message Queue
@@ -131,6 +142,7 @@ public class PaymentService {
             paymentRequest.setDescription(createDTO.getDescription());
             paymentRequest.setStatus(PaymentRequest.PaymentStatus.PENDING);
             paymentRequest.setCreatedAt(LocalDateTime.now());
+            paymentRequest.setExpiresAt(paymentExpiryService.expiryFor(paymentRequest.getCreatedAt()));
 
             // Lấy account từ database
             com.banking.Entity.Account account = accountRepository.findById(createDTO.getAccountId()).orElse(null);
@@ -153,69 +165,138 @@ public class PaymentService {
 
     /**
      * Customer thanh toán payment request
+     *
+     * Hai pha: authorize chuyển PENDING -> AUTHORIZED và giữ tiền (available -> hold) trong một transaction ngắn,
+     * mỗi bước là một câu lệnh UPDATE có điều kiện; capture (AUTHORIZED -> PAID) chạy sau đó, còn JMS/email
+     * chạy ngoài mọi transaction. Hai lượt trả đồng thời chỉ một lượt authorize được, lượt còn lại nhận 0 dòng.
+     * Khi tắt auto-capture, request dừng ở AUTHORIZED chờ admin capture/release.
+     * Với ledger sequencer (không hỗ trợ giữ tiền) thì thanh toán một pha như trước.
+     *
      * @param payDTO Thông tin thanh toán
      * @return PaymentRequest đã được cập nhật
      */
     public PaymentRequest payPaymentRequest(PayPaymentRequestDTO payDTO) {
         try {
-            // Lấy payment request
-            Optional<PaymentRequest> paymentOpt = paymentRequestRepository.findById(payDTO.getPaymentId());
-            if (!paymentOpt.isPresent()) {
-                throw new RuntimeException("Payment request not found");
+            Long paymentId = payDTO.getPaymentId();
+            Long accountId = payDTO.getAccountId();
+
+            if (balanceService.holdsSupported()) {
+                PaymentHoldService.Outcome outcome = paymentHoldService.authorize(paymentId, accountId);
+                if (outcome == PaymentHoldService.Outcome.NOT_PENDING) {
+                    throw new RuntimeException(rejectionReason(paymentId, accountId));
+                }
+                if (outcome == PaymentHoldService.Outcome.INSUFFICIENT_FUNDS) {
+                    failInsufficientBalance(paymentId);
+                }
+                if (autoCapture && !paymentHoldService.capture(paymentId)) {
+                    throw new RuntimeException("Payment authorization was released before capture");
+                }
+            } else {
+                payInOnePhase(paymentId, accountId);
             }
 
-            PaymentRequest paymentRequest = paymentOpt.get();
+            // Đọc lại dòng ngoài transaction để trả về; thông báo đã nằm trong outbox
+            PaymentRequest savedPayment = paymentRequestRepository.findById(paymentId).orElseThrow();
 
-            // Kiểm tra trạng thái
-            if (paymentRequest.getStatus() != PaymentRequest.PaymentStatus.PENDING) {
-                throw new RuntimeException("Payment request is not pending");
-            }
-
-            // Kiểm tra account có khớp không
-            if (!paymentRequest.getAccount().getAccountId().equals(payDTO.getAccountId())) {
-                throw new RuntimeException("Account mismatch");
-            }
+            System.out.println("Payment completed: " + savedPayment);
+            return savedPayment;
 
-            // Kiểm tra và trừ tiền từ số dư khả dụng
-            Account account = paymentRequest.getAccount();
-            Balance balance = balanceRepository.findByAccount(account)
-                    .orElseThrow(() -> new RuntimeException("Balance not found"));
-
-            java.math.BigDecimal available = balance.getAvailableBalance() != null
-                    ? balance.getAvailableBalance()
-                    : java.math.BigDecimal.ZERO;
-            java.math.BigDecimal amount = java.math.BigDecimal.valueOf(paymentRequest.getAmount());
-
-            if (available.compareTo(amount) < 0) {
-                paymentRequest.setStatus(PaymentRequest.PaymentStatus.FAILED);
-                paymentRequestRepository.save(paymentRequest);
-                notificationService.sendPaymentFailureEmail(paymentRequest, "Insufficient available balance");
-                throw new RuntimeException("Insufficient available balance");
-            }
+        } catch (Exception e) {
+            System.err.println("Error processing payment: " + e.getMessage());
+            throw new RuntimeException("Failed to process payment: " + e.getMessage());
+        }
+    }
 
-            // Trừ số dư khả dụng
-            balance.setAvailableBalance(available.subtract(amount));
-            balanceRepository.save(balance);
+    /**
+     * Admin capture payment request đã authorize (AUTHORIZED -> PAID)
+     * @throws RuntimeException if the request is not authorized
+     */
+    public PaymentRequest capturePaymentRequest(Long paymentId) {
+        if (!paymentHoldService.capture(paymentId)) {
+            throw new RuntimeException(notAuthorizedReason(paymentId));
+        }
+        return paymentRequestRepository.findById(paymentId).orElseThrow();
+    }
 
-            // Thanh toán thành công
-            paymentRequest.setStatus(PaymentRequest.PaymentStatus.PAID);
-            paymentRequest.setPaidAt(LocalDateTime.now());
-            PaymentRequest savedPayment = paymentRequestRepository.save(paymentRequest);
+    /**
+     * Admin release payment request đã authorize (AUTHORIZED -> PENDING), trả lại tiền tạm giữ
+     * @throws RuntimeException if the request is not authorized
+     */
+    public PaymentRequest releasePaymentRequest(Long paymentId) {
+        if (!paymentHoldService.release(paymentId)) {
+            throw new RuntimeException(notAuthorizedReason(paymentId));
+        }
+        return paymentRequestRepository.findById(paymentId).orElseThrow();
+    }
 
-            // Gửi message đến queue để xử lý thông báo (không làm fail payment nếu JMS lỗi)
-            try {
-                jmsTemplate.convertAndSend(paymentQueue, savedPayment);
-            } catch (Exception jmsError) {
-                System.err.println("JMS send failed: " + jmsError.getMessage());
+    /**
+     * Thanh toán một pha: PENDING -> PAID và trừ tiền trong cùng transaction
+     */
+    private void payInOnePhase(Long paymentId, Long accountId) {
+        Boolean debited = retryExecutor.execute(() -> transactionTemplate.execute(status -> {
+            if (paymentRequestRepository.markPaid(paymentId, accountId, LocalDateTime.now()) == 0) {
+                throw new RuntimeException(rejectionReason(paymentId, accountId));
+            }
+            // Trừ tiền bằng một câu lệnh UPDATE có điều kiện (available_balance >= amount)
+            java.math.BigDecimal amount = paymentRequestRepository.findAmountById(paymentId).orElseThrow().toBigDecimal();
+            if (!balanceService.payment(accountId, amount, "PAYMENT#" + paymentId)) {
+                // Hủy bước PENDING -> PAID cùng transaction
+                status.setRollbackOnly();
+                return false;
             }
+            outboxService.enqueue(QueueConfig.PAYMENT_QUEUE, String.valueOf(accountId),
+                    paymentRequestRepository.findById(paymentId).orElseThrow());
+            return true;
+        }), accountId);
 
-            System.out.println("Payment completed: " + savedPayment);
-            return savedPayment;
+        if (!Boolean.TRUE.equals(debited)) {
+            failInsufficientBalance(paymentId);
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error processing payment: " + e.getMessage());
-            throw new RuntimeException("Failed to process payment: " + e.getMessage());
+    private void failInsufficientBalance(Long paymentId) {
+        paymentRequestRepository.markFailed(paymentId);
+        // Các kênh đọc email/số điện thoại trên luồng riêng nên cần account đã được nạp
+        paymentRequestRepository.findWithAccountById(paymentId).ifPresent(failed ->
+                notificationService.sendPaymentFailureNotification(failed, "Insufficient available balance"));
+        throw new RuntimeException("Insufficient available balance");
+    }
+
+    /**
+     * Admin hủy payment request đang chờ
+     * @param paymentId ID của payment request
+     * @throws RuntimeException if the request does not exist or is no longer pending
+     */
+    public void cancelPaymentRequest(Long paymentId) {
+        if (paymentRequestRepository.cancelPending(paymentId) == 0) {
+            throw new RuntimeException(paymentRequestRepository.findStatusById(paymentId)
+                    .map(view -> "Payment request is not pending")
+                    .orElse("Payment request not found"));
         }
+        System.out.println("Payment request cancelled: " + paymentId);
+    }
+
+    private String notAuthorizedReason(Long paymentId) {
+        return paymentRequestRepository.findStatusById(paymentId)
+                .map(view -> "Payment request is not authorized")
+                .orElse("Payment request not found");
+    }
+
+    /**
+     * Lý do lệnh UPDATE có điều kiện không cập nhật được dòng nào
+     */
+    private String rejectionReason(Long paymentId, Long accountId) {
+        return paymentRequestRepository.findStatusById(paymentId)
+                .map(view -> {
+                    if (view.getStatus() != PaymentRequest.PaymentStatus.PENDING) {
+                        return "Payment request is not pending";
+                    }
+                    if (!view.getAccountId().equals(accountId)) {
+                        return "Account mismatch";
+                    }
+                    return view.getExpiresAt() != null ? "Payment request has expired" : "Payment request is not pending";
+                })
+                .orElse("Payment request not found");
     }
 
     /**
@@ -0,0 +1,45 @@
+package com.banking.Service;
+
+import com.banking.Entity.PaymentRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Push notification channel, published to the account's topic so every
+ * device the customer is signed in on receives it
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class PushNotificationChannel implements NotificationChannel {
+
+    @Autowired
+    @Qualifier("pushGateway")
+    private MessageGateway pushGateway;
+
+    @Override
+    public String getName() {
+        return "push";
+    }
+
+    @Override
+    public String getRecipient(PaymentRequest paymentRequest) {
+        return "account-" + paymentRequest.getAccount().getAccountId();
+    }
+
+    @Override
+    public void deliver(PaymentRequest paymentRequest, Event event, String reason) throws IOException {
+        String amount = paymentRequest.getAmount() + " " + paymentRequest.getCurrency();
+        String text = switch (event) {
+            case PAYMENT_REQUEST -> "Yêu cầu thanh toán mới: " + amount;
+            case PAYMENT_SUCCESS -> "Thanh toán thành công: " + amount;
+            case PAYMENT_FAILED -> "Thanh toán thất bại: " + amount + " (" + reason + ")";
+        };
+        pushGateway.send(getRecipient(paymentRequest), text);
+    }
+}
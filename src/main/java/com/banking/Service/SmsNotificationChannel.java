@@ -0,0 +1,46 @@
+package com.banking.Service;
+
+import com.banking.Entity.PaymentRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * SMS notification channel, sent to the account's phone number
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class SmsNotificationChannel implements NotificationChannel {
+
+    @Autowired
+    @Qualifier("smsGateway")
+    private MessageGateway smsGateway;
+
+    @Override
+    public String getName() {
+        return "sms";
+    }
+
+    @Override
+    public String getRecipient(PaymentRequest paymentRequest) {
+        String phoneNumber = paymentRequest.getAccount().getPhoneNumber();
+        return phoneNumber == null || phoneNumber.isBlank() ? null : phoneNumber;
+    }
+
+    @Override
+    public void deliver(PaymentRequest paymentRequest, Event event, String reason) throws IOException {
+        String payment = "Payment of " + paymentRequest.getAmount() + " " + paymentRequest.getCurrency();
+        String text = switch (event) {
+            case PAYMENT_REQUEST -> "New payment request: " + paymentRequest.getAmount() + " "
+                    + paymentRequest.getCurrency() + ". ID: " + paymentRequest.getPaymentId();
+            case PAYMENT_SUCCESS -> payment + " confirmed. ID: " + paymentRequest.getPaymentId();
+            case PAYMENT_FAILED -> payment + " failed. Reason: " + reason;
+        };
+        smsGateway.send(paymentRequest.getAccount().getPhoneNumber(), text);
+    }
+}
@@ -1,14 +1,14 @@
 package com.banking.Service;
 
 import com.banking.Entity.Account;
-import com.banking.Entity.Balance;
 import com.banking.Entity.Transaction;
-import com.banking.Repository.AccountRepository;
-import com.banking.Repository.BalanceRepository;
+import com.banking.Entity.TransferCommand;
 import com.banking.Repository.TransactionRepository;
-import jakarta.transaction.Transactional;
+import com.banking.Repository.TransferCommandRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -17,9 +17,6 @@ import java.time.LocalDateTime;
 @Service
 public class TransactionService {
 
-    @Autowired
-    private AccountRepository accountRepository;
-
     @Autowired
     private TransactionRepository transactionRepository;
 
@@ -32,35 +29,115 @@ public class TransactionService {
     @Autowired AccountService accountService;
 
     @Autowired
-    private BalanceRepository balanceRepository;
+    private AccountLockManager accountLockManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BalanceRetryExecutor retryExecutor;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Autowired
+    private LedgerJournal ledgerJournal;
+
+    @Autowired
+    private TransferLimitService transferLimitService;
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Autowired
+    private TransferCommandRepository transferCommandRepository;
+
+    // STRIPED: khóa tài khoản trong JVM trước khi ghi; OPTIMISTIC: không khóa, xung đột được retry
+    @Value("${app.balance.locking-mode:STRIPED}")
+    private String lockingMode;
+
     /**
      * Chuyển tiền từ cardSend sang cardReceipt
+     *
+     * Khóa hai tài khoản theo thứ tự cố định (stripe lock trong JVM) rồi trừ/cộng
+     * tiền bằng các câu lệnh UPDATE có điều kiện trong cùng một transaction,
+     * nên hai giao dịch cùng tài khoản không thể cùng vượt qua bước kiểm tra số dư.
+     * Deadlock/lock timeout/xung đột version được retry toàn bộ transaction.
+     * Ở chế độ app.transfer.mode=SEQUENCER lệnh chuyển được đưa vào LedgerSequencer.
+     * Hạn mức theo level/tài khoản được kiểm tra trước qua TransferLimitService.
      */
-    @Transactional
     public void transfer(Account acc, String CardSend,  String cardReceipt, BigDecimal amount) {
-        BigDecimal balance = balanceRepository.findByAccount(acc).orElseThrow().getAvailableBalance();
-        Long ReceiptId = cardService.getAccountIdByCardNumber(cardReceipt);
-        Account receipt = accountRepository.findById(ReceiptId).orElseThrow(() -> new IllegalArgumentException("Thẻ nhận không tồn tại"));
+        transfer(acc, CardSend, cardReceipt, amount, null);
+    }
 
-        if (receipt.getAccountId().equals(acc.getAccountId())){
-            throw new IllegalArgumentException("Không được tự chuyển vào chính thẻ của mình");
-        }
-        if (balance.compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Số dư không đủ để thực hiện giao dịch" + " balance: "+ balance);
+    /**
+     * Thực hiện lệnh chuyển bất đồng bộ và đánh dấu lệnh SUCCEEDED cùng lúc với số dư
+     *
+     * The PROCESSING to SUCCEEDED transition commits atomically with the balances: in the
+     * transfer transaction, or in SEQUENCER mode in the sequencer's flush, which is replayed
+     * from its journal after a crash. A command is therefore never marked done without
+     * the money moving, nor left to be retried after it moved.
+     *
+     * @param transferId The async command, already moved to PROCESSING by the caller; null for a plain transfer
+     * @throws IllegalStateException if the command is no longer PROCESSING; the transfer is rolled back
+     */
+    public void transfer(Account acc, String CardSend, String cardReceipt, BigDecimal amount, String transferId) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Số tiền chuyển phải lớn hơn 0");
         }
+        // Chỉ cần account_id của chủ thẻ nhận; Card.account_id là khóa ngoại nên tài khoản chắc chắn tồn tại
+        Long receiverId = cardService.getAccountIdByCardNumber(cardReceipt);
 
+        if (receiverId.equals(acc.getAccountId())){
+            throw new IllegalArgumentException("Không được tự chuyển vào chính thẻ của mình");
+        }
 
+        Long senderId = acc.getAccountId();
+        // Hạn mức được kiểm tra trong bộ nhớ; giao dịch thất bại thì trả lại phần đã giữ
+        TransferLimitService.Reservation reservation = transferLimitService.reserve(senderId, acc.getLevel(), amount);
+        try {
+            if (ledgerSequencer.isEnabled()) {
+                Transaction transaction = new Transaction(LocalDate.now(),amount,"TRANSFER","SUCCESS",CardSend, cardReceipt, acc);
+                if (!ledgerSequencer.transfer(senderId, receiverId, amount, transaction,
+                        ledgerJournal.transferLegs(senderId, receiverId, amount, CardSend + "->" + cardReceipt), transferId)) {
+                    throw new IllegalArgumentException("Số dư không đủ để thực hiện giao dịch");
+                }
+                return;
+            }
+            retryExecutor.run(() -> {
+                if ("OPTIMISTIC".equalsIgnoreCase(lockingMode)) {
+                    applyTransfer(acc, CardSend, cardReceipt, receiverId, amount, transferId);
+                } else if (balanceShardService.isSharded(receiverId)) {
+                    // Cộng vào slot là một UPDATE có điều kiện: không khóa stripe của tài khoản nóng
+                    accountLockManager.withAccountLock(senderId,
+                            () -> applyTransfer(acc, CardSend, cardReceipt, receiverId, amount, transferId));
+                } else {
+                    accountLockManager.withAccountLocks(senderId, receiverId,
+                            () -> applyTransfer(acc, CardSend, cardReceipt, receiverId, amount, transferId));
+                }
+            }, senderId, receiverId);
+        } catch (LedgerSequencer.OutcomeUnknownException e) {
+            // Lệnh có thể đã vào sổ cái: giữ hạn mức
+            throw e;
+        } catch (RuntimeException e) {
+            transferLimitService.release(reservation);
+            throw e;
+        }
+    }
 
-        Balance send = accountService.findBalanceByAccount(acc);
-        Balance receive = accountService.findBalanceByAccount(receipt);
-        send.setAvailableBalance(send.getAvailableBalance().subtract(amount));
-        receive.setAvailableBalance(receive.getAvailableBalance().add(amount));
-
-
-        accountRepository.save(acc);
-        accountRepository.save(receipt);
-
-        Transaction transaction = new Transaction(LocalDate.now(),amount,"TRANSFER","SUCCESS",CardSend, cardReceipt, acc);
-        transactionRepository.save(transaction);
+    private Void applyTransfer(Account acc, String CardSend, String cardReceipt, Long receiverId, BigDecimal amount,
+                               String transferId) {
+        return transactionTemplate.execute(status -> {
+            if (!balanceService.transfer(acc.getAccountId(), receiverId, amount, CardSend + "->" + cardReceipt)) {
+                throw new IllegalArgumentException("Số dư không đủ để thực hiện giao dịch");
+            }
+            Transaction transaction = new Transaction(LocalDate.now(),amount,"TRANSFER","SUCCESS",CardSend, cardReceipt, acc);
+            transactionRepository.save(transaction);
+            if (transferId != null && transferCommandRepository.transition(transferId, TransferCommand.PROCESSING,
+                    TransferCommand.SUCCEEDED, TransferCommand.SUCCESS_MESSAGE, LocalDateTime.now()) != 1) {
+                throw new IllegalStateException("Lệnh chuyển " + transferId + " không còn ở trạng thái PROCESSING");
+            }
+            return null;
+        });
     }
 }
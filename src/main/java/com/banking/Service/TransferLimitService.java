@@ -0,0 +1,647 @@
+package com.banking.Service;
+
+import com.banking.DTO.TransferLimitPolicyDTO;
+import com.banking.Entity.Money;
+import com.banking.Entity.TransferLimitPolicy;
+import com.banking.Repository.TransferLimitPolicyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Transfer Limit Service
+ *
+ * Enforces per-transfer maximum, daily amount and transfers-per-minute
+ * limits by account level, with optional per-account overrides. The daily
+ * amount is a rolling 24 hours, not a calendar day: a transfer stops
+ * counting 24 hours (to the half-hour bucket) after it was made. Usage is
+ * tracked in memory with lock-free sliding windows per account (48 half-hour
+ * buckets for the daily amount, 12 five-second buckets for the count), so a
+ * transfer is checked without an aggregate query.
+ *
+ * A transfer is first added to the windows and then checked, and the
+ * addition is undone if a limit is exceeded or the transfer fails. Two
+ * concurrent transfers can therefore both be rejected near a limit, but
+ * never both accepted past it.
+ *
+ * The daily windows are checkpointed to transfer_limit_checkpoint
+ * periodically, one row per account. Each instance merges its window into
+ * the stored row bucket by bucket, keeping the larger value, under a row
+ * lock, so instances never overwrite each other's counters, and a row no
+ * instance has touched for 24 hours is deleted. On startup the windows are
+ * restored from the checkpoint, and transfers recorded in
+ * account_transaction after it are added on top.
+ * Limits come from the app.limits.levels.* properties, overridden by rows
+ * in transfer_limit_policy, which are reloaded periodically.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@Service
+public class TransferLimitService {
+
+    public static final String[] LEVELS = {"SILVER", "GOLD", "PLATINUM"};
+
+    private static final int DAILY_BUCKETS = 48;
+    private static final long DAILY_BUCKET_MS = 30 * 60_000L;
+    private static final int MINUTE_BUCKETS = 12;
+    private static final long MINUTE_BUCKET_MS = 5_000L;
+
+    // SQL Server cho phép tối đa 2100 tham số mỗi câu lệnh
+    private static final int CHECKPOINT_CHUNK_SIZE = 1000;
+
+    private static final int CHECKPOINT_ATTEMPTS = 3;
+
+    private static final String INSERT_CHECKPOINT_SQL =
+            "INSERT INTO transfer_limit_checkpoint (account_id, daily_buckets, last_transaction_id, updated_at) VALUES (?, ?, ?, ?)";
+
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE transfer_limit_checkpoint SET daily_buckets = ?, last_transaction_id = ?, updated_at = ? WHERE account_id = ?";
+
+    private static final String TRANSFERS_SINCE_SQL =
+            "SELECT account_id, COUNT(*), SUM(amount) FROM account_transaction "
+                    + "WHERE type = 'TRANSFER' AND status = 'SUCCESS' AND transaction_id > ? GROUP BY account_id";
+
+    private static final String TRANSFERS_TODAY_SQL =
+            "SELECT account_id, COUNT(*), SUM(amount) FROM account_transaction "
+                    + "WHERE type = 'TRANSFER' AND status = 'SUCCESS' AND transaction_date >= ? GROUP BY account_id";
+
+    @Autowired
+    private TransferLimitPolicyRepository policyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.limits.enabled:true}")
+    private boolean enabled = true;
+
+    private final Map<Long, AccountWindows> windows = new ConcurrentHashMap<>();
+
+    private volatile PolicySet policies = new PolicySet(Map.of(), Map.of());
+
+    /**
+     * Giữ chỗ hạn mức cho một lệnh chuyển tiền
+     *
+     * @param accountId The sender account
+     * @param level The sender's level (SILVER/GOLD/PLATINUM)
+     * @param amount The transfer amount
+     * @return A reservation to release if the transfer does not go through, or null when limits are disabled
+     * @throws IllegalArgumentException if the transfer would exceed a limit
+     */
+    public Reservation reserve(Long accountId, String level, BigDecimal amount) {
+        if (!enabled) {
+            return null;
+        }
+        return reserve(accountId, level, amount, System.currentTimeMillis());
+    }
+
+    Reservation reserve(Long accountId, String level, BigDecimal amount, long now) {
+        return reserve(accountId, level, List.of(amount), now);
+    }
+
+    /**
+     * Giữ chỗ hạn mức cho một lô chuyển tiền (chi lương)
+     *
+     * The per-transfer maximum applies to every line and the daily amount to
+     * their total, but the whole batch counts as one transfer against the
+     * per-minute count: that limit throttles how often a customer submits,
+     * and a payroll run with more lines than it would otherwise never pass.
+     *
+     * @param amounts The line amounts
+     * @return A reservation to release if the batch does not go through, or null when limits are disabled
+     * @throws IllegalArgumentException if the batch would exceed a limit
+     */
+    public Reservation reserve(Long accountId, String level, List<BigDecimal> amounts) {
+        if (!enabled) {
+            return null;
+        }
+        return reserve(accountId, level, amounts, System.currentTimeMillis());
+    }
+
+    Reservation reserve(Long accountId, String level, List<BigDecimal> amounts, long now) {
+        Limits limits = effectiveLimits(accountId, level);
+        long minor = 0;
+        for (BigDecimal amount : amounts) {
+            if (limits.singleMax() != null && amount.compareTo(limits.singleMax()) > 0) {
+                throw new IllegalArgumentException("Số tiền vượt hạn mức mỗi giao dịch (" + limits.singleMax().toPlainString() + ")");
+            }
+            minor = Math.addExact(minor, toMinor(amount));
+        }
+        long count = 1;
+        Reservation reservation;
+        while (true) {
+            AccountWindows accountWindows = windows.computeIfAbsent(accountId, id -> new AccountWindows());
+            reservation = new Reservation(accountWindows,
+                    accountWindows.daily.add(now, minor), accountWindows.minute.add(now, count), minor, count);
+            if (!accountWindows.retired) {
+                break;
+            }
+            // Cửa sổ vừa bị dọn khi checkpoint: bỏ phần vừa cộng và ghi vào cửa sổ mới
+            release(reservation);
+        }
+        AccountWindows accountWindows = reservation.windows;
+        if (limits.perMinuteCount() != null && accountWindows.minute.sum(now) > limits.perMinuteCount()) {
+            release(reservation);
+            throw new IllegalArgumentException("Vượt quá số giao dịch cho phép mỗi phút (" + limits.perMinuteCount() + ")");
+        }
+        if (limits.dailyAmount() != null && accountWindows.daily.sum(now) > toMinor(limits.dailyAmount())) {
+            release(reservation);
+            throw new IllegalArgumentException("Vượt hạn mức chuyển tiền trong ngày (" + limits.dailyAmount().toPlainString() + ")");
+        }
+        return reservation;
+    }
+
+    /**
+     * Trả lại hạn mức đã giữ khi giao dịch không thực hiện được
+     */
+    public void release(Reservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        reservation.windows.daily.subtract(reservation.dailyBucket, reservation.amountMinor);
+        reservation.windows.minute.subtract(reservation.minuteBucket, reservation.count);
+    }
+
+    /**
+     * Trả lại hạn mức ngày của một dòng không thực hiện được trong lô đã giữ chỗ;
+     * lượt đếm mỗi phút của lô vẫn giữ
+     */
+    public void release(Reservation reservation, BigDecimal lineAmount) {
+        if (reservation == null) {
+            return;
+        }
+        reservation.windows.daily.subtract(reservation.dailyBucket, toMinor(lineAmount));
+    }
+
+    /**
+     * Hạn mức hiệu lực và mức đã dùng của một tài khoản
+     */
+    public Map<String, Object> usage(Long accountId, String level) {
+        long now = System.currentTimeMillis();
+        Limits limits = effectiveLimits(accountId, level);
+        AccountWindows accountWindows = windows.get(accountId);
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("accountId", accountId);
+        usage.put("level", normalizeLevel(level));
+        usage.put("singleMax", limits.singleMax());
+        usage.put("dailyAmount", limits.dailyAmount());
+        usage.put("perMinuteCount", limits.perMinuteCount());
+        usage.put("dailyUsed", accountWindows == null ? BigDecimal.ZERO : fromMinor(accountWindows.daily.sum(now)));
+        usage.put("lastMinuteCount", accountWindows == null ? 0L : accountWindows.minute.sum(now));
+        return usage;
+    }
+
+    /**
+     * Nạp lại hạn mức từ cấu hình và bảng transfer_limit_policy
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.limits.policy-refresh-ms:30000}",
+               initialDelayString = "${app.limits.policy-refresh-ms:30000}")
+    public void reloadPolicies() {
+        Map<String, Limits> levels = new HashMap<>();
+        for (String level : LEVELS) {
+            String prefix = "app.limits.levels." + level + ".";
+            levels.put(level, new Limits(environment.getProperty(prefix + "single-max", BigDecimal.class),
+                    environment.getProperty(prefix + "daily-amount", BigDecimal.class),
+                    environment.getProperty(prefix + "per-minute-count", Integer.class)));
+        }
+        Map<Long, Limits> accounts = new HashMap<>();
+        for (TransferLimitPolicy policy : policyRepository.findAll()) {
+            Limits override = new Limits(policy.getSingleMax(), policy.getDailyAmount(), policy.getPerMinuteCount());
+            if (TransferLimitPolicy.SCOPE_LEVEL.equals(policy.getScope())) {
+                String level = normalizeLevel(policy.getScopeKey());
+                levels.put(level, override.orElse(levels.get(level)));
+            } else if (TransferLimitPolicy.SCOPE_ACCOUNT.equals(policy.getScope())) {
+                try {
+                    accounts.put(Long.valueOf(policy.getScopeKey()), override);
+                } catch (NumberFormatException e) {
+                    System.err.println("Bỏ qua hạn mức với account id không hợp lệ: " + policy.getScopeKey());
+                }
+            }
+        }
+        policies = new PolicySet(levels, accounts);
+    }
+
+    /**
+     * Lưu hạn mức cho một level hoặc một tài khoản và áp dụng ngay
+     */
+    public TransferLimitPolicyDTO savePolicy(TransferLimitPolicyDTO dto) {
+        String scope = dto.getScope() == null ? "" : dto.getScope().toUpperCase();
+        String scopeKey;
+        if (TransferLimitPolicy.SCOPE_LEVEL.equals(scope)) {
+            scopeKey = normalizeLevel(dto.getScopeKey());
+            if (!scopeKey.equalsIgnoreCase(dto.getScopeKey())) {
+                throw new IllegalArgumentException("Level không hợp lệ");
+            }
+        } else if (TransferLimitPolicy.SCOPE_ACCOUNT.equals(scope)) {
+            try {
+                scopeKey = String.valueOf(Long.parseLong(dto.getScopeKey()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Account id không hợp lệ");
+            }
+        } else {
+            throw new IllegalArgumentException("Scope phải là LEVEL hoặc ACCOUNT");
+        }
+        requireNonNegative(dto.getSingleMax());
+        requireNonNegative(dto.getDailyAmount());
+        if (dto.getPerMinuteCount() != null && dto.getPerMinuteCount() < 0) {
+            throw new IllegalArgumentException("Hạn mức không được âm");
+        }
+        TransferLimitPolicy policy = policyRepository.findByScopeAndScopeKey(scope, scopeKey)
+                .orElseGet(() -> new TransferLimitPolicy(scope, scopeKey));
+        policy.setSingleMax(dto.getSingleMax());
+        policy.setDailyAmount(dto.getDailyAmount());
+        policy.setPerMinuteCount(dto.getPerMinuteCount());
+        policy.setUpdatedAt(LocalDateTime.now());
+        policyRepository.save(policy);
+        reloadPolicies();
+        return new TransferLimitPolicyDTO(scope, scopeKey, policy.getSingleMax(), policy.getDailyAmount(), policy.getPerMinuteCount());
+    }
+
+    /**
+     * Hạn mức hiệu lực theo level và các hạn mức riêng theo tài khoản
+     */
+    public List<TransferLimitPolicyDTO> listPolicies() {
+        PolicySet current = policies;
+        List<TransferLimitPolicyDTO> result = new ArrayList<>();
+        for (String level : LEVELS) {
+            Limits limits = current.levels().get(level);
+            result.add(new TransferLimitPolicyDTO(TransferLimitPolicy.SCOPE_LEVEL, level,
+                    limits.singleMax(), limits.dailyAmount(), limits.perMinuteCount()));
+        }
+        current.accounts().forEach((accountId, limits) -> result.add(new TransferLimitPolicyDTO(
+                TransferLimitPolicy.SCOPE_ACCOUNT, String.valueOf(accountId),
+                limits.singleMax(), limits.dailyAmount(), limits.perMinuteCount())));
+        return result;
+    }
+
+    /**
+     * Gộp cửa sổ hạn mức ngày vào DB và dọn các tài khoản không còn giao dịch trong cửa sổ
+     *
+     * @return Number of accounts checkpointed
+     */
+    @Scheduled(fixedDelayString = "${app.limits.checkpoint-interval-ms:60000}",
+               initialDelayString = "${app.limits.checkpoint-interval-ms:60000}")
+    public int checkpoint() {
+        if (!enabled) {
+            return 0;
+        }
+        // Đọc mốc trước khi chụp cửa sổ: giao dịch có id <= mốc chắc chắn đã được giữ chỗ trong cửa sổ
+        Long watermark = jdbcTemplate.queryForObject("SELECT MAX(transaction_id) FROM account_transaction", Long.class);
+        long now = System.currentTimeMillis();
+        Map<Long, String> exports = new HashMap<>();
+        windows.forEach((accountId, accountWindows) -> {
+            String buckets = accountWindows.daily.export(now);
+            if (!buckets.isEmpty()) {
+                exports.put(accountId, buckets);
+            }
+        });
+        List<Long> accountIds = new ArrayList<>(exports.keySet());
+        for (int from = 0; from < accountIds.size(); from += CHECKPOINT_CHUNK_SIZE) {
+            List<Long> chunk = accountIds.subList(from, Math.min(from + CHECKPOINT_CHUNK_SIZE, accountIds.size()));
+            mergeCheckpoints(chunk, exports, watermark == null ? 0L : watermark, now);
+        }
+        // Hàng không instance nào cập nhật trong 24 giờ chỉ còn bucket đã hết hạn
+        jdbcTemplate.update("DELETE FROM transfer_limit_checkpoint WHERE updated_at < ?",
+                new Timestamp(now - DAILY_BUCKETS * DAILY_BUCKET_MS));
+        for (Long accountId : windows.keySet()) {
+            windows.computeIfPresent(accountId, (id, accountWindows) -> accountWindows.retireIfIdle(now) ? null : accountWindows);
+        }
+        return exports.size();
+    }
+
+    private void mergeCheckpoints(List<Long> accountIds, Map<Long, String> exports, long watermark, long now) {
+        String in = String.join(",", Collections.nCopies(accountIds.size(), "?"));
+        Object[] ids = accountIds.toArray();
+        Timestamp updatedAt = new Timestamp(now);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // Khóa các hàng đã có trước khi đọc: hai instance không ghi đè phần gộp của nhau
+                    jdbcTemplate.update("UPDATE transfer_limit_checkpoint SET updated_at = updated_at WHERE account_id IN (" + in + ")", ids);
+                    Map<Long, String> stored = new HashMap<>();
+                    jdbcTemplate.query("SELECT account_id, daily_buckets FROM transfer_limit_checkpoint WHERE account_id IN (" + in + ")",
+                            rs -> {
+                                stored.put(rs.getLong(1), rs.getString(2));
+                            }, ids);
+                    List<Object[]> updates = new ArrayList<>();
+                    List<Object[]> inserts = new ArrayList<>();
+                    for (Long accountId : accountIds) {
+                        String mine = exports.get(accountId);
+                        if (stored.containsKey(accountId)) {
+                            updates.add(new Object[]{mergeBuckets(stored.get(accountId), mine, now), watermark, updatedAt, accountId});
+                        } else {
+                            inserts.add(new Object[]{accountId, mine, watermark, updatedAt});
+                        }
+                    }
+                    if (!updates.isEmpty()) {
+                        jdbcTemplate.batchUpdate(UPDATE_CHECKPOINT_SQL, updates);
+                    }
+                    if (!inserts.isEmpty()) {
+                        jdbcTemplate.batchUpdate(INSERT_CHECKPOINT_SQL, inserts);
+                    }
+                });
+                return;
+            } catch (DuplicateKeyException e) {
+                // Instance khác vừa chèn cùng account: đọc lại hàng của nó rồi gộp
+                if (attempt >= CHECKPOINT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gộp hai bản export cửa sổ ngày: mỗi bucket lấy giá trị lớn hơn, bucket đã trượt khỏi 24 giờ bị bỏ
+     */
+    static String mergeBuckets(String stored, String mine, long now) {
+        long oldest = now / DAILY_BUCKET_MS - DAILY_BUCKETS + 1;
+        Map<Long, Long> merged = new TreeMap<>();
+        for (String exported : new String[]{stored, mine}) {
+            if (exported == null || exported.isEmpty()) {
+                continue;
+            }
+            for (String pair : exported.split(";")) {
+                int colon = pair.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                long index = Long.parseLong(pair.substring(0, colon));
+                if (index >= oldest) {
+                    merged.merge(index, Long.parseLong(pair.substring(colon + 1)), Math::max);
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        merged.forEach((index, value) -> {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(index).append(':').append(value);
+        });
+        return sb.toString();
+    }
+
+    /**
+     * Dựng lại cửa sổ hạn mức từ checkpoint và account_transaction khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        AtomicLong watermark = new AtomicLong(-1);
+        jdbcTemplate.query("SELECT account_id, daily_buckets, last_transaction_id FROM transfer_limit_checkpoint", rs -> {
+            windows.computeIfAbsent(rs.getLong(1), id -> new AccountWindows()).daily.restore(rs.getString(2), now);
+            watermark.accumulateAndGet(rs.getLong(3), Math::max);
+        });
+        if (watermark.get() >= 0) {
+            // Giao dịch sau checkpoint: coi như vừa xảy ra
+            jdbcTemplate.query(TRANSFERS_SINCE_SQL, rs -> {
+                AccountWindows accountWindows = windows.computeIfAbsent(rs.getLong(1), id -> new AccountWindows());
+                accountWindows.minute.add(now, rs.getLong(2));
+                accountWindows.daily.add(now, toMinor(rs.getBigDecimal(3)));
+            }, watermark.get());
+        } else {
+            // Chưa có checkpoint: account_transaction chỉ lưu ngày, nên tính cả ngày hôm nay vào cửa sổ
+            jdbcTemplate.query(TRANSFERS_TODAY_SQL, rs -> {
+                windows.computeIfAbsent(rs.getLong(1), id -> new AccountWindows())
+                        .daily.add(now, toMinor(rs.getBigDecimal(3)));
+            }, Date.valueOf(LocalDate.now()));
+        }
+    }
+
+    private Limits effectiveLimits(Long accountId, String level) {
+        PolicySet current = policies;
+        Limits levelLimits = current.levels().getOrDefault(normalizeLevel(level), Limits.NONE);
+        Limits accountLimits = current.accounts().get(accountId);
+        return accountLimits == null ? levelLimits : accountLimits.orElse(levelLimits);
+    }
+
+    private static String normalizeLevel(String level) {
+        if (level != null) {
+            for (String known : LEVELS) {
+                if (known.equalsIgnoreCase(level)) {
+                    return known;
+                }
+            }
+        }
+        return "SILVER";
+    }
+
+    private static void requireNonNegative(BigDecimal value) {
+        if (value != null && value.signum() < 0) {
+            throw new IllegalArgumentException("Hạn mức không được âm");
+        }
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        // Làm tròn lên: phần lẻ dưới 0.01 vẫn được tính vào hạn mức
+        return Money.toMinor(amount, RoundingMode.CEILING);
+    }
+
+    private static BigDecimal fromMinor(long minor) {
+        return Money.toBigDecimal(minor);
+    }
+
+    /**
+     * Limits held for one transfer or one batch of transfers
+     */
+    public static final class Reservation {
+        private final AccountWindows windows;
+        private final long dailyBucket;
+        private final long minuteBucket;
+        private final long amountMinor;
+        private final long count;
+
+        private Reservation(AccountWindows windows, long dailyBucket, long minuteBucket, long amountMinor, long count) {
+            this.windows = windows;
+            this.dailyBucket = dailyBucket;
+            this.minuteBucket = minuteBucket;
+            this.amountMinor = amountMinor;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Limits of one scope; a null field means no limit, or inherit when merged
+     */
+    record Limits(BigDecimal singleMax, BigDecimal dailyAmount, Integer perMinuteCount) {
+        static final Limits NONE = new Limits(null, null, null);
+
+        Limits orElse(Limits fallback) {
+            if (fallback == null) {
+                return this;
+            }
+            return new Limits(singleMax != null ? singleMax : fallback.singleMax,
+                    dailyAmount != null ? dailyAmount : fallback.dailyAmount,
+                    perMinuteCount != null ? perMinuteCount : fallback.perMinuteCount);
+        }
+    }
+
+    private record PolicySet(Map<String, Limits> levels, Map<Long, Limits> accounts) {
+    }
+
+    private static final class AccountWindows {
+        private final SlidingWindow daily = new SlidingWindow(DAILY_BUCKETS, DAILY_BUCKET_MS);
+        private final SlidingWindow minute = new SlidingWindow(MINUTE_BUCKETS, MINUTE_BUCKET_MS);
+
+        // Đánh dấu trước rồi mới kiểm tra rỗng; reserve cộng trước rồi mới đọc cờ,
+        // nên ít nhất một bên thấy thay đổi của bên kia
+        private volatile boolean retired;
+
+        boolean retireIfIdle(long now) {
+            retired = true;
+            if (daily.sum(now) == 0 && minute.sum(now) == 0) {
+                return true;
+            }
+            retired = false;
+            return false;
+        }
+    }
+
+    /**
+     * Ring of time buckets. A bucket belonging to an older period is replaced
+     * with CAS, and counts are added with atomic increments, so writers never block.
+     */
+    static final class SlidingWindow {
+        private final int size;
+        private final long bucketMillis;
+        private final AtomicReferenceArray<Bucket> buckets;
+
+        SlidingWindow(int size, long bucketMillis) {
+            this.size = size;
+            this.bucketMillis = bucketMillis;
+            this.buckets = new AtomicReferenceArray<>(size);
+        }
+
+        /**
+         * @return The bucket index the value was added to
+         */
+        long add(long now, long delta) {
+            long index = now / bucketMillis;
+            bucket(index).value.addAndGet(delta);
+            return index;
+        }
+
+        void subtract(long index, long delta) {
+            Bucket bucket = buckets.get(slot(index));
+            if (bucket != null && bucket.index == index) {
+                bucket.value.addAndGet(-delta);
+            }
+        }
+
+        long sum(long now) {
+            long newest = now / bucketMillis;
+            long oldest = newest - size + 1;
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.index >= oldest && bucket.index <= newest) {
+                    total += bucket.value.get();
+                }
+            }
+            return total;
+        }
+
+        String export(long now) {
+            long newest = now / bucketMillis;
+            long oldest = newest - size + 1;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.index >= oldest && bucket.index <= newest) {
+                    long value = bucket.value.get();
+                    if (value != 0) {
+                        if (sb.length() > 0) {
+                            sb.append(';');
+                        }
+                        sb.append(bucket.index).append(':').append(value);
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        void restore(String exported, long now) {
+            if (exported == null || exported.isEmpty()) {
+                return;
+            }
+            long oldest = now / bucketMillis - size + 1;
+            for (String pair : exported.split(";")) {
+                int colon = pair.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                long index = Long.parseLong(pair.substring(0, colon));
+                if (index >= oldest) {
+                    bucket(index).value.addAndGet(Long.parseLong(pair.substring(colon + 1)));
+                }
+            }
+        }
+
+        private Bucket bucket(long index) {
+            int slot = slot(index);
+            while (true) {
+                Bucket current = buckets.get(slot);
+                if (current != null && current.index == index) {
+                    return current;
+                }
+                if (current != null && current.index > index) {
+                    // Đồng hồ lùi: không ghi đè bucket mới hơn
+                    return new Bucket(index);
+                }
+                Bucket fresh = new Bucket(index);
+                if (buckets.compareAndSet(slot, current, fresh)) {
+                    return fresh;
+                }
+            }
+        }
+
+        private int slot(long index) {
+            return (int) Math.floorMod(index, (long) size);
+        }
+    }
+
+    private static final class Bucket {
+        private final long index;
+        private final AtomicLong value = new AtomicLong();
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.banking.Benchmark;
+
+import com.banking.Entity.Account;
+import com.banking.Entity.Balance;
+import com.banking.Entity.Card;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.BalanceRepository;
+import com.banking.Service.AccountService;
+import com.banking.Service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput benchmark for TransactionService.transfer
+ *
+ * Runs thousands of concurrent random transfers between a small set of
+ * accounts on H2 and checks that no money is created or lost and no balance
+ * goes negative. Sizes can be raised with -Dbenchmark.transfer.count=...
+ * Subclasses select the transfer mode so the engines can be compared.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+abstract class AbstractTransferBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000");
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceRepository balanceRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private LoggingSystem loggingSystem;
+
+    /**
+     * Label printed with the result
+     */
+    protected abstract String mode();
+
+    @BeforeEach
+    void quietSqlLogging() {
+        // SQL/bind logging of the test profile would dominate the measurement
+        loggingSystem.setLogLevel("org.hibernate.SQL", LogLevel.WARN);
+        loggingSystem.setLogLevel("org.hibernate.type.descriptor.sql.BasicBinder", LogLevel.WARN);
+        loggingSystem.setLogLevel("org.hibernate.orm.jdbc.bind", LogLevel.WARN);
+    }
+
+    @AfterEach
+    void restoreSqlLogging() {
+        loggingSystem.setLogLevel("org.hibernate.SQL", LogLevel.DEBUG);
+        loggingSystem.setLogLevel("org.hibernate.type.descriptor.sql.BasicBinder", LogLevel.TRACE);
+        loggingSystem.setLogLevel("org.hibernate.orm.jdbc.bind", null);
+    }
+
+    @Test
+    void testConcurrentTransfers_ShouldConserveTotalBalance() throws Exception {
+        int accountCount = Integer.getInteger("benchmark.transfer.accounts", 20);
+        int threads = Integer.getInteger("benchmark.transfer.threads", 8);
+        int transfers = Integer.getInteger("benchmark.transfer.count", 2000);
+
+        List<Account> accounts = new ArrayList<>();
+        List<String> cardNumbers = new ArrayList<>();
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < accountCount; i++) {
+            Account account = new Account("Bench " + i, "bench-" + runId + "-" + i + "@test.com",
+                    "password123", "Customer", "0900000000");
+            account = accountRepository.save(account);
+            Card card = accountService.createCard(account, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE");
+            Balance balance = balanceRepository.findById(account.getAccountId()).orElseThrow();
+            balance.setAvailableBalance(INITIAL_BALANCE);
+            balanceRepository.save(balance);
+            accounts.add(account);
+            cardNumbers.add(card.getCardNumber());
+        }
+        BigDecimal expectedTotal = INITIAL_BALANCE.multiply(BigDecimal.valueOf(accountCount));
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(accountCount);
+                int to = random.nextInt(accountCount - 1);
+                if (to >= from) {
+                    to++;
+                }
+                BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 200_000));
+                try {
+                    transactionService.transfer(accounts.get(from), cardNumbers.get(from), cardNumbers.get(to), amount);
+                    succeeded.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        BigDecimal actualTotal = BigDecimal.ZERO;
+        for (Account account : accounts) {
+            BigDecimal available = balanceRepository.findById(account.getAccountId()).orElseThrow().getAvailableBalance();
+            assertTrue(available.signum() >= 0, "Balance went negative for account " + account.getAccountId());
+            actualTotal = actualTotal.add(available);
+        }
+
+        System.out.printf("Transfer benchmark [%s]: %d transfers (%d ok, %d rejected) on %d threads in %d ms -> %.0f transfers/s%n",
+                mode(), transfers, succeeded.get(), rejected.get(), threads, elapsedNanos / 1_000_000,
+                transfers / (elapsedNanos / 1_000_000_000.0));
+
+        assertEquals(transfers, succeeded.get() + rejected.get());
+        assertEquals(0, expectedTotal.compareTo(actualTotal), "Money was created or lost");
+    }
+}
@@ -0,0 +1,147 @@
+package com.banking.Benchmark;
+
+import com.banking.Entity.Account;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.CardRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Card lookup benchmark on a large Card table
+ *
+ * Compares the transfer path's old receiver lookup (load the Card entity,
+ * then the Account entity, to read one id) with the projection query that
+ * reads account_id from the indexed card_number row. Filling the table
+ * takes about a minute, so it only runs when the table size is given, e.g.
+ * -Dbenchmark.cards=1000000. Lookups: -Dbenchmark.card-lookups=...
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark.cards", matches = "\\d+")
+class CardLookupBenchmarkTest {
+
+    private static final String INSERT_CARD_SQL =
+            "INSERT INTO Card (card_number, account_id, card_type, expiry_date, status) VALUES (?, ?, 'DEBIT', ?, 'ACTIVE')";
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoggingSystem loggingSystem;
+
+    private final List<Long> accountIds = new ArrayList<>();
+
+    // Số thẻ 12 chữ số, tiền tố riêng cho lần chạy để không trùng với thẻ của test khác
+    private final String prefix = "9" + ThreadLocalRandom.current().nextInt(10, 100);
+
+    @BeforeEach
+    void quietSqlLogging() {
+        loggingSystem.setLogLevel("org.hibernate.SQL", LogLevel.WARN);
+        loggingSystem.setLogLevel("org.hibernate.type.descriptor.sql.BasicBinder", LogLevel.WARN);
+        loggingSystem.setLogLevel("org.hibernate.orm.jdbc.bind", LogLevel.WARN);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        // Bảng Card dùng chung với các test khác trong cùng context
+        jdbcTemplate.update("DELETE FROM Card WHERE card_number LIKE ?", prefix + "%");
+        jdbcTemplate.batchUpdate("DELETE FROM Account WHERE account_id = ?", accountIds, 500,
+                (ps, accountId) -> ps.setLong(1, accountId));
+        loggingSystem.setLogLevel("org.hibernate.SQL", LogLevel.DEBUG);
+        loggingSystem.setLogLevel("org.hibernate.type.descriptor.sql.BasicBinder", LogLevel.TRACE);
+        loggingSystem.setLogLevel("org.hibernate.orm.jdbc.bind", null);
+    }
+
+    @Test
+    void testReceiverLookup_ProjectionVersusEntity() {
+        int cards = Integer.getInteger("benchmark.cards");
+        int lookups = Integer.getInteger("benchmark.card-lookups", 5_000);
+        int owners = 1000;
+
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < owners; i++) {
+            Account account = accountRepository.save(new Account("Card bench " + i,
+                    "card-bench-" + runId + "-" + i + "@test.com", "password123", "Customer", "0900000000"));
+            accountIds.add(account.getAccountId());
+        }
+        Date expiry = Date.valueOf(LocalDate.now().plusYears(3));
+        List<Integer> rows = new ArrayList<>(cards);
+        for (int i = 0; i < cards; i++) {
+            rows.add(i);
+        }
+        long loadStart = System.nanoTime();
+        jdbcTemplate.batchUpdate(INSERT_CARD_SQL, rows, 5000, (ps, i) -> {
+            ps.setString(1, cardNumber(i));
+            ps.setLong(2, accountIds.get(i % owners));
+            ps.setDate(3, expiry);
+        });
+        System.out.printf("Card lookup benchmark: loaded %d cards in %d ms%n", cards, (System.nanoTime() - loadStart) / 1_000_000);
+
+        List<String> targets = new ArrayList<>(lookups);
+        List<Long> expected = new ArrayList<>(lookups);
+        for (int i = 0; i < lookups; i++) {
+            int card = ThreadLocalRandom.current().nextInt(cards);
+            targets.add(cardNumber(card));
+            expected.add(accountIds.get(card % owners));
+        }
+
+        // Đường cũ: nạp Card rồi nạp Account chỉ để lấy id
+        Function<String, Long> entityLookup = cardNumber -> {
+            Long accountId = cardRepository.findByCardNumber(cardNumber).orElseThrow().getAccount().getAccountId();
+            return accountRepository.findById(accountId).orElseThrow().getAccountId();
+        };
+        Function<String, Long> projectionLookup = cardNumber ->
+                cardRepository.findAccountIdByCardNumber(cardNumber).orElseThrow();
+
+        // Khởi động JIT và cache câu lệnh trước khi đo
+        measure(entityLookup, targets.subList(0, Math.min(1000, lookups)), expected);
+        measure(projectionLookup, targets.subList(0, Math.min(1000, lookups)), expected);
+
+        long entityNanos = measure(entityLookup, targets, expected);
+        long projectionNanos = measure(projectionLookup, targets, expected);
+
+        System.out.printf("Card lookup benchmark: %d lookups on %d cards -> entity %.1f us/op, projection %.1f us/op (%.1fx)%n",
+                lookups, cards, entityNanos / 1000.0 / lookups, projectionNanos / 1000.0 / lookups,
+                (double) entityNanos / projectionNanos);
+    }
+
+    private long measure(Function<String, Long> lookup, List<String> targets, List<Long> expected) {
+        long start = System.nanoTime();
+        for (int i = 0; i < targets.size(); i++) {
+            assertEquals(expected.get(i), lookup.apply(targets.get(i)));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private String cardNumber(int i) {
+        return prefix + String.format("%09d", i);
+    }
+}
@@ -0,0 +1,125 @@
+package com.banking.Benchmark;
+
+import com.banking.Config.JmsConfig;
+import jakarta.jms.ConnectionFactory;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JmsTemplate send throughput benchmark
+ *
+ * Sends the same number of small text messages from several threads
+ * through each connection layer JmsConfig can build: DIRECT (a new broker
+ * connection per send, the old wiring), CACHING (spring.jms.cache.*) and
+ * POOLED (spring.activemq.pool.*). Prints messages per second and the
+ * number of physical broker connections opened for each.
+ *
+ * Needs a running broker, so it only runs when one is given, e.g.
+ * -Dbenchmark.jms.broker-url=tcp://localhost:61616, or
+ * vm://localhost?broker.persistent=false with activemq-broker on the test
+ * classpath. Sizes: -Dbenchmark.jms.messages=... -Dbenchmark.jms.threads=...
+ * Messages expire after a minute so the benchmark queue does not grow.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@EnabledIfSystemProperty(named = "benchmark.jms.broker-url", matches = ".+")
+class JmsThroughputBenchmarkTest {
+
+    @Test
+    void testSend_DirectVersusCachingVersusPooled() throws Exception {
+        String brokerUrl = System.getProperty("benchmark.jms.broker-url");
+        int messages = Integer.getInteger("benchmark.jms.messages", 5000);
+        int threads = Integer.getInteger("benchmark.jms.threads", 4);
+        String queue = "benchmark.jms." + UUID.randomUUID().toString().substring(0, 8);
+
+        Map<String, Long> connectionsOpened = new LinkedHashMap<>();
+        System.out.printf("JMS benchmark: %d messages, %d threads, %s%n", messages, threads, brokerUrl);
+        for (String mode : List.of("DIRECT", "CACHING", "POOLED")) {
+            ConnectionFactory factory = config(brokerUrl, mode).connectionFactory();
+            JmsTemplate template = new JmsTemplate(factory);
+            template.setExplicitQosEnabled(true);
+            template.setTimeToLive(60000);
+            try {
+                // Làm nóng: mở kết nối/session trước khi đo
+                template.send(queue, session -> session.createTextMessage("warm-up"));
+                long start = System.nanoTime();
+                sendAll(template, queue, messages, threads);
+                long nanos = System.nanoTime() - start;
+                JmsConfig.CountingConnectionFactory broker = broker(factory);
+                connectionsOpened.put(mode, broker.getConnectionsOpened());
+                System.out.printf("  %-8s %8.0f msg/s  %6d broker connection(s) opened%n",
+                        mode, messages / (nanos / 1e9), broker.getConnectionsOpened());
+            } finally {
+                if (factory instanceof PooledConnectionFactory pooled) {
+                    pooled.stop();
+                } else if (factory instanceof CachingConnectionFactory caching) {
+                    caching.destroy();
+                }
+            }
+        }
+
+        assertEquals(messages + 1, connectionsOpened.get("DIRECT"));
+        assertEquals(1, connectionsOpened.get("CACHING"));
+        assertTrue(connectionsOpened.get("POOLED") <= 10);
+    }
+
+    private static void sendAll(JmsTemplate template, String queue, int messages, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int count = messages / threads + (t < messages % threads ? 1 : 0);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < count; i++) {
+                        String body = "{\"paymentId\":" + i + "}";
+                        template.send(queue, session -> session.createTextMessage(body));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static JmsConfig config(String brokerUrl, String mode) {
+        JmsConfig config = new JmsConfig();
+        ReflectionTestUtils.setField(config, "brokerUrl", brokerUrl);
+        ReflectionTestUtils.setField(config, "brokerUser", System.getProperty("benchmark.jms.user", "admin"));
+        ReflectionTestUtils.setField(config, "brokerPassword", System.getProperty("benchmark.jms.password", "admin"));
+        ReflectionTestUtils.setField(config, "poolEnabled", mode.equals("POOLED"));
+        ReflectionTestUtils.setField(config, "poolMaxConnections", 10);
+        ReflectionTestUtils.setField(config, "cacheEnabled", mode.equals("CACHING"));
+        ReflectionTestUtils.setField(config, "cacheSessionCacheSize", 10);
+        return config;
+    }
+
+    private static JmsConfig.CountingConnectionFactory broker(ConnectionFactory factory) {
+        if (factory instanceof PooledConnectionFactory pooled) {
+            return (JmsConfig.CountingConnectionFactory) pooled.getConnectionFactory();
+        }
+        if (factory instanceof CachingConnectionFactory caching) {
+            return (JmsConfig.CountingConnectionFactory) caching.getTargetConnectionFactory();
+        }
+        return (JmsConfig.CountingConnectionFactory) factory;
+    }
+}
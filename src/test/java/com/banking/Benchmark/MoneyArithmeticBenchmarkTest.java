@@ -0,0 +1,113 @@
+package com.banking.Benchmark;
+
+import com.banking.Entity.Money;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Money arithmetic benchmark
+ *
+ * Replays the sequencer's hot loop (check funds, debit one account, credit
+ * another) over a fixed set of accounts, once with BigDecimal balances as
+ * before and once with long hundredths updated in place as {@link Money}
+ * does now. Prints time and bytes allocated per command for both and
+ * checks that they end with the same balances. Sizes can be changed with
+ * -Dbenchmark.money.commands=... and -Dbenchmark.money.rounds=...
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class MoneyArithmeticBenchmarkTest {
+
+    private static final int ACCOUNTS = 1000;
+
+    @Test
+    void testApplyCommands_LongVersusBigDecimal() {
+        int commands = Integer.getInteger("benchmark.money.commands", 1_000_000);
+        int rounds = Integer.getInteger("benchmark.money.rounds", 5);
+
+        int[] from = new int[commands];
+        int[] to = new int[commands];
+        BigDecimal[] amounts = new BigDecimal[commands];
+        long[] amountsMinor = new long[commands];
+        for (int i = 0; i < commands; i++) {
+            from[i] = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+            to[i] = (from[i] + 1 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            amounts[i] = BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(1, 500_000), 2);
+            amountsMinor[i] = Money.toMinor(amounts[i]);
+        }
+
+        Map<Long, BigDecimal> decimalBalances = null;
+        Map<Long, long[]> minorBalances = null;
+        long decimalNanos = Long.MAX_VALUE;
+        long minorNanos = Long.MAX_VALUE;
+        long decimalBytes = 0;
+        long minorBytes = 0;
+        // Vòng đầu để JIT biên dịch, lấy kết quả tốt nhất của các vòng
+        for (int round = 0; round < rounds; round++) {
+            decimalBalances = new HashMap<>();
+            minorBalances = new HashMap<>();
+            for (long id = 0; id < ACCOUNTS; id++) {
+                decimalBalances.put(id, new BigDecimal("10000000.00"));
+                minorBalances.put(id, new long[]{1_000_000_000L});
+            }
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            applyDecimal(decimalBalances, from, to, amounts);
+            decimalNanos = Math.min(decimalNanos, System.nanoTime() - start);
+            decimalBytes = allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            applyMinor(minorBalances, from, to, amountsMinor);
+            minorNanos = Math.min(minorNanos, System.nanoTime() - start);
+            minorBytes = allocatedBytes() - bytes;
+        }
+
+        System.out.printf("Money benchmark: %d commands over %d accounts%n", commands, ACCOUNTS);
+        System.out.printf("  BigDecimal  %6d ms  %6.1f bytes/command%n", decimalNanos / 1_000_000, decimalBytes / (double) commands);
+        System.out.printf("  long minor  %6d ms  %6.1f bytes/command%n", minorNanos / 1_000_000, minorBytes / (double) commands);
+
+        for (long id = 0; id < ACCOUNTS; id++) {
+            assertEquals(decimalBalances.get(id), Money.toBigDecimal(minorBalances.get(id)[0]));
+        }
+        assertTrue(minorBytes < decimalBytes, "long path should allocate less than the BigDecimal path");
+    }
+
+    private static void applyDecimal(Map<Long, BigDecimal> balances, int[] from, int[] to, BigDecimal[] amounts) {
+        for (int i = 0; i < amounts.length; i++) {
+            BigDecimal fromBalance = balances.get((long) from[i]);
+            if (fromBalance.compareTo(amounts[i]) < 0) {
+                continue;
+            }
+            balances.put((long) from[i], fromBalance.subtract(amounts[i]));
+            balances.put((long) to[i], balances.get((long) to[i]).add(amounts[i]));
+        }
+    }
+
+    private static void applyMinor(Map<Long, long[]> balances, int[] from, int[] to, long[] amounts) {
+        for (int i = 0; i < amounts.length; i++) {
+            long[] fromBalance = balances.get((long) from[i]);
+            if (fromBalance[0] < amounts[i]) {
+                continue;
+            }
+            fromBalance[0] -= amounts[i];
+            long[] toBalance = balances.get((long) to[i]);
+            toBalance[0] = Math.addExact(toBalance[0], amounts[i]);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
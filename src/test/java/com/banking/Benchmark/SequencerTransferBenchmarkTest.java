@@ -0,0 +1,22 @@
+package com.banking.Benchmark;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Transfer benchmark on the single-writer ledger sequencer
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@TestPropertySource(properties = {
+        "app.transfer.mode=SEQUENCER",
+        "app.ledger.journal-path=target/ledger-benchmark.journal"
+})
+class SequencerTransferBenchmarkTest extends AbstractTransferBenchmark {
+
+    @Override
+    protected String mode() {
+        return "SEQUENCER";
+    }
+}
@@ -0,0 +1,16 @@
+package com.banking.Benchmark;
+
+/**
+ * Transfer benchmark on the default JPA path (guarded updates per request)
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class TransferThroughputBenchmarkTest extends AbstractTransferBenchmark {
+
+    @Override
+    protected String mode() {
+        return "JPA";
+    }
+}
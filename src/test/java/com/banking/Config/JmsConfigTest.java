@@ -0,0 +1,87 @@
+package com.banking.Config;
+
+import jakarta.jms.ConnectionFactory;
+import org.apache.activemq.pool.PooledConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the JmsTemplate connection layer chosen by JmsConfig
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class JmsConfigTest {
+
+    /**
+     * Test spring.activemq.pool.* selects a pool with the configured limits
+     */
+    @Test
+    void testConnectionFactory_WithPoolEnabled_ShouldPool() {
+        // Given
+        JmsConfig config = config(true, true);
+        ReflectionTestUtils.setField(config, "poolMaxConnections", 10);
+        ReflectionTestUtils.setField(config, "asyncSend", true);
+
+        // When
+        ConnectionFactory factory = config.connectionFactory();
+
+        // Then
+        PooledConnectionFactory pooled = assertInstanceOf(PooledConnectionFactory.class, factory);
+        assertEquals(10, pooled.getMaxConnections());
+        assertEquals(500, pooled.getMaximumActiveSessionPerConnection());
+        assertTrue(pooled.isUseAnonymousProducers());
+        JmsConfig.CountingConnectionFactory broker =
+                assertInstanceOf(JmsConfig.CountingConnectionFactory.class, pooled.getConnectionFactory());
+        assertTrue(broker.isUseAsyncSend());
+        pooled.stop();
+    }
+
+    /**
+     * Test spring.jms.cache.* selects cached sessions and producers when the pool is off
+     */
+    @Test
+    void testConnectionFactory_WithCacheEnabled_ShouldCacheSessions() {
+        // Given
+        JmsConfig config = config(false, true);
+        ReflectionTestUtils.setField(config, "cacheSessionCacheSize", 10);
+
+        // When
+        ConnectionFactory factory = config.connectionFactory();
+
+        // Then
+        CachingConnectionFactory caching = assertInstanceOf(CachingConnectionFactory.class, factory);
+        assertEquals(10, caching.getSessionCacheSize());
+        assertTrue(caching.isCacheProducers());
+        assertFalse(caching.isCacheConsumers());
+        assertInstanceOf(JmsConfig.CountingConnectionFactory.class, caching.getTargetConnectionFactory());
+    }
+
+    /**
+     * Test with pool and cache both off every send uses the broker factory directly
+     */
+    @Test
+    void testConnectionFactory_WithPoolAndCacheDisabled_ShouldConnectDirectly() {
+        // When
+        ConnectionFactory factory = config(false, false).connectionFactory();
+
+        // Then
+        JmsConfig.CountingConnectionFactory broker = assertInstanceOf(JmsConfig.CountingConnectionFactory.class, factory);
+        assertFalse(broker.isUseAsyncSend());
+        assertEquals(0, broker.getConnectionsOpened());
+    }
+
+    static JmsConfig config(boolean poolEnabled, boolean cacheEnabled) {
+        JmsConfig config = new JmsConfig();
+        ReflectionTestUtils.setField(config, "brokerUrl", "tcp://localhost:61616");
+        ReflectionTestUtils.setField(config, "brokerUser", "admin");
+        ReflectionTestUtils.setField(config, "brokerPassword", "admin");
+        ReflectionTestUtils.setField(config, "poolEnabled", poolEnabled);
+        ReflectionTestUtils.setField(config, "cacheEnabled", cacheEnabled);
+        return config;
+    }
+}
@@ -0,0 +1,79 @@
+package com.banking.Entity;
+
+import com.banking.Config.JacksonConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for Money, its JPA converter and its JSON mapping
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class MoneyTest {
+
+    /**
+     * Test conversions keep exact hundredths and reject finer amounts
+     */
+    @Test
+    void testConversions_ShouldBeExact() {
+        // Given
+        Money money = Money.of(new BigDecimal("1500.5"), "USD");
+
+        // When & Then
+        assertEquals(150050, money.getMinorUnits());
+        assertEquals(new BigDecimal("1500.50"), money.toBigDecimal());
+        assertEquals(29, Money.of(0.29, "VND").getMinorUnits());
+        assertEquals(Money.ofMinor(150050, "USD"), Money.of(1500.50, "USD"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001"), "VND"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(Double.NaN, "VND"));
+        assertThrows(IllegalArgumentException.class, () -> money.plus(Money.zero("VND")));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "VND").plus(Money.ofMinor(1, "VND")));
+        assertEquals("1500.00 VND", Money.of(1500, "VND").toString());
+    }
+
+    /**
+     * Test the converter round trip and the payment request currency tag
+     */
+    @Test
+    void testConverter_ShouldRoundTripAndKeepCurrency() {
+        // Given
+        MoneyConverter converter = new MoneyConverter();
+        PaymentRequest request = new PaymentRequest(99.99, null, "USD");
+
+        // When
+        Money read = converter.convertToEntityAttribute(converter.convertToDatabaseColumn(request.getMoney()));
+        Money legacyFloat = converter.convertToEntityAttribute(new BigDecimal(0.1));
+
+        // Then
+        assertEquals(Money.ofMinor(9999, Money.DEFAULT_CURRENCY), read);
+        assertEquals(10, legacyFloat.getMinorUnits());
+        request.setCurrency("EUR");
+        assertEquals(Money.ofMinor(9999, "EUR"), request.getMoney());
+        assertEquals(99.99, request.getAmount());
+    }
+
+    /**
+     * Test JSON writes an exact amount with its currency and reads objects or bare numbers
+     */
+    @Test
+    void testJson_ShouldRoundTrip() throws Exception {
+        // Given
+        ObjectMapper mapper = new JacksonConfig().apiObjectMapper();
+        Money money = Money.of(new BigDecimal("1234567.89"), "USD");
+
+        // When
+        String json = mapper.writeValueAsString(money);
+
+        // Then
+        assertEquals("{\"amount\":1234567.89,\"currency\":\"USD\"}", json);
+        assertEquals(money, mapper.readValue(json, Money.class));
+        assertEquals(Money.ofMinor(50000, "VND"), mapper.readValue("500", Money.class));
+        assertThrows(Exception.class, () -> mapper.readValue("{\"amount\":0.001}", Money.class));
+    }
+}
@@ -10,11 +10,13 @@ import com.banking.Repository.CardRepository;
 import com.banking.Repository.PaymentRequestRepository;
 import com.banking.Service.AccountService;
 import com.banking.Service.AuthService;
+import com.banking.Service.BalanceService;
 import com.banking.Service.PaymentService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -61,6 +63,12 @@ class BankingIntegrationTest {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private Account testAccount;
 
     @BeforeEach
@@ -311,4 +319,45 @@ class BankingIntegrationTest {
         assertTrue(updatedAccount.isPresent());
         assertEquals(newPhone, updatedAccount.get().getPhoneNumber());
     }
+
+    /**
+     * Test guarded debit and deposit against the database
+     */
+    @Test
+    void testGuardedBalanceUpdatesFlow() {
+        // Given - account has no balance row yet
+        Long accountId = testAccount.getAccountId();
+
+        // When
+        balanceService.deposit(accountId, new BigDecimal("100000"));
+        balanceService.deposit(accountId, new BigDecimal("50000"));
+        boolean overdraft = balanceService.debit(accountId, new BigDecimal("200000"));
+        boolean debited = balanceService.debit(accountId, new BigDecimal("120000"));
+
+        // Then
+        assertFalse(overdraft);
+        assertTrue(debited);
+        assertEquals(0, new BigDecimal("30000").compareTo(balanceService.getBalanceByAccountId(accountId)));
+    }
+
+    /**
+     * Test a balance row from before the version column can be updated through JPA after the backfill
+     */
+    @Test
+    void testLegacyBalanceRowWithoutVersionFlow() {
+        // Given - row written before the version column existed
+        Long accountId = testAccount.getAccountId();
+        jdbcTemplate.update("INSERT INTO Balance (account_id, available_balance, hold_balance, version) VALUES (?, ?, 0, NULL)",
+                accountId, new BigDecimal("1000"));
+
+        // When
+        balanceService.backfillVersion();
+        Balance balance = balanceRepository.findById(accountId).orElseThrow();
+        balance.setAvailableBalance(new BigDecimal("2000"));
+        balanceRepository.saveAndFlush(balance);
+
+        // Then
+        assertEquals(1L, balance.getVersion());
+        assertEquals(0, new BigDecimal("2000").compareTo(balanceService.getBalanceByAccountId(accountId)));
+    }
 }
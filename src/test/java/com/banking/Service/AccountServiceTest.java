@@ -10,6 +10,7 @@ import com.banking.Security.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.AdditionalAnswers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -49,6 +50,12 @@ class AccountServiceTest {
     @Mock
     private BalanceRepository balanceRepository;
 
+    @Mock
+    private CardAccountResolver cardAccountResolver;
+
+    @Mock
+    private BalanceShardService balanceShardService;
+
     @Mock
     private JwtUtil jwtUtil;
 
@@ -91,6 +98,10 @@ class AccountServiceTest {
         testBalance.setAccount(testAccount);
         testBalance.setAvailableBalance(new BigDecimal("1000000"));
         testBalance.setHoldBalance(BigDecimal.ZERO);
+
+        // Tài khoản không chia slot: số dư đọc ra chính là dòng Balance
+        lenient().when(balanceShardService.withSlots(any())).then(AdditionalAnswers.returnsFirstArg());
+        lenient().when(balanceShardService.slotTotal(anyLong())).thenReturn(BigDecimal.ZERO);
     }
 
     /**
@@ -197,6 +208,7 @@ class AccountServiceTest {
         assertEquals("DEBIT", result.getCardType());
         verify(accountRepository).findById(testAccount.getAccountId());
         verify(cardRepository).save(any(Card.class));
+        verify(cardAccountResolver).register(testCard.getCardNumber());
     }
 
     /**
@@ -252,14 +264,16 @@ class AccountServiceTest {
     @Test
     void testDeleteCardIfOwned_WhenCardIsOwned_ShouldDeleteCard() {
         // Given
-        when(cardRepository.findById(anyLong())).thenReturn(Optional.of(testCard));
+        when(cardRepository.findOwnerByCardId(1L)).thenReturn(Optional.of(owner(testCard.getCardNumber(), 1L)));
+        when(cardRepository.deleteOwnedCard(1L, testAccount.getAccountId())).thenReturn(1);
 
         // When
         accountService.deleteCardIfOwned(testAccount, 1L);
 
         // Then
-        verify(cardRepository).findById(1L);
-        verify(cardRepository).delete(testCard);
+        verify(cardRepository).deleteOwnedCard(1L, testAccount.getAccountId());
+        verify(cardRepository, never()).findById(anyLong());
+        verify(cardAccountResolver).evict(testCard.getCardNumber());
     }
 
     /**
@@ -268,16 +282,14 @@ class AccountServiceTest {
     @Test
     void testDeleteCardIfOwned_WhenCardNotOwned_ShouldNotDeleteCard() {
         // Given
-        Account otherAccount = new Account();
-        otherAccount.setAccountId(2L);
-        testCard.setAccount(otherAccount);
-        when(cardRepository.findById(anyLong())).thenReturn(Optional.of(testCard));
+        when(cardRepository.findOwnerByCardId(1L)).thenReturn(Optional.of(owner(testCard.getCardNumber(), 2L)));
 
         // When
         accountService.deleteCardIfOwned(testAccount, 1L);
 
         // Then
-        verify(cardRepository).findById(1L);
+        verify(cardRepository).findOwnerByCardId(1L);
+        verify(cardRepository, never()).deleteOwnedCard(anyLong(), anyLong());
         verify(cardRepository, never()).delete(any(Card.class));
     }
 
@@ -351,4 +363,18 @@ class AccountServiceTest {
         verify(accountRepository).existsByEmail("existing@example.com");
         verify(accountRepository, never()).save(any(Account.class));
     }
+
+    private CardRepository.CardOwnerView owner(String cardNumber, Long accountId) {
+        return new CardRepository.CardOwnerView() {
+            @Override
+            public String getCardNumber() {
+                return cardNumber;
+            }
+
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+        };
+    }
 }
@@ -0,0 +1,170 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Entity.Money;
+import com.banking.Entity.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AdminNotificationDigest
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class AdminNotificationDigestTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @InjectMocks
+    private AdminNotificationDigest digest;
+
+    @Captor
+    private ArgumentCaptor<List<AdminNotificationDigest.StatusGroup>> groups;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        account = new Account();
+        account.setAccountId(7L);
+        account.setCustomerName("Digest Customer");
+        ReflectionTestUtils.setField(digest, "maxEvents", 100);
+        ReflectionTestUtils.setField(digest, "maxDetailRows", 2);
+    }
+
+    /**
+     * Test buffered notifications go out as one email grouped by status, most urgent first
+     */
+    @Test
+    void testFlush_ShouldSendOneDigestGroupedByStatus() {
+        // Given
+        digest.record(payment(1L, 100000), "SUCCESS");
+        digest.record(payment(2L, 200000), "SUCCESS");
+        digest.record(payment(3L, 300000), "SUCCESS");
+        digest.record(payment(4L, 50000), "FAILED");
+        verify(emailService, never()).sendAdminDigestEmail(anyList(), anyInt(), any(), any());
+
+        // When
+        int flushed = digest.flush();
+
+        // Then
+        assertEquals(4, flushed);
+        verify(emailService).sendAdminDigestEmail(groups.capture(), eq(4), any(LocalDateTime.class), any(LocalDateTime.class));
+        assertEquals(2, groups.getValue().size());
+        AdminNotificationDigest.StatusGroup failed = groups.getValue().get(0);
+        AdminNotificationDigest.StatusGroup success = groups.getValue().get(1);
+        assertEquals("FAILED", failed.getStatus());
+        assertEquals(1, failed.getCount());
+        assertEquals("SUCCESS", success.getStatus());
+        assertEquals(3, success.getCount());
+        assertEquals(Money.of(new BigDecimal("600000"), "VND"), success.getTotals().get("VND"));
+        assertEquals(2, success.getEvents().size());
+        assertEquals(1, success.getHidden());
+        verify(emailService, never()).sendAdminNotificationEmail(any(), anyString());
+
+        // An empty window sends nothing
+        assertEquals(0, digest.flush());
+        verify(emailService, times(1)).sendAdminDigestEmail(anyList(), anyInt(), any(), any());
+    }
+
+    /**
+     * Test group totals are summed exactly in minor units, without double rounding drift
+     */
+    @Test
+    void testFlush_ShouldSumTotalsExactly() {
+        // Given: 10 x 0.10 cộng bằng double ra 0.9999999999999999
+        for (long id = 1; id <= 10; id++) {
+            digest.record(payment(id, 0.1), "SUCCESS");
+        }
+
+        // When
+        digest.flush();
+
+        // Then
+        verify(emailService).sendAdminDigestEmail(groups.capture(), eq(10), any(LocalDateTime.class), any(LocalDateTime.class));
+        Money total = groups.getValue().get(0).getTotals().get("VND");
+        assertEquals(100, total.getMinorUnits());
+        assertEquals(new BigDecimal("1.00"), total.toBigDecimal());
+    }
+
+    /**
+     * Test the digest is sent as soon as the buffer reaches max-events
+     */
+    @Test
+    void testRecord_WhenBufferFull_ShouldFlushImmediately() {
+        // Given
+        ReflectionTestUtils.setField(digest, "maxEvents", 3);
+
+        // When
+        digest.record(payment(1L, 100000), "SUCCESS");
+        digest.record(payment(2L, 100000), "SUCCESS");
+        digest.record(payment(3L, 100000), "FAILED");
+
+        // Then
+        verify(emailService).sendAdminDigestEmail(anyList(), eq(3), any(LocalDateTime.class), any(LocalDateTime.class));
+        assertEquals(0, digest.getStats().get("buffered"));
+    }
+
+    /**
+     * Test critical statuses bypass the buffer
+     */
+    @Test
+    void testRecord_WithImmediateStatus_ShouldBypassDigest() {
+        // Given
+        PaymentRequest payment = payment(1L, 100000);
+
+        // When
+        digest.record(payment, "ERROR");
+
+        // Then
+        verify(emailService).sendAdminNotificationEmail(payment, "ERROR");
+        assertEquals(0, digest.getStats().get("buffered"));
+        assertEquals(0, digest.flush());
+    }
+
+    /**
+     * Test a disabled digest sends every notification on its own as before
+     */
+    @Test
+    void testRecord_WhenDisabled_ShouldSendEachNotification() {
+        // Given
+        ReflectionTestUtils.setField(digest, "enabled", false);
+        PaymentRequest payment = payment(1L, 100000);
+
+        // When
+        digest.record(payment, "SUCCESS");
+
+        // Then
+        verify(emailService).sendAdminNotificationEmail(payment, "SUCCESS");
+        assertEquals(0, digest.flush());
+    }
+
+    private PaymentRequest payment(Long id, double amount) {
+        PaymentRequest paymentRequest = new PaymentRequest(amount, account);
+        paymentRequest.setPaymentId(id);
+        return paymentRequest;
+    }
+}
@@ -0,0 +1,198 @@
+package com.banking.Service;
+
+import com.banking.DTO.TransferStatusDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.Card;
+import com.banking.Entity.TransferCommand;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.TransferCommandRepository;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jms.config.JmsListenerEndpoint;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for AsyncTransferService
+ *
+ * The test profile has no broker, so the tests call the worker directly
+ * in the order a partition consumer would.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AsyncTransferServiceTest {
+
+    @Autowired
+    private AsyncTransferService asyncTransferService;
+
+    @Autowired
+    private TransferCommandRepository commandRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account sender;
+    private Account receiver;
+    private String senderCard;
+    private String receiverCard;
+
+    @BeforeEach
+    void setUp() {
+        sender = newAccount("sender");
+        receiver = newAccount("receiver");
+        senderCard = accountService.createCard(sender, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE").getCardNumber();
+        Card card = accountService.createCard(receiver, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE");
+        receiverCard = card.getCardNumber();
+        balanceService.deposit(sender.getAccountId(), new BigDecimal("1000"), "TEST");
+    }
+
+    /**
+     * Test commands of one account processed in submission order end in SUCCEEDED or FAILED
+     */
+    @Test
+    void testProcess_ShouldFinishCommandsInOrder() {
+        // Given
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            TransferCommand command = asyncTransferService.submit(sender, senderCard, receiverCard, new BigDecimal("300"));
+            assertEquals(TransferCommand.QUEUED, command.getStatus());
+            ids.add(command.getTransferId());
+        }
+
+        // When
+        ids.forEach(asyncTransferService::process);
+
+        // Then
+        List<String> statuses = ids.stream().map(id -> commandRepository.findById(id).orElseThrow().getStatus()).toList();
+        assertEquals(List.of(TransferCommand.SUCCEEDED, TransferCommand.SUCCEEDED, TransferCommand.SUCCEEDED,
+                TransferCommand.FAILED, TransferCommand.FAILED), statuses);
+        assertEquals(0, new BigDecimal("100").compareTo(balanceService.getBalanceByAccountId(sender.getAccountId())));
+        assertEquals(0, new BigDecimal("900").compareTo(balanceService.getBalanceByAccountId(receiver.getAccountId())));
+        assertNull(asyncTransferService.awaitStatus(receiver.getAccountId(), ids.get(0), 0));
+    }
+
+    /**
+     * Test a long-poll returns as soon as a worker finishes the command
+     */
+    @Test
+    void testAwaitStatus_ShouldCompleteWhenWorkerFinishes() throws Exception {
+        // Given
+        String id = asyncTransferService.submit(sender, senderCard, receiverCard, new BigDecimal("400")).getTransferId();
+        CompletableFuture<TransferStatusDTO> poll = asyncTransferService.awaitStatus(sender.getAccountId(), id, 10000);
+        assertFalse(poll.isDone());
+
+        // When
+        CompletableFuture.runAsync(() -> asyncTransferService.process(id));
+
+        // Then
+        assertEquals(TransferCommand.SUCCEEDED, poll.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(TransferCommand.QUEUED, asyncTransferService.awaitStatus(sender.getAccountId(),
+                asyncTransferService.submit(sender, senderCard, receiverCard, BigDecimal.ONE).getTransferId(), 50)
+                .get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    /**
+     * Test a redelivered message does not move money twice and a stale PROCESSING command is retried once
+     */
+    @Test
+    void testRedeliveryAndSweep_ShouldTransferExactlyOnce() {
+        // Given
+        String id = asyncTransferService.submit(sender, senderCard, receiverCard, new BigDecimal("400")).getTransferId();
+        asyncTransferService.process(id);
+        String stuck = UUID.randomUUID().toString();
+        commandRepository.save(new TransferCommand(stuck, sender.getAccountId(), senderCard, receiverCard,
+                new BigDecimal("250"), LocalDateTime.now().minusHours(1)));
+        commandRepository.transition(stuck, TransferCommand.QUEUED, TransferCommand.PROCESSING, null, LocalDateTime.now().minusHours(1));
+
+        // When
+        asyncTransferService.process(id);
+        assertTrue(asyncTransferService.republishStale() >= 1);
+        asyncTransferService.process(stuck);
+        asyncTransferService.process(stuck);
+
+        // Then
+        assertEquals(TransferCommand.SUCCEEDED, commandRepository.findById(stuck).orElseThrow().getStatus());
+        assertEquals(0, new BigDecimal("350").compareTo(balanceService.getBalanceByAccountId(sender.getAccountId())));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account_transaction WHERE account_id = ?", Integer.class, sender.getAccountId()));
+    }
+
+    /**
+     * Test workers subscribe as exclusive consumers and messages carry the account as their group,
+     * so several worker nodes never run one account's transfers in parallel
+     */
+    @Test
+    void testWorkers_ShouldUseExclusiveConsumersAndGroupByAccount() throws Exception {
+        // Given
+        JmsListenerEndpointRegistrar registrar = mock(JmsListenerEndpointRegistrar.class);
+        JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+        Object realTemplate = ReflectionTestUtils.getField(asyncTransferService, "jmsTemplate");
+        ReflectionTestUtils.setField(asyncTransferService, "workersEnabled", true);
+        ReflectionTestUtils.setField(asyncTransferService, "jmsTemplate", jmsTemplate);
+
+        // When
+        try {
+            asyncTransferService.configureJmsListeners(registrar);
+            asyncTransferService.submit(sender, senderCard, receiverCard, new BigDecimal("100"));
+        } finally {
+            ReflectionTestUtils.setField(asyncTransferService, "workersEnabled", false);
+            ReflectionTestUtils.setField(asyncTransferService, "jmsTemplate", realTemplate);
+        }
+
+        // Then
+        ArgumentCaptor<JmsListenerEndpoint> endpoints = ArgumentCaptor.forClass(JmsListenerEndpoint.class);
+        verify(registrar, atLeastOnce()).registerEndpoint(endpoints.capture(), any());
+        for (JmsListenerEndpoint endpoint : endpoints.getAllValues()) {
+            assertTrue(((SimpleJmsListenerEndpoint) endpoint).getDestination().endsWith("?consumer.exclusive=true"));
+        }
+        ArgumentCaptor<MessageCreator> creator = ArgumentCaptor.forClass(MessageCreator.class);
+        verify(jmsTemplate).send(anyString(), creator.capture());
+        Session session = mock(Session.class);
+        TextMessage message = mock(TextMessage.class);
+        when(session.createTextMessage(anyString())).thenReturn(message);
+        creator.getValue().createMessage(session);
+        verify(message).setStringProperty(OutboxService.GROUP_ID_PROPERTY, String.valueOf(sender.getAccountId()));
+    }
+
+    private Account newAccount(String name) {
+        String email = "async-" + name + "-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        return accountRepository.save(new Account("Async " + name, email, "password123", "Customer", "0900000000"));
+    }
+}
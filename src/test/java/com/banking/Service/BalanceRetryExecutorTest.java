@@ -0,0 +1,88 @@
+package com.banking.Service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BalanceRetryExecutor
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class BalanceRetryExecutorTest {
+
+    private BalanceRetryExecutor retryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        retryExecutor = new BalanceRetryExecutor(3, 1, 5);
+    }
+
+    /**
+     * Test an optimistic-lock failure is replayed until it succeeds
+     */
+    @Test
+    void testExecute_WhenConflictThenSuccess_ShouldRetryAndCount() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = retryExecutor.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Balance", 7L);
+            }
+            return "ok";
+        }, 7L);
+
+        // Then
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        Map<String, Long> stats = retryExecutor.getContentionStats().get(7L);
+        assertEquals(2L, stats.get("conflicts"));
+        assertEquals(2L, stats.get("retries"));
+        assertEquals(0L, stats.get("exhausted"));
+    }
+
+    /**
+     * Test the failure propagates once the attempt limit is reached
+     */
+    @Test
+    void testExecute_WhenAlwaysConflicting_ShouldGiveUpAfterMaxAttempts() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When & Then
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> retryExecutor.execute(() -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Balance", 9L);
+        }, 9L));
+
+        assertEquals(3, calls.get());
+        assertEquals(1L, retryExecutor.getContentionStats().get(9L).get("exhausted"));
+    }
+
+    /**
+     * Test business errors are not retried
+     */
+    @Test
+    void testExecute_WithNonConcurrencyFailure_ShouldNotRetry() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> retryExecutor.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("Số dư không đủ");
+        }, 1L));
+
+        assertEquals(1, calls.get());
+        assertTrue(retryExecutor.getContentionStats().isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package com.banking.Service;
+
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.BalanceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for BalanceService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class BalanceServiceTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("50000");
+
+    @Mock
+    private BalanceRepository balanceRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LedgerSequencer ledgerSequencer;
+
+    @Mock
+    private LedgerJournal ledgerJournal;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private BalanceShardService balanceShardService;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Spy
+    private BalanceRetryExecutor retryExecutor = new BalanceRetryExecutor(3, 1, 5);
+
+    @InjectMocks
+    private BalanceService balanceService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    /**
+     * Test debit returns false when the guarded update affects no row
+     */
+    @Test
+    void testDebit_WhenInsufficientFunds_ShouldReturnFalse() {
+        // Given
+        when(balanceRepository.debitIfAvailable(1L, AMOUNT)).thenReturn(0);
+
+        // When
+        boolean result = balanceService.debit(1L, AMOUNT);
+
+        // Then
+        assertFalse(result);
+        verify(balanceRepository, never()).findById(anyLong());
+    }
+
+    /**
+     * Test debit rejects non-positive amounts
+     */
+    @Test
+    void testDebit_WithNegativeAmount_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> balanceService.debit(1L, new BigDecimal("-1")));
+        verifyNoInteractions(balanceRepository);
+    }
+
+    /**
+     * Test transfer updates rows in ascending account id order
+     */
+    @Test
+    void testTransfer_FromHigherId_ShouldCreditLowerIdFirst() {
+        // Given
+        when(balanceRepository.credit(1L, AMOUNT)).thenReturn(1);
+        when(balanceRepository.debitIfAvailable(2L, AMOUNT)).thenReturn(1);
+
+        // When
+        boolean result = balanceService.transfer(2L, 1L, AMOUNT);
+
+        // Then
+        assertTrue(result);
+        InOrder inOrder = inOrder(balanceRepository);
+        inOrder.verify(balanceRepository).credit(1L, AMOUNT);
+        inOrder.verify(balanceRepository).debitIfAvailable(2L, AMOUNT);
+    }
+
+    /**
+     * Test transfer stops before crediting when the sender cannot pay
+     */
+    @Test
+    void testTransfer_WhenSenderHasInsufficientFunds_ShouldNotCredit() {
+        // Given
+        when(balanceRepository.debitIfAvailable(1L, AMOUNT)).thenReturn(0);
+
+        // When
+        boolean result = balanceService.transfer(1L, 2L, AMOUNT);
+
+        // Then
+        assertFalse(result);
+        verify(balanceRepository, never()).credit(anyLong(), any());
+    }
+
+    /**
+     * Test deposit creates an empty balance row and then credits it with its ledger legs
+     */
+    @Test
+    void testDeposit_WhenNoBalanceRow_ShouldInsertBalance() {
+        // Given
+        List<LedgerJournal.Leg> legs = List.of();
+        when(ledgerJournal.depositLegs(1L, AMOUNT, null)).thenReturn(legs);
+        when(balanceRepository.credit(1L, AMOUNT)).thenReturn(0, 1);
+        when(accountRepository.existsById(1L)).thenReturn(true);
+
+        // When
+        balanceService.deposit(1L, AMOUNT);
+
+        // Then
+        verify(balanceRepository).insertBalance(1L, BigDecimal.ZERO);
+        verify(balanceRepository, times(2)).credit(1L, AMOUNT);
+        verify(ledgerJournal).append(legs);
+    }
+
+    /**
+     * Test deposit falls back to credit when a concurrent deposit created the row
+     */
+    @Test
+    void testDeposit_WhenRowCreatedConcurrently_ShouldCreditExistingRow() {
+        // Given
+        when(balanceRepository.credit(1L, AMOUNT)).thenReturn(0, 1);
+        when(accountRepository.existsById(1L)).thenReturn(true);
+        when(balanceRepository.insertBalance(1L, BigDecimal.ZERO)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // When
+        balanceService.deposit(1L, AMOUNT);
+
+        // Then
+        verify(balanceRepository, times(2)).credit(1L, AMOUNT);
+    }
+
+    /**
+     * Test payment does not journal anything when the debit is rejected
+     */
+    @Test
+    void testPayment_WhenInsufficientFunds_ShouldNotAppendLegs() {
+        // Given
+        when(balanceRepository.debitIfAvailable(1L, AMOUNT)).thenReturn(0);
+
+        // When
+        boolean result = balanceService.payment(1L, AMOUNT, "PAYMENT#1");
+
+        // Then
+        assertFalse(result);
+        verify(ledgerJournal, never()).append(any());
+    }
+}
@@ -0,0 +1,154 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for BalanceShardService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BalanceShardServiceTest {
+
+    @Autowired
+    private BalanceShardService balanceShardService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private LedgerSnapshotService ledgerSnapshotService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account merchant;
+
+    @BeforeEach
+    void setUp() {
+        String email = "shard-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        merchant = accountRepository.save(new Account("Shard merchant", email, "password123", "Customer", "0900000000"));
+        balanceService.deposit(merchant.getAccountId(), new BigDecimal("1000"), "TEST");
+        balanceShardService.enable(merchant.getAccountId(), 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        balanceShardService.disable(merchant.getAccountId());
+    }
+
+    /**
+     * Test concurrent credits land in the slots and reads see the total
+     */
+    @Test
+    void testConcurrentCredits_ShouldLandInSlotsAndShowTotal() throws Exception {
+        // Given
+        Long accountId = merchant.getAccountId();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            futures.add(pool.submit(() -> balanceService.deposit(accountId, new BigDecimal("10"), "SHARD")));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Then
+        BigDecimal mainRow = jdbcTemplate.queryForObject(
+                "SELECT available_balance FROM Balance WHERE account_id = ?", BigDecimal.class, accountId);
+        assertEquals(0, new BigDecimal("1000").compareTo(mainRow));
+        assertEquals(0, new BigDecimal("2000").compareTo(balanceShardService.slotTotal(accountId)));
+        assertEquals(0, new BigDecimal("3000").compareTo(accountService.findBalanceByAccount(merchant).getAvailableBalance()));
+        assertEquals(0, new BigDecimal("3000").compareTo(balanceService.getBalanceByAccountId(accountId)));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) ledgerSnapshotService.verify(accountId).get("drift")));
+    }
+
+    /**
+     * Test an account sharded on another node is swept on a short debit and picked up by refresh
+     */
+    @Test
+    void testAccountShardedOnOtherNode_ShouldSweepOnDebitAndRefresh() {
+        // Given: node khác đã bật chia slot và nhận tiền vào slot, node này chưa biết
+        String email = "shard-other-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        Long accountId = accountRepository.save(
+                new Account("Other node merchant", email, "password123", "Customer", "0900000000")).getAccountId();
+        balanceService.deposit(accountId, new BigDecimal("100"), "TEST");
+        jdbcTemplate.update("INSERT INTO balance_slot (account_id, slot_no, amount) VALUES (?, 0, 300)", accountId);
+        jdbcTemplate.update("INSERT INTO balance_slot (account_id, slot_no, amount) VALUES (?, 1, 0)", accountId);
+        assertFalse(balanceShardService.isSharded(accountId));
+
+        // When & Then
+        assertTrue(balanceService.debit(accountId, new BigDecimal("250")));
+        assertEquals(0, new BigDecimal("150").compareTo(jdbcTemplate.queryForObject(
+                "SELECT available_balance FROM Balance WHERE account_id = ?", BigDecimal.class, accountId)));
+
+        jdbcTemplate.update("UPDATE balance_slot SET amount = 40 WHERE account_id = ? AND slot_no = 1", accountId);
+        balanceShardService.refresh();
+        assertTrue(balanceShardService.isSharded(accountId));
+        assertEquals(0, new BigDecimal("190").compareTo(balanceService.getBalanceByAccountId(accountId)));
+
+        balanceShardService.disable(accountId);
+        balanceShardService.refresh();
+        assertFalse(balanceShardService.isSharded(accountId));
+        assertEquals(0, new BigDecimal("190").compareTo(balanceService.getBalanceByAccountId(accountId)));
+    }
+
+    /**
+     * Test a debit larger than the Balance row sweeps the slots, and compaction and disable keep the total
+     */
+    @Test
+    void testDebitCompactDisable_ShouldConserveTotal() {
+        // Given
+        Long accountId = merchant.getAccountId();
+        for (int i = 0; i < 20; i++) {
+            balanceService.deposit(accountId, new BigDecimal("100"), "SHARD");
+        }
+
+        // When & Then
+        assertTrue(balanceService.payment(accountId, new BigDecimal("2500"), "PAYMENT#SHARD"));
+        assertFalse(balanceService.payment(accountId, new BigDecimal("501"), "PAYMENT#SHARD2"));
+        assertEquals(0, new BigDecimal("500").compareTo(balanceService.getBalanceByAccountId(accountId)));
+
+        balanceService.deposit(accountId, new BigDecimal("70"), "SHARD");
+        balanceShardService.compact();
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceShardService.slotTotal(accountId)));
+
+        balanceService.deposit(accountId, new BigDecimal("30"), "SHARD");
+        balanceShardService.disable(accountId);
+        assertFalse(balanceShardService.isSharded(accountId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM balance_slot WHERE account_id = ?", Integer.class, accountId));
+        assertEquals(0, new BigDecimal("600").compareTo(balanceService.getBalanceByAccountId(accountId)));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) ledgerSnapshotService.verify(accountId).get("drift")));
+    }
+}
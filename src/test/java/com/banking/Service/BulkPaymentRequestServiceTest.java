@@ -0,0 +1,138 @@
+package com.banking.Service;
+
+import com.banking.DTO.BulkPaymentRequestResultDTO;
+import com.banking.DTO.CreatePaymentRequestDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.NotificationDelivery;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.PaymentRequestRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for BulkPaymentRequestService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkPaymentRequestServiceTest {
+
+    @Autowired
+    private BulkPaymentRequestService bulkPaymentRequestService;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    /**
+     * Test valid lines are inserted as PENDING and invalid lines are reported
+     */
+    @Test
+    void testIssue_ShouldInsertValidLinesAndReportInvalid() {
+        // Given
+        Account first = newAccount("first");
+        Account second = newAccount("second");
+        List<CreatePaymentRequestDTO> requests = List.of(
+                new CreatePaymentRequestDTO(first.getAccountId(), 150000, "VND", "Phí tháng 10"),
+                new CreatePaymentRequestDTO(second.getAccountId(), 99000, null, null),
+                new CreatePaymentRequestDTO(Long.MAX_VALUE, 1000, "VND", "Không tồn tại"),
+                new CreatePaymentRequestDTO(first.getAccountId(), 0, "VND", "Sai số tiền"));
+
+        // When
+        BulkPaymentRequestResultDTO result = bulkPaymentRequestService.issue(requests);
+
+        // Then
+        assertEquals(2, result.getIssued());
+        assertEquals(2, result.getFailed());
+        assertEquals(2, result.getNotificationsQueued());
+        assertEquals(List.of(3, 4), result.getErrors().stream().map(error -> error.getLine()).toList());
+
+        List<PaymentRequest> firstRequests = paymentRequestRepository.findByAccount_AccountId(first.getAccountId());
+        assertEquals(1, firstRequests.size());
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, firstRequests.get(0).getStatus());
+        assertEquals(150000, firstRequests.get(0).getAmount());
+        assertEquals(result.getIssuedAt(), firstRequests.get(0).getCreatedAt());
+        assertEquals("VND", paymentRequestRepository.findByAccount_AccountId(second.getAccountId()).get(0).getCurrency());
+    }
+
+    /**
+     * Test every issued request is notified with its generated payment id, also with several lines per account
+     */
+    @Test
+    void testIssue_ShouldNotifyWithGeneratedPaymentIds() throws Exception {
+        // Given
+        Account first = newAccount("ids-first");
+        Account second = newAccount("ids-second");
+        List<CreatePaymentRequestDTO> requests = List.of(
+                new CreatePaymentRequestDTO(first.getAccountId(), 100000, "VND", "Tháng 10"),
+                new CreatePaymentRequestDTO(second.getAccountId(), 200000, "VND", "Tháng 10"),
+                new CreatePaymentRequestDTO(first.getAccountId(), 300000, "VND", "Tháng 11"));
+
+        // When
+        bulkPaymentRequestService.issue(requests);
+
+        // Then: mỗi payment có dòng notification_delivery gắn đúng payment_id của nó
+        List<PaymentRequest> issued = new ArrayList<>(paymentRequestRepository.findByAccount_AccountId(first.getAccountId()));
+        issued.addAll(paymentRequestRepository.findByAccount_AccountId(second.getAccountId()));
+        assertEquals(3, issued.size());
+        long deadline = System.currentTimeMillis() + 5000;
+        for (PaymentRequest paymentRequest : issued) {
+            List<NotificationDelivery> deliveries = notificationDispatcher.getDeliveries(paymentRequest.getPaymentId());
+            while (deliveries.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                deliveries = notificationDispatcher.getDeliveries(paymentRequest.getPaymentId());
+            }
+            assertFalse(deliveries.isEmpty(), "no notification for payment " + paymentRequest.getPaymentId());
+            for (NotificationDelivery delivery : deliveries) {
+                assertEquals(paymentRequest.getAccount().getAccountId(), delivery.getAccountId());
+                assertEquals("PAYMENT_REQUEST", delivery.getEvent());
+            }
+        }
+    }
+
+    /**
+     * Test CSV parsing skips the header and keeps commas in the description
+     */
+    @Test
+    void testParseCsv_ShouldReadLines() throws Exception {
+        // Given
+        String csv = "accountId,amount,currency,description\n"
+                + "7,120000,VND,Phí dịch vụ, tháng 10\n"
+                + "\n"
+                + "8,50000\n";
+
+        // When
+        List<CreatePaymentRequestDTO> requests = BulkPaymentRequestService.parseCsv(new StringReader(csv));
+
+        // Then
+        assertEquals(2, requests.size());
+        assertEquals(7L, requests.get(0).getAccountId());
+        assertEquals("Phí dịch vụ, tháng 10", requests.get(0).getDescription());
+        assertEquals("VND", requests.get(1).getCurrency());
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkPaymentRequestService.parseCsv(new StringReader("7,abc\n")));
+    }
+
+    private Account newAccount(String name) {
+        String email = "bill-" + name + "-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        return accountRepository.save(new Account("Bill " + name, email, "password123", "Customer", "0900000000"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.banking.Service;
+
+import com.banking.DTO.BulkTransferLineDTO;
+import com.banking.DTO.BulkTransferResultDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.Card;
+import com.banking.Repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for BulkTransferService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkTransferServiceTest {
+
+    @Autowired
+    private BulkTransferService bulkTransferService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LedgerSequencer ledgerSequencer;
+
+    @Autowired
+    private TransferLimitService transferLimitService;
+
+    private Account sender;
+    private Card senderCard;
+    private Account lowReceiver;
+    private Card lowReceiverCard;
+    private Account highReceiver;
+    private Card highReceiverCard;
+
+    @BeforeEach
+    void setUp() {
+        // Người nhận có id nhỏ hơn và lớn hơn người gửi để kiểm tra thứ tự ghi
+        lowReceiver = newAccount("low");
+        sender = newAccount("sender");
+        highReceiver = newAccount("high");
+        lowReceiverCard = accountService.createCard(lowReceiver, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE");
+        senderCard = accountService.createCard(sender, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE");
+        highReceiverCard = accountService.createCard(highReceiver, "DEBIT", LocalDate.now().plusYears(3), "ACTIVE");
+        jdbcTemplate.update("UPDATE Balance SET available_balance = ? WHERE account_id = ?",
+                new BigDecimal("1000000"), sender.getAccountId());
+    }
+
+    /**
+     * Test valid lines are applied together and invalid lines are reported
+     */
+    @Test
+    void testBulkTransfer_WithMixedLines_ShouldApplyValidLinesAndReportInvalid() {
+        // Given
+        List<BulkTransferLineDTO> lines = List.of(
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("100000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("50000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("25000")),
+                new BulkTransferLineDTO("0000000000000000", new BigDecimal("10000")),
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("-5")),
+                new BulkTransferLineDTO(senderCard.getCardNumber(), new BigDecimal("10000")));
+
+        // When
+        BulkTransferResultDTO result = bulkTransferService.bulkTransfer(sender, senderCard.getCardNumber(), lines);
+
+        // Then
+        assertEquals(3, result.getSucceeded());
+        assertEquals(3, result.getFailed());
+        assertEquals(0, new BigDecimal("175000").compareTo(result.getTotalDebited()));
+        assertEquals("Thẻ nhận không tồn tại", result.getLines().get(3).getMessage());
+        assertEquals(BulkTransferService.STATUS_FAILED, result.getLines().get(5).getStatus());
+
+        assertEquals(0, new BigDecimal("825000").compareTo(balanceOf(sender)));
+        assertEquals(0, new BigDecimal("100000").compareTo(balanceOf(lowReceiver)));
+        assertEquals(0, new BigDecimal("75000").compareTo(balanceOf(highReceiver)));
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account_transaction WHERE account_id = ?", Integer.class, sender.getAccountId()));
+    }
+
+    /**
+     * Test nothing is moved when the total exceeds the source balance
+     */
+    @Test
+    void testBulkTransfer_WhenTotalExceedsBalance_ShouldFailAllLines() {
+        // Given
+        List<BulkTransferLineDTO> lines = List.of(
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("600000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("600000")));
+
+        // When
+        BulkTransferResultDTO result = bulkTransferService.bulkTransfer(sender, senderCard.getCardNumber(), lines);
+
+        // Then
+        assertEquals(0, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertEquals(0, new BigDecimal("1000000").compareTo(balanceOf(sender)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceOf(lowReceiver)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account_transaction WHERE account_id = ?", Integer.class, sender.getAccountId()));
+    }
+
+    /**
+     * Test a payout whose total is over the sender's daily limit is rejected without moving money
+     */
+    @Test
+    void testBulkTransfer_WhenTotalExceedsDailyLimit_ShouldRejectBatch() {
+        // Given: mỗi dòng dưới hạn mức mỗi giao dịch, tổng vượt hạn mức ngày 200.000.000 của SILVER
+        jdbcTemplate.update("UPDATE Balance SET available_balance = ? WHERE account_id = ?",
+                new BigDecimal("300000000"), sender.getAccountId());
+        List<BulkTransferLineDTO> lines = List.of(
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("45000000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("45000000")),
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("45000000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("45000000")),
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("45000000")));
+
+        // When
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> bulkTransferService.bulkTransfer(sender, senderCard.getCardNumber(), lines));
+
+        // Then
+        assertTrue(error.getMessage().contains("hạn mức"));
+        assertEquals(0, new BigDecimal("300000000").compareTo(balanceOf(sender)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceOf(lowReceiver)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM account_transaction WHERE account_id = ?", Integer.class, sender.getAccountId()));
+
+        // Lô bị từ chối không chiếm hạn mức
+        BulkTransferResultDTO result = bulkTransferService.bulkTransfer(sender, senderCard.getCardNumber(),
+                lines.subList(0, 4));
+        assertEquals(4, result.getSucceeded());
+    }
+
+    /**
+     * Test a line the sequencer took but could not report is UNKNOWN, not FAILED, and keeps its reservation
+     */
+    @Test
+    void testBulkTransfer_WhenSequencerOutcomeUnknown_ShouldReportUnknownAndKeepReservation() {
+        // Given: sequencer nhận dòng đầu rồi dừng
+        LedgerSequencer stopped = mock(LedgerSequencer.class);
+        when(stopped.isEnabled()).thenReturn(true);
+        when(stopped.transfer(anyLong(), anyLong(), any(BigDecimal.class), any(), anyList()))
+                .thenThrow(new LedgerSequencer.OutcomeUnknownException())
+                .thenThrow(new IllegalStateException("Ledger sequencer is not running"));
+        ReflectionTestUtils.setField(bulkTransferService, "ledgerSequencer", stopped);
+        List<BulkTransferLineDTO> lines = List.of(
+                new BulkTransferLineDTO(lowReceiverCard.getCardNumber(), new BigDecimal("100000")),
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("50000")));
+
+        // When
+        BulkTransferResultDTO result;
+        try {
+            result = bulkTransferService.bulkTransfer(sender, senderCard.getCardNumber(), lines);
+        } finally {
+            ReflectionTestUtils.setField(bulkTransferService, "ledgerSequencer", ledgerSequencer);
+        }
+
+        // Then
+        assertEquals(BulkTransferService.STATUS_UNKNOWN, result.getLines().get(0).getStatus());
+        assertEquals(BulkTransferService.STATUS_FAILED, result.getLines().get(1).getStatus());
+        assertEquals(0, result.getSucceeded());
+        assertEquals(1, result.getUnknown());
+        assertEquals(1, result.getFailed());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getTotalDebited()));
+        // Dòng UNKNOWN vẫn chiếm hạn mức ngày, dòng thất bại được trả lại
+        BigDecimal dailyUsed = (BigDecimal) transferLimitService.usage(sender.getAccountId(), sender.getLevel()).get("dailyUsed");
+        assertEquals(0, new BigDecimal("100000").compareTo(dailyUsed));
+    }
+
+    /**
+     * Test a source card owned by another account is rejected
+     */
+    @Test
+    void testBulkTransfer_WithForeignSourceCard_ShouldThrowException() {
+        List<BulkTransferLineDTO> lines = List.of(
+                new BulkTransferLineDTO(highReceiverCard.getCardNumber(), new BigDecimal("1000")));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bulkTransferService.bulkTransfer(sender, lowReceiverCard.getCardNumber(), lines));
+    }
+
+    private Account newAccount(String name) {
+        String email = "bulk-" + name + "-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        return accountRepository.save(new Account("Bulk " + name, email, "password123", "Customer", "0900000000"));
+    }
+
+    private BigDecimal balanceOf(Account account) {
+        return jdbcTemplate.queryForObject("SELECT available_balance FROM Balance WHERE account_id = ?",
+                BigDecimal.class, account.getAccountId());
+    }
+}
@@ -0,0 +1,106 @@
+package com.banking.Service;
+
+import com.banking.Repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CardAccountResolver
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class CardAccountResolverTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CardAccountResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new CardAccountResolver(cardRepository, jdbcTemplate, 2, true, 1000, 0.01);
+    }
+
+    /**
+     * Test a resolved card is served from the cache afterwards
+     */
+    @Test
+    void testResolve_WhenCalledTwice_ShouldQueryOnce() {
+        // Given
+        when(cardRepository.findAccountIdByCardNumber("111")).thenReturn(Optional.of(7L));
+
+        // When
+        Long first = resolver.resolve("111");
+        Long second = resolver.resolve("111");
+
+        // Then
+        assertEquals(7L, first);
+        assertEquals(7L, second);
+        verify(cardRepository, times(1)).findAccountIdByCardNumber("111");
+        assertEquals(1L, resolver.getStats().get("hits"));
+        assertEquals(1L, resolver.getStats().get("misses"));
+    }
+
+    /**
+     * Test unknown card numbers are rejected by the Bloom filter without a query
+     */
+    @Test
+    void testResolve_WithUnknownCard_ShouldBeRejectedByFilter() {
+        // Given
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Card", Long.class)).thenReturn(0L);
+        doNothing().when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        resolver.rebuildFilter();
+        resolver.register("111");
+        when(cardRepository.findAccountIdByCardNumber("111")).thenReturn(Optional.of(7L));
+
+        // When
+        Long unknown = resolver.resolve("999999999999");
+        Long issued = resolver.resolve("111");
+
+        // Then
+        assertNull(unknown);
+        assertEquals(7L, issued);
+        verify(cardRepository, never()).findAccountIdByCardNumber("999999999999");
+        assertEquals(1L, resolver.getStats().get("bloomRejections"));
+    }
+
+    /**
+     * Test a deleted card is evicted and the cache stays bounded
+     */
+    @Test
+    void testEvictAndCapacity_ShouldDropEntries() {
+        // Given
+        when(cardRepository.findAccountIdByCardNumber(anyString())).thenReturn(Optional.of(1L));
+        resolver.resolve("1");
+        resolver.resolve("2");
+
+        // When
+        resolver.evict("1");
+        resolver.resolve("3");
+        resolver.resolve("4");
+
+        // Then
+        assertEquals(2L, resolver.getStats().get("size"));
+        assertEquals(1L, resolver.getStats().get("evictions"));
+        resolver.resolve("1");
+        verify(cardRepository, times(2)).findAccountIdByCardNumber("1");
+    }
+}
@@ -0,0 +1,280 @@
+package com.banking.Service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for EmailDispatcher against a local SMTP stand-in
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+class EmailDispatcherTest {
+
+    private FakeSmtpServer server;
+    private EmailDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeSmtpServer();
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(server.getPort());
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "5000");
+
+        dispatcher = new EmailDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender);
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "shutdownTimeoutMs", 2000L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.release();
+        dispatcher.stop();
+        server.close();
+    }
+
+    /**
+     * Test messages queued while a send is in progress go out as one batch on the same SMTP connection
+     */
+    @Test
+    void testDispatch_ShouldBatchMessagesOverOneConnection() throws Exception {
+        // Given: server giữ lệnh DATA đầu tiên để các email sau dồn lại trong hàng đợi
+        server.holdData();
+        dispatcher.start();
+        assertTrue(dispatcher.dispatch(message(0)));
+        assertTrue(server.awaitDataHeld());
+
+        // When
+        for (int i = 1; i < 30; i++) {
+            assertTrue(dispatcher.dispatch(message(i)));
+        }
+        server.release();
+        awaitUntil(() -> server.getSubjects().size() == 30);
+
+        // Then
+        awaitUntil(() -> (long) dispatcher.getStats().get("sent") == 30);
+        Map<String, Object> stats = dispatcher.getStats();
+        assertEquals(1, server.getConnections());
+        assertEquals(1L, stats.get("smtpConnectionsOpened"));
+        assertEquals(2L, stats.get("batches"));
+        assertEquals(29, stats.get("queueHighWaterMark"));
+        assertTrue(server.getSubjects().contains("Email 29"));
+    }
+
+    /**
+     * Test a full queue rejects new messages at once instead of blocking the caller
+     */
+    @Test
+    void testDispatch_WhenQueueFull_ShouldRejectWithoutBlocking() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 2);
+        server.holdData();
+        dispatcher.start();
+        assertTrue(dispatcher.dispatch(message(0)));
+        assertTrue(server.awaitDataHeld());
+
+        // When
+        boolean second = dispatcher.dispatch(message(1));
+        boolean third = dispatcher.dispatch(message(2));
+        long start = System.nanoTime();
+        boolean fourth = dispatcher.dispatch(message(3));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertTrue(second);
+        assertTrue(third);
+        assertFalse(fourth);
+        assertTrue(waitedMs < 1000);
+        Map<String, Object> stats = dispatcher.getStats();
+        assertEquals(1L, stats.get("rejected"));
+        assertEquals(2, stats.get("queueDepth"));
+        assertEquals(1, stats.get("busyWorkers"));
+
+        // When the server catches up
+        server.release();
+        awaitUntil(() -> (long) dispatcher.getStats().get("sent") == 3);
+        assertEquals(0, dispatcher.getStats().get("queueDepth"));
+    }
+
+    /**
+     * Test the worker reopens its connection when the server has closed it
+     */
+    @Test
+    void testDispatch_WhenServerDropsConnection_ShouldReconnect() throws Exception {
+        // Given
+        server.closeAfterEachMessage();
+        dispatcher.start();
+
+        // When
+        assertTrue(dispatcher.dispatch(message(0)));
+        awaitUntil(() -> (long) dispatcher.getStats().get("sent") == 1);
+        assertTrue(dispatcher.dispatch(message(1)));
+        awaitUntil(() -> (long) dispatcher.getStats().get("sent") == 2);
+
+        // Then
+        assertEquals(List.of("Email 0", "Email 1"), server.getSubjects());
+        assertEquals(2, server.getConnections());
+        assertEquals(0L, dispatcher.getStats().get("failed"));
+    }
+
+    private MimeMessage message(int i) throws MessagingException {
+        MimeMessage message = dispatcher.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom("bank@test.com");
+        helper.setTo("customer" + i + "@test.com");
+        helper.setSubject("Email " + i);
+        helper.setText("<p>Xin chào " + i + "</p>", true);
+        return message;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the dispatcher");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * SMTP server tối giản: trả lời mọi lệnh, ghi lại tiêu đề email nhận được
+     */
+    private static final class FakeSmtpServer {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<String> subjects = new CopyOnWriteArrayList<>();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final CountDownLatch dataHeld = new CountDownLatch(1);
+        private volatile CountDownLatch holdData;
+        private volatile boolean closeAfterEachMessage;
+
+        FakeSmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::accept, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+
+        List<String> getSubjects() {
+            return subjects;
+        }
+
+        void holdData() {
+            holdData = new CountDownLatch(1);
+        }
+
+        boolean awaitDataHeld() throws InterruptedException {
+            return dataHeld.await(10, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            if (holdData != null) {
+                holdData.countDown();
+            }
+        }
+
+        void closeAfterEachMessage() {
+            closeAfterEachMessage = true;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        private void accept() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    sockets.add(socket);
+                    Thread session = new Thread(() -> serve(socket), "fake-smtp-session");
+                    session.setDaemon(true);
+                    session.start();
+                }
+            } catch (IOException e) {
+                // Server đã đóng
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+                reply(out, "220 localhost fake SMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    if (command.equals("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    }
+                    if (!command.equals("DATA")) {
+                        reply(out, "250 OK");
+                        continue;
+                    }
+                    reply(out, "354 end with <CRLF>.<CRLF>");
+                    String subject = null;
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        if (subject == null && line.startsWith("Subject: ")) {
+                            subject = line.substring("Subject: ".length());
+                        }
+                    }
+                    CountDownLatch hold = holdData;
+                    if (hold != null) {
+                        dataHeld.countDown();
+                        hold.await(10, TimeUnit.SECONDS);
+                    }
+                    subjects.add(subject);
+                    reply(out, "250 queued");
+                    if (closeAfterEachMessage) {
+                        return;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Kết nối bị đóng
+            }
+        }
+
+        private static void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.banking.Service;
+
+import com.banking.Entity.OutgoingEmail;
+import com.banking.Repository.OutgoingEmailRepository;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for EmailRetryService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class EmailRetryServiceTest {
+
+    @Autowired
+    private EmailRetryService emailRetryService;
+
+    @Autowired
+    private OutgoingEmailRepository outgoingEmailRepository;
+
+    @Autowired
+    private EmailDispatcher emailDispatcher;
+
+    private EmailDispatcher stubDispatcher;
+    private String recipient;
+
+    @BeforeEach
+    void setUp() {
+        recipient = "retry-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        // Hàng đợi gửi giả: mỗi test tự báo kết quả gửi qua callback
+        stubDispatcher = mock(EmailDispatcher.class);
+        when(stubDispatcher.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((jakarta.mail.Session) null));
+        when(stubDispatcher.dispatch(any(MimeMessage.class), any(EmailDispatcher.DeliveryCallback.class))).thenReturn(true);
+        ReflectionTestUtils.setField(emailRetryService, "emailDispatcher", stubDispatcher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(emailRetryService, "emailDispatcher", emailDispatcher);
+        ReflectionTestUtils.setField(emailRetryService, "maxAttempts", 8);
+        ReflectionTestUtils.setField(emailRetryService, "initialBackoffMs", 30000L);
+        ReflectionTestUtils.setField(emailRetryService, "maxBackoffMs", 3600000L);
+    }
+
+    /**
+     * Test an email is stored before sending and marked SENT when the server accepts it
+     */
+    @Test
+    void testEnqueue_WhenSent_ShouldMarkSent() {
+        // When
+        OutgoingEmail stored = emailRetryService.enqueue(recipient, "Xác nhận", "<p>OK</p>", true);
+
+        // Then
+        OutgoingEmail pending = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.PENDING, pending.getStatus());
+        assertTrue(pending.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+        // When the dispatcher reports success
+        lastCallback().onSent();
+
+        // Then
+        OutgoingEmail sent = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.SENT, sent.getStatus());
+        assertNotNull(sent.getSentAt());
+    }
+
+    /**
+     * Test a failed send is scheduled again after the backoff and not retried before
+     */
+    @Test
+    void testEnqueue_WhenSendFails_ShouldScheduleRetryWithBackoff() {
+        // Given
+        OutgoingEmail stored = emailRetryService.enqueue(recipient, "Xác nhận", "<p>OK</p>", true);
+        LocalDateTime before = LocalDateTime.now();
+
+        // When
+        lastCallback().onFailed(new MessagingException("421 try again later"));
+
+        // Then
+        OutgoingEmail failed = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertEquals("421 try again later", failed.getLastError());
+        assertFalse(failed.getNextAttemptAt().isBefore(before.plusSeconds(15)));
+        assertFalse(failed.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(30)));
+
+        emailRetryService.retryBatch();
+        verify(stubDispatcher, times(1)).dispatch(sentTo(recipient), any(EmailDispatcher.DeliveryCallback.class));
+    }
+
+    /**
+     * Test an email becomes DEAD after max attempts and an admin replay sends it again
+     */
+    @Test
+    void testRetry_AfterMaxAttempts_ShouldDeadLetterAndReplay() {
+        // Given: thử lại ngay, tối đa 2 lần
+        ReflectionTestUtils.setField(emailRetryService, "maxAttempts", 2);
+        ReflectionTestUtils.setField(emailRetryService, "initialBackoffMs", 0L);
+        OutgoingEmail stored = emailRetryService.enqueue(recipient, "Xác nhận", "<p>OK</p>", true);
+        lastCallback().onFailed(new MessagingException("Connection refused"));
+
+        // When
+        emailRetryService.retryBatch();
+        lastCallback().onFailed(new MessagingException("Connection refused"));
+
+        // Then
+        OutgoingEmail dead = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.DEAD, dead.getStatus());
+        assertEquals(2, dead.getAttempts());
+        emailRetryService.retryBatch();
+        verify(stubDispatcher, times(2)).dispatch(sentTo(recipient), any(EmailDispatcher.DeliveryCallback.class));
+
+        // When an admin replays the dead emails
+        assertTrue(emailRetryService.replayDead(100) >= 1);
+        emailRetryService.retryBatch();
+
+        // Then
+        OutgoingEmail revived = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.PENDING, revived.getStatus());
+        assertEquals(0, revived.getAttempts());
+        verify(stubDispatcher, times(3)).dispatch(sentTo(recipient), any(EmailDispatcher.DeliveryCallback.class));
+    }
+
+    /**
+     * Test an email the full send queue refused is kept and due on the next poll
+     */
+    @Test
+    void testEnqueue_WhenSendQueueFull_ShouldKeepEmailDue() {
+        // Given
+        when(stubDispatcher.dispatch(any(MimeMessage.class), any(EmailDispatcher.DeliveryCallback.class))).thenReturn(false);
+
+        // When
+        OutgoingEmail stored = emailRetryService.enqueue(recipient, "Xác nhận", "<p>OK</p>", true);
+
+        // Then
+        OutgoingEmail kept = outgoingEmailRepository.findById(stored.getEmailId()).orElseThrow();
+        assertEquals(OutgoingEmail.PENDING, kept.getStatus());
+        assertEquals(0, kept.getAttempts());
+        assertFalse(kept.getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+
+    /**
+     * Test the backoff doubles per attempt, stays within the cap and keeps at least half as jitter floor
+     */
+    @Test
+    void testBackoff_ShouldGrowExponentiallyWithJitter() {
+        // Given
+        ReflectionTestUtils.setField(emailRetryService, "initialBackoffMs", 1000L);
+        ReflectionTestUtils.setField(emailRetryService, "maxBackoffMs", 8000L);
+
+        // When & Then
+        for (int i = 0; i < 100; i++) {
+            long first = emailRetryService.backoffMs(1);
+            long third = emailRetryService.backoffMs(3);
+            long capped = emailRetryService.backoffMs(40);
+            assertTrue(first >= 500 && first <= 1000);
+            assertTrue(third >= 2000 && third <= 4000);
+            assertTrue(capped >= 4000 && capped <= 8000);
+        }
+    }
+
+    private EmailDispatcher.DeliveryCallback lastCallback() {
+        ArgumentCaptor<EmailDispatcher.DeliveryCallback> callback = ArgumentCaptor.forClass(EmailDispatcher.DeliveryCallback.class);
+        verify(stubDispatcher, atLeastOnce()).dispatch(sentTo(recipient), callback.capture());
+        return callback.getValue();
+    }
+
+    private static MimeMessage sentTo(String recipient) {
+        return argThat(message -> {
+            try {
+                return message != null && message.getAllRecipients()[0].toString().equals(recipient);
+            } catch (MessagingException e) {
+                return false;
+            }
+        });
+    }
+}
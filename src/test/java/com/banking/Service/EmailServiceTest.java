@@ -0,0 +1,104 @@
+package com.banking.Service;
+
+import com.banking.Config.EmailConfig;
+import com.banking.Entity.Account;
+import com.banking.Entity.Money;
+import com.banking.Entity.PaymentRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for EmailService rendering
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class EmailServiceTest {
+
+    @Mock
+    private EmailRetryService emailRetryService;
+
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() {
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "emailRetryService", emailRetryService);
+        EmailTemplateRenderer renderer = new EmailTemplateRenderer();
+        ReflectionTestUtils.setField(renderer, "templateEngine", new EmailConfig().templateEngine());
+        renderer.precompile();
+        ReflectionTestUtils.setField(emailService, "templateRenderer", renderer);
+        ReflectionTestUtils.setField(emailService, "adminEmail", "admin@test.com");
+    }
+
+    /**
+     * Test the admin digest lists each status group with its totals and hidden rows
+     */
+    @Test
+    void testSendAdminDigestEmail_ShouldRenderGroups() {
+        // Given
+        LocalDateTime at = LocalDateTime.of(2024, 1, 15, 10, 1);
+        AdminNotificationDigest.StatusGroup success = new AdminNotificationDigest.StatusGroup("SUCCESS");
+        success.add(new AdminNotificationDigest.Event(11L, 7L, "Nguyễn Văn A", Money.of(300000, "VND"), "SUCCESS", at), 1);
+        success.add(new AdminNotificationDigest.Event(12L, 8L, "Trần Thị B", Money.of(200000, "VND"), "SUCCESS", at), 1);
+        AdminNotificationDigest.StatusGroup failed = new AdminNotificationDigest.StatusGroup("FAILED");
+        failed.add(new AdminNotificationDigest.Event(13L, 9L, "Lê Văn C", Money.of(50, "USD"), "FAILED", at), 1);
+
+        // When
+        emailService.sendAdminDigestEmail(List.of(failed, success), 3, at.minusMinutes(5), at);
+
+        // Then
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(emailRetryService).enqueue(eq("admin@test.com"), eq("Tổng hợp thanh toán (3 giao dịch) - Banking System Admin"),
+                html.capture(), eq(true));
+        String body = html.getValue();
+        assertTrue(body.contains("status-failed"));
+        assertTrue(body.contains("500,000 VND"));
+        assertTrue(body.contains("50 USD"));
+        assertTrue(body.contains("Nguyễn Văn A"));
+        assertFalse(body.contains("Trần Thị B"));
+        assertTrue(body.contains("giao dịch khác"));
+        assertTrue(body.contains("15/01/2024 09:56:00"));
+    }
+
+    /**
+     * Test the payment request email comes from its template with escaped customer text
+     */
+    @Test
+    void testDeliverPaymentRequestEmail_ShouldRenderTemplate() {
+        // Given
+        Account account = new Account();
+        account.setEmail("customer@test.com");
+        account.setCustomerName("Nguyễn <b>Văn</b> A");
+        PaymentRequest paymentRequest = new PaymentRequest(1250000, account);
+        paymentRequest.setDescription(null);
+        paymentRequest.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30));
+
+        // When
+        emailService.deliverPaymentRequestEmail(paymentRequest);
+
+        // Then
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(emailRetryService).enqueue(eq("customer@test.com"), eq("Yêu cầu thanh toán mới - Banking System"),
+                html.capture(), eq(true));
+        String body = html.getValue();
+        assertTrue(body.contains("1,250,000 VND"));
+        assertTrue(body.contains("Không có mô tả"));
+        assertTrue(body.contains("15/01/2024 10:30:00"));
+        assertTrue(body.contains("Nguyễn &lt;b&gt;Văn&lt;/b&gt; A"));
+    }
+}
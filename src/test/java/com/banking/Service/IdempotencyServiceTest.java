@@ -0,0 +1,222 @@
+package com.banking.Service;
+
+import com.banking.Controller.CustomerPaymentController;
+import com.banking.Entity.IdempotencyRecord;
+import com.banking.Repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for IdempotencyService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    /**
+     * Test a retried request returns the stored response without running again
+     */
+    @Test
+    void testExecute_WithSameKey_ShouldRunOnceAndReplayResponse() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        IdempotencyService.Response first = idempotencyService.execute("PAY", key, "1:1",
+                () -> new IdempotencyService.Response(200, "paid-" + calls.incrementAndGet()));
+        IdempotencyService.Response retry = idempotencyService.execute("PAY", key, "1:1",
+                () -> new IdempotencyService.Response(200, "paid-" + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(1, calls.get());
+        assertEquals(first, retry);
+        assertEquals("paid-1", retry.body());
+    }
+
+    /**
+     * Test the same key on the pay form and the pay API does not replay the other endpoint's response
+     */
+    @Test
+    void testExecute_WithSameKeyOnDifferentPayEndpoints_ShouldNotConflict() {
+        // Given
+        String key = UUID.randomUUID().toString();
+
+        // When
+        IdempotencyService.Response form = idempotencyService.execute(CustomerPaymentController.PAY_SCOPE, key, "1:1",
+                () -> new IdempotencyService.Response(200, "Payment completed successfully!"));
+        IdempotencyService.Response api = idempotencyService.execute(CustomerPaymentController.PAY_API_SCOPE, key, "1:1",
+                () -> new IdempotencyService.Response(200, "{\"paymentId\":1}"));
+
+        // Then
+        assertEquals("Payment completed successfully!", form.body());
+        assertEquals("{\"paymentId\":1}", api.body());
+    }
+
+    /**
+     * Test concurrent duplicates wait for the first request instead of racing it
+     */
+    @Test
+    void testExecute_WithConcurrentDuplicates_ShouldRunOnce() throws Exception {
+        // Given
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<IdempotencyService.Response>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return idempotencyService.execute("TRANSFER", key, "a|b|100", () -> {
+                    calls.incrementAndGet();
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new IdempotencyService.Response(200, "ok");
+                });
+            }));
+        }
+        start.countDown();
+
+        // Then
+        for (Future<IdempotencyService.Response> future : futures) {
+            assertEquals("ok", future.get().body());
+        }
+        pool.shutdown();
+        assertEquals(1, calls.get());
+    }
+
+    /**
+     * Test reusing a key for a different request is rejected
+     */
+    @Test
+    void testExecute_WithDifferentPayload_ShouldReturn422() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute("TRANSFER", key, "a|b|100", () -> new IdempotencyService.Response(200, "ok"));
+
+        // When
+        IdempotencyService.Response response = idempotencyService.execute("TRANSFER", key, "a|b|999",
+                () -> new IdempotencyService.Response(200, "should not run"));
+
+        // Then
+        assertEquals(422, response.status());
+    }
+
+    /**
+     * Test an unexpected failure releases the key so the client can retry
+     */
+    @Test
+    void testExecute_WhenActionThrows_ShouldReleaseKey() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("PAY", key, "1:1", () -> {
+            throw new IllegalStateException("Hệ thống đang bận, vui lòng thử lại sau");
+        }));
+
+        // When
+        IdempotencyService.Response retry = idempotencyService.execute("PAY", key, "1:1",
+                () -> new IdempotencyService.Response(200, "paid"));
+
+        // Then
+        assertEquals("paid", retry.body());
+    }
+
+    /**
+     * Test a failure after money has moved keeps the key, so a retry does not run the request again
+     */
+    @Test
+    void testExecute_WhenActionThrowsAfterApplied_ShouldNotRunAgain() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("BULK_TRANSFER", key, "1:1", () -> {
+            calls.incrementAndGet();
+            idempotencyService.markApplied();
+            throw new IllegalStateException("response could not be serialized");
+        }));
+
+        // When
+        IdempotencyService.Response retry = idempotencyService.execute("BULK_TRANSFER", key, "1:1", () -> {
+            calls.incrementAndGet();
+            return new IdempotencyService.Response(200, "paid again");
+        });
+
+        // Then
+        assertEquals(1, calls.get());
+        assertEquals(409, retry.status());
+    }
+
+    /**
+     * Test a stale claim that has moved money is answered instead of being taken over
+     */
+    @Test
+    void testExecute_WithStaleAppliedClaim_ShouldNotRunAgain() {
+        // Given: node chết sau khi chuyển tiền, trước khi lưu response
+        String key = UUID.randomUUID().toString();
+        String storedKey = IdempotencyService.sha256("TRANSFER\nanonymous\n" + key);
+        IdempotencyRecord claim = new IdempotencyRecord(storedKey, IdempotencyService.sha256("a|b|100"),
+                LocalDateTime.now().minusHours(1), LocalDateTime.now().plusHours(1));
+        claim.setStatus(IdempotencyRecord.APPLIED);
+        idempotencyRecordRepository.save(claim);
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        IdempotencyService.Response retry = idempotencyService.execute("TRANSFER", key, "a|b|100", () -> {
+            calls.incrementAndGet();
+            return new IdempotencyService.Response(200, "ok");
+        });
+
+        // Then
+        assertEquals(0, calls.get());
+        assertEquals(409, retry.status());
+    }
+
+    /**
+     * Test the purge job removes expired keys
+     */
+    @Test
+    void testPurgeExpired_ShouldDeleteExpiredRecords() {
+        // Given
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute("PAY", key, "1:1", () -> new IdempotencyService.Response(200, "paid"));
+        idempotencyRecordRepository.findAll().forEach(record -> {
+            record.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+            idempotencyRecordRepository.save(record);
+        });
+
+        // When
+        idempotencyService.purgeExpired();
+
+        // Then
+        assertEquals(0, idempotencyRecordRepository.count());
+    }
+}
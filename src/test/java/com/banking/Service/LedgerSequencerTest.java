@@ -0,0 +1,185 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Entity.Balance;
+import com.banking.Entity.TransferCommand;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.BalanceRepository;
+import com.banking.Repository.TransferCommandRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for LedgerSequencer journal replay and batched flush
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LedgerSequencerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceRepository balanceRepository;
+
+    @Autowired
+    private TransferCommandRepository transferCommandRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private Path journalPath;
+
+    private LedgerSequencer sequencer;
+
+    private Long accountId;
+
+    @BeforeEach
+    void setUp() {
+        journalPath = tempDir.resolve("ledger.journal");
+        sequencer = newSequencer();
+
+        Account account = new Account("Ledger Test", "ledger-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com",
+                "password123", "Customer", "0900000000");
+        accountId = accountRepository.save(account).getAccountId();
+        balanceRepository.insertBalance(accountId, new BigDecimal("1000"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sequencer.stop();
+    }
+
+    /**
+     * Test journal batches above the checkpoint are flushed on startup exactly once
+     */
+    @Test
+    void testStart_WithUnflushedJournal_ShouldReplayBatchOnce() throws Exception {
+        // Given
+        sequencer.replayJournal();
+        long checkpoint = currentCheckpoint();
+        String idempotencyKey = IdempotencyService.sha256(UUID.randomUUID().toString());
+        jdbcTemplate.update("INSERT INTO idempotency_key (idempotency_key, request_hash, status, created_at, expires_at) "
+                + "VALUES (?, 'hash', 'IN_PROGRESS', CURRENT_TIMESTAMP, DATEADD('DAY', 1, CURRENT_TIMESTAMP))", idempotencyKey);
+        LedgerSequencer.JournalBatch batch = new LedgerSequencer.JournalBatch(checkpoint + 1,
+                Map.of(accountId, new BigDecimal("700")),
+                List.of(new LedgerSequencer.TransactionRow(LocalDate.now().toString(), new BigDecimal("300"),
+                        "TRANSFER", "SUCCESS", "1111", "2222", accountId)),
+                null, List.of(idempotencyKey), null);
+        // Dòng cuối ghi dở mô phỏng crash giữa lúc ghi journal
+        Files.writeString(journalPath, new ObjectMapper().writeValueAsString(batch) + "\n{\"sequence\":");
+
+        // When
+        sequencer.start();
+
+        // Then
+        assertEquals(0, new BigDecimal("700").compareTo(availableBalance()));
+        assertEquals(1, transactionCount());
+        assertEquals(checkpoint + 1, currentCheckpoint());
+        assertEquals(0, Files.size(journalPath));
+        assertEquals("APPLIED", jdbcTemplate.queryForObject(
+                "SELECT status FROM idempotency_key WHERE idempotency_key = ?", String.class, idempotencyKey));
+
+        sequencer.stop();
+        sequencer = newSequencer();
+        sequencer.start();
+        assertEquals(1, transactionCount());
+    }
+
+    /**
+     * Test commands are applied in memory and flushed to the Balance table
+     */
+    @Test
+    void testDebitAndCredit_ShouldFlushBalancesAndRejectOverdraft() {
+        // Given
+        sequencer.start();
+
+        // When
+        boolean debited = sequencer.debit(accountId, new BigDecimal("400"));
+        boolean overdrawn = sequencer.debit(accountId, new BigDecimal("700"));
+        boolean credited = sequencer.credit(accountId, new BigDecimal("50"));
+
+        // Then
+        assertTrue(debited);
+        assertFalse(overdrawn);
+        assertTrue(credited);
+        assertEquals(0, new BigDecimal("650").compareTo(availableBalance()));
+        assertFalse(sequencer.credit(-1L, new BigDecimal("50")));
+    }
+
+    /**
+     * Test an async transfer command is marked SUCCEEDED in the same flush as the balances
+     */
+    @Test
+    void testTransfer_WithAsyncCommand_ShouldMarkCommandSucceededInFlush() {
+        // Given
+        sequencer.start();
+        Account receiver = accountRepository.save(new Account("Ledger Receiver",
+                "ledger-r-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com", "password123", "Customer", "0900000000"));
+        balanceRepository.insertBalance(receiver.getAccountId(), BigDecimal.ZERO);
+        TransferCommand command = new TransferCommand(UUID.randomUUID().toString(), accountId, "1111", "2222",
+                new BigDecimal("300"), LocalDateTime.now());
+        transferCommandRepository.save(command);
+        transferCommandRepository.transition(command.getTransferId(), TransferCommand.QUEUED, TransferCommand.PROCESSING,
+                null, LocalDateTime.now());
+
+        // When
+        boolean applied = sequencer.transfer(accountId, receiver.getAccountId(), new BigDecimal("300"), null, null,
+                command.getTransferId());
+
+        // Then
+        assertTrue(applied);
+        assertEquals(0, new BigDecimal("700").compareTo(availableBalance()));
+        TransferCommand stored = transferCommandRepository.findById(command.getTransferId()).orElseThrow();
+        assertEquals(TransferCommand.SUCCEEDED, stored.getStatus());
+        assertEquals(TransferCommand.SUCCESS_MESSAGE, stored.getMessage());
+    }
+
+    private LedgerSequencer newSequencer() {
+        return new LedgerSequencer(jdbcTemplate, transactionTemplate, new LedgerJournal(jdbcTemplate), "SEQUENCER", journalPath.toString(),
+                1024, 64, 5000, 1 << 20);
+    }
+
+    private BigDecimal availableBalance() {
+        Balance balance = balanceRepository.findById(accountId).orElseThrow();
+        return balance.getAvailableBalance();
+    }
+
+    private int transactionCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_transaction WHERE account_id = ?",
+                Integer.class, accountId);
+    }
+
+    private long currentCheckpoint() {
+        return jdbcTemplate.queryForObject("SELECT last_sequence FROM ledger_checkpoint WHERE id = 1", Long.class);
+    }
+}
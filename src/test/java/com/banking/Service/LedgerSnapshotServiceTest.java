@@ -0,0 +1,105 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for LedgerJournal and LedgerSnapshotService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LedgerSnapshotServiceTest {
+
+    @Autowired
+    private LedgerSnapshotService ledgerSnapshotService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account sender;
+    private Account receiver;
+
+    @BeforeEach
+    void setUp() {
+        sender = newAccount("sender");
+        receiver = newAccount("receiver");
+        balanceService.deposit(sender.getAccountId(), new BigDecimal("500000"), "TEST");
+        balanceService.deposit(receiver.getAccountId(), new BigDecimal("1000"), "TEST");
+    }
+
+    /**
+     * Test every movement is journaled as legs summing to zero
+     */
+    @Test
+    void testMovements_ShouldWriteBalancedLegs() {
+        // When
+        assertTrue(balanceService.transfer(sender.getAccountId(), receiver.getAccountId(), new BigDecimal("200000"), "T1"));
+        assertTrue(balanceService.payment(receiver.getAccountId(), new BigDecimal("50000"), "PAYMENT#T1"));
+        assertFalse(balanceService.payment(receiver.getAccountId(), new BigDecimal("999999"), "PAYMENT#T2"));
+
+        // Then
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT journal_id FROM ledger_entry GROUP BY journal_id HAVING SUM(amount) <> 0) t",
+                Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_entry WHERE reference = 'PAYMENT#T2'", Integer.class));
+        assertEquals(0, new BigDecimal("300000").compareTo(ledgerSnapshotService.ledgerBalance(sender.getAccountId())));
+        assertEquals(0, new BigDecimal("151000").compareTo(ledgerSnapshotService.ledgerBalance(receiver.getAccountId())));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) ledgerSnapshotService.verify(receiver.getAccountId()).get("drift")));
+    }
+
+    /**
+     * Test snapshots keep the ledger balance unchanged and rebuild repairs a drifted projection
+     */
+    @Test
+    void testSnapshotAndRebuild_ShouldRestoreProjectedBalance() {
+        // Given
+        balanceService.transfer(sender.getAccountId(), receiver.getAccountId(), new BigDecimal("100000"), "T3");
+        ReflectionTestUtils.setField(ledgerSnapshotService, "snapshotLagMs", 0L);
+        try {
+            // When
+            assertTrue(ledgerSnapshotService.snapshot() >= 2);
+        } finally {
+            ReflectionTestUtils.setField(ledgerSnapshotService, "snapshotLagMs", 60000L);
+        }
+        balanceService.transfer(sender.getAccountId(), receiver.getAccountId(), new BigDecimal("1000"), "T4");
+        jdbcTemplate.update("UPDATE Balance SET available_balance = 0 WHERE account_id = ?", sender.getAccountId());
+
+        // Then
+        Map<String, Object> drifted = ledgerSnapshotService.verify(sender.getAccountId());
+        assertEquals(0, new BigDecimal("399000").compareTo((BigDecimal) drifted.get("ledgerBalance")));
+        assertEquals(0, new BigDecimal("-399000").compareTo((BigDecimal) drifted.get("drift")));
+
+        BigDecimal rebuilt = ledgerSnapshotService.rebuildProjection(sender.getAccountId());
+        assertEquals(0, new BigDecimal("399000").compareTo(rebuilt));
+        assertEquals(0, rebuilt.compareTo(balanceService.getBalanceByAccountId(sender.getAccountId())));
+    }
+
+    private Account newAccount(String name) {
+        String email = "ledger-" + name + "-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        return accountRepository.save(new Account("Ledger " + name, email, "password123", "Customer", "0900000000"));
+    }
+}
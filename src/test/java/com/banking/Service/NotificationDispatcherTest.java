@@ -0,0 +1,143 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Entity.NotificationDelivery;
+import com.banking.Entity.PaymentRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for NotificationDispatcher
+ *
+ * The SMS channel gets one thread and a one-slot queue so its bulkhead can
+ * be filled by a handful of notifications.
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "app.notification.channels.sms.threads=1",
+        "app.notification.channels.sms.queue-capacity=1",
+        "app.notification.sms.stub.latency-ms=0",
+        "app.notification.push.stub.latency-ms=0"
+})
+class NotificationDispatcherTest {
+
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    @Qualifier("smsGateway")
+    private MessageGateway smsGateway;
+
+    @AfterEach
+    void tearDown() {
+        LocalMessageGateway sms = (LocalMessageGateway) smsGateway;
+        sms.setLatencyMs(0);
+        sms.setFailureRate(0);
+    }
+
+    /**
+     * Test a notification goes to every channel and each channel records its own status
+     */
+    @Test
+    void testPublish_ShouldDeliverOnEveryChannel() throws Exception {
+        // Given
+        PaymentRequest paymentRequest = payment();
+
+        // When
+        Map<String, String> statuses = notificationDispatcher
+                .publish(paymentRequest, NotificationChannel.Event.PAYMENT_SUCCESS, null).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(Map.of("email", NotificationDelivery.SENT, "sms", NotificationDelivery.SENT,
+                "push", NotificationDelivery.SENT), statuses);
+        List<NotificationDelivery> deliveries = notificationDispatcher.getDeliveries(paymentRequest.getPaymentId());
+        assertEquals(3, deliveries.size());
+        for (NotificationDelivery delivery : deliveries) {
+            assertEquals(NotificationDelivery.SENT, delivery.getStatus());
+            assertEquals("PAYMENT_SUCCESS", delivery.getEvent());
+            assertNotNull(delivery.getCompletedAt());
+        }
+        assertEquals("0901234567", deliveries.stream()
+                .filter(delivery -> delivery.getChannel().equals("sms")).findFirst().orElseThrow().getRecipient());
+    }
+
+    /**
+     * Test a failing gateway marks only its own channel FAILED with the error
+     */
+    @Test
+    void testPublish_WhenSmsGatewayFails_ShouldRecordFailureForSmsOnly() throws Exception {
+        // Given
+        ((LocalMessageGateway) smsGateway).setFailureRate(1.0);
+        PaymentRequest paymentRequest = payment();
+
+        // When
+        Map<String, String> statuses = notificationDispatcher
+                .publish(paymentRequest, NotificationChannel.Event.PAYMENT_FAILED, "Insufficient balance")
+                .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(NotificationDelivery.FAILED, statuses.get("sms"));
+        assertEquals(NotificationDelivery.SENT, statuses.get("email"));
+        assertEquals(NotificationDelivery.SENT, statuses.get("push"));
+        NotificationDelivery sms = notificationDispatcher.getDeliveries(paymentRequest.getPaymentId()).stream()
+                .filter(delivery -> delivery.getChannel().equals("sms")).findFirst().orElseThrow();
+        assertEquals(NotificationDelivery.FAILED, sms.getStatus());
+        assertTrue(sms.getError().contains("SMS gateway unavailable"));
+    }
+
+    /**
+     * Test a slow SMS gateway fills only the SMS bulkhead: further SMS are rejected at once
+     * while email and push keep being delivered without waiting for it
+     */
+    @Test
+    void testPublish_WhenSmsGatewaySlow_ShouldRejectSmsAndNotDelayOtherChannels() throws Exception {
+        // Given: một luồng đang gửi, một chỗ trong hàng đợi
+        ((LocalMessageGateway) smsGateway).setLatencyMs(2000);
+        CompletableFuture<Map<String, String>> first =
+                notificationDispatcher.publish(payment(), NotificationChannel.Event.PAYMENT_REQUEST, null);
+        CompletableFuture<Map<String, String>> second =
+                notificationDispatcher.publish(payment(), NotificationChannel.Event.PAYMENT_REQUEST, null);
+        PaymentRequest third = payment();
+
+        // When
+        long start = System.nanoTime();
+        Map<String, String> statuses = notificationDispatcher
+                .publish(third, NotificationChannel.Event.PAYMENT_REQUEST, null).get(5, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertEquals(NotificationDelivery.REJECTED, statuses.get("sms"));
+        assertEquals(NotificationDelivery.SENT, statuses.get("email"));
+        assertEquals(NotificationDelivery.SENT, statuses.get("push"));
+        assertTrue(elapsedMs < 1000, "email and push should not wait for the SMS gateway, took " + elapsedMs + " ms");
+        assertFalse(first.isDone());
+        assertEquals(NotificationDelivery.SENT, first.get(10, TimeUnit.SECONDS).get("sms"));
+        assertEquals(NotificationDelivery.SENT, second.get(10, TimeUnit.SECONDS).get("sms"));
+    }
+
+    private static PaymentRequest payment() {
+        Account account = new Account("Notify Customer", "notify@test.com", "secret", "CUSTOMER", "0901234567");
+        account.setAccountId(ThreadLocalRandom.current().nextLong(1_000_000, 2_000_000));
+        PaymentRequest paymentRequest = new PaymentRequest(150000, account);
+        paymentRequest.setPaymentId(ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L));
+        return paymentRequest;
+    }
+}
@@ -0,0 +1,268 @@
+package com.banking.Service;
+
+import com.banking.Config.QueueConfig;
+import com.banking.DTO.PayPaymentRequestDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.OutboxEvent;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.OutboxEventRepository;
+import com.banking.Repository.PaymentRequestRepository;
+import jakarta.jms.CompletionListener;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Integration tests for OutboxService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OutboxServiceTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    private Account account;
+    private MessageProducer producer;
+    private Map<String, TextMessage> messagesByPayload;
+
+    @BeforeEach
+    void setUp() throws JMSException {
+        String email = "outbox-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        account = accountRepository.save(new Account("Outbox", email, "password123", "Customer", "0900000000"));
+        balanceService.deposit(account.getAccountId(), new BigDecimal("1000000"), "TEST");
+
+        // Broker giả: session trả về producer mock, mỗi test quyết định broker xác nhận hay báo lỗi
+        Session session = mock(Session.class);
+        producer = mock(MessageProducer.class);
+        when(session.createQueue(anyString())).thenReturn(mock(Queue.class));
+        when(session.createProducer(any())).thenReturn(producer);
+        messagesByPayload = new ConcurrentHashMap<>();
+        when(session.createTextMessage(anyString())).thenAnswer(invocation ->
+                messagesByPayload.computeIfAbsent(invocation.getArgument(0), payload -> mock(TextMessage.class)));
+        JmsTemplate stubTemplate = mock(JmsTemplate.class);
+        when(stubTemplate.execute(ArgumentMatchers.<SessionCallback<Object>>any()))
+                .thenAnswer(invocation -> ((SessionCallback<?>) invocation.getArgument(0)).doInJms(session));
+        ReflectionTestUtils.setField(outboxService, "jmsTemplate", stubTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(outboxService, "jmsTemplate", jmsTemplate);
+    }
+
+    /**
+     * Test a payment writes its message to the outbox and a refused payment writes none
+     */
+    @Test
+    void testPay_ShouldWriteOutboxEventWithPayment() {
+        // Given
+        Long paid = newRequest(300000);
+        Long refused = newRequest(5000000);
+
+        // When
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(paid, account.getAccountId()));
+        assertThrows(RuntimeException.class,
+                () -> paymentService.payPaymentRequest(new PayPaymentRequestDTO(refused, account.getAccountId())));
+
+        // Then
+        OutboxEvent event = eventFor(paid);
+        assertNotNull(event);
+        assertEquals(QueueConfig.PAYMENT_QUEUE, event.getDestination());
+        assertEquals(PaymentRequest.class.getName(), event.getMessageType());
+        assertEquals(String.valueOf(account.getAccountId()), event.getGroupKey());
+        assertEquals(OutboxEvent.PENDING, event.getStatus());
+        assertTrue(event.getPayload().contains("\"status\":\"PAID\""));
+        assertNull(eventFor(refused));
+    }
+
+    /**
+     * Test the relay sends pending events asynchronously and marks acknowledged ones SENT
+     */
+    @Test
+    void testRelay_WhenBrokerAcknowledges_ShouldMarkSent() throws JMSException {
+        // Given
+        Long id = newRequest(100000);
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(id, account.getAccountId()));
+        doAnswer(invocation -> {
+            ((CompletionListener) invocation.getArgument(1)).onCompletion(invocation.getArgument(0));
+            return null;
+        }).when(producer).send(any(TextMessage.class), any(CompletionListener.class));
+
+        // When
+        assertTrue(outboxService.relayBatch() >= 1);
+
+        // Then
+        OutboxEvent event = eventFor(id);
+        assertEquals(OutboxEvent.SENT, event.getStatus());
+        assertNotNull(event.getSentAt());
+        TextMessage sent = messagesByPayload.get(event.getPayload());
+        verify(sent).setStringProperty(OutboxService.GROUP_ID_PROPERTY, String.valueOf(account.getAccountId()));
+        verify(producer, never()).send(any(TextMessage.class));
+        verify(producer, atLeastOnce()).close();
+    }
+
+    /**
+     * Test a send the broker rejects stays PENDING with the error and is retried on the next poll
+     */
+    @Test
+    void testRelay_WhenBrokerRejects_ShouldKeepPendingAndRetry() throws JMSException {
+        // Given
+        Long id = newRequest(100000);
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(id, account.getAccountId()));
+        doAnswer(invocation -> {
+            ((CompletionListener) invocation.getArgument(1)).onException(invocation.getArgument(0), new JMSException("broker down"));
+            return null;
+        }).when(producer).send(any(TextMessage.class), any(CompletionListener.class));
+
+        // When
+        outboxService.relayBatch();
+
+        // Then
+        OutboxEvent failed = eventFor(id);
+        assertEquals(OutboxEvent.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertEquals("broker down", failed.getLastError());
+
+        // When the broker is back
+        doAnswer(invocation -> {
+            ((CompletionListener) invocation.getArgument(1)).onCompletion(invocation.getArgument(0));
+            return null;
+        }).when(producer).send(any(TextMessage.class), any(CompletionListener.class));
+        outboxService.relayBatch();
+
+        // Then
+        assertEquals(OutboxEvent.SENT, eventFor(id).getStatus());
+    }
+
+    /**
+     * Test a failed send stops its group: later events of the same account are not sent before it
+     */
+    @Test
+    void testRelay_WhenEarlierEventOfGroupFails_ShouldNotSendLaterEvents() throws JMSException {
+        // Given: hai payment của cùng account, broker từ chối event đầu
+        Long firstId = newRequest(100000);
+        Long secondId = newRequest(200000);
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(firstId, account.getAccountId()));
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(secondId, account.getAccountId()));
+        String firstPayload = eventFor(firstId).getPayload();
+        doAnswer(invocation -> {
+            TextMessage message = invocation.getArgument(0);
+            CompletionListener listener = invocation.getArgument(1);
+            if (message == messagesByPayload.get(firstPayload)) {
+                listener.onException(message, new JMSException("broker down"));
+            } else {
+                listener.onCompletion(message);
+            }
+            return null;
+        }).when(producer).send(any(TextMessage.class), any(CompletionListener.class));
+
+        // When
+        outboxService.relayBatch();
+
+        // Then
+        OutboxEvent first = eventFor(firstId);
+        OutboxEvent second = eventFor(secondId);
+        assertEquals(OutboxEvent.PENDING, first.getStatus());
+        assertEquals(1, first.getAttempts());
+        assertEquals(OutboxEvent.PENDING, second.getStatus());
+        assertEquals(0, second.getAttempts());
+        assertNull(second.getClaimToken());
+        assertNull(messagesByPayload.get(second.getPayload()));
+    }
+
+    /**
+     * Test an event leased by another relay holds back its whole group until the lease is released
+     */
+    @Test
+    void testRelay_WhenGroupLeasedByOtherRelay_ShouldSkipGroup() throws JMSException {
+        // Given
+        Long firstId = newRequest(100000);
+        Long secondId = newRequest(200000);
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(firstId, account.getAccountId()));
+        paymentService.payPaymentRequest(new PayPaymentRequestDTO(secondId, account.getAccountId()));
+        doAnswer(invocation -> {
+            ((CompletionListener) invocation.getArgument(1)).onCompletion(invocation.getArgument(0));
+            return null;
+        }).when(producer).send(any(TextMessage.class), any(CompletionListener.class));
+        Long leasedId = eventFor(firstId).getEventId();
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, outboxEventRepository.claim(List.of(leasedId), "other-relay", now.plusMinutes(1), now));
+
+        // When
+        outboxService.relayBatch();
+
+        // Then
+        assertEquals(OutboxEvent.PENDING, eventFor(firstId).getStatus());
+        assertEquals(OutboxEvent.PENDING, eventFor(secondId).getStatus());
+        assertNull(messagesByPayload.get(eventFor(firstId).getPayload()));
+        assertNull(messagesByPayload.get(eventFor(secondId).getPayload()));
+
+        // When the other relay gives the event back
+        outboxEventRepository.release(List.of(leasedId), "other-relay");
+        outboxService.relayBatch();
+
+        // Then
+        assertEquals(OutboxEvent.SENT, eventFor(firstId).getStatus());
+        assertEquals(OutboxEvent.SENT, eventFor(secondId).getStatus());
+    }
+
+    private Long newRequest(double amount) {
+        return paymentRequestRepository.save(new PaymentRequest(amount, account)).getPaymentId();
+    }
+
+    private OutboxEvent eventFor(Long paymentId) {
+        List<OutboxEvent> events = outboxEventRepository.findAll().stream()
+                .filter(event -> event.getPayload().contains("\"paymentId\":" + paymentId + ","))
+                .toList();
+        assertTrue(events.size() <= 1);
+        return events.isEmpty() ? null : events.get(0);
+    }
+}
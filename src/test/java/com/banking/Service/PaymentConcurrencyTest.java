@@ -0,0 +1,95 @@
+package com.banking.Service;
+
+import com.banking.DTO.PayPaymentRequestDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.PaymentRequestRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency tests for the guarded payment status transitions
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentConcurrencyTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    /**
+     * Test concurrent pays of one request debit the account once
+     */
+    @Test
+    void testConcurrentPays_ShouldDebitOnce() throws Exception {
+        // Given
+        String email = "pay-race-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        Account account = accountRepository.save(new Account("Pay race", email, "password123", "Customer", "0900000000"));
+        balanceService.deposit(account.getAccountId(), new BigDecimal("1000000"), "TEST");
+        PaymentRequest request = paymentRequestRepository.save(new PaymentRequest(300000, account));
+        PayPaymentRequestDTO payDTO = new PayPaymentRequestDTO();
+        payDTO.setPaymentId(request.getPaymentId());
+        payDTO.setAccountId(account.getAccountId());
+
+        // When
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger paid = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    paymentService.payPaymentRequest(payDTO);
+                    paid.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertTrue(e.getMessage().contains("not pending"), e.getMessage());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Then
+        assertEquals(1, paid.get());
+        assertEquals(0, new BigDecimal("700000").compareTo(balanceService.getBalanceByAccountId(account.getAccountId())));
+        assertEquals(PaymentRequest.PaymentStatus.PAID, paymentRequestRepository.findById(request.getPaymentId()).orElseThrow().getStatus());
+        assertThrows(RuntimeException.class, () -> paymentService.cancelPaymentRequest(request.getPaymentId()));
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> paymentRequestRepository.transition(request.getPaymentId(),
+                PaymentRequest.PaymentStatus.PAID, PaymentRequest.PaymentStatus.PENDING));
+    }
+}
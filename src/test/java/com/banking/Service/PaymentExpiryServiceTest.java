@@ -0,0 +1,124 @@
+package com.banking.Service;
+
+import com.banking.DTO.PayPaymentRequestDTO;
+import com.banking.Entity.Account;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.PaymentRequestRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for PaymentExpiryService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentExpiryServiceTest {
+
+    @Autowired
+    private PaymentExpiryService paymentExpiryService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    /**
+     * Test the sweep pages through expired requests and leaves live and paid ones alone
+     */
+    @Test
+    void testExpirePending_ShouldCancelExpiredRequestsInPages() {
+        // Given
+        Account account = newAccount();
+        LocalDateTime old = LocalDateTime.now().minusDays(30);
+        List<Long> expired = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expired.add(save(account, PaymentRequest.PaymentStatus.PENDING, old.plusMinutes(i), old.plusDays(7)).getPaymentId());
+        }
+        // Dòng cũ chưa có expires_at hết hạn theo TTL
+        expired.add(save(account, PaymentRequest.PaymentStatus.PENDING, old, null).getPaymentId());
+        Long extended = save(account, PaymentRequest.PaymentStatus.PENDING, old, LocalDateTime.now().plusDays(1)).getPaymentId();
+        Long paid = save(account, PaymentRequest.PaymentStatus.PAID, old, old.plusDays(7)).getPaymentId();
+        Long fresh = save(account, PaymentRequest.PaymentStatus.PENDING, LocalDateTime.now(), LocalDateTime.now().plusDays(7)).getPaymentId();
+
+        // When
+        ReflectionTestUtils.setField(paymentExpiryService, "sweepBatchSize", 2);
+        int count;
+        try {
+            count = paymentExpiryService.expirePending();
+        } finally {
+            ReflectionTestUtils.setField(paymentExpiryService, "sweepBatchSize", 500);
+        }
+
+        // Then
+        assertTrue(count >= expired.size());
+        for (Long id : expired) {
+            assertEquals(PaymentRequest.PaymentStatus.CANCELLED, statusOf(id));
+        }
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, statusOf(extended));
+        assertEquals(PaymentRequest.PaymentStatus.PAID, statusOf(paid));
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, statusOf(fresh));
+    }
+
+    /**
+     * Test an expired request cannot be paid even before the sweep runs
+     */
+    @Test
+    void testPay_WhenExpired_ShouldBeRejected() {
+        // Given
+        Account account = newAccount();
+        balanceService.deposit(account.getAccountId(), new BigDecimal("1000000"), "TEST");
+        LocalDateTime created = LocalDateTime.now().minusHours(2);
+        Long id = save(account, PaymentRequest.PaymentStatus.PENDING, created, created.plusHours(1)).getPaymentId();
+        PayPaymentRequestDTO payDTO = new PayPaymentRequestDTO();
+        payDTO.setPaymentId(id);
+        payDTO.setAccountId(account.getAccountId());
+
+        // When
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> paymentService.payPaymentRequest(payDTO));
+
+        // Then
+        assertTrue(exception.getMessage().contains("expired"));
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, statusOf(id));
+        assertEquals(0, new BigDecimal("1000000").compareTo(balanceService.getBalanceByAccountId(account.getAccountId())));
+    }
+
+    private PaymentRequest save(Account account, PaymentRequest.PaymentStatus status, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        PaymentRequest request = new PaymentRequest(100000, account);
+        request.setStatus(status);
+        request.setCreatedAt(createdAt);
+        request.setExpiresAt(expiresAt);
+        return paymentRequestRepository.save(request);
+    }
+
+    private PaymentRequest.PaymentStatus statusOf(Long paymentId) {
+        return paymentRequestRepository.findById(paymentId).orElseThrow().getStatus();
+    }
+
+    private Account newAccount() {
+        String email = "expiry-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        return accountRepository.save(new Account("Expiry", email, "password123", "Customer", "0900000000"));
+    }
+}
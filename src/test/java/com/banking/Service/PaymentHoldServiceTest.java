@@ -0,0 +1,136 @@
+package com.banking.Service;
+
+import com.banking.Entity.Account;
+import com.banking.Entity.Balance;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.AccountRepository;
+import com.banking.Repository.BalanceRepository;
+import com.banking.Repository.PaymentRequestRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for PaymentHoldService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PaymentHoldServiceTest {
+
+    @Autowired
+    private PaymentHoldService paymentHoldService;
+
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private LedgerSnapshotService ledgerSnapshotService;
+
+    @Autowired
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Autowired
+    private BalanceRepository balanceRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        String email = "hold-" + UUID.randomUUID().toString().substring(0, 8) + "@test.com";
+        account = accountRepository.save(new Account("Hold", email, "password123", "Customer", "0900000000"));
+        balanceService.deposit(account.getAccountId(), new BigDecimal("1000000"), "TEST");
+    }
+
+    /**
+     * Test authorize moves funds to hold and capture removes them and journals the payment
+     */
+    @Test
+    void testAuthorizeAndCapture_ShouldMoveFundsThroughHold() {
+        // Given
+        Long id = newRequest(300000);
+
+        // When
+        assertEquals(PaymentHoldService.Outcome.HELD, paymentHoldService.authorize(id, account.getAccountId()));
+        Balance held = balanceRepository.findById(account.getAccountId()).orElseThrow();
+        assertEquals(PaymentHoldService.Outcome.NOT_PENDING, paymentHoldService.authorize(id, account.getAccountId()));
+        assertTrue(paymentHoldService.capture(id));
+
+        // Then
+        assertEquals(0, new BigDecimal("700000").compareTo(held.getAvailableBalance()));
+        assertEquals(0, new BigDecimal("300000").compareTo(held.getHoldBalance()));
+        Balance captured = balanceRepository.findById(account.getAccountId()).orElseThrow();
+        assertEquals(0, new BigDecimal("700000").compareTo(captured.getAvailableBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(captured.getHoldBalance()));
+        assertEquals(PaymentRequest.PaymentStatus.PAID, paymentRequestRepository.findById(id).orElseThrow().getStatus());
+        assertFalse(paymentHoldService.capture(id));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) ledgerSnapshotService.verify(account.getAccountId()).get("drift")));
+    }
+
+    /**
+     * Test an expired hold is released back to available and the request is payable again
+     */
+    @Test
+    void testReleaseExpired_ShouldReturnHeldFunds() {
+        // Given
+        Long expired = newRequest(200000);
+        Long live = newRequest(100000);
+        assertEquals(PaymentHoldService.Outcome.HELD, paymentHoldService.authorize(expired, account.getAccountId()));
+        assertEquals(PaymentHoldService.Outcome.HELD, paymentHoldService.authorize(live, account.getAccountId()));
+        jdbcTemplate.update("UPDATE payment_request SET hold_expires_at = ? WHERE payment_id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)), expired);
+
+        // When
+        assertTrue(paymentHoldService.releaseExpired() >= 1);
+
+        // Then
+        Balance balance = balanceRepository.findById(account.getAccountId()).orElseThrow();
+        assertEquals(0, new BigDecimal("900000").compareTo(balance.getAvailableBalance()));
+        assertEquals(0, new BigDecimal("100000").compareTo(balance.getHoldBalance()));
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, paymentRequestRepository.findById(expired).orElseThrow().getStatus());
+        assertEquals(PaymentRequest.PaymentStatus.AUTHORIZED, paymentRequestRepository.findById(live).orElseThrow().getStatus());
+        assertTrue(paymentHoldService.release(live));
+        assertEquals(0, new BigDecimal("1000000").compareTo(balanceService.getBalanceByAccountId(account.getAccountId())));
+        assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) ledgerSnapshotService.verify(account.getAccountId()).get("drift")));
+    }
+
+    /**
+     * Test authorize with insufficient funds leaves both the request and the balance unchanged
+     */
+    @Test
+    void testAuthorize_WithInsufficientFunds_ShouldChangeNothing() {
+        // Given
+        Long id = newRequest(5000000);
+
+        // When
+        PaymentHoldService.Outcome outcome = paymentHoldService.authorize(id, account.getAccountId());
+
+        // Then
+        assertEquals(PaymentHoldService.Outcome.INSUFFICIENT_FUNDS, outcome);
+        assertEquals(PaymentRequest.PaymentStatus.PENDING, paymentRequestRepository.findById(id).orElseThrow().getStatus());
+        assertEquals(0, BigDecimal.ZERO.compareTo(balanceRepository.findById(account.getAccountId()).orElseThrow().getHoldBalance()));
+    }
+
+    private Long newRequest(double amount) {
+        return paymentRequestRepository.save(new PaymentRequest(amount, account)).getPaymentId();
+    }
+}
@@ -0,0 +1,267 @@
+package com.banking.Service;
+
+import com.banking.Config.QueueConfig;
+import com.banking.Entity.Account;
+import com.banking.Entity.PaymentRequest;
+import com.banking.Repository.PaymentRequestRepository;
+import com.banking.Repository.ProcessedEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Queue;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PaymentNotificationConsumer
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class PaymentNotificationConsumerTest {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private PaymentRequestRepository paymentRequestRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private ConnectionFactory brokerConnectionFactory;
+
+    @Mock
+    private JmsListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private ProcessedEventRepository processedEventRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private PaymentNotificationConsumer consumer;
+
+    @Mock
+    private Session session;
+
+    @Mock
+    private MessageProducer dlqProducer;
+
+    @Mock
+    private TextMessage deadLetter;
+
+    private PaymentRequest paymentRequest;
+
+    @BeforeEach
+    void setUp() {
+        Account account = new Account();
+        account.setAccountId(7L);
+        account.setEmail("notify@test.com");
+        paymentRequest = new PaymentRequest(250000.0, account);
+        paymentRequest.setPaymentId(42L);
+    }
+
+    /**
+     * Test a payment message sends the notification of the reloaded request
+     */
+    @Test
+    void testOnPaymentMessage_WithKnownPayment_ShouldNotify() throws JMSException {
+        // Given
+        TextMessage message = paymentMessage(1);
+        when(paymentRequestRepository.findWithAccountById(42L)).thenReturn(Optional.of(paymentRequest));
+
+        // When
+        consumer.onPaymentMessage(message, session);
+
+        // Then
+        verify(notificationService).handlePaymentNotification(paymentRequest);
+        verify(session, never()).createProducer(any());
+        assertEquals(1L, consumer.getStats().get("delivered"));
+    }
+
+    /**
+     * Test the same outbox event delivered twice sends the notification only once
+     */
+    @Test
+    void testOnPaymentMessage_WhenEventRedelivered_ShouldNotifyOnce() throws JMSException {
+        // Given: khóa duy nhất (consumer, event_id) của processed_event
+        Set<Long> processed = new HashSet<>();
+        when(processedEventRepository.markProcessed(eq(PaymentNotificationConsumer.LISTENER_ID), anyLong(), any()))
+                .thenAnswer(invocation -> {
+                    if (!processed.add(invocation.getArgument(1))) {
+                        throw new DataIntegrityViolationException("ux_processed_event_consumer_event");
+                    }
+                    return 1;
+                });
+        TransactionStatus status = mock(TransactionStatus.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(status));
+        when(paymentRequestRepository.findWithAccountById(42L)).thenReturn(Optional.of(paymentRequest));
+        TextMessage first = outboxMessage(99L);
+        TextMessage redelivered = outboxMessage(99L);
+
+        // When
+        consumer.onPaymentMessage(first, session);
+        consumer.onPaymentMessage(redelivered, session);
+
+        // Then
+        verify(notificationService, times(1)).handlePaymentNotification(paymentRequest);
+        verify(status).setRollbackOnly();
+        assertEquals(1L, consumer.getStats().get("delivered"));
+        assertEquals(1L, consumer.getStats().get("duplicates"));
+    }
+
+    /**
+     * Test a failure before the last attempt is thrown so the session rolls back for redelivery
+     */
+    @Test
+    void testOnPaymentMessage_WhenNotificationFails_ShouldRollBackForRedelivery() throws JMSException {
+        // Given
+        TextMessage message = paymentMessage(2);
+        when(paymentRequestRepository.findWithAccountById(42L)).thenReturn(Optional.of(paymentRequest));
+        doThrow(new RuntimeException("SMTP down")).when(notificationService).handlePaymentNotification(paymentRequest);
+
+        // When & Then
+        assertThrows(RuntimeException.class, () -> consumer.onPaymentMessage(message, session));
+        verify(session, never()).createProducer(any());
+        verify(notificationService, never()).notifyAdminOfFailure(any());
+        assertEquals(1L, consumer.getStats().get("retried"));
+    }
+
+    /**
+     * Test the last failed attempt moves the message to the DLQ with its group and error
+     */
+    @Test
+    void testOnPaymentMessage_OnLastAttempt_ShouldMoveToDeadLetterQueue() throws JMSException {
+        // Given
+        TextMessage message = paymentMessage(5);
+        stubDeadLetterQueue();
+        when(message.getPropertyNames()).thenReturn(Collections.enumeration(List.of("_type", "JMSXGroupID", "JMSXDeliveryCount")));
+        when(message.getObjectProperty("_type")).thenReturn(PaymentRequest.class.getName());
+        when(message.getObjectProperty("JMSXGroupID")).thenReturn("7");
+        when(paymentRequestRepository.findWithAccountById(42L)).thenReturn(Optional.of(paymentRequest));
+        doThrow(new RuntimeException("SMTP down")).when(notificationService).handlePaymentNotification(paymentRequest);
+
+        // When
+        consumer.onPaymentMessage(message, session);
+
+        // Then
+        verify(session).createQueue(QueueConfig.PAYMENT_DLQ);
+        verify(dlqProducer).send(deadLetter);
+        verify(deadLetter).setObjectProperty("_type", PaymentRequest.class.getName());
+        verify(deadLetter).setObjectProperty("JMSXGroupID", "7");
+        verify(deadLetter, never()).setObjectProperty(eq("JMSXDeliveryCount"), any());
+        verify(deadLetter).setStringProperty(PaymentNotificationConsumer.DLQ_ERROR_PROPERTY, "SMTP down");
+        verify(deadLetter).setIntProperty(PaymentNotificationConsumer.DLQ_ATTEMPTS_PROPERTY, 5);
+        verify(notificationService).notifyAdminOfFailure(paymentRequest);
+    }
+
+    /**
+     * Test a message for an unknown payment goes to the DLQ at once instead of being retried
+     */
+    @Test
+    void testOnPaymentMessage_WithUnknownPayment_ShouldDeadLetterAtOnce() throws JMSException {
+        // Given
+        TextMessage message = paymentMessage(1);
+        stubDeadLetterQueue();
+        when(message.getPropertyNames()).thenReturn(Collections.emptyEnumeration());
+        when(paymentRequestRepository.findWithAccountById(42L)).thenReturn(Optional.empty());
+
+        // When
+        consumer.onPaymentMessage(message, session);
+
+        // Then
+        verify(dlqProducer).send(deadLetter);
+        verify(deadLetter).setStringProperty(eq(PaymentNotificationConsumer.DLQ_ERROR_PROPERTY), startsWith("Payment request 42"));
+        verify(notificationService, never()).handlePaymentNotification(any());
+    }
+
+    /**
+     * Test replay moves DLQ messages back to payment.queue, one committed transaction each
+     */
+    @Test
+    void testReplayDeadLetters_ShouldMoveMessagesBack() throws JMSException {
+        // Given
+        Connection connection = mock(Connection.class);
+        MessageConsumer dlqConsumer = mock(MessageConsumer.class);
+        MessageProducer queueProducer = mock(MessageProducer.class);
+        Queue dlq = mock(Queue.class);
+        Queue paymentQueue = mock(Queue.class);
+        TextMessage first = paymentMessage(5);
+        TextMessage second = paymentMessage(5);
+        when(first.getPropertyNames()).thenReturn(Collections.enumeration(List.of("dlqError")));
+        when(second.getPropertyNames()).thenReturn(Collections.emptyEnumeration());
+        when(brokerConnectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(true, Session.SESSION_TRANSACTED)).thenReturn(session);
+        when(session.createQueue(QueueConfig.PAYMENT_DLQ)).thenReturn(dlq);
+        when(session.createQueue(QueueConfig.PAYMENT_QUEUE)).thenReturn(paymentQueue);
+        when(session.createConsumer(dlq)).thenReturn(dlqConsumer);
+        when(session.createProducer(paymentQueue)).thenReturn(queueProducer);
+        when(session.createTextMessage(anyString())).thenReturn(deadLetter);
+        when(dlqConsumer.receive(anyLong())).thenReturn(first, second, null);
+
+        // When
+        int replayed = consumer.replayDeadLetters(10);
+
+        // Then
+        assertEquals(2, replayed);
+        verify(queueProducer, times(2)).send(deadLetter);
+        verify(session, times(2)).commit();
+        verify(deadLetter, never()).setObjectProperty(eq("dlqError"), any());
+        verify(connection).close();
+    }
+
+    private TextMessage paymentMessage(int deliveryCount) throws JMSException {
+        TextMessage message = mock(TextMessage.class);
+        lenient().when(message.getText()).thenReturn("{\"paymentId\":42,\"status\":\"PAID\"}");
+        lenient().when(message.propertyExists(PaymentNotificationConsumer.DELIVERY_COUNT_PROPERTY)).thenReturn(true);
+        lenient().when(message.getIntProperty(PaymentNotificationConsumer.DELIVERY_COUNT_PROPERTY)).thenReturn(deliveryCount);
+        return message;
+    }
+
+    private TextMessage outboxMessage(long eventId) throws JMSException {
+        TextMessage message = paymentMessage(1);
+        when(message.propertyExists(OutboxService.EVENT_ID_PROPERTY)).thenReturn(true);
+        when(message.getLongProperty(OutboxService.EVENT_ID_PROPERTY)).thenReturn(eventId);
+        return message;
+    }
+
+    private void stubDeadLetterQueue() throws JMSException {
+        Queue dlq = mock(Queue.class);
+        when(session.createQueue(QueueConfig.PAYMENT_DLQ)).thenReturn(dlq);
+        when(session.createProducer(dlq)).thenReturn(dlqProducer);
+        when(session.createTextMessage(anyString())).thenReturn(deadLetter);
+    }
+}
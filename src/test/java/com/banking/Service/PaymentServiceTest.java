@@ -1,22 +1,26 @@
 package com.banking.Service;
 
+import com.banking.Config.QueueConfig;
 import com.banking.DTO.CreatePaymentRequestDTO;
 import com.banking.DTO.PayPaymentRequestDTO;
 import com.banking.Entity.Account;
 import com.banking.Entity.Balance;
+import com.banking.Entity.Money;
 import com.banking.Entity.PaymentRequest;
 import com.banking.Repository.AccountRepository;
-import com.banking.Repository.BalanceRepository;
 import com.banking.Repository.PaymentRequestRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.jms.core.JmsTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import jakarta.jms.Queue;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -26,6 +30,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -39,22 +44,31 @@ import static org.mockito.Mockito.*;
 class PaymentServiceTest {
 
     @Mock
-    private JmsTemplate jmsTemplate;
+    private AccountRepository accountRepository;
 
     @Mock
-    private Queue paymentQueue;
+    private PaymentRequestRepository paymentRequestRepository;
 
     @Mock
-    private AccountRepository accountRepository;
+    private NotificationService notificationService;
 
     @Mock
-    private PaymentRequestRepository paymentRequestRepository;
+    private BalanceService balanceService;
 
     @Mock
-    private NotificationService notificationService;
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private BalanceRetryExecutor retryExecutor = new BalanceRetryExecutor(3, 1, 5);
+
+    @Spy
+    private PaymentExpiryService paymentExpiryService = new PaymentExpiryService();
 
     @Mock
-    private BalanceRepository balanceRepository;
+    private PaymentHoldService paymentHoldService;
+
+    @Mock
+    private OutboxService outboxService;
 
     @InjectMocks
     private PaymentService paymentService;
@@ -97,6 +111,9 @@ class PaymentServiceTest {
         payDTO = new PayPaymentRequestDTO();
         payDTO.setPaymentId(1L);
         payDTO.setAccountId(1L);
+
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(mock(TransactionStatus.class)));
     }
 
     /**
@@ -223,7 +240,8 @@ class PaymentServiceTest {
         assertEquals(PaymentRequest.PaymentStatus.PENDING, result.getStatus());
         verify(accountRepository).existsById(createDTO.getAccountId());
         verify(accountRepository).findById(createDTO.getAccountId());
-        verify(paymentRequestRepository).save(any(PaymentRequest.class));
+        verify(paymentRequestRepository).save(argThat(saved ->
+                saved.getExpiresAt().equals(saved.getCreatedAt().plusHours(168))));
         verify(notificationService).sendPaymentRequestNotification(any(PaymentRequest.class));
     }
 
@@ -250,9 +268,14 @@ class PaymentServiceTest {
     @Test
     void testPayPaymentRequest_WithValidData_ShouldPaySuccessfully() {
         // Given
-        when(paymentRequestRepository.findById(anyLong())).thenReturn(Optional.of(testPaymentRequest));
-        when(balanceRepository.findByAccount(any(Account.class))).thenReturn(Optional.of(testBalance));
-        when(paymentRequestRepository.save(any(PaymentRequest.class))).thenReturn(testPaymentRequest);
+        when(paymentRequestRepository.markPaid(eq(1L), eq(1L), any(LocalDateTime.class))).thenAnswer(invocation -> {
+            testPaymentRequest.setStatus(PaymentRequest.PaymentStatus.PAID);
+            testPaymentRequest.setPaidAt(invocation.getArgument(2));
+            return 1;
+        });
+        when(paymentRequestRepository.findAmountById(1L)).thenReturn(Optional.of(Money.of(500000.0, "VND")));
+        when(balanceService.payment(anyLong(), any(BigDecimal.class), anyString())).thenReturn(true);
+        when(paymentRequestRepository.findById(1L)).thenReturn(Optional.of(testPaymentRequest));
 
         // When
         PaymentRequest result = paymentService.payPaymentRequest(payDTO);
@@ -261,9 +284,9 @@ class PaymentServiceTest {
         assertNotNull(result);
         assertEquals(PaymentRequest.PaymentStatus.PAID, result.getStatus());
         assertNotNull(result.getPaidAt());
-        verify(paymentRequestRepository).findById(payDTO.getPaymentId());
-        verify(balanceRepository).findByAccount(testAccount);
-        verify(paymentRequestRepository).save(any(PaymentRequest.class));
+        verify(balanceService).payment(testAccount.getAccountId(), new BigDecimal("500000.00"), "PAYMENT#1");
+        verify(outboxService).enqueue(QueueConfig.PAYMENT_QUEUE, "1", testPaymentRequest);
+        verify(paymentRequestRepository, never()).save(any(PaymentRequest.class));
     }
 
     /**
@@ -272,7 +295,8 @@ class PaymentServiceTest {
     @Test
     void testPayPaymentRequest_WhenPaymentNotFound_ShouldThrowException() {
         // Given
-        when(paymentRequestRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(paymentRequestRepository.markPaid(eq(1L), eq(1L), any(LocalDateTime.class))).thenReturn(0);
+        when(paymentRequestRepository.findStatusById(1L)).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -280,17 +304,17 @@ class PaymentServiceTest {
         });
 
         assertEquals("Failed to process payment: Payment request not found", exception.getMessage());
-        verify(paymentRequestRepository).findById(payDTO.getPaymentId());
+        verify(balanceService, never()).payment(anyLong(), any(BigDecimal.class), anyString());
     }
 
     /**
-     * Test paying payment request when not pending
+     * Test paying payment request when not pending, e.g. a second concurrent pay
      */
     @Test
     void testPayPaymentRequest_WhenNotPending_ShouldThrowException() {
         // Given
-        testPaymentRequest.setStatus(PaymentRequest.PaymentStatus.PAID);
-        when(paymentRequestRepository.findById(anyLong())).thenReturn(Optional.of(testPaymentRequest));
+        when(paymentRequestRepository.markPaid(eq(1L), eq(1L), any(LocalDateTime.class))).thenReturn(0);
+        when(paymentRequestRepository.findStatusById(1L)).thenReturn(Optional.of(statusView(PaymentRequest.PaymentStatus.PAID, 1L)));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -298,7 +322,24 @@ class PaymentServiceTest {
         });
 
         assertEquals("Failed to process payment: Payment request is not pending", exception.getMessage());
-        verify(paymentRequestRepository).findById(payDTO.getPaymentId());
+        verify(balanceService, never()).payment(anyLong(), any(BigDecimal.class), anyString());
+    }
+
+    /**
+     * Test paying another account's payment request
+     */
+    @Test
+    void testPayPaymentRequest_WhenAccountMismatch_ShouldThrowException() {
+        // Given
+        when(paymentRequestRepository.markPaid(eq(1L), eq(1L), any(LocalDateTime.class))).thenReturn(0);
+        when(paymentRequestRepository.findStatusById(1L)).thenReturn(Optional.of(statusView(PaymentRequest.PaymentStatus.PENDING, 2L)));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            paymentService.payPaymentRequest(payDTO);
+        });
+
+        assertEquals("Failed to process payment: Account mismatch", exception.getMessage());
     }
 
     /**
@@ -307,10 +348,12 @@ class PaymentServiceTest {
     @Test
     void testPayPaymentRequest_WithInsufficientBalance_ShouldThrowException() {
         // Given
-        testBalance.setAvailableBalance(new BigDecimal("100000")); // Less than payment amount
-        when(paymentRequestRepository.findById(anyLong())).thenReturn(Optional.of(testPaymentRequest));
-        when(balanceRepository.findByAccount(any(Account.class))).thenReturn(Optional.of(testBalance));
-        when(paymentRequestRepository.save(any(PaymentRequest.class))).thenReturn(testPaymentRequest);
+        // Guarded debit affects no row when available balance < amount
+        when(paymentRequestRepository.markPaid(eq(1L), eq(1L), any(LocalDateTime.class))).thenReturn(1);
+        when(paymentRequestRepository.findAmountById(1L)).thenReturn(Optional.of(Money.of(500000.0, "VND")));
+        when(balanceService.payment(anyLong(), any(BigDecimal.class), anyString())).thenReturn(false);
+        when(paymentRequestRepository.markFailed(1L)).thenReturn(1);
+        when(paymentRequestRepository.findWithAccountById(1L)).thenReturn(Optional.of(testPaymentRequest));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -318,8 +361,71 @@ class PaymentServiceTest {
         });
 
         assertEquals("Failed to process payment: Insufficient available balance", exception.getMessage());
-        verify(paymentRequestRepository).findById(payDTO.getPaymentId());
-        verify(balanceRepository).findByAccount(testAccount);
+        verify(paymentRequestRepository).markFailed(1L);
+        verify(outboxService, never()).enqueue(anyString(), anyString(), any());
+        verify(notificationService).sendPaymentFailureNotification(testPaymentRequest, "Insufficient available balance");
+        verify(balanceService).payment(testAccount.getAccountId(), new BigDecimal("500000.00"), "PAYMENT#1");
+    }
+
+    /**
+     * Test paying authorizes a hold and captures it without a one-phase debit
+     */
+    @Test
+    void testPayPaymentRequest_WithHolds_ShouldAuthorizeThenCapture() {
+        // Given
+        when(balanceService.holdsSupported()).thenReturn(true);
+        when(paymentHoldService.authorize(1L, 1L)).thenReturn(PaymentHoldService.Outcome.HELD);
+        when(paymentHoldService.capture(1L)).thenAnswer(invocation -> {
+            testPaymentRequest.setStatus(PaymentRequest.PaymentStatus.PAID);
+            return true;
+        });
+        when(paymentRequestRepository.findById(1L)).thenReturn(Optional.of(testPaymentRequest));
+
+        // When
+        PaymentRequest result = paymentService.payPaymentRequest(payDTO);
+
+        // Then
+        assertEquals(PaymentRequest.PaymentStatus.PAID, result.getStatus());
+        InOrder inOrder = inOrder(paymentHoldService);
+        inOrder.verify(paymentHoldService).authorize(1L, 1L);
+        inOrder.verify(paymentHoldService).capture(1L);
+        // Capture ghi outbox trong transaction của nó, không phải PaymentService
+        verify(outboxService, never()).enqueue(anyString(), anyString(), any());
+        verify(paymentRequestRepository, never()).markPaid(anyLong(), anyLong(), any(LocalDateTime.class));
+        verify(balanceService, never()).payment(anyLong(), any(BigDecimal.class), anyString());
+    }
+
+    /**
+     * Test a hold refused for insufficient funds marks the request FAILED
+     */
+    @Test
+    void testPayPaymentRequest_WithHoldsAndInsufficientBalance_ShouldFail() {
+        // Given
+        when(balanceService.holdsSupported()).thenReturn(true);
+        when(paymentHoldService.authorize(1L, 1L)).thenReturn(PaymentHoldService.Outcome.INSUFFICIENT_FUNDS);
+        when(paymentRequestRepository.findWithAccountById(1L)).thenReturn(Optional.of(testPaymentRequest));
+
+        // When
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> paymentService.payPaymentRequest(payDTO));
+
+        // Then
+        assertEquals("Failed to process payment: Insufficient available balance", exception.getMessage());
+        verify(paymentRequestRepository).markFailed(1L);
+        verify(paymentHoldService, never()).capture(anyLong());
+    }
+
+    /**
+     * Test cancelling a payment request that is no longer pending
+     */
+    @Test
+    void testCancelPaymentRequest_WhenNotPending_ShouldThrowException() {
+        // Given
+        when(paymentRequestRepository.cancelPending(1L)).thenReturn(0);
+        when(paymentRequestRepository.findStatusById(1L)).thenReturn(Optional.of(statusView(PaymentRequest.PaymentStatus.PAID, 1L)));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> paymentService.cancelPaymentRequest(1L));
+        assertEquals("Payment request is not pending", exception.getMessage());
     }
 
     /**
@@ -376,4 +482,28 @@ class PaymentServiceTest {
         assertEquals(1, result.size());
         verify(paymentRequestRepository).findAll();
     }
+
+    private PaymentRequestRepository.PaymentStatusView statusView(PaymentRequest.PaymentStatus status, Long accountId) {
+        return new PaymentRequestRepository.PaymentStatusView() {
+            @Override
+            public PaymentRequest.PaymentStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Long getAccountId() {
+                return accountId;
+            }
+
+            @Override
+            public Money getAmount() {
+                return Money.of(500000.0, "VND");
+            }
+
+            @Override
+            public LocalDateTime getExpiresAt() {
+                return null;
+            }
+        };
+    }
 }
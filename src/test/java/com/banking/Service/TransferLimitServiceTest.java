@@ -0,0 +1,218 @@
+package com.banking.Service;
+
+import com.banking.Entity.TransferLimitPolicy;
+import com.banking.Repository.TransferLimitPolicyRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for TransferLimitService
+ *
+ * @author Banking System Team
+ * @version 1.0
+ * @since 2024
+ */
+@ExtendWith(MockitoExtension.class)
+class TransferLimitServiceTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Mock
+    private TransferLimitPolicyRepository policyRepository;
+
+    @Spy
+    private MockEnvironment environment = new MockEnvironment()
+            .withProperty("app.limits.levels.SILVER.single-max", "1000000")
+            .withProperty("app.limits.levels.SILVER.daily-amount", "5000000")
+            .withProperty("app.limits.levels.SILVER.per-minute-count", "3")
+            .withProperty("app.limits.levels.GOLD.per-minute-count", "100");
+
+    @InjectMocks
+    private TransferLimitService transferLimitService;
+
+    /**
+     * Test the per-transfer maximum and the per-minute count of the level are enforced
+     */
+    @Test
+    void testReserve_WhenLevelLimitsExceeded_ShouldReject() {
+        // Given
+        transferLimitService.reloadPolicies();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class,
+                () -> transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000001"), NOW));
+        for (int i = 0; i < 3; i++) {
+            transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000"), NOW);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000"), NOW + 1000));
+        // Một phút sau cửa sổ đếm đã trượt qua
+        assertNotNull(transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000"), NOW + 61_000));
+    }
+
+    /**
+     * Test the daily amount slides over 24 hours and released reservations free the limit
+     */
+    @Test
+    void testReserve_WhenDailyAmountExceeded_ShouldRejectUntilWindowSlides() {
+        // Given
+        transferLimitService.reloadPolicies();
+        TransferLimitService.Reservation first = transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000000"), NOW);
+        for (int i = 1; i < 5; i++) {
+            transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000000"), NOW + i * 3_600_000L);
+        }
+
+        // When & Then
+        long later = NOW + 5 * 3_600_000L;
+        assertThrows(IllegalArgumentException.class,
+                () -> transferLimitService.reserve(1L, "SILVER", new BigDecimal("1"), later));
+        transferLimitService.release(first);
+        assertNotNull(transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000000"), later));
+        assertNotNull(transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000000"), NOW + 25 * 3_600_000L));
+    }
+
+    /**
+     * Test an account override takes precedence over its level
+     */
+    @Test
+    void testReserve_WithAccountOverride_ShouldUseOverride() {
+        // Given
+        TransferLimitPolicy override = new TransferLimitPolicy(TransferLimitPolicy.SCOPE_ACCOUNT, "7");
+        override.setPerMinuteCount(1);
+        when(policyRepository.findAll()).thenReturn(List.of(override));
+        transferLimitService.reloadPolicies();
+
+        // When
+        transferLimitService.reserve(7L, "GOLD", new BigDecimal("10"), NOW);
+
+        // Then
+        assertThrows(IllegalArgumentException.class,
+                () -> transferLimitService.reserve(7L, "GOLD", new BigDecimal("10"), NOW));
+        assertNotNull(transferLimitService.reserve(8L, "GOLD", new BigDecimal("10"), NOW));
+    }
+
+    /**
+     * Test concurrent reservations never exceed the limit
+     */
+    @Test
+    void testReserve_WhenConcurrent_ShouldNeverExceedLimit() throws Exception {
+        // Given
+        transferLimitService.reloadPolicies();
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 2000; i++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    transferLimitService.reserve(1L, "GOLD", BigDecimal.ONE, NOW);
+                    accepted.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // vượt hạn mức
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Then
+        assertTrue(accepted.get() <= 100);
+        assertTrue(accepted.get() > 0);
+    }
+
+    /**
+     * Test a payroll batch with more lines than the per-minute count passes with the shipped level limits,
+     * while its total still counts against the daily amount
+     */
+    @Test
+    void testReserveBatch_WithApplicationLevelLimits_ShouldCountBatchAsOneTransfer() throws Exception {
+        // Given: hạn mức level thật trong application.properties (SILVER 10 giao dịch/phút, 200 triệu/ngày)
+        Properties properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        MockEnvironment shipped = new MockEnvironment();
+        properties.stringPropertyNames().stream().filter(name -> name.startsWith("app.limits."))
+                .forEach(name -> shipped.setProperty(name, properties.getProperty(name)));
+        ReflectionTestUtils.setField(transferLimitService, "environment", shipped);
+        transferLimitService.reloadPolicies();
+        int perMinute = Integer.parseInt(properties.getProperty("app.limits.levels.SILVER.per-minute-count"));
+        List<BigDecimal> payroll = Collections.nCopies(perMinute * 5, new BigDecimal("1000000"));
+
+        // When
+        TransferLimitService.Reservation reservation = transferLimitService.reserve(1L, "SILVER", payroll, NOW);
+
+        // Then
+        assertNotNull(reservation);
+        // 50 triệu đã dùng: thêm 160 triệu vượt hạn mức ngày
+        assertThrows(IllegalArgumentException.class, () -> transferLimitService.reserve(1L, "SILVER",
+                Collections.nCopies(4, new BigDecimal("40000000")), NOW + 1000));
+        // Cả lô chỉ là một lượt trong hạn mức mỗi phút
+        for (int i = 1; i < perMinute; i++) {
+            transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000"), NOW + 2000);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> transferLimitService.reserve(1L, "SILVER", new BigDecimal("1000"), NOW + 3000));
+    }
+
+    /**
+     * Test a window survives an export and restore, as done by checkpoint and rebuild
+     */
+    @Test
+    void testSlidingWindow_ExportRestore_ShouldKeepLiveBuckets() {
+        // Given
+        TransferLimitService.SlidingWindow window = new TransferLimitService.SlidingWindow(4, 1000);
+        window.add(NOW - 5000, 9);
+        window.add(NOW - 2000, 5);
+        window.add(NOW, 7);
+
+        // When
+        TransferLimitService.SlidingWindow restored = new TransferLimitService.SlidingWindow(4, 1000);
+        restored.restore(window.export(NOW), NOW);
+
+        // Then
+        assertEquals(12, window.sum(NOW));
+        assertEquals(12, restored.sum(NOW));
+        assertEquals(7, restored.sum(NOW + 3000));
+    }
+
+    /**
+     * Test merging two instances' checkpoints keeps the larger value per bucket and drops expired ones
+     */
+    @Test
+    void testMergeBuckets_FromTwoInstances_ShouldKeepLargerValuePerBucket() {
+        // Given
+        long bucketMs = 30 * 60_000L;
+        long newest = NOW / bucketMs;
+        String stored = (newest - 48) + ":900;" + (newest - 2) + ":500;" + newest + ":100";
+        String mine = (newest - 3) + ":300;" + newest + ":400";
+
+        // When
+        String merged = TransferLimitService.mergeBuckets(stored, mine, NOW);
+
+        // Then
+        assertEquals((newest - 3) + ":300;" + (newest - 2) + ":500;" + newest + ":400", merged);
+        assertEquals(mine, TransferLimitService.mergeBuckets(null, mine, NOW));
+    }
+}